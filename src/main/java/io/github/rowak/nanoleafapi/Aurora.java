@@ -6,9 +6,6 @@ import java.net.SocketException;
 
 import org.json.JSONObject;
 
-import java.util.List;
-import java.util.ArrayList;
-
 import okhttp3.OkHttpClient;
 
 /**
@@ -18,6 +15,9 @@ import okhttp3.OkHttpClient;
  */
 public class Aurora extends NanoleafDevice {
 	
+	/** The (rough) distance between the centroids of two neighboring panels */
+	public static final int CENTROID_DISTANCE = 90; // normally: 84
+	
 	/**
 	 * Creates a new instance of the Aurora.
 	 * 
@@ -79,24 +79,13 @@ public class Aurora extends NanoleafDevice {
 		super(hostname, port, accessToken, client);
 	}
 	
-	public List<Panel> getNeighborPanels(Panel panel, List<Panel> panels) {
-		// The centroid distance is the (roughly) the distance between the
-		// centroids of two neighboring panels
-		final int CENTROID_DISTANCE = 90; // normally: 84
-		List<Panel> neighbors = new ArrayList<Panel>();
-		int p1x = panel.getX();
-		int p1y = panel.getY();
-		for (Panel p2 : panels) {
-			if (!panel.equals(p2)) {
-				int p2x = p2.getX();
-				int p2y = p2.getY();
-				if (Math.floor(Math.sqrt(Math.pow((p1x - p2x), 2) +
-						Math.pow((p1y - p2y), 2))) <= CENTROID_DISTANCE) {
-					neighbors.add(p2);
-				}
-			}
-		}
-		return neighbors;
+	protected Aurora(DeviceSnapshot snapshot, String accessToken, OkHttpClient client) {
+		super(snapshot, accessToken, client);
+	}
+	
+	@Override
+	public int getCentroidDistance() {
+		return CENTROID_DISTANCE;
 	}
 	
 	/**
@@ -2,12 +2,14 @@ package io.github.rowak.nanoleafapi;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.json.JSONObject;
 
+import io.github.rowak.nanoleafapi.layout.PanelIndex;
+import io.github.rowak.nanoleafapi.layout.PanelLayout;
+
 /**
  * <p>Custom effects allow for highly customizable animation to be designed. A custom effect
  * is made up of a sequence of frames defined for each panel, where each frame has a color
@@ -143,7 +145,10 @@ public class CustomEffect extends Effect {
 	public static class Builder {
 		
 		private List<Panel> panels;
-		private Map<Integer, List<Frame>> frames;
+		private PanelIndex index;
+		/** The frames of each panel, by panel slot */
+		private List<List<Frame>> frames;
+		private Map<Integer, List<Frame>> frameMap;
 		
 		/**
 		 * Creates a new custom effect builder.
@@ -153,10 +158,8 @@ public class CustomEffect extends Effect {
 		 */
 		public Builder(NanoleafDevice device)
 				throws NanoleafException, IOException {
-			panels = device.getPanels();
-			frames = new HashMap<Integer, List<Frame>>();
-			for (Panel panel : panels)
-				frames.put(panel.getId(), new ArrayList<Frame>());
+			PanelLayout layout = device.getLayout();
+			init(layout.getPanels(), layout.getIndex());
 		}
 		
 		/**
@@ -166,10 +169,27 @@ public class CustomEffect extends Effect {
 		 * @param panels  the panel data
 		 */
 		public Builder(List<Panel> panels) {
+			init(panels, PanelIndex.of(panels));
+		}
+		
+		private void init(List<Panel> panels, PanelIndex index) {
 			this.panels = panels;
-			frames = new HashMap<Integer, List<Frame>>();
-			for (Panel panel : panels)
-				frames.put(panel.getId(), new ArrayList<Frame>());
+			this.index = index;
+			frames = new ArrayList<List<Frame>>(panels.size());
+			for (int i = 0; i < panels.size(); i++) {
+				frames.add(new ArrayList<Frame>());
+			}
+			frameMap = new SlotMap<List<Frame>>(panels, index) {
+				@Override
+				List<Frame> getSlot(int slot) {
+					return frames.get(slot);
+				}
+				
+				@Override
+				void setSlot(int slot, List<Frame> value) {
+					frames.set(slot, value != null ? value : new ArrayList<Frame>());
+				}
+			};
 		}
 		
 		/**
@@ -197,11 +217,14 @@ public class CustomEffect extends Effect {
 		/**
 		 * Gets a map of the frames in this effect. The key represents the panel
 		 * and the value represents a list of the frames for the corresponding panel.
+		 * The map and the lists are the ones used by the builder, so changes to
+		 * them affect the effect. Only the panels of the builder can be added
+		 * to the map, and removing a panel from the map removes its frames.
 		 * 
 		 * @return  a map of the frames for this effect
 		 */
 		public Map<Integer, List<Frame>> getFrames() {
-			return frames;
+			return frameMap;
 		}
 		
 		/**
@@ -215,27 +238,25 @@ public class CustomEffect extends Effect {
 		public CustomEffect build(String effectName, boolean loop)
 				throws NanoleafException, IOException {
 			int numPanels = 0;
-			for (Panel p : panels) {
-				if (frames.get(p.getId()).size() > 0) {
+			for (List<Frame> panelFrames : frames) {
+				if (panelFrames.size() > 0) {
 					numPanels++;
 				}
 			}
 			StringBuilder data = new StringBuilder();
 			data.append(numPanels);
 			for (int i = 0; i < panels.size(); i++) {
-				Panel panel = panels.get(i);
-				int numFrames = frames.get(panel.getId()).size();
+				List<Frame> panelFrames = frames.get(i);
+				int numFrames = panelFrames.size();
 				if (numFrames > 0) {
-					data.append(" " + panel.getId() + " " + numFrames);
+					data.append(' ').append(panels.get(i).getId()).append(' ').append(numFrames);
 					
 					for (int j = 0; j < numFrames; j++) {
-						Frame frame = frames.get(panel.getId()).get(j);
-						data.append(" " +
-									frame.getRed() + " " +
-									frame.getGreen() + " " +
-									frame.getBlue() + " " +
-									0 + " " +
-									frame.getTransitionTime());
+						Frame frame = panelFrames.get(j);
+						data.append(' ').append(frame.getRed())
+							.append(' ').append(frame.getGreen())
+							.append(' ').append(frame.getBlue())
+							.append(" 0 ").append(frame.getTransitionTime());
 					}
 				}
 			}
@@ -249,8 +270,8 @@ public class CustomEffect extends Effect {
 		 * @return        the current builder
 		 */
 		public Builder addFrameToAllPanels(Frame frame) {
-			for (Panel p : panels) {
-				frames.get(p.getId()).add(frame);
+			for (List<Frame> panelFrames : frames) {
+				panelFrames.add(frame);
 			}
 			return this;
 		}
@@ -273,13 +294,7 @@ public class CustomEffect extends Effect {
 		 * @return          the current builder
 		 */
 		public Builder addFrame(int panelId, Frame frame) {
-			if (panelIdIsValid(panelId)) {
-				frames.get(panelId).add(frame);
-			}
-			else {
-				throw new IllegalArgumentException("Panel with id " +
-						panelId + " does not exist.");
-			}
+			frames.get(getSlot(panelId)).add(frame);
 			return this;
 		}
 		
@@ -302,23 +317,17 @@ public class CustomEffect extends Effect {
 		 * @return          the current builder
 		 */
 		public Builder removeFrame(int panelId, Frame frame) {
-			if (panelIdIsValid(panelId)) {
-				frames.get(panelId).remove(frame);
-			}
-			else {
-				throw new IllegalArgumentException("Panel with id " +
-						panelId + " does not exist.");
-			}
+			frames.get(getSlot(panelId)).remove(frame);
 			return this;
 		}
 		
-		private boolean panelIdIsValid(int panelId) {
-			for (Panel p : panels) {
-				if (p.getId() == panelId) {
-					return true;
-				}
+		private int getSlot(int panelId) {
+			int slot = index.getSlot(panelId);
+			if (slot < 0) {
+				throw new IllegalArgumentException("Panel with id " +
+						panelId + " does not exist.");
 			}
-			return false;
+			return slot;
 		}
 	}
 }
@@ -0,0 +1,236 @@
+package io.github.rowak.nanoleafapi;
+
+import java.io.IOException;
+
+import org.json.JSONObject;
+
+import io.github.rowak.nanoleafapi.layout.PanelLayout;
+
+/**
+ * <p>An immutable record of the information about a device that rarely changes:
+ * its address, name, serial number, manufacturer, model and panel layout
+ * (including the global orientation). Snapshots are saved by a {@link SnapshotStore}
+ * so that devices can be created without any requests on startup, using
+ * {@link NanoleafDevice#createDevice(DeviceSnapshot, String)}.</p>
+ * 
+ * <p>Access tokens are not part of a snapshot, so a snapshot file does not
+ * need to be kept secret.</p>
+ */
+public class DeviceSnapshot {
+
+	/** The current snapshot format version */
+	public static final int VERSION = 1;
+
+	private final String hostname;
+	private final int port;
+	private final String name;
+	private final String serialNumber;
+	private final String manufacturer;
+	private final String model;
+	private final PanelLayout layout;
+	private final long timestamp;
+
+	/**
+	 * Creates a new snapshot.
+	 * 
+	 * @param hostname       the hostname of the device
+	 * @param port           the port of the device
+	 * @param name           the name of the device
+	 * @param serialNumber   the serial number of the device
+	 * @param manufacturer   the manufacturer of the device
+	 * @param model          the model of the device
+	 * @param layout         the panel layout of the device
+	 * @param timestamp      the time that the snapshot was taken, in milliseconds
+	 *                       since the epoch
+	 */
+	public DeviceSnapshot(String hostname, int port, String name, String serialNumber,
+			String manufacturer, String model, PanelLayout layout, long timestamp) {
+		this.hostname = hostname;
+		this.port = port;
+		this.name = name;
+		this.serialNumber = serialNumber;
+		this.manufacturer = manufacturer;
+		this.model = model;
+		this.layout = layout;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Takes a snapshot of a device. The layout is only fetched if it is not
+	 * already cached by the device.
+	 * 
+	 * @param device               the device
+	 * @return                     a new snapshot
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public static DeviceSnapshot of(NanoleafDevice device)
+			throws NanoleafException, IOException {
+		return new DeviceSnapshot(device.getHostname(), device.getPort(), device.getName(),
+				device.getSerialNumber(), device.getManufacturer(), device.getModel(),
+				device.getLayout(), System.currentTimeMillis());
+	}
+
+	/**
+	 * Gets the key that identifies the device of a snapshot in a
+	 * {@link SnapshotStore}.
+	 * 
+	 * @param hostname   the hostname of the device
+	 * @param port       the port of the device
+	 * @return           the snapshot key
+	 */
+	public static String getKey(String hostname, int port) {
+		return hostname + ":" + port;
+	}
+
+	/**
+	 * Gets the key that identifies the device of this snapshot in a
+	 * {@link SnapshotStore}.
+	 * 
+	 * @return   the snapshot key
+	 */
+	public String getKey() {
+		return getKey(hostname, port);
+	}
+
+	/**
+	 * Gets the hostname of the device.
+	 * 
+	 * @return   the hostname
+	 */
+	public String getHostname() {
+		return hostname;
+	}
+
+	/**
+	 * Gets the port of the device.
+	 * 
+	 * @return   the port
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Gets the name of the device.
+	 * 
+	 * @return   the device name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the serial number of the device.
+	 * 
+	 * @return   the serial number
+	 */
+	public String getSerialNumber() {
+		return serialNumber;
+	}
+
+	/**
+	 * Gets the manufacturer of the device.
+	 * 
+	 * @return   the manufacturer
+	 */
+	public String getManufacturer() {
+		return manufacturer;
+	}
+
+	/**
+	 * Gets the model of the device.
+	 * 
+	 * @return   the model
+	 */
+	public String getModel() {
+		return model;
+	}
+
+	/**
+	 * Gets the panel layout and global orientation of the device.
+	 * 
+	 * @return   the panel layout
+	 */
+	public PanelLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Gets the time that the snapshot was taken.
+	 * 
+	 * @return   the time in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Checks if this snapshot describes the same device info and layout as another
+	 * snapshot. The timestamps and layout versions are not compared.
+	 * 
+	 * @param other   the other snapshot
+	 * @return        true if the snapshots have the same contents, or false otherwise
+	 */
+	public boolean contentEquals(DeviceSnapshot other) {
+		return other != null &&
+				hostname.equals(other.hostname) && port == other.port &&
+				equals(name, other.name) &&
+				equals(serialNumber, other.serialNumber) &&
+				equals(manufacturer, other.manufacturer) &&
+				equals(model, other.model) &&
+				layout.contentEquals(other.layout);
+	}
+
+	private static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * Converts the snapshot to JSON.
+	 * 
+	 * @return   the snapshot JSON
+	 */
+	public JSONObject toJSON() {
+		JSONObject json = new JSONObject();
+		json.put("version", VERSION);
+		json.put("hostname", hostname);
+		json.put("port", port);
+		json.put("name", name);
+		json.put("serialNo", serialNumber);
+		json.put("manufacturer", manufacturer);
+		json.put("model", model);
+		json.put("panelLayout", layout.toJSON());
+		json.put("timestamp", timestamp);
+		return json;
+	}
+
+	/**
+	 * Creates a snapshot from JSON. The layout of the snapshot has version 1.
+	 * 
+	 * @param json   the snapshot JSON
+	 * @return       a new snapshot
+	 * @throws JSONParserException  If the snapshot version is not supported, or if
+	 *                              the snapshot is missing any data
+	 */
+	public static DeviceSnapshot fromJSON(JSONObject json) {
+		int version = json.optInt("version", 0);
+		if (version != VERSION) {
+			throw new JSONParserException("Unsupported device snapshot version " + version + ".");
+		}
+		if (!json.has("hostname") || !json.has("port") || !json.has("name") ||
+				!json.has("panelLayout")) {
+			throw new JSONParserException("The device snapshot is missing data.");
+		}
+		return new DeviceSnapshot(json.getString("hostname"), json.getInt("port"),
+				json.getString("name"), json.optString("serialNo", null),
+				json.optString("manufacturer", null), json.optString("model", null),
+				PanelLayout.fromJSON(json.getJSONObject("panelLayout"), 1),
+				json.optLong("timestamp", 0));
+	}
+
+	@Override
+	public String toString() {
+		return "DeviceSnapshot[" + getKey() + ", " + name + ", " + layout.size() + " panels]";
+	}
+}
@@ -0,0 +1,406 @@
+package io.github.rowak.nanoleafapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.github.rowak.nanoleafapi.event.EffectsEvent;
+import io.github.rowak.nanoleafapi.event.EventRecord;
+import io.github.rowak.nanoleafapi.event.EventType;
+import io.github.rowak.nanoleafapi.event.LayoutEvent;
+import io.github.rowak.nanoleafapi.event.StateEvent;
+import io.github.rowak.nanoleafapi.layout.PanelLayout;
+
+/**
+ * <p>An immutable record of everything about a device that can change through
+ * events: its state (on, brightness, color), the selected effect, the installed
+ * effects and the panel layout. A state is fetched in a single request using
+ * {@link NanoleafDevice#getDeviceState()}, and a newer state can be derived from
+ * an event using {@link DeviceState#withEvent(EventRecord)}.</p>
+ * 
+ * <p>When event reconnection is enabled (see
+ * {@link NanoleafDevice#enableEventReconnection(io.github.rowak.nanoleafapi.event.ReconnectPolicy)}),
+ * the device keeps a state up to date with its events, and compares it to a
+ * freshly fetched state after reconnecting to find the events that were missed.
+ * A {@link DeviceStateMirror} keeps a state up to date in the same way.</p>
+ */
+public class DeviceState {
+
+	private final boolean on;
+	private final int brightness;
+	private final int hue;
+	private final int saturation;
+	private final int colorTemperature;
+	private final String colorMode;
+	private final String effect;
+	private final List<String> effects;
+	private final PanelLayout layout;
+	private final long timestamp;
+
+	/**
+	 * Creates a new device state.
+	 * 
+	 * @param on                 the on state of the device
+	 * @param brightness         the brightness of the device
+	 * @param hue                the hue of the device
+	 * @param saturation         the saturation of the device
+	 * @param colorTemperature   the color temperature of the device
+	 * @param colorMode          the color mode of the device
+	 * @param effect             the name of the selected effect
+	 * @param effects            the names of the installed effects
+	 * @param layout             the panel layout of the device
+	 * @param timestamp          the time that the state was taken, in milliseconds
+	 *                           since the epoch
+	 */
+	public DeviceState(boolean on, int brightness, int hue, int saturation,
+			int colorTemperature, String colorMode, String effect, List<String> effects,
+			PanelLayout layout, long timestamp) {
+		this.on = on;
+		this.brightness = brightness;
+		this.hue = hue;
+		this.saturation = saturation;
+		this.colorTemperature = colorTemperature;
+		this.colorMode = colorMode;
+		this.effect = effect;
+		this.effects = effects != null ?
+				Collections.unmodifiableList(new ArrayList<String>(effects)) :
+				Collections.<String>emptyList();
+		this.layout = layout;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Creates a device state from the JSON of the device info (the root endpoint
+	 * of a device), which includes the state and the effects.
+	 * 
+	 * @param json     the device info JSON
+	 * @param layout   the panel layout, which is usually parsed from the
+	 *                 <code>panelLayout</code> object of the same JSON
+	 * @return         a new device state
+	 * @throws JSONParserException  If the JSON is missing the state or the effects
+	 */
+	public static DeviceState fromJSON(JSONObject json, PanelLayout layout) {
+		if (!json.has("state") || !json.has("effects")) {
+			throw new JSONParserException("The device info is missing the state or effects.");
+		}
+		JSONObject state = json.getJSONObject("state");
+		JSONObject effectsJson = json.getJSONObject("effects");
+		List<String> effects = new ArrayList<String>();
+		JSONArray list = effectsJson.optJSONArray("effectsList");
+		if (list != null) {
+			for (int i = 0; i < list.length(); i++) {
+				effects.add(list.getString(i));
+			}
+		}
+		return new DeviceState(getValue(state, "on").optBoolean("value"),
+				getValue(state, "brightness").optInt("value"),
+				getValue(state, "hue").optInt("value"),
+				getValue(state, "sat").optInt("value"),
+				getValue(state, "ct").optInt("value"),
+				state.optString("colorMode", null),
+				effectsJson.optString("select", null), effects, layout,
+				System.currentTimeMillis());
+	}
+
+	private static JSONObject getValue(JSONObject state, String key) {
+		JSONObject value = state.optJSONObject(key);
+		return value != null ? value : new JSONObject();
+	}
+
+	/**
+	 * Gets the on state of the device.
+	 * 
+	 * @return   true if the device is on, or false otherwise
+	 */
+	public boolean isOn() {
+		return on;
+	}
+
+	/**
+	 * Gets the brightness of the device.
+	 * 
+	 * @return   the brightness
+	 */
+	public int getBrightness() {
+		return brightness;
+	}
+
+	/**
+	 * Gets the hue of the device.
+	 * 
+	 * @return   the hue
+	 */
+	public int getHue() {
+		return hue;
+	}
+
+	/**
+	 * Gets the saturation of the device.
+	 * 
+	 * @return   the saturation
+	 */
+	public int getSaturation() {
+		return saturation;
+	}
+
+	/**
+	 * Gets the color temperature of the device.
+	 * 
+	 * @return   the color temperature
+	 */
+	public int getColorTemperature() {
+		return colorTemperature;
+	}
+
+	/**
+	 * Gets the color mode of the device, such as "hs", "ct" or "effect".
+	 * 
+	 * @return   the color mode
+	 */
+	public String getColorMode() {
+		return colorMode;
+	}
+
+	/**
+	 * Gets the name of the selected effect.
+	 * 
+	 * @return   the effect name
+	 */
+	public String getEffect() {
+		return effect;
+	}
+
+	/**
+	 * Gets the names of the installed effects.
+	 * 
+	 * @return   an unmodifiable list of the effect names
+	 */
+	public List<String> getEffects() {
+		return effects;
+	}
+
+	/**
+	 * Gets the panel layout and global orientation of the device.
+	 * 
+	 * @return   the panel layout
+	 */
+	public PanelLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Gets the time that the state was fetched, or that the last event was
+	 * applied to it.
+	 * 
+	 * @return   the time in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Creates the state that results from an event. Touch events and events
+	 * without a value do not change the state.
+	 * 
+	 * @param event   the event
+	 * @return        a new state, or this state if the event does not change it
+	 */
+	public DeviceState withEvent(EventRecord event) {
+		if (!event.hasValue()) {
+			return this;
+		}
+		boolean on = this.on;
+		int brightness = this.brightness, hue = this.hue, saturation = this.saturation;
+		int colorTemperature = this.colorTemperature;
+		String colorMode = this.colorMode, effect = this.effect;
+		List<String> effects = this.effects;
+		PanelLayout layout = this.layout;
+		long now = System.currentTimeMillis();
+		if (event.getType() == EventType.STATE) {
+			switch (event.getAttribute()) {
+				case StateEvent.ON_ATTRIBUTE: on = event.getBoolean(); break;
+				case StateEvent.BRIGHTNESS_ATTRIBUTE: brightness = event.getInt(); break;
+				case StateEvent.HUE_ATTRIBUTE: hue = event.getInt(); break;
+				case StateEvent.SATURATION_ATTRIBUTE: saturation = event.getInt(); break;
+				case StateEvent.CCT_ATTRIBUTE: colorTemperature = event.getInt(); break;
+				case StateEvent.COLORMODE_ATTRIBUTE:
+					colorMode = event.getValueKind() == EventRecord.STRING_VALUE ?
+							event.getString() : Long.toString(event.getLong());
+					break;
+				default: return this;
+			}
+		}
+		else if (event.getType() == EventType.EFFECTS) {
+			if (event.getAttribute() == EffectsEvent.SELECTED_EFFECT_ATTRIBUTE) {
+				effect = event.getString();
+			}
+			else if (event.getAttribute() == EffectsEvent.EFFECTS_LIST_ATTRIBUTE) {
+				Object value = event.toEvent().getValue();
+				if (!(value instanceof String[])) {
+					return this;
+				}
+				effects = Arrays.asList((String[])value);
+			}
+			else {
+				return this;
+			}
+		}
+		else if (event.getType() == EventType.LAYOUT) {
+			int sideLength = layout != null ? layout.getSideLength() : 0;
+			int orientation = layout != null ? layout.getGlobalOrientation() : 0;
+			long version = layout != null ? layout.getVersion() + 1 : 1;
+			if (event.getAttribute() == LayoutEvent.GLOBAL_ORIENTATION_ATTRIBUTE) {
+				layout = layout != null ? layout.withGlobalOrientation(event.getInt(), version) :
+						PanelLayout.fromPanels(Collections.<Panel>emptyList(), 0, event.getInt(), version);
+			}
+			else if (event.getAttribute() == LayoutEvent.LAYOUT_ATTRIBUTE) {
+				Object value = event.toEvent().getValue();
+				if (!(value instanceof Panel[])) {
+					return this;
+				}
+				layout = PanelLayout.fromPanels(Arrays.asList((Panel[])value), sideLength,
+						orientation, version);
+			}
+			else {
+				return this;
+			}
+		}
+		else {
+			return this;
+		}
+		return new DeviceState(on, brightness, hue, saturation, colorTemperature,
+				colorMode, effect, effects, layout, now);
+	}
+
+	/**
+	 * Checks if another state has the same values as this state. The timestamps
+	 * are not compared, and the layouts are compared by their content.
+	 * 
+	 * @param other   the other state
+	 * @return        true if the states are the same, or false otherwise
+	 */
+	public boolean contentEquals(DeviceState other) {
+		if (other == this) {
+			return true;
+		}
+		return other != null && on == other.on && brightness == other.brightness &&
+				hue == other.hue && saturation == other.saturation &&
+				colorTemperature == other.colorTemperature &&
+				Objects.equals(colorMode, other.colorMode) &&
+				Objects.equals(effect, other.effect) && effects.equals(other.effects) &&
+				(layout == null ? other.layout == null : layout.contentEquals(other.layout));
+	}
+
+	/*
+	 * Creates a state with the parts of this state for the event types in a mask
+	 * (see NanoleafEventHub) and the rest from another state.
+	 */
+	DeviceState merge(DeviceState other, int mask) {
+		boolean state = (mask & (1 << EventType.STATE.getId())) != 0;
+		boolean fx = (mask & (1 << EventType.EFFECTS.getId())) != 0;
+		boolean panels = (mask & (1 << EventType.LAYOUT.getId())) != 0;
+		DeviceState s = state ? this : other;
+		return new DeviceState(s.on, s.brightness, s.hue, s.saturation, s.colorTemperature,
+				s.colorMode, fx ? effect : other.effect, fx ? effects : other.effects,
+				panels ? layout : other.layout, Math.max(timestamp, other.timestamp));
+	}
+
+	/*
+	 * Creates an event stream message with the events of a type that turn this
+	 * state into a newer state, or returns null if there are no differences.
+	 */
+	String getCatchUpMessage(DeviceState newer, EventType type) {
+		JSONArray events = new JSONArray();
+		switch (type) {
+			case STATE:
+				if (on != newer.on) {
+					events.put(event(StateEvent.ON_ATTRIBUTE, newer.on));
+				}
+				if (brightness != newer.brightness) {
+					events.put(event(StateEvent.BRIGHTNESS_ATTRIBUTE, newer.brightness));
+				}
+				if (hue != newer.hue) {
+					events.put(event(StateEvent.HUE_ATTRIBUTE, newer.hue));
+				}
+				if (saturation != newer.saturation) {
+					events.put(event(StateEvent.SATURATION_ATTRIBUTE, newer.saturation));
+				}
+				if (colorTemperature != newer.colorTemperature) {
+					events.put(event(StateEvent.CCT_ATTRIBUTE, newer.colorTemperature));
+				}
+				if (newer.colorMode != null && !newer.colorMode.equals(colorMode)) {
+					events.put(event(StateEvent.COLORMODE_ATTRIBUTE, newer.colorMode));
+				}
+				break;
+			case EFFECTS:
+				if (newer.effect != null && !newer.effect.equals(effect)) {
+					events.put(event(EffectsEvent.SELECTED_EFFECT_ATTRIBUTE, newer.effect));
+				}
+				if (!newer.effects.equals(effects)) {
+					events.put(event(EffectsEvent.EFFECTS_LIST_ATTRIBUTE,
+							new JSONArray(newer.effects)));
+				}
+				break;
+			case LAYOUT:
+				if (newer.layout == null || newer.layout.contentEquals(layout)) {
+					break;
+				}
+				int orientation = newer.layout.getGlobalOrientation();
+				if (layout == null || !layout.withGlobalOrientation(orientation,
+						layout.getVersion()).contentEquals(newer.layout)) {
+					events.put(event(LayoutEvent.LAYOUT_ATTRIBUTE, getLayoutValue(newer.layout)));
+				}
+				if (layout == null || layout.getGlobalOrientation() != orientation) {
+					events.put(event(LayoutEvent.GLOBAL_ORIENTATION_ATTRIBUTE, orientation));
+				}
+				break;
+			default:
+				break;
+		}
+		if (events.length() == 0) {
+			return null;
+		}
+		JSONObject message = new JSONObject();
+		message.put("events", events);
+		return message.toString();
+	}
+
+	private static JSONObject event(int attribute, Object value) {
+		JSONObject json = new JSONObject();
+		json.put("attr", attribute);
+		json.put("value", value);
+		return json;
+	}
+
+	/* The value of a layout event, which holds each panel as a JSON string */
+	private static JSONObject getLayoutValue(PanelLayout layout) {
+		JSONArray positionData = new JSONArray();
+		for (int slot = 0; slot < layout.size(); slot++) {
+			JSONObject panel = new JSONObject();
+			panel.put("id", layout.getPanelId(slot));
+			panel.put("x", layout.getX(slot));
+			panel.put("y", layout.getY(slot));
+			panel.put("o", layout.getOrientation(slot));
+			panel.put("shapeType", layout.getShapeType(slot));
+			positionData.put(panel.toString());
+		}
+		JSONObject value = new JSONObject();
+		value.put("numPanels", layout.size());
+		value.put("sideLength", layout.getSideLength());
+		value.put("positionData", positionData);
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "DeviceState[on=" + on + ", brightness=" + brightness + ", hue=" + hue +
+				", sat=" + saturation + ", ct=" + colorTemperature + ", colorMode=" +
+				colorMode + ", effect=" + effect + ", " +
+				(layout != null ? layout.size() : 0) + " panels]";
+	}
+}
@@ -0,0 +1,21 @@
+package io.github.rowak.nanoleafapi;
+
+/**
+ * An interface for receiving notifications from a {@link DeviceStateMirror} when
+ * the state of its device changes. The listener is called from the thread that
+ * reads the event stream of the device (or the thread that fetched the state, after
+ * a refresh), so it should return quickly.
+ */
+public interface DeviceStateListener {
+
+	/**
+	 * Called when an event or a refresh has changed the mirrored state of a
+	 * device. The mirror already returns the new state when this is called.
+	 * 
+	 * @param device     the device whose state changed
+	 * @param oldState   the previous state
+	 * @param newState   the new state
+	 */
+	public void onStateChanged(NanoleafDevice device, DeviceState oldState,
+			DeviceState newState);
+}
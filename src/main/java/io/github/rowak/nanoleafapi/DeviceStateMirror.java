@@ -0,0 +1,268 @@
+package io.github.rowak.nanoleafapi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.here.oksse.ServerSentEvent;
+
+import io.github.rowak.nanoleafapi.event.Event;
+import io.github.rowak.nanoleafapi.event.EventDispatch;
+import io.github.rowak.nanoleafapi.event.NanoleafEventListener;
+
+/**
+ * <p>A local copy of the {@link DeviceState} of a device that is kept up to date
+ * with the events of the device. The mirror starts from a state fetched from the
+ * device, then applies every state event (on, brightness, hue, saturation, color
+ * temperature and color mode), effects event and layout event as it arrives.</p>
+ * 
+ * <p>Each state is immutable, and the current state is replaced atomically, so
+ * {@link DeviceStateMirror#getState()} never blocks and never makes a request. It
+ * can be called as often as needed from any thread.</p>
+ * 
+ * <p>For example:</p>
+ * <pre>
+ * DeviceStateMirror mirror = device.getStateMirror();
+ * mirror.addListener((device, oldState, newState) -&gt; ...);
+ * ...
+ * int brightness = mirror.getState().getBrightness();
+ * </pre>
+ * 
+ * <p>The mirrored state is the state that the device keeps for event reconnection
+ * (see {@link NanoleafDevice#getEventState()}), so the two are always the same.
+ * The state is fetched again whenever the event stream of the device is (re)opened,
+ * since events may have been missed while it was closed. Event reconnection (see
+ * {@link NanoleafDevice#enableEventReconnection()}) keeps the stream open when the
+ * device reboots or leaves the network.</p>
+ */
+public class DeviceStateMirror {
+
+	private final static Logger logger = LoggerFactory.getLogger(DeviceStateMirror.class);
+
+	/* The event types that change the state (see NanoleafEventHub) */
+	private static final int MASK = NanoleafEventHub.STATE | NanoleafEventHub.LAYOUT |
+			NanoleafEventHub.EFFECTS;
+
+	/* How long start waits for the first state */
+	private static final long START_TIMEOUT_MILLIS = 30000;
+
+	private final NanoleafDevice device;
+	private final NanoleafEventHub hub;
+	private final List<DeviceStateListener> listeners;
+	private final NanoleafEventHub.StateObserver observer;
+
+	/* Counted down when the first state has been fetched, or the first fetch failed */
+	private final CountDownLatch started;
+	private volatile Exception failure;
+	private ServerSentEvent subscription;
+	private volatile boolean closed;
+
+	DeviceStateMirror(NanoleafDevice device) {
+		this.device = device;
+		hub = device.getEventHub();
+		listeners = new CopyOnWriteArrayList<DeviceStateListener>();
+		started = new CountDownLatch(1);
+		observer = new NanoleafEventHub.StateObserver() {
+			@Override
+			public void stateChanged(DeviceState old, DeviceState updated) {
+				if (old == null) {
+					started.countDown();
+				}
+				else {
+					notifyListeners(old, updated);
+				}
+			}
+
+			@Override
+			public void fetchFailed(Exception e) {
+				if (hub.getState() == null) {
+					failure = e;
+					started.countDown();
+				}
+			}
+		};
+	}
+
+	/* Makes the hub keep the state, and waits until it has been fetched */
+	void start() throws NanoleafException, IOException {
+		hub.setStateObserver(observer);
+		// The stream also keeps the state while the mirror is the only listener
+		subscription = hub.subscribe(new NanoleafEventListener() {
+			@Override
+			public void onOpen() {}
+
+			@Override
+			public void onClosed() {}
+
+			@Override
+			public void onEvent(Event[] events) {}
+
+			@Override
+			public void onMessage(ServerSentEvent sse, String id, String event, String message) {}
+		}, MASK, -1, EventDispatch.INLINE);
+		try {
+			awaitState();
+		}
+		catch (NanoleafException | IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	private void awaitState() throws NanoleafException, IOException {
+		if (hub.getState() != null) {
+			return;
+		}
+		try {
+			if (!started.await(START_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				throw new IOException("Timed out while fetching the device state.");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while fetching the device state.");
+		}
+		Exception e = failure;
+		if (hub.getState() != null || e == null) {
+			return;
+		}
+		if (e instanceof NanoleafException) {
+			throw (NanoleafException)e;
+		}
+		else if (e instanceof IOException) {
+			throw (IOException)e;
+		}
+		else if (e instanceof RuntimeException) {
+			throw (RuntimeException)e;
+		}
+		throw new IOException(e);
+	}
+
+	/**
+	 * Gets the device that is mirrored.
+	 * 
+	 * @return   the device
+	 */
+	public NanoleafDevice getDevice() {
+		return device;
+	}
+
+	/**
+	 * Gets the current state of the device. This does not make any requests.
+	 * 
+	 * @return   the mirrored state, or null if the mirror is closed and event
+	 *           reconnection is not enabled
+	 */
+	public DeviceState getState() {
+		return hub.getState();
+	}
+
+	/**
+	 * Adds a listener that is notified whenever the mirrored state changes.
+	 * 
+	 * @param listener   the listener to add
+	 */
+	public void addListener(DeviceStateListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener.
+	 * 
+	 * @param listener   the listener to remove
+	 */
+	public void removeListener(DeviceStateListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Fetches the state of the device and merges it into the mirrored state. This
+	 * is only needed if the state may have changed without an event. Like after
+	 * a reconnect, the listeners of the device receive catch-up events for the
+	 * differences.
+	 * 
+	 * @return                     the new mirrored state
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public DeviceState refresh()
+			throws NanoleafException, IOException {
+		Consumer<DeviceState> merge = hub.beginResync();
+		merge.accept(device.getDeviceState());
+		return getState();
+	}
+
+	/**
+	 * <p>Asynchronously fetches the state of the device and merges it into the
+	 * mirrored state. This is only needed if the state may have changed without
+	 * an event.</p>
+	 * 
+	 * <p>The callback status will return {@link NanoleafCallback#SUCCESS} on success,
+	 * or {@link NanoleafCallback#UNAUTHORIZED} if the access token is invalid.
+	 * If an internal API error occurs, it will instead return
+	 * {@link NanoleafCallback#FAILURE}.</p>
+	 * 
+	 * @param callback   returns the new mirrored state, or null to ignore the result
+	 */
+	public void refreshAsync(NanoleafCallback<DeviceState> callback) {
+		Consumer<DeviceState> merge = hub.beginResync();
+		device.getDeviceStateAsync((status, data, device) -> {
+			DeviceState updated = null;
+			if (status == NanoleafCallback.SUCCESS) {
+				merge.accept(data);
+				updated = getState();
+			}
+			if (callback != null) {
+				callback.onCompleted(status, updated, device);
+			}
+		});
+	}
+
+	/**
+	 * Stops mirroring the device. The state is no longer updated, unless event
+	 * reconnection is enabled, and {@link NanoleafDevice#getStateMirror()} creates
+	 * a new mirror.
+	 */
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		listeners.clear();
+		if (subscription != null) {
+			subscription.close();
+		}
+		hub.setStateObserver(null);
+	}
+
+	/**
+	 * Checks if the mirror has been closed.
+	 * 
+	 * @return   true if the mirror is closed, or false otherwise
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/* Called in order, while the hub holds the lock of its stream listener */
+	private void notifyListeners(DeviceState old, DeviceState updated) {
+		if (closed || updated.contentEquals(old)) {
+			return;
+		}
+		for (DeviceStateListener listener : listeners) {
+			try {
+				listener.onStateChanged(device, old, updated);
+			}
+			catch (RuntimeException e) {
+				logger.warn("A device state listener threw an exception", e);
+			}
+		}
+	}
+}
@@ -90,6 +90,16 @@ public class Effect {
 		return colorType;
 	}
 	
+	/**
+	 * Sets the color type for the effect. This should almost always
+	 * be set to "HSB" (hue-saturation-brightness).
+	 * 
+	 * @param colorType   the effect color type
+	 */
+	public void setColorType(String colorType) {
+		this.colorType = colorType;
+	}
+	
 	/**
 	 * Gets the palette of the effect.
 	 * 
@@ -0,0 +1,190 @@
+package io.github.rowak.nanoleafapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.github.rowak.nanoleafapi.util.EffectDigest;
+
+/**
+ * <p>A backup of the effect libraries of one or more devices, created by
+ * {@link NanoleafGroup#exportEffects(int)}. Effects are deduplicated by content
+ * (see {@link EffectDigest}), so an effect that is installed on many devices, even
+ * under different names, is only stored once. Each device has a manifest that
+ * lists the names and digests of its effects.</p>
+ * 
+ * <p>Archives can be saved and loaded using {@link EffectArchive#toJSON()} and
+ * {@link EffectArchive#fromJSON(String)}, and restored using
+ * {@link NanoleafGroup#importEffects}.</p>
+ */
+public class EffectArchive {
+
+	/** The current archive format version */
+	public static final int VERSION = 1;
+
+	private final Map<String, JSONObject> effects;
+	private final Map<String, Map<String, String>> manifests;
+
+	/**
+	 * Creates a new empty archive.
+	 */
+	public EffectArchive() {
+		effects = new LinkedHashMap<String, JSONObject>();
+		manifests = new LinkedHashMap<String, Map<String, String>>();
+	}
+
+	/**
+	 * Adds the effect library of a device to the archive, replacing any
+	 * existing library for the same device name.
+	 * 
+	 * @param deviceName   the name of the device
+	 * @param library      the effects installed on the device
+	 */
+	public synchronized void putDevice(String deviceName, List<Effect> library) {
+		Map<String, String> manifest = new LinkedHashMap<String, String>();
+		for (Effect ef : library) {
+			JSONObject json = ef.toJSON();
+			String digest = EffectDigest.digest(json);
+			if (!effects.containsKey(digest)) {
+				effects.put(digest, json);
+			}
+			manifest.put(ef.getName(), digest);
+		}
+		manifests.put(deviceName, manifest);
+	}
+
+	/**
+	 * Gets the names of the devices in the archive.
+	 * 
+	 * @return   the device names
+	 */
+	public synchronized Set<String> getDeviceNames() {
+		return Collections.unmodifiableSet(new LinkedHashSet<String>(manifests.keySet()));
+	}
+
+	/**
+	 * Gets the effect library of a device in the archive. New effect objects are
+	 * created every time this method is called.
+	 * 
+	 * @param deviceName   the name of the device
+	 * @return             the effects of the device, or null if the device is not
+	 *                     in the archive
+	 */
+	public synchronized List<Effect> getEffects(String deviceName) {
+		Map<String, String> manifest = manifests.get(deviceName);
+		if (manifest == null) {
+			return null;
+		}
+		List<Effect> library = new ArrayList<Effect>(manifest.size());
+		for (Map.Entry<String, String> entry : manifest.entrySet()) {
+			Effect ef = Effect.createFromJSON(effects.get(entry.getValue()));
+			ef.setName(entry.getKey());
+			library.add(ef);
+		}
+		return library;
+	}
+
+	/**
+	 * Gets the number of unique effects that are stored in the archive.
+	 * 
+	 * @return   the number of unique effects
+	 */
+	public synchronized int getUniqueEffectCount() {
+		return effects.size();
+	}
+
+	/**
+	 * Gets the total number of effects on all devices in the archive.
+	 * 
+	 * @return   the total number of effects
+	 */
+	public synchronized int getEffectCount() {
+		int count = 0;
+		for (Map<String, String> manifest : manifests.values()) {
+			count += manifest.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Converts the archive to JSON.
+	 * 
+	 * @return   the archive JSON
+	 */
+	public synchronized JSONObject toJSON() {
+		JSONObject json = new JSONObject();
+		json.put("version", VERSION);
+		JSONObject effectsJson = new JSONObject();
+		for (Map.Entry<String, JSONObject> entry : effects.entrySet()) {
+			effectsJson.put(entry.getKey(), entry.getValue());
+		}
+		json.put("effects", effectsJson);
+		JSONObject devicesJson = new JSONObject();
+		for (Map.Entry<String, Map<String, String>> device : manifests.entrySet()) {
+			JSONArray manifest = new JSONArray();
+			for (Map.Entry<String, String> entry : device.getValue().entrySet()) {
+				JSONObject item = new JSONObject();
+				item.put("animName", entry.getKey());
+				item.put("digest", entry.getValue());
+				manifest.put(item);
+			}
+			devicesJson.put(device.getKey(), manifest);
+		}
+		json.put("devices", devicesJson);
+		return json;
+	}
+
+	/**
+	 * Creates an archive from JSON.
+	 * 
+	 * @param json   the archive JSON
+	 * @return       a new archive
+	 * @throws JSONParserException  If the archive version is not supported, or if
+	 *                              an effect referenced by a device is missing
+	 */
+	public static EffectArchive fromJSON(JSONObject json) {
+		int version = json.optInt("version", 0);
+		if (version != VERSION) {
+			throw new JSONParserException("Unsupported effect archive version " + version + ".");
+		}
+		EffectArchive archive = new EffectArchive();
+		JSONObject effectsJson = json.getJSONObject("effects");
+		for (String digest : effectsJson.keySet()) {
+			archive.effects.put(digest, effectsJson.getJSONObject(digest));
+		}
+		JSONObject devicesJson = json.getJSONObject("devices");
+		for (String deviceName : devicesJson.keySet()) {
+			JSONArray manifestJson = devicesJson.getJSONArray(deviceName);
+			Map<String, String> manifest = new LinkedHashMap<String, String>();
+			for (int i = 0; i < manifestJson.length(); i++) {
+				JSONObject item = manifestJson.getJSONObject(i);
+				String digest = item.getString("digest");
+				if (!archive.effects.containsKey(digest)) {
+					throw new JSONParserException("Missing effect " + digest + ".");
+				}
+				manifest.put(item.getString("animName"), digest);
+			}
+			archive.manifests.put(deviceName, manifest);
+		}
+		return archive;
+	}
+
+	/**
+	 * Creates an archive from a JSON string.
+	 * 
+	 * @param json   the archive JSON string
+	 * @return       a new archive
+	 * @throws JSONParserException  If the archive version is not supported, or if
+	 *                              an effect referenced by a device is missing
+	 */
+	public static EffectArchive fromJSON(String json) {
+		return fromJSON(new JSONObject(json));
+	}
+}
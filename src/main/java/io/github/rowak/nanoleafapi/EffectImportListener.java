@@ -0,0 +1,24 @@
+package io.github.rowak.nanoleafapi;
+
+/**
+ * An interface for receiving progress updates from
+ * {@link NanoleafGroup#importEffects(EffectArchive, int, boolean, EffectImportListener)}.
+ * The listener is called from the import worker threads.
+ */
+public interface EffectImportListener {
+	
+	/**
+	 * Called when the import for a device has finished, whether it succeeded
+	 * or failed.
+	 * 
+	 * @param deviceName   the name of the device
+	 * @param report       the sync report for the device, or null if the import
+	 *                     failed
+	 * @param error        the exception that caused the import to fail, or null
+	 *                     if the import succeeded
+	 * @param completed    the number of devices that have finished so far
+	 * @param total        the total number of devices being imported
+	 */
+	public void onDeviceCompleted(String deviceName, EffectSyncReport report,
+			Exception error, int completed, int total);
+}
@@ -0,0 +1,141 @@
+package io.github.rowak.nanoleafapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes the changes made by {@link NanoleafDevice#syncEffects}. Effects are
+ * identified by name. A renamed effect is listed by its new name in
+ * {@link EffectSyncReport#getRenamed()}, mapped from its old name.
+ */
+public class EffectSyncReport {
+
+	private final List<String> added;
+	private final List<String> updated;
+	private final Map<String, String> renamed;
+	private final List<String> deleted;
+	private final List<String> unchanged;
+	private final Map<String, Exception> failed;
+
+	EffectSyncReport() {
+		added = new ArrayList<String>();
+		updated = new ArrayList<String>();
+		renamed = new LinkedHashMap<String, String>();
+		deleted = new ArrayList<String>();
+		unchanged = new ArrayList<String>();
+		failed = new LinkedHashMap<String, Exception>();
+	}
+
+	/**
+	 * Gets the names of the effects that did not exist on the device and
+	 * were uploaded.
+	 * 
+	 * @return   the added effects
+	 */
+	public List<String> getAdded() {
+		return Collections.unmodifiableList(added);
+	}
+
+	/**
+	 * Gets the names of the effects that existed on the device with different
+	 * content and were overwritten.
+	 * 
+	 * @return   the updated effects
+	 */
+	public List<String> getUpdated() {
+		return Collections.unmodifiableList(updated);
+	}
+
+	/**
+	 * Gets the effects that were renamed instead of being uploaded again,
+	 * as a map of old names to new names.
+	 * 
+	 * @return   the renamed effects
+	 */
+	public Map<String, String> getRenamed() {
+		return Collections.unmodifiableMap(renamed);
+	}
+
+	/**
+	 * Gets the names of the effects that were deleted from the device.
+	 * 
+	 * @return   the deleted effects
+	 */
+	public List<String> getDeleted() {
+		return Collections.unmodifiableList(deleted);
+	}
+
+	/**
+	 * Gets the names of the effects that were already up to date.
+	 * 
+	 * @return   the unchanged effects
+	 */
+	public List<String> getUnchanged() {
+		return Collections.unmodifiableList(unchanged);
+	}
+
+	/**
+	 * Gets the effects that could not be synced, mapped to the exception that
+	 * caused the failure. The key is the name of the effect on the device
+	 * before the sync.
+	 * 
+	 * @return   the failed effects
+	 */
+	public Map<String, Exception> getFailed() {
+		return Collections.unmodifiableMap(failed);
+	}
+
+	/**
+	 * Gets the number of writes that were issued to the device, including
+	 * failed writes.
+	 * 
+	 * @return   the number of writes
+	 */
+	public int getWriteCount() {
+		return added.size() + updated.size() + renamed.size() +
+				deleted.size() + failed.size();
+	}
+
+	/**
+	 * Checks if every write succeeded.
+	 * 
+	 * @return   true, if no writes failed
+	 */
+	public boolean isSuccessful() {
+		return failed.isEmpty();
+	}
+
+	synchronized void addAdded(String name) {
+		added.add(name);
+	}
+
+	synchronized void addUpdated(String name) {
+		updated.add(name);
+	}
+
+	synchronized void addRenamed(String oldName, String newName) {
+		renamed.put(oldName, newName);
+	}
+
+	synchronized void addDeleted(String name) {
+		deleted.add(name);
+	}
+
+	synchronized void addUnchanged(String name) {
+		unchanged.add(name);
+	}
+
+	synchronized void addFailed(String name, Exception e) {
+		failed.put(name, e);
+	}
+
+	@Override
+	public String toString() {
+		return "added=" + added + ", updated=" + updated +
+				", renamed=" + renamed + ", deleted=" + deleted +
+				", unchanged=" + unchanged.size() + ", failed=" + failed.keySet();
+	}
+}
@@ -0,0 +1,150 @@
+package io.github.rowak.nanoleafapi;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import io.github.rowak.nanoleafapi.event.EventRecord;
+
+/*
+ * Collapses bursts of state and layout events with the same attribute for one
+ * listener (see EventDispatch.withCoalescing). The first event of a burst is
+ * delivered at once, and the events that arrive within the window after it are
+ * collapsed into the latest one, which is delivered when the window ends and
+ * starts a new window. Other events are delivered at once.
+ * 
+ * The sink is called without holding the lock, by one thread at a time. Events
+ * that are ready while another thread is delivering are added to the outbox, and
+ * that thread delivers them in order before it returns. The window timers run
+ * on a shared scheduler, so the sink must not block or run listener code (see
+ * EventDispatch.withCoalescing, which only allows queued, non-blocking dispatch).
+ */
+class EventCoalescer {
+
+	private static final int ATTRIBUTES = 64;
+
+	/* The event types that are coalesced (see NanoleafEventHub) */
+	private static final int COALESCED = NanoleafEventHub.STATE | NanoleafEventHub.LAYOUT;
+
+	private final long windowMillis;
+	private final ScheduledExecutorService scheduler;
+	private final Consumer<EventRecord> sink;
+	private final Runnable coalesced;
+
+	/* Indexed by type id * ATTRIBUTES + attribute. Guarded by this */
+	private final boolean[] windowOpen;
+	private final EventRecord[] pending;
+	private final ArrayDeque<EventRecord> outbox;
+	private boolean delivering;
+	private boolean closed;
+
+	EventCoalescer(long windowMillis, ScheduledExecutorService scheduler,
+			Consumer<EventRecord> sink, Runnable coalesced) {
+		this.windowMillis = windowMillis;
+		this.scheduler = scheduler;
+		this.sink = sink;
+		this.coalesced = coalesced;
+		windowOpen = new boolean[5 * ATTRIBUTES];
+		pending = new EventRecord[5 * ATTRIBUTES];
+		outbox = new ArrayDeque<EventRecord>();
+	}
+
+	/* Delivers or holds back an event. The record may be reused after this returns */
+	void offer(EventRecord record) {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			int typeId = record.getType().getId();
+			int attribute = record.getAttribute();
+			if ((COALESCED & (1 << typeId)) != 0 && attribute >= 0 && attribute < ATTRIBUTES) {
+				int key = typeId * ATTRIBUTES + attribute;
+				if (windowOpen[key]) {
+					if (pending[key] != null) {
+						coalesced.run();
+					}
+					pending[key] = record.copy();
+					return;
+				}
+				windowOpen[key] = true;
+				scheduler.schedule(() -> endWindow(key), windowMillis, TimeUnit.MILLISECONDS);
+			}
+			if (delivering || !outbox.isEmpty()) {
+				outbox.add(record.copy());
+				if (delivering) {
+					return;
+				}
+				record = null;
+			}
+			delivering = true;
+		}
+		deliver(record);
+	}
+
+	private void endWindow(int key) {
+		synchronized (this) {
+			EventRecord latest = pending[key];
+			pending[key] = null;
+			if (latest == null || closed) {
+				windowOpen[key] = false;
+				return;
+			}
+			// A steady burst is delivered once per window until it stops
+			scheduler.schedule(() -> endWindow(key), windowMillis, TimeUnit.MILLISECONDS);
+			outbox.add(latest);
+			if (delivering) {
+				return;
+			}
+			delivering = true;
+		}
+		deliver(null);
+	}
+
+	/* Delivers the events that are held back and stops coalescing */
+	void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			for (int key = 0; key < pending.length; key++) {
+				if (pending[key] != null) {
+					outbox.add(pending[key]);
+					pending[key] = null;
+				}
+			}
+			if (delivering) {
+				return;
+			}
+			delivering = true;
+		}
+		deliver(null);
+	}
+
+	/* Delivers an event (if not null) and then the outbox. Must be called after
+	   setting delivering */
+	private void deliver(EventRecord record) {
+		try {
+			while (true) {
+				if (record != null) {
+					sink.accept(record);
+				}
+				synchronized (this) {
+					record = outbox.poll();
+					if (record == null) {
+						delivering = false;
+						return;
+					}
+				}
+			}
+		}
+		catch (RuntimeException | Error e) {
+			// The rest of the outbox is delivered by the next caller
+			synchronized (this) {
+				delivering = false;
+			}
+			throw e;
+		}
+	}
+}
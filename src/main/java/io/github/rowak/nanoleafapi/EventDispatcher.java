@@ -0,0 +1,286 @@
+package io.github.rowak.nanoleafapi;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.rowak.nanoleafapi.event.DispatchMode;
+import io.github.rowak.nanoleafapi.event.DispatchStats;
+import io.github.rowak.nanoleafapi.event.EventDispatch;
+import io.github.rowak.nanoleafapi.event.LatencyHistogram;
+import io.github.rowak.nanoleafapi.event.OverflowPolicy;
+
+/*
+ * Runs the callbacks of one event listener according to its EventDispatch.
+ * Queued callbacks are run in order by a single drain task at a time, either on
+ * the listener's own thread or on the shared pool, so a listener never sees two
+ * callbacks at once. Only event callbacks count towards the queue capacity and
+ * can be dropped; open and close callbacks are always delivered.
+ */
+class EventDispatcher {
+
+	private final static Logger logger = LoggerFactory.getLogger(EventDispatcher.class);
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	/* The number of callbacks a drain task runs before letting other listeners
+	   have a turn on the shared pool */
+	private static final int POOL_BATCH_SIZE = 32;
+
+	private static ExecutorService sharedPool;
+
+	private final EventDispatch dispatch;
+	private final ExecutorService executor;
+	private final ArrayDeque<Task> queue;
+	private final Runnable drainTask;
+	private int queuedEvents;
+	private boolean scheduled;
+	private boolean closed;
+
+	/* Guarded by this */
+	private int maxQueueSize;
+	private long deliveredCount, droppedCount, coalescedCount;
+	private long lastLag, maxLag, totalLag;
+	/* Updated without the lock */
+	private final LatencyHistogram queueWait = new LatencyHistogram();
+	private final LatencyHistogram executionTime = new LatencyHistogram();
+
+	EventDispatcher(EventDispatch dispatch) {
+		this.dispatch = dispatch;
+		queue = new ArrayDeque<Task>();
+		drainTask = this::drain;
+		switch (dispatch.getMode()) {
+			case SERIAL:
+				executor = Executors.newSingleThreadExecutor(EventDispatcher::newThread);
+				break;
+			case SHARED_POOL:
+				executor = getSharedPool();
+				break;
+			default:
+				executor = null;
+		}
+	}
+
+	private static synchronized ExecutorService getSharedPool() {
+		if (sharedPool == null) {
+			sharedPool = Executors.newFixedThreadPool(
+					Math.max(2, Runtime.getRuntime().availableProcessors()),
+					EventDispatcher::newThread);
+		}
+		return sharedPool;
+	}
+
+	private static Thread newThread(Runnable r) {
+		Thread t = new Thread(r, "nanoleaf-events-" + THREAD_COUNT.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	}
+
+	EventDispatch getDispatch() {
+		return dispatch;
+	}
+
+	/* Checks if callbacks can be run directly by the caller */
+	boolean isInline() {
+		return executor == null;
+	}
+
+	/* Records an event that was delivered inline, with the time that the
+	   listener took to handle it */
+	void delivered(long executionNanos) {
+		executionTime.record(executionNanos);
+		synchronized (this) {
+			deliveredCount++;
+		}
+	}
+
+	/* Records an event that was replaced by a newer event before it was delivered */
+	synchronized void coalesced() {
+		coalescedCount++;
+	}
+
+	/*
+	 * Runs or queues an event callback. Blocks if the queue is full and the
+	 * overflow policy is BLOCK.
+	 */
+	void dispatchEvent(Runnable callback) {
+		if (isInline()) {
+			long start = System.nanoTime();
+			run(callback);
+			delivered(System.nanoTime() - start);
+			return;
+		}
+		enqueue(callback, true);
+	}
+
+	/* Runs or queues a callback that is never dropped */
+	void dispatchControl(Runnable callback) {
+		if (isInline()) {
+			run(callback);
+			return;
+		}
+		enqueue(callback, false);
+	}
+
+	/*
+	 * Queues a final callback (normally onClosed) and stops accepting callbacks.
+	 * The callbacks that are already queued are still delivered.
+	 */
+	void close(Runnable callback) {
+		if (isInline()) {
+			synchronized (this) {
+				closed = true;
+			}
+			run(callback);
+			return;
+		}
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			queue.add(new Task(callback, false));
+			closed = true;
+			schedule();
+			// Wakes up a blocked producer, which then gives up
+			notifyAll();
+		}
+		if (dispatch.getMode() == DispatchMode.SERIAL) {
+			// The queued drain task still runs before the thread stops
+			executor.shutdown();
+		}
+	}
+
+	private synchronized void enqueue(Runnable callback, boolean event) {
+		if (closed) {
+			return;
+		}
+		if (event && queuedEvents >= dispatch.getQueueCapacity()) {
+			OverflowPolicy policy = dispatch.getOverflowPolicy();
+			if (policy == OverflowPolicy.BLOCK) {
+				boolean interrupted = false;
+				while (queuedEvents >= dispatch.getQueueCapacity() && !closed) {
+					try {
+						wait();
+					}
+					catch (InterruptedException e) {
+						interrupted = true;
+						break;
+					}
+				}
+				if (interrupted || closed) {
+					droppedCount++;
+					if (interrupted) {
+						Thread.currentThread().interrupt();
+					}
+					return;
+				}
+			}
+			else if (policy == OverflowPolicy.DROP_NEWEST) {
+				droppedCount++;
+				return;
+			}
+			else {
+				removeOldestEvent();
+				droppedCount++;
+			}
+		}
+		queue.add(new Task(callback, event));
+		if (event) {
+			queuedEvents++;
+			maxQueueSize = Math.max(maxQueueSize, queuedEvents);
+		}
+		schedule();
+	}
+
+	private void removeOldestEvent() {
+		Iterator<Task> it = queue.iterator();
+		while (it.hasNext()) {
+			if (it.next().event) {
+				it.remove();
+				queuedEvents--;
+				return;
+			}
+		}
+	}
+
+	/* Submits the drain task if it is not already running. Must hold the lock */
+	private void schedule() {
+		if (!scheduled) {
+			scheduled = true;
+			executor.execute(drainTask);
+		}
+	}
+
+	private void drain() {
+		int limit = dispatch.getMode() == DispatchMode.SHARED_POOL ?
+				POOL_BATCH_SIZE : Integer.MAX_VALUE;
+		for (int i = 0; i < limit; i++) {
+			Task task;
+			long lag = -1;
+			synchronized (this) {
+				task = queue.poll();
+				if (task == null) {
+					scheduled = false;
+					return;
+				}
+				if (task.event) {
+					queuedEvents--;
+					lag = System.nanoTime() - task.queuedAt;
+					lastLag = lag;
+					maxLag = Math.max(maxLag, lag);
+					totalLag += lag;
+					deliveredCount++;
+					notifyAll();
+				}
+			}
+			if (lag < 0) {
+				run(task.callback);
+				continue;
+			}
+			queueWait.record(lag);
+			long start = System.nanoTime();
+			run(task.callback);
+			executionTime.record(System.nanoTime() - start);
+		}
+		synchronized (this) {
+			// Lets the other listeners of the pool run before continuing
+			scheduled = false;
+			if (!queue.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+
+	private static void run(Runnable callback) {
+		try {
+			callback.run();
+		}
+		catch (RuntimeException e) {
+			logger.warn("An event listener threw an exception", e);
+		}
+	}
+
+	synchronized DispatchStats getStats() {
+		return new DispatchStats(queuedEvents, maxQueueSize, deliveredCount,
+				droppedCount, lastLag, maxLag, totalLag, coalescedCount,
+				queueWait.snapshot(), executionTime.snapshot());
+	}
+
+	private static class Task {
+
+		private final Runnable callback;
+		private final boolean event;
+		private final long queuedAt;
+
+		private Task(Runnable callback, boolean event) {
+			this.callback = callback;
+			this.event = event;
+			this.queuedAt = System.nanoTime();
+		}
+	}
+}
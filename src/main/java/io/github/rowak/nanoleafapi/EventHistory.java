@@ -0,0 +1,204 @@
+package io.github.rowak.nanoleafapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ObjIntConsumer;
+
+import io.github.rowak.nanoleafapi.event.DetailedTouchEvent;
+import io.github.rowak.nanoleafapi.event.EventType;
+import io.github.rowak.nanoleafapi.event.HistoryEntry;
+
+/**
+ * <p>A bounded record of the recent events of a device, so that listeners that
+ * are registered late (for example while a service is starting up) can still see
+ * what happened before them. The history records every event message from the
+ * event stream and, if low-latency touch event streaming is enabled, every group
+ * of detailed touch events. When it is full, the oldest entries are replaced.</p>
+ * 
+ * <p>Every entry has a sequence number, which increases by one for each entry,
+ * and the time that it was received. A listener can be registered with
+ * {@link NanoleafDevice#registerEventListener(io.github.rowak.nanoleafapi.event.NanoleafEventListener,
+ * boolean, boolean, boolean, boolean, io.github.rowak.nanoleafapi.event.EventDispatch, long)}
+ * to replay the recorded events from a sequence number before it receives new
+ * events. To replay from a time instead, use
+ * {@link EventHistory#getSequenceAt(long)} to find the sequence number.</p>
+ * 
+ * <p>The history is created with {@link NanoleafDevice#enableEventHistory(int)}.
+ * Its storage is allocated up front, and recording an entry never locks or
+ * allocates.</p>
+ */
+public class EventHistory {
+
+	private final int capacity;
+	private final AtomicLong sequence;
+	private final Ring<String> messages;
+	private final Ring<DetailedTouchEvent[]> touches;
+
+	EventHistory(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be at least 1.");
+		}
+		this.capacity = capacity;
+		sequence = new AtomicLong();
+		messages = new Ring<String>(capacity);
+		touches = new Ring<DetailedTouchEvent[]>(capacity);
+	}
+
+	/**
+	 * Gets the largest number of event messages (and the largest number of
+	 * groups of detailed touch events) that the history holds.
+	 * 
+	 * @return   the capacity of the history
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the sequence number of the last recorded entry.
+	 * 
+	 * @return   the last sequence number, or 0 if nothing has been recorded
+	 */
+	public long getLatestSequence() {
+		return sequence.get();
+	}
+
+	/**
+	 * Finds the first entry that was received at or after a time.
+	 * 
+	 * @param timestamp   the time in milliseconds since the epoch
+	 * @return            the sequence number of the first entry at or after the time,
+	 *                    or the next sequence number if there is no such entry
+	 */
+	public long getSequenceAt(long timestamp) {
+		long first = sequence.get() + 1;
+		first = Math.min(first, messages.findSequenceAt(timestamp));
+		return Math.min(first, touches.findSequenceAt(timestamp));
+	}
+
+	/**
+	 * Gets the recorded entries from a sequence number, in order. Entries that
+	 * have already been replaced are not included.
+	 * 
+	 * @param fromSequence   the sequence number of the first entry
+	 * @return               the entries with the same or a larger sequence number
+	 */
+	public List<HistoryEntry> getEntries(long fromSequence) {
+		List<HistoryEntry> entries = new ArrayList<HistoryEntry>();
+		messages.read(fromSequence, (seq, time, type, message) ->
+				entries.add(new HistoryEntry(seq, time, EventType.fromId(type), message)));
+		touches.read(fromSequence, (seq, time, type, events) ->
+				entries.add(new HistoryEntry(seq, time, events)));
+		Collections.sort(entries, Comparator.comparingLong(HistoryEntry::getSequence));
+		return entries;
+	}
+
+	/**
+	 * Gets the recorded entries that were received at or after a time, in order.
+	 * 
+	 * @param timestamp   the time in milliseconds since the epoch
+	 * @return            the entries at or after the time
+	 */
+	public List<HistoryEntry> getEntriesSince(long timestamp) {
+		return getEntries(getSequenceAt(timestamp));
+	}
+
+	/* Records an event message. Must only be called by the thread of the event stream */
+	void recordMessage(int typeId, String message) {
+		messages.add(sequence.incrementAndGet(), System.currentTimeMillis(), typeId, message);
+	}
+
+	/* Records detailed touch events. Must only be called by the UDP thread */
+	void recordTouchEvents(DetailedTouchEvent[] events) {
+		touches.add(sequence.incrementAndGet(), System.currentTimeMillis(), 0, events);
+	}
+
+	/*
+	 * Passes the recorded messages of the types in a mask (see NanoleafEventHub)
+	 * to a consumer in order, starting from a sequence number.
+	 */
+	void replayMessages(long fromSequence, int mask, ObjIntConsumer<String> consumer) {
+		List<HistoryEntry> entries = new ArrayList<HistoryEntry>();
+		messages.read(fromSequence, (seq, time, type, message) -> {
+			if ((mask & (1 << type)) != 0) {
+				entries.add(new HistoryEntry(seq, time, EventType.fromId(type), message));
+			}
+		});
+		Collections.sort(entries, Comparator.comparingLong(HistoryEntry::getSequence));
+		for (HistoryEntry entry : entries) {
+			consumer.accept(entry.getMessage(), entry.getType().getId());
+		}
+	}
+
+	private interface SlotVisitor<T> {
+		void visit(long sequence, long timestamp, int type, T value);
+	}
+
+	/*
+	 * A preallocated ring of entries with a single writer. Each slot is guarded by
+	 * its sequence number: the writer sets it to -1 before changing the slot and
+	 * to the new sequence number afterwards, and a reader only keeps a slot if the
+	 * sequence number was the same before and after reading it.
+	 */
+	private static class Ring<T> {
+
+		private final AtomicLongArray sequences;
+		private final AtomicLongArray timestamps;
+		private final AtomicIntegerArray types;
+		private final AtomicReferenceArray<T> values;
+		/* Only used by the writer */
+		private int next;
+
+		private Ring(int capacity) {
+			sequences = new AtomicLongArray(capacity);
+			timestamps = new AtomicLongArray(capacity);
+			types = new AtomicIntegerArray(capacity);
+			values = new AtomicReferenceArray<T>(capacity);
+		}
+
+		private void add(long sequence, long timestamp, int type, T value) {
+			int i = next;
+			next = i + 1 == sequences.length() ? 0 : i + 1;
+			sequences.set(i, -1);
+			timestamps.set(i, timestamp);
+			types.set(i, type);
+			values.set(i, value);
+			sequences.set(i, sequence);
+		}
+
+		/* Visits the slots from a sequence number, in no particular order */
+		private void read(long fromSequence, SlotVisitor<T> visitor) {
+			for (int i = 0; i < sequences.length(); i++) {
+				long seq = sequences.get(i);
+				if (seq <= 0 || seq < fromSequence) {
+					continue;
+				}
+				long timestamp = timestamps.get(i);
+				int type = types.get(i);
+				T value = values.get(i);
+				if (sequences.get(i) == seq) {
+					visitor.visit(seq, timestamp, type, value);
+				}
+			}
+		}
+
+		/* Gets the smallest sequence number at or after a time, or Long.MAX_VALUE */
+		private long findSequenceAt(long timestamp) {
+			long first = Long.MAX_VALUE;
+			for (int i = 0; i < sequences.length(); i++) {
+				long seq = sequences.get(i);
+				if (seq > 0 && seq < first && timestamps.get(i) >= timestamp &&
+						sequences.get(i) == seq) {
+					first = seq;
+				}
+			}
+			return first;
+		}
+	}
+}
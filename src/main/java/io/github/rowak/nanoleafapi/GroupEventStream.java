@@ -0,0 +1,154 @@
+package io.github.rowak.nanoleafapi;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.here.oksse.ServerSentEvent;
+
+import io.github.rowak.nanoleafapi.event.DispatchStats;
+import io.github.rowak.nanoleafapi.event.Event;
+import io.github.rowak.nanoleafapi.event.EventDispatch;
+import io.github.rowak.nanoleafapi.event.EventRecord;
+import io.github.rowak.nanoleafapi.event.EventType;
+import io.github.rowak.nanoleafapi.event.GroupEvent;
+import io.github.rowak.nanoleafapi.event.GroupEventFilter;
+import io.github.rowak.nanoleafapi.event.GroupEventListener;
+import io.github.rowak.nanoleafapi.event.NanoleafEventRecordListener;
+
+/**
+ * <p>The merged events of the devices of a group. Every event is tagged with its
+ * device and the time that it was received, numbered, and put in a single queue,
+ * so the listener receives the events of all of the devices one at a time and in
+ * the order that they were received.</p>
+ * 
+ * <p>Only the devices and event types that are accepted by the filter of the
+ * stream are subscribed to. The devices that are added to the group after the
+ * stream is opened are not included.</p>
+ * 
+ * <p>A stream is opened with {@link NanoleafGroup#openEventStream(GroupEventFilter,
+ * GroupEventListener)}.</p>
+ */
+public class GroupEventStream {
+
+	private final GroupEventFilter filter;
+	private final GroupEventListener listener;
+	private final EventDispatcher dispatcher;
+	private final Map<String, ServerSentEvent> subscriptions;
+	/* Guarded by this, so that the sequence matches the order of the queue */
+	private long sequence;
+	private volatile boolean closed;
+
+	GroupEventStream(GroupEventFilter filter, GroupEventListener listener,
+			EventDispatch dispatch) {
+		this.filter = filter;
+		this.listener = listener;
+		dispatcher = new EventDispatcher(dispatch);
+		subscriptions = new LinkedHashMap<String, ServerSentEvent>();
+	}
+
+	/* Subscribes to the accepted event types of the accepted devices */
+	void start(Map<String, NanoleafDevice> devices) {
+		int mask = NanoleafEventHub.getMask(filter.acceptsType(EventType.STATE),
+				filter.acceptsType(EventType.LAYOUT), filter.acceptsType(EventType.EFFECTS),
+				filter.acceptsType(EventType.TOUCH));
+		synchronized (subscriptions) {
+			devices.forEach((name, device) -> {
+				if (filter.acceptsDevice(name)) {
+					subscriptions.put(name, device.getEventHub().subscribe(
+							new DeviceListener(name, device), mask, -1, EventDispatch.INLINE));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Gets the filter of the stream.
+	 * 
+	 * @return   the event filter
+	 */
+	public GroupEventFilter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Gets the names of the devices that the stream receives events from.
+	 * 
+	 * @return   the device names
+	 */
+	public Set<String> getDeviceNames() {
+		synchronized (subscriptions) {
+			return Collections.unmodifiableSet(new LinkedHashSet<String>(
+					subscriptions.keySet()));
+		}
+	}
+
+	/**
+	 * Gets a snapshot of the event queue and lag of the stream.
+	 * 
+	 * @return   the dispatch stats
+	 */
+	public DispatchStats getStats() {
+		return dispatcher.getStats();
+	}
+
+	/**
+	 * Closes the event streams of the devices. The events that are already
+	 * queued are still delivered.
+	 */
+	public void close() {
+		closed = true;
+		synchronized (subscriptions) {
+			for (ServerSentEvent s : subscriptions.values()) {
+				s.close();
+			}
+		}
+		dispatcher.close(() -> {});
+	}
+
+	/**
+	 * Checks if the stream has been closed.
+	 * 
+	 * @return   true if the stream is closed, or false otherwise
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/* Tags, numbers and queues the events of a device */
+	private void add(String name, NanoleafDevice device, EventRecord record) {
+		if (closed || !filter.accepts(record.getType(), record.getAttribute())) {
+			return;
+		}
+		Event event = record.toEvent();
+		synchronized (this) {
+			GroupEvent e = new GroupEvent(++sequence, System.currentTimeMillis(),
+					name, device, event);
+			dispatcher.dispatchEvent(() -> listener.onEvent(e));
+		}
+	}
+
+	private class DeviceListener implements NanoleafEventRecordListener {
+
+		private final String name;
+		private final NanoleafDevice device;
+
+		private DeviceListener(String name, NanoleafDevice device) {
+			this.name = name;
+			this.device = device;
+		}
+
+		@Override
+		public void onOpen() {}
+
+		@Override
+		public void onClosed() {}
+
+		@Override
+		public void onEvent(EventRecord event) {
+			add(name, device, event);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package io.github.rowak.nanoleafapi;
+
+/**
+ * <p>An immutable version of a {@link Panel}. Immutable panels can be cached and
+ * shared between threads without being copied, so they are used by
+ * {@link io.github.rowak.nanoleafapi.layout.PanelLayout#getImmutablePanels()}.</p>
+ * 
+ * <p>The shape type is always the shared instance returned by
+ * {@link ShapeType#valueOf(int)}.</p>
+ */
+public final class ImmutablePanel {
+	
+	private final int id;
+	private final int x;
+	private final int y;
+	private final int orientation;
+	private final ShapeType shape;
+	
+	/**
+	 * Creates a new immutable panel.
+	 * 
+	 * @param id            a unique, positive ID number
+	 * @param x             the x coordinate position of the panel
+	 * @param y             the y coordinate position of the panel
+	 * @param orientation   the orientation of the panel in degrees
+	 * @param shape         the shape type value of the panel (see {@link ShapeType})
+	 */
+	public ImmutablePanel(int id, int x, int y, int orientation, int shape) {
+		this.id = id;
+		this.x = x;
+		this.y = y;
+		this.orientation = orientation;
+		this.shape = ShapeType.valueOf(shape);
+	}
+	
+	/**
+	 * Creates an immutable copy of a panel.
+	 * 
+	 * @param panel   the panel
+	 * @return        a new immutable panel
+	 */
+	public static ImmutablePanel of(Panel panel) {
+		return new ImmutablePanel(panel.getId(), panel.getX(), panel.getY(),
+				panel.getOrientation(), panel.getShape() != null ? panel.getShape().getValue() : -1);
+	}
+	
+	/**
+	 * Gets the unique ID for the panel.
+	 * 
+	 * @return   the panel's unique ID
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * Gets the x value of this panel's location.
+	 * 
+	 * @return   the x value
+	 */
+	public int getX() {
+		return x;
+	}
+	
+	/**
+	 * Gets the y value of this panel's location.
+	 * 
+	 * @return   the y value
+	 */
+	public int getY() {
+		return y;
+	}
+	
+	/**
+	 * Gets the orientation of the panel in degrees.
+	 * 
+	 * @return   the panel orientation
+	 */
+	public int getOrientation() {
+		return orientation;
+	}
+	
+	/**
+	 * Gets the shape type of the panel.
+	 * 
+	 * @return   the panel shape type
+	 */
+	public ShapeType getShape() {
+		return shape;
+	}
+	
+	/**
+	 * Creates a mutable copy of the panel.
+	 * 
+	 * @return   a new panel
+	 */
+	public Panel toPanel() {
+		return new Panel(id, x, y, orientation, shape);
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("[id=%d, x=%d, y=%d, o=%d, s=%s]",
+				id, x, y, orientation, shape);
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null || obj.getClass() != this.getClass()) {
+			return false;
+		}
+		ImmutablePanel other = (ImmutablePanel)obj;
+		return this.id == other.id && this.x == other.x && this.y == other.y &&
+				this.orientation == other.orientation && this.shape.equals(other.shape);
+	}
+	
+	@Override
+	public int hashCode() {
+		int hash = id;
+		hash = 31*hash + x;
+		hash = 31*hash + y;
+		hash = 31*hash + orientation;
+		return 31*hash + shape.hashCode();
+	}
+}
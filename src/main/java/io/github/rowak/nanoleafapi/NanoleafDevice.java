@@ -3,30 +3,45 @@ package io.github.rowak.nanoleafapi;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import com.here.oksse.OkSse;
 import com.here.oksse.ServerSentEvent;
 
+import io.github.rowak.nanoleafapi.event.DetailedTouchEvent;
 import io.github.rowak.nanoleafapi.event.Event;
+import io.github.rowak.nanoleafapi.event.EventDispatch;
+import io.github.rowak.nanoleafapi.event.EventMetrics;
+import io.github.rowak.nanoleafapi.event.EventSubscription;
+import io.github.rowak.nanoleafapi.event.LatencyHistogram;
 import io.github.rowak.nanoleafapi.event.NanoleafEventListener;
 import io.github.rowak.nanoleafapi.event.NanoleafTouchEventListener;
+import io.github.rowak.nanoleafapi.event.ReconnectPolicy;
+import io.github.rowak.nanoleafapi.layout.AdjacencyGraph;
+import io.github.rowak.nanoleafapi.layout.HopDistances;
+import io.github.rowak.nanoleafapi.layout.LayoutGeometry;
+import io.github.rowak.nanoleafapi.layout.PanelIndex;
+import io.github.rowak.nanoleafapi.layout.PanelLayout;
 import io.github.rowak.nanoleafapi.schedule.Schedule;
+import io.github.rowak.nanoleafapi.util.EffectDigest;
 import io.github.rowak.nanoleafapi.util.HttpUtil;
+import io.github.rowak.nanoleafapi.util.TaskRunner;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
 import okhttp3.Response;
 
-import java.awt.Point;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The primary class in the API. Contains methods and other
@@ -43,11 +58,16 @@ public abstract class NanoleafDevice {
 	/** The port for external streaming v2 */
 	public static final int EXTERNAL_STREAMING_PORT = 60222;
 	
+	/** The default number of concurrent writes issued by {@link NanoleafDevice#syncEffects} */
+	public static final int DEFAULT_SYNC_CONCURRENCY = 2;
+	
 	/** Internal HTTP client for communications with the Nanoleaf device */
 	private OkHttpClient client;
 	
 	/** Internal SSE clients record (for resource cleanup) */
 	private List<ServerSentEvent> sse;
+	/** Shares a single event stream between all of the event listeners */
+	private NanoleafEventHub eventHub;
 	private UDPTouchEventListener touchEventListener;
 	private Thread touchEventThread;
 	
@@ -62,6 +82,30 @@ public abstract class NanoleafDevice {
 	private String manufacturer;
 	private String model;
 	
+	/** The cached panel layout, or null if the layout cache is disabled or invalid */
+	private volatile PanelLayout cachedLayout;
+	private volatile boolean layoutCacheEnabled;
+	private ServerSentEvent layoutEventSse;
+	/** The most recently fetched panel layout (for versioning) */
+	private PanelLayout lastLayout;
+	/** Incremented whenever the cached layout is invalidated */
+	private long layoutGeneration;
+	private final Object layoutLock = new Object();
+	
+	/** The state mirror, or null if it has not been created */
+	private DeviceStateMirror stateMirror;
+	private final Object mirrorLock = new Object();
+	
+	/** The touch event streaming metrics, kept across enabling the streaming again */
+	private final AtomicLong touchPacketCount = new AtomicLong();
+	private final LatencyHistogram touchLatency = new LatencyHistogram();
+	
+	/** The event history, or null if it is disabled */
+	private volatile EventHistory eventHistory;
+	private ServerSentEvent historySse;
+	private NanoleafTouchEventListener historyTouchListener;
+	private final Object historyLock = new Object();
+	
 	/**
 	 * The address of the Nanoleaf device for streaming mode only.
 	 */
@@ -141,20 +185,67 @@ public abstract class NanoleafDevice {
 		});
 	}
 	
+	/**
+	 * <p>Creates a device from a snapshot without making any requests, so devices
+	 * can be created instantly on startup. The device info is taken from the
+	 * snapshot, and the snapshot layout is used until a layout is fetched from
+	 * the device.</p>
+	 * 
+	 * <p>The snapshot may be out of date, so the device should be revalidated
+	 * using {@link NanoleafDevice#revalidateAsync(NanoleafCallback)} (or
+	 * {@link SnapshotStore#revalidateAsync(NanoleafDevice, NanoleafCallback)})
+	 * once it has been created.</p>
+	 * 
+	 * @param snapshot      the device snapshot
+	 * @param accessToken   a unique authentication token
+	 * @return              a new Nanoleaf device, or null if the device type
+	 *                      is not recognized
+	 */
+	public static final NanoleafDevice createDevice(DeviceSnapshot snapshot, String accessToken) {
+		Class<? extends NanoleafDevice> type = getDeviceType(snapshot.getName());
+		if (type == null) {
+			return null;
+		}
+		OkHttpClient client = new OkHttpClient.Builder().readTimeout(0, TimeUnit.SECONDS).build();
+		if (type == Aurora.class) {
+			return new Aurora(snapshot, accessToken, client);
+		}
+		else if (type == Canvas.class) {
+			return new Canvas(snapshot, accessToken, client);
+		}
+		return new Shapes(snapshot, accessToken, client);
+	}
+	
 	/* Attempts to create the appropriate device type using the Nanoleaf device's internal name
 	   and supplies a default HTTP client. A null client will create a new client */
 	private static final NanoleafDevice createDeviceFromName(String name,
 			String hostname, int port, String accessToken, OkHttpClient client)
 					throws NanoleafException, IOException {
+		Class<? extends NanoleafDevice> type = getDeviceType(name);
+		if (type == Aurora.class) {
+			return new Aurora(hostname, port, accessToken, client);
+		}
+		else if (type == Canvas.class) {
+			return new Canvas(hostname, port, accessToken, client);
+		}
+		else if (type == Shapes.class) {
+			return new Shapes(hostname, port, accessToken, client);
+		}
+		return null;
+	}
+	
+	/* Gets the device type from the Nanoleaf device's internal name, or null if
+	   the name is not recognized */
+	private static final Class<? extends NanoleafDevice> getDeviceType(String name) {
 		name = name.toLowerCase();
 		if (name.contains("aurora") || name.contains("light panels")) {
-			return new Aurora(hostname, port, accessToken, client);
+			return Aurora.class;
 		}
 		else if (name.contains("canvas")) {
-			return new Canvas(hostname, port, accessToken, client);
+			return Canvas.class;
 		}
 		else if (name.contains("shapes")) {
-			return new Shapes(hostname, port, accessToken, client);
+			return Shapes.class;
 		}
 		return null;
 	}
@@ -187,6 +278,22 @@ public abstract class NanoleafDevice {
 		init(hostname, port, accessToken, client);
 	}
 	
+	// Snapshot constructor (no requests are made)
+	protected NanoleafDevice(DeviceSnapshot snapshot, String accessToken, OkHttpClient client) {
+		this.hostname = snapshot.getHostname();
+		this.port = snapshot.getPort();
+		this.accessToken = accessToken;
+		this.client = client;
+		this.name = snapshot.getName();
+		this.serialNumber = snapshot.getSerialNumber();
+		this.manufacturer = snapshot.getManufacturer();
+		this.model = snapshot.getModel();
+		// Served until a layout is fetched from the device (see updateLayout)
+		lastLayout = snapshot.getLayout();
+		cachedLayout = lastLayout;
+		sse = new ArrayList<ServerSentEvent>();
+	}
+	
 	// Initializes the device and caches basic info
 	private void init(String hostname, int port, String accessToken, OkHttpClient client)
 			throws NanoleafException, IOException {
@@ -223,6 +330,56 @@ public abstract class NanoleafDevice {
 		});
 	}
 	
+	/**
+	 * <p>Asynchronously fetches the device info and panel layout, replacing the
+	 * cached device info and the layout of the snapshot that the device was
+	 * created from (if any). The callback returns a new snapshot of the device.</p>
+	 * 
+	 * <p>The callback status will return {@link NanoleafCallback#SUCCESS} on success,
+	 * or {@link NanoleafCallback#UNAUTHORIZED} if the access token is invalid.
+	 * If an internal API error occurs, it will instead return
+	 * {@link NanoleafCallback#FAILURE}.</p>
+	 * 
+	 * @param callback   returns a snapshot of the device
+	 */
+	public void revalidateAsync(NanoleafCallback<DeviceSnapshot> callback) {
+		getAsync(getURL(""), (status, data, device) -> {
+			if (status != NanoleafCallback.SUCCESS) {
+				callback.onCompleted(status, null, device);
+				return;
+			}
+			try {
+				JSONObject controllerInfo = new JSONObject(data);
+				this.name = controllerInfo.getString("name");
+				this.serialNumber = controllerInfo.getString("serialNo");
+				this.manufacturer = controllerInfo.getString("manufacturer");
+				this.model = controllerInfo.getString("model");
+			}
+			catch (Exception e) {
+				callback.onCompleted(NanoleafCallback.FAILURE, null, device);
+				return;
+			}
+			final long generation = getLayoutGeneration();
+			getAsync(getURL("panelLayout"), (layoutStatus, layoutData, layoutDevice) -> {
+				if (layoutStatus != NanoleafCallback.SUCCESS) {
+					callback.onCompleted(layoutStatus, null, layoutDevice);
+					return;
+				}
+				PanelLayout newLayout = null;
+				try {
+					newLayout = updateLayout(layoutData, generation);
+				}
+				catch (Exception e) {
+					callback.onCompleted(NanoleafCallback.FAILURE, null, layoutDevice);
+					return;
+				}
+				callback.onCompleted(layoutStatus, new DeviceSnapshot(hostname, port, name,
+						serialNumber, manufacturer, model, newLayout,
+						System.currentTimeMillis()), layoutDevice);
+			});
+		});
+	}
+	
 	/**
 	 *<p>Force a shutdown of the internal HTTP client.</p>
 	 * 
@@ -1618,6 +1775,132 @@ public abstract class NanoleafDevice {
 				effectName, newName), callback);
 	}
 	
+	/**
+	 * Synchronizes the effects on the device with a list of effects, without
+	 * deleting the effects that are not in the list. Equivalent to
+	 * <code>syncEffects(effects, false, DEFAULT_SYNC_CONCURRENCY)</code>.
+	 * 
+	 * @param effects              the desired effects
+	 * @return                     a report of the changes that were made
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public EffectSyncReport syncEffects(List<Effect> effects)
+			throws NanoleafException, IOException {
+		return syncEffects(effects, false, DEFAULT_SYNC_CONCURRENCY);
+	}
+	
+	/**
+	 * <p>Synchronizes the effects on the device with a list of effects, issuing
+	 * only the writes that are needed. Effects are compared by their content hash
+	 * (see {@link EffectDigest}), so effects that are already installed are not
+	 * uploaded again.</p>
+	 * 
+	 * <ul>
+	 * <li>An effect that is not installed is added.</li>
+	 * <li>An effect that is installed with different content is overwritten.</li>
+	 * <li>If <code>deleteUnlisted</code> is true, the effects that are not in the list
+	 * are deleted. Before deleting them, an unlisted effect with the same content as
+	 * a missing effect is renamed instead of uploading a copy of the effect.</li>
+	 * </ul>
+	 * 
+	 * <p>A write that fails does not stop the sync. Failed writes are recorded in
+	 * the returned report.</p>
+	 * 
+	 * @param effects              the desired effects
+	 * @param deleteUnlisted       whether to delete the effects that are not in the list
+	 * @param maxConcurrency       the maximum number of writes to issue at once
+	 * @return                     a report of the changes that were made
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs while reading the
+	 *                             current effects
+	 * @throws IllegalArgumentException  If two effects have the same name
+	 */
+	public EffectSyncReport syncEffects(List<Effect> effects, boolean deleteUnlisted,
+			int maxConcurrency) throws NanoleafException, IOException {
+		Map<String, Effect> desired = new LinkedHashMap<String, Effect>();
+		for (Effect ef : effects) {
+			if (desired.put(ef.getName(), ef) != null) {
+				throw new IllegalArgumentException("Duplicate effect name: " + ef.getName());
+			}
+		}
+		Map<String, String> current = new LinkedHashMap<String, String>();
+		for (Effect ef : getAllEffects()) {
+			current.put(ef.getName(), EffectDigest.digest(ef));
+		}
+		
+		// Unlisted effects grouped by content, which can be renamed instead of re-uploaded
+		Map<String, List<String>> unlisted = new HashMap<String, List<String>>();
+		if (deleteUnlisted) {
+			for (Map.Entry<String, String> ef : current.entrySet()) {
+				if (!desired.containsKey(ef.getKey())) {
+					unlisted.computeIfAbsent(ef.getValue(), k -> new ArrayList<String>())
+						.add(ef.getKey());
+				}
+			}
+		}
+		
+		EffectSyncReport report = new EffectSyncReport();
+		List<Callable<Void>> writes = new ArrayList<Callable<Void>>();
+		for (Effect ef : desired.values()) {
+			String name = ef.getName();
+			String digest = EffectDigest.digest(ef);
+			String currentDigest = current.get(name);
+			if (digest.equals(currentDigest)) {
+				report.addUnchanged(name);
+			}
+			else if (currentDigest != null) {
+				writes.add(syncWrite(report, name, () -> {
+					addEffect(ef);
+					report.addUpdated(name);
+				}));
+			}
+			else {
+				List<String> sameContent = unlisted.get(digest);
+				if (sameContent != null && !sameContent.isEmpty()) {
+					String oldName = sameContent.remove(sameContent.size()-1);
+					writes.add(syncWrite(report, oldName, () -> {
+						renameEffect(oldName, name);
+						report.addRenamed(oldName, name);
+					}));
+				}
+				else {
+					writes.add(syncWrite(report, name, () -> {
+						addEffect(ef);
+						report.addAdded(name);
+					}));
+				}
+			}
+		}
+		for (List<String> names : unlisted.values()) {
+			for (String name : names) {
+				writes.add(syncWrite(report, name, () -> {
+					deleteEffect(name);
+					report.addDeleted(name);
+				}));
+			}
+		}
+		TaskRunner.runAll(writes, maxConcurrency);
+		return report;
+	}
+	
+	private interface EffectWrite {
+		void run() throws NanoleafException, IOException;
+	}
+	
+	private static Callable<Void> syncWrite(EffectSyncReport report,
+			String name, EffectWrite write) {
+		return () -> {
+			try {
+				write.run();
+			}
+			catch (NanoleafException | IOException | RuntimeException e) {
+				report.addFailed(name, e);
+			}
+			return null;
+		};
+	}
+	
 	/**
 	 * Displays an effect on the device without installing it.
 	 * 
@@ -2141,6 +2424,245 @@ public abstract class NanoleafDevice {
 		putAsync(getURL("effects"), body, callback);
 	}
 	
+	/**
+	 * <p>Gets the panel layout and global orientation of the device.</p>
+	 * 
+	 * <p>If the layout cache is enabled (see {@link NanoleafDevice#enableLayoutCache}),
+	 * the cached layout is returned without making a request, unless the layout has
+	 * changed since it was cached.</p>
+	 * 
+	 * @return                     the panel layout
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public PanelLayout getLayout()
+			throws NanoleafException, IOException {
+		PanelLayout cached = cachedLayout;
+		if (cached != null) {
+			return cached;
+		}
+		return refreshLayout();
+	}
+	
+	/**
+	 * <p>Asynchronously gets the panel layout and global orientation of the device.</p>
+	 * 
+	 * <p>The callback status will return {@link NanoleafCallback#SUCCESS} on success,
+	 * or {@link NanoleafCallback#UNAUTHORIZED} if the access token is invalid.
+	 * If an internal API error occurs, it will instead return
+	 * {@link NanoleafCallback#FAILURE}.</p>
+	 * 
+	 * @param callback   returns the panel layout
+	 */
+	public void getLayoutAsync(NanoleafCallback<PanelLayout> callback) {
+		PanelLayout cached = cachedLayout;
+		if (cached != null) {
+			callback.onCompleted(NanoleafCallback.SUCCESS, cached, this);
+			return;
+		}
+		final long generation = getLayoutGeneration();
+		getAsync(getURL("panelLayout"), (status, data, device) -> {
+			if (status != NanoleafCallback.SUCCESS) {
+				callback.onCompleted(status, null, device);
+				return;
+			}
+			PanelLayout newLayout = null;
+			try {
+				newLayout = updateLayout(data, generation);
+			}
+			catch (Exception e) {
+				callback.onCompleted(NanoleafCallback.FAILURE, null, device);
+				return;
+			}
+			callback.onCompleted(status, newLayout, device);
+		});
+	}
+	
+	/**
+	 * Fetches the panel layout and global orientation of the device, even if
+	 * the layout is cached. If the layout cache is enabled, the cached layout is
+	 * replaced.
+	 * 
+	 * @return                     the panel layout
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public PanelLayout refreshLayout()
+			throws NanoleafException, IOException {
+		long generation = getLayoutGeneration();
+		return updateLayout(get(getURL("panelLayout")), generation);
+	}
+	
+	/**
+	 * Gets the version of the most recently fetched panel layout. The version
+	 * increases every time a fetched layout differs from the previous one, so
+	 * it can be used to check if data derived from a layout is still valid.
+	 * 
+	 * @return   the layout version, or 0 if no layout has been fetched yet
+	 */
+	public long getLayoutVersion() {
+		synchronized (layoutLock) {
+			return lastLayout != null ? lastLayout.getVersion() : 0;
+		}
+	}
+	
+	/**
+	 * Fetches the state, selected effect, installed effects and panel layout of
+	 * the device in a single request. If the layout cache is enabled, the cached
+	 * layout is replaced.
+	 * 
+	 * @return                     the device state
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public DeviceState getDeviceState()
+			throws NanoleafException, IOException {
+		long generation = getLayoutGeneration();
+		JSONObject info = new JSONObject(get(getURL("")));
+		PanelLayout layout = updateLayout(info.getJSONObject("panelLayout"), generation);
+		return DeviceState.fromJSON(info, layout);
+	}
+	
+	/**
+	 * <p>Asynchronously fetches the state, selected effect, installed effects and
+	 * panel layout of the device in a single request. If the layout cache is
+	 * enabled, the cached layout is replaced.</p>
+	 * 
+	 * <p>The callback status will return {@link NanoleafCallback#SUCCESS} on success,
+	 * or {@link NanoleafCallback#UNAUTHORIZED} if the access token is invalid.
+	 * If an internal API error occurs, it will instead return
+	 * {@link NanoleafCallback#FAILURE}.</p>
+	 * 
+	 * @param callback   returns the device state
+	 */
+	public void getDeviceStateAsync(NanoleafCallback<DeviceState> callback) {
+		final long generation = getLayoutGeneration();
+		getAsync(getURL(""), (status, data, device) -> {
+			if (status != NanoleafCallback.SUCCESS) {
+				callback.onCompleted(status, null, device);
+				return;
+			}
+			DeviceState state = null;
+			try {
+				JSONObject info = new JSONObject(data);
+				PanelLayout layout = updateLayout(info.getJSONObject("panelLayout"), generation);
+				state = DeviceState.fromJSON(info, layout);
+			}
+			catch (Exception e) {
+				callback.onCompleted(NanoleafCallback.FAILURE, null, device);
+				return;
+			}
+			callback.onCompleted(status, state, device);
+		});
+	}
+	
+	/**
+	 * <p>Enables the layout cache. While the cache is enabled, the layout is only
+	 * fetched once, and methods such as {@link NanoleafDevice#getPanels()},
+	 * {@link NanoleafDevice#getPanel(int)} and {@link NanoleafDevice#getGlobalOrientation()}
+	 * are answered from the cached layout.</p>
+	 * 
+	 * <p>An event stream for layout events is opened to keep the cache up to date.
+	 * The cache is cleared whenever a layout event is received, the global orientation
+	 * is set, or the event stream reconnects. {@link NanoleafDevice#refreshLayout()}
+	 * can also be used to refresh the cache manually.</p>
+	 */
+	public void enableLayoutCache() {
+		synchronized (layoutLock) {
+			if (layoutCacheEnabled) {
+				return;
+			}
+			layoutCacheEnabled = true;
+			layoutEventSse = getEventHub().subscribe(new NanoleafEventListener() {
+				@Override
+				public void onOpen() {
+					// Events may have been missed while disconnected
+					invalidateLayout();
+				}
+				
+				@Override
+				public void onClosed() {}
+				
+				@Override
+				public void onEvent(Event[] events) {}
+				
+				@Override
+				public void onMessage(ServerSentEvent sse, String id, String event, String message) {
+					// Any layout event invalidates the cache, so the events are not parsed
+					invalidateLayout();
+				}
+			}, NanoleafEventHub.LAYOUT, -1, EventDispatch.INLINE);
+		}
+	}
+	
+	/**
+	 * Disables the layout cache and closes its event stream. This has no
+	 * effect if the cache is not enabled.
+	 */
+	public void disableLayoutCache() {
+		ServerSentEvent s;
+		synchronized (layoutLock) {
+			if (!layoutCacheEnabled) {
+				return;
+			}
+			layoutCacheEnabled = false;
+			layoutGeneration++;
+			cachedLayout = null;
+			s = layoutEventSse;
+			layoutEventSse = null;
+		}
+		s.close();
+	}
+	
+	/**
+	 * Checks if the layout cache is enabled.
+	 * 
+	 * @return   true if the layout cache is enabled, or false otherwise
+	 */
+	public boolean isLayoutCacheEnabled() {
+		return layoutCacheEnabled;
+	}
+	
+	private long getLayoutGeneration() {
+		synchronized (layoutLock) {
+			return layoutGeneration;
+		}
+	}
+	
+	/* Clears the cached layout. Layouts fetched before this is called
+	   will not be cached when they arrive */
+	private void invalidateLayout() {
+		synchronized (layoutLock) {
+			layoutGeneration++;
+			cachedLayout = null;
+		}
+	}
+	
+	/* Parses a fetched layout and reuses the previous layout (and version)
+	   if nothing has changed */
+	private PanelLayout updateLayout(String data, long generation) {
+		return updateLayout(new JSONObject(data), generation);
+	}
+	
+	private PanelLayout updateLayout(JSONObject json, long generation) {
+		synchronized (layoutLock) {
+			long version = lastLayout != null ? lastLayout.getVersion() : 0;
+			PanelLayout newLayout = PanelLayout.fromJSON(json, version + 1);
+			if (newLayout.contentEquals(lastLayout)) {
+				newLayout = lastLayout;
+			}
+			lastLayout = newLayout;
+			if (!layoutCacheEnabled) {
+				// A layout from a snapshot is only used until a layout is fetched
+				cachedLayout = null;
+			}
+			else if (generation == layoutGeneration) {
+				cachedLayout = newLayout;
+			}
+			return newLayout;
+		}
+	}
+	
 	/**
 	 * <p>Gets an array of the connected panels.</p>
 	 * 
@@ -2155,7 +2677,7 @@ public abstract class NanoleafDevice {
 	 */
 	public List<Panel> getPanels()
 			throws NanoleafException, IOException {
-		return parsePanelsJSON(get(getURL("panelLayout/layout")));
+		return getLayout().getPanels();
 	}
 	
 	/**
@@ -2174,34 +2696,15 @@ public abstract class NanoleafDevice {
 	 * @param callback   returns the array of panels
 	 */
 	public void getPanelsAsync(NanoleafCallback<List<Panel>> callback) {
-		getAsync(getURL("panelLayout/layout"), (status, data, device) -> {
+		getLayoutAsync((status, data, device) -> {
 			if (status != NanoleafCallback.SUCCESS) {
 				callback.onCompleted(status, null, device);
+				return;
 			}
-			List<Panel> panels = parsePanelsJSON(data);
-			callback.onCompleted(status, panels, device);
+			callback.onCompleted(status, data.getPanels(), device);
 		});
 	}
 	
-	private List<Panel> parsePanelsJSON(String jsonStr) {
-		if (jsonStr == null) {
-			return null;
-		}
-		JSONObject json = new JSONObject(jsonStr);
-		JSONArray arr = json.getJSONArray("positionData");
-		List<Panel> pd = new ArrayList<Panel>();
-		for (int i = 0; i < arr.length(); i++) {
-			JSONObject data = arr.getJSONObject(i);
-			int panelId = data.getInt("panelId");
-			int x = data.getInt("x");
-			int y = data.getInt("y");
-			int o = data.getInt("o");
-			ShapeType s = new ShapeType(data.getInt("shapeType"));
-			pd.add(new Panel(panelId, x, y, o, s));
-		}
-		return pd;
-	}
-	
 	/**
 	 * Gets an array of the connected panels that are rotated to match the
 	 * global orientation.
@@ -2212,24 +2715,36 @@ public abstract class NanoleafDevice {
 	 */
 	public List<Panel> getPanelsRotated()
 			throws NanoleafException, IOException {
-		List<Panel> panels = getPanels();
-		Point origin = getLayoutCentroid(panels);
-		int globalOrientation = getGlobalOrientation();
-		globalOrientation = globalOrientation == 360 ? 0 : globalOrientation;
-		double radAngle = Math.toRadians(globalOrientation);
-		for (Panel p : panels) {
-			int x = p.getX() - origin.x;
-			int y = p.getY() - origin.y;
-			
-			double newX = x * Math.cos(radAngle) - y * Math.sin(radAngle);
-			double newY = x * Math.sin(radAngle) + y * Math.cos(radAngle);
-			
-			x = (int)(newX + origin.x);
-			y = (int)(newY + origin.y);
-			p.setX(x);
-			p.setY(y);
-		}
-		return panels;
+		return getLayout().getGeometry().getRotatedPanels();
+	}
+	
+	/**
+	 * Gets the index that maps the panel ids of the device to dense slots (their
+	 * positions in {@link NanoleafDevice#getPanels()}). The index is shared by
+	 * everything that uses the same layout, and is only created once for each
+	 * version of the layout.
+	 * 
+	 * @return                     the panel index
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public PanelIndex getPanelIndex()
+			throws NanoleafException, IOException {
+		return getLayout().getIndex();
+	}
+	
+	/**
+	 * Gets the geometry of the panel layout (the centroid, bounds and panel
+	 * coordinates rotated to match the global orientation). The geometry is
+	 * only computed once for each version of the layout.
+	 * 
+	 * @return                     the layout geometry
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public LayoutGeometry getLayoutGeometry()
+			throws NanoleafException, IOException {
+		return getLayout().getGeometry();
 	}
 	
 	/**
@@ -2242,7 +2757,7 @@ public abstract class NanoleafDevice {
 	 */
 	public Panel getPanel(int id)
 			throws NanoleafException, IOException {
-		return getPanel(id, getPanels());
+		return getPanel(id, getLayout());
 	}
 	
 	/**
@@ -2257,22 +2772,19 @@ public abstract class NanoleafDevice {
 	 * @param callback   returns the panel
 	 */
 	public void getPanelAsync(int id, NanoleafCallback<Panel> callback) {
-		getPanelsAsync((status, data, device) -> {
+		getLayoutAsync((status, data, device) -> {
 			if (status != NanoleafCallback.SUCCESS) {
 				callback.onCompleted(status, null, device);
+				return;
 			}
 			Panel panel = getPanel(id, data);
 			callback.onCompleted(status, panel, device);
 		});
 	}
 	
-	private Panel getPanel(int id, List<Panel> panels) {
-		for (Panel panel : panels) {
-			if (panel.getId() == id) {
-				return panel;
-			}
-		}
-		return null;
+	private Panel getPanel(int id, PanelLayout layout) {
+		int slot = layout.getSlot(id);
+		return slot >= 0 ? layout.getPanel(slot) : null;
 	}
 	
 	/**
@@ -2284,6 +2796,9 @@ public abstract class NanoleafDevice {
 	 */
 	public int getGlobalOrientation()
 			throws NanoleafException, IOException {
+		if (layoutCacheEnabled || cachedLayout != null) {
+			return getLayout().getGlobalOrientation();
+		}
 		return Integer.parseInt(get(getURL("panelLayout/globalOrientation/value")));
 	}
 	
@@ -2298,6 +2813,12 @@ public abstract class NanoleafDevice {
 	 * @param callback   returns the global orientation
 	 */
 	public void getGlobalOrientationAsync(NanoleafCallback<Integer> callback) {
+		if (layoutCacheEnabled || cachedLayout != null) {
+			getLayoutAsync((status, data, device) -> {
+				callback.onCompleted(status, data != null ? data.getGlobalOrientation() : null, device);
+			});
+			return;
+		}
 		getAsyncInt(getURL("panelLayout/globalOrientation/value"), callback);
 	}
 	
@@ -2312,6 +2833,7 @@ public abstract class NanoleafDevice {
 			throws NanoleafException, IOException {
 		String body = String.format("{\"globalOrientation\": {\"value\": %d}}", orientation);
 		put(getURL("panelLayout"), body);
+		invalidateLayout();
 	}
 	
 	/**
@@ -2328,7 +2850,12 @@ public abstract class NanoleafDevice {
 	 */
 	public void setGlobalOrientationAsync(int orientation, NanoleafCallback<String> callback) {
 		String body = String.format("{\"globalOrientation\": {\"value\": %d}}", orientation);
-		putAsync(getURL("panelLayout"), body, callback);
+		putAsync(getURL("panelLayout"), body, (status, data, device) -> {
+			invalidateLayout();
+			if (callback != null) {
+				callback.onCompleted(status, data, device);
+			}
+		});
 	}
 	
 	/**
@@ -2383,40 +2910,90 @@ public abstract class NanoleafDevice {
 		getAsyncInt(getURL("panelLayout/globalOrientation/min"), callback);
 	}
 	
-	private Point getLayoutCentroid(List<Panel> panels) {
-		int centroidX = 0, centroidY = 0;
-		int numXPoints = 0, numYPoints = 0;
-		List<Integer> xpoints = new ArrayList<Integer>();
-		List<Integer> ypoints = new ArrayList<Integer>();
-		
-		for (Panel p : panels) {
-			int x = p.getX();
-			int y = p.getY();
-			if (!xpoints.contains(x)) {
-				centroidX += x;
-				xpoints.add(x);
-				numXPoints++;
-			}
-			if (!ypoints.contains(y)) {
-				centroidY += y;
-				ypoints.add(y);
-				numYPoints++;
+	/**
+	 * <p>Gets the direct neighbors of a specific origin panel (i.e., the panels that
+	 * are directly connected to a specific panel).</p>
+	 * 
+	 * <p>This checks every panel in the list. To find the neighbors of many panels,
+	 * use an {@link AdjacencyGraph} (see {@link NanoleafDevice#getAdjacencyGraph(List)})
+	 * instead.</p>
+	 * 
+	 * @param panel    the origin panel
+	 * @param panels   all the panels of the Nanoleaf device
+	 * @return         a list of the direct neighbors
+	 */
+	public List<Panel> getNeighborPanels(Panel panel, List<Panel> panels) {
+		// floor(distance) <= CENTROID_DISTANCE, without floating point math
+		long maxDistance = getCentroidDistance() + 1;
+		long maxDistanceSq = maxDistance * maxDistance;
+		List<Panel> neighbors = new ArrayList<Panel>();
+		int p1x = panel.getX();
+		int p1y = panel.getY();
+		for (Panel p2 : panels) {
+			if (p2 != panel && p2.getId() != panel.getId()) {
+				long dx = p2.getX() - p1x;
+				long dy = p2.getY() - p1y;
+				if (dx*dx + dy*dy < maxDistanceSq) {
+					neighbors.add(p2);
+				}
 			}
 		}
-		centroidX /= numXPoints;
-		centroidY /= numYPoints;
-		return new Point(centroidX, centroidY);
+		return neighbors;
 	}
 	
 	/**
-	 * Gets the direct neighbors of a specific origin panel (i.e., the panels that
-	 * are directly connected to a specific panel).
+	 * Gets the adjacency graph of the panels of the device. The slots of the
+	 * graph are the slots of the {@link NanoleafDevice#getLayout() layout}, and
+	 * the graph is only built once for each version of the layout.
+	 * 
+	 * @return                     the panel adjacency graph
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public AdjacencyGraph getAdjacencyGraph()
+			throws NanoleafException, IOException {
+		return getLayout().getGraph(getCentroidDistance());
+	}
+	
+	/**
+	 * Gets the hop distances between every pair of panels of the device, for
+	 * effects that spread outwards from a panel. Like the adjacency graph, the
+	 * table is only computed once for each version of the layout.
+	 * 
+	 * @return                     the hop distance table
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 * @throws IllegalArgumentException  If the device has more than
+	 *                                   {@link HopDistances#MAX_PANELS} panels
+	 */
+	public HopDistances getHopDistances()
+			throws NanoleafException, IOException {
+		return getAdjacencyGraph().getDistances();
+	}
+	
+	/**
+	 * Builds the adjacency graph for a list of panels from this device. This
+	 * operation is not networked. The slots of the graph are the indices of
+	 * the panels in the list.
 	 * 
-	 * @param panel    the origin panel
 	 * @param panels   all the panels of the Nanoleaf device
-	 * @return         a list of the direct neighbors
+	 * @return         the panel adjacency graph
 	 */
-	public abstract List<Panel> getNeighborPanels(Panel panel, List<Panel> panels);
+	public AdjacencyGraph getAdjacencyGraph(List<Panel> panels) {
+		return AdjacencyGraph.build(panels, getCentroidDistance());
+	}
+	
+	/**
+	 * Gets the centroid distance of the device panels. Two panels are considered
+	 * to be neighbors if the distance between their centroids (rounded down) is
+	 * at most this distance. Subclasses should override this for their panels;
+	 * by default, this is the centroid distance of the Aurora panels.
+	 * 
+	 * @return   the centroid distance
+	 */
+	public int getCentroidDistance() {
+		return Aurora.CENTROID_DISTANCE;
+	}
 	
 	/**
 	 * Gets the shape of the device panels. This does not include the
@@ -2862,6 +3439,13 @@ public abstract class NanoleafDevice {
 	/**
 	 * <p>Registers an event listener for one or more types of events.</p>
 	 * 
+	 * <p>All of the event listeners of a device share a single connection, which
+	 * subscribes to every event type that is requested by at least one listener.
+	 * Closing the returned object removes the listener, and the connection is
+	 * closed when the last listener is removed. The connection is reopened when
+	 * the requested event types change, so listeners may receive
+	 * {@link NanoleafEventListener#onOpen()} more than once.</p>
+	 * 
 	 * <p><b>Note:</b> the touch events produced by this listener have a very high
 	 * latency of about 1 to 2 seconds. For very low latency touch events, you
 	 * can instead use the {@link NanoleafDevice#registerTouchEventStreamingListener(NanoleafTouchEventListener)}
@@ -2872,26 +3456,284 @@ public abstract class NanoleafDevice {
 	 * @param layoutEvents                listens for changes to the layout of the device panels
 	 * @param effectsEvents               listens for changes to the device effects or selected effect
 	 * @param touchEvents                 listens for touch events such as "tap", "double-tap", and "swipe"
-	 * @return                            an SSE object
+	 * @return                            an SSE object for the listener
 	 * @throws IllegalArgumentException   if all event flags are set to false
 	 */
 	public ServerSentEvent registerEventListener(NanoleafEventListener listener,
 			boolean stateEvents, boolean layoutEvents, boolean effectsEvents, boolean touchEvents) {
+		return registerEventListener(listener, stateEvents, layoutEvents,
+				effectsEvents, touchEvents, EventDispatch.INLINE);
+	}
+	
+	/**
+	 * <p>Registers an event listener for one or more types of events, with a
+	 * dispatch that decides which threads the callbacks of the listener are run on.
+	 * Listeners that may block, for example by sending requests to the device in
+	 * response to events, should use a queued dispatch such as
+	 * {@link EventDispatch#serial()}, so that they do not delay the events of the
+	 * other listeners. See
+	 * {@link NanoleafDevice#registerEventListener(NanoleafEventListener, boolean,
+	 * boolean, boolean, boolean)}.</p>
+	 * 
+	 * @param listener                    a listener to listen for events
+	 * @param stateEvents                 listens for changes to the state of the device
+	 * @param layoutEvents                listens for changes to the layout of the device panels
+	 * @param effectsEvents               listens for changes to the device effects or selected effect
+	 * @param touchEvents                 listens for touch events such as "tap", "double-tap", and "swipe"
+	 * @param dispatch                    how the callbacks of the listener are run
+	 * @return                            the subscription of the listener
+	 * @throws IllegalArgumentException   if all event flags are set to false
+	 */
+	public EventSubscription registerEventListener(NanoleafEventListener listener,
+			boolean stateEvents, boolean layoutEvents, boolean effectsEvents, boolean touchEvents,
+			EventDispatch dispatch) {
+		return registerEventListener(listener, stateEvents, layoutEvents,
+				effectsEvents, touchEvents, dispatch, null, 0);
+	}
+	
+	/**
+	 * <p>Registers an event listener for one or more types of events, and first
+	 * replays the recorded events of those types from the event history, starting
+	 * from a sequence number. The replayed events are followed by the new events
+	 * without any gaps or duplicates. Replayed events have the SSE event name
+	 * {@link NanoleafEventListener#REPLAY_EVENT}, and are delivered before
+	 * {@link NanoleafEventListener#onOpen()}.</p>
+	 * 
+	 * <p>Nothing is replayed if the event history is not enabled (see
+	 * {@link NanoleafDevice#enableEventHistory(int)}). To replay the events since
+	 * a time, use {@link EventHistory#getSequenceAt(long)} to find the sequence
+	 * number.</p>
+	 * 
+	 * @param listener                    a listener to listen for events
+	 * @param stateEvents                 listens for changes to the state of the device
+	 * @param layoutEvents                listens for changes to the layout of the device panels
+	 * @param effectsEvents               listens for changes to the device effects or selected effect
+	 * @param touchEvents                 listens for touch events such as "tap", "double-tap", and "swipe"
+	 * @param dispatch                    how the callbacks of the listener are run
+	 * @param fromSequence                the sequence number of the first event to replay
+	 * @return                            the subscription of the listener
+	 * @throws IllegalArgumentException   if all event flags are set to false
+	 */
+	public EventSubscription registerEventListener(NanoleafEventListener listener,
+			boolean stateEvents, boolean layoutEvents, boolean effectsEvents, boolean touchEvents,
+			EventDispatch dispatch, long fromSequence) {
+		EventHistory history = eventHistory;
+		return registerEventListener(listener, stateEvents, layoutEvents,
+				effectsEvents, touchEvents, dispatch, history, fromSequence);
+	}
+	
+	private EventSubscription registerEventListener(NanoleafEventListener listener,
+			boolean stateEvents, boolean layoutEvents, boolean effectsEvents, boolean touchEvents,
+			EventDispatch dispatch, EventHistory history, long fromSequence) {
 		if (!stateEvents && !layoutEvents && !effectsEvents && !touchEvents) {
 			throw new IllegalArgumentException("At least one event flag (stateEvents, layoutEvents, " +
 					"effectsEvents, or touchEvents) must be set to true.");
 		}
-		String url = getURL("events" + getEventsQueryString(stateEvents, layoutEvents, effectsEvents, touchEvents));
-		Request req = new Request.Builder()
-				.url(url)
-				.get()
-				.build();
-		OkSse okSse = new OkSse(client);
-		ServerSentEvent s = okSse.newServerSentEvent(req, listener);
+		EventSubscription s = getEventHub().subscribe(listener, NanoleafEventHub.getMask(
+				stateEvents, layoutEvents, effectsEvents, touchEvents), -1, dispatch,
+				history, fromSequence);
 		sse.add(s);
 		return s;
 	}
 	
+	/**
+	 * Enables automatic reconnection of the event stream with the default
+	 * {@link ReconnectPolicy}. See
+	 * {@link NanoleafDevice#enableEventReconnection(ReconnectPolicy)}.
+	 */
+	public void enableEventReconnection() {
+		enableEventReconnection(ReconnectPolicy.DEFAULT);
+	}
+	
+	/**
+	 * <p>Enables automatic reconnection of the event stream. If the stream is lost
+	 * (for example because the device rebooted), it is reconnected after a delay
+	 * decided by the policy, instead of being closed.</p>
+	 * 
+	 * <p>While reconnection is enabled, the device keeps a {@link DeviceState} up to
+	 * date with the state, layout and effects events, so the stream also subscribes
+	 * to those events. When the stream reconnects, a fresh state is fetched and
+	 * compared to the kept state, and catch-up events are sent to the listeners for
+	 * any differences, after {@link NanoleafEventListener#onOpen()}. Catch-up events
+	 * have the SSE event name {@link NanoleafEventListener#CATCH_UP_EVENT}. Touch
+	 * events that were missed cannot be recovered.</p>
+	 * 
+	 * <p>Listeners are still notified of lost connections through
+	 * {@link NanoleafEventListener#onRetryError(ServerSentEvent, Throwable, Response)},
+	 * but its return value is ignored while reconnection is enabled.</p>
+	 * 
+	 * @param policy   decides how long to wait before each reconnect attempt
+	 */
+	public void enableEventReconnection(ReconnectPolicy policy) {
+		getEventHub().setReconnection(policy);
+	}
+	
+	/**
+	 * Disables automatic reconnection of the event stream. A stream that is
+	 * lost is closed, unless a listener asks to retry.
+	 */
+	public void disableEventReconnection() {
+		getEventHub().setReconnection(null);
+	}
+	
+	/**
+	 * Gets the device state that is kept up to date with the events of the device
+	 * while event reconnection is enabled or the {@link NanoleafDevice#getStateMirror()
+	 * state mirror} is open. This is the same state as the state of the mirror.
+	 * 
+	 * @return   the device state, or null if the state is not kept or has not
+	 *           been fetched yet
+	 */
+	public DeviceState getEventState() {
+		return getEventHub().getState();
+	}
+	
+	/**
+	 * Gets a snapshot of the metrics of the event path of the device: the
+	 * messages received for each event type, the time spent decoding them, the
+	 * number of reconnects, the queue wait and execution time of each listener,
+	 * and the latency of touch event streaming. The metrics are kept with
+	 * counters and histograms that are cheap to update, so they are always on.
+	 * 
+	 * @return   the event metrics
+	 */
+	public EventMetrics getEventMetrics() {
+		return getEventHub().getMetrics(touchPacketCount.get(), touchLatency.snapshot());
+	}
+	
+	/**
+	 * <p>Gets the state mirror of the device, which keeps a local copy of the
+	 * device state up to date with the events of the device. The first call
+	 * creates the mirror and waits until the state has been fetched; later calls
+	 * return the same mirror until it is closed.</p>
+	 * 
+	 * <p>Reading the state from the mirror does not make any requests, so it is
+	 * much faster than {@link NanoleafDevice#getDeviceState()} for applications
+	 * that read the state often.</p>
+	 * 
+	 * @return                     the state mirror of the device
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public DeviceStateMirror getStateMirror()
+			throws NanoleafException, IOException {
+		synchronized (mirrorLock) {
+			if (stateMirror == null || stateMirror.isClosed()) {
+				DeviceStateMirror mirror = new DeviceStateMirror(this);
+				mirror.start();
+				stateMirror = mirror;
+			}
+			return stateMirror;
+		}
+	}
+	
+	/**
+	 * <p>Enables the event history, which records the recent events of the device
+	 * so that listeners that are registered later can replay them. An event stream
+	 * for all types of events is kept open to record them. If low-latency touch
+	 * event streaming is enabled, the detailed touch events are recorded as well.
+	 * The catch-up events that are sent after the event stream reconnects (see
+	 * {@link NanoleafDevice#enableEventReconnection()}) are not recorded, since they
+	 * were not sent by the device. This has no effect if the history is already
+	 * enabled.</p>
+	 * 
+	 * <p>The history holds up to <code>capacity</code> event messages and the same
+	 * number of groups of detailed touch events; older entries are replaced.</p>
+	 * 
+	 * @param capacity                    the number of entries to keep
+	 * @throws IllegalArgumentException   if the capacity is less than 1
+	 */
+	public void enableEventHistory(int capacity) {
+		synchronized (historyLock) {
+			if (eventHistory != null) {
+				return;
+			}
+			eventHistory = new EventHistory(capacity);
+			subscribeHistory();
+		}
+	}
+	
+	/**
+	 * Disables the event history and closes its event stream. This has no
+	 * effect if the history is not enabled.
+	 */
+	public void disableEventHistory() {
+		synchronized (historyLock) {
+			if (eventHistory == null) {
+				return;
+			}
+			eventHistory = null;
+			historySse.close();
+			historySse = null;
+			if (historyTouchListener != null && touchEventListener != null) {
+				touchEventListener.removeListener(historyTouchListener);
+			}
+			historyTouchListener = null;
+		}
+	}
+	
+	/**
+	 * Gets the event history of the device.
+	 * 
+	 * @return   the event history, or null if it is not enabled
+	 */
+	public EventHistory getEventHistory() {
+		return eventHistory;
+	}
+	
+	/* Subscribes the history to every event type, with the touch events port
+	   if touch event streaming is enabled. Must hold the history lock */
+	private void subscribeHistory() {
+		EventHistory history = eventHistory;
+		if (historySse != null) {
+			// Closed first so that no message is recorded twice
+			historySse.close();
+		}
+		historySse = getEventHub().subscribe(new NanoleafEventListener() {
+			@Override
+			public void onOpen() {}
+			
+			@Override
+			public void onClosed() {}
+			
+			@Override
+			public void onEvent(Event[] events) {}
+			
+			@Override
+			public void onMessage(ServerSentEvent sse, String id, String event, String message) {
+				if (NanoleafEventListener.CATCH_UP_EVENT.equals(event)) {
+					// Catch-up messages were not sent by the device
+					return;
+				}
+				// The messages are recorded as they are, without decoding them
+				history.recordMessage(Integer.parseInt(id), message);
+			}
+		}, NanoleafEventHub.getMask(true, true, true, true), touchEventStreamingPort,
+				EventDispatch.INLINE);
+		if (touchEventListener != null && historyTouchListener == null) {
+			historyTouchListener = new NanoleafTouchEventListener() {
+				@Override
+				public void onOpen() {}
+				
+				@Override
+				public void onClosed() {}
+				
+				@Override
+				public void onEvent(DetailedTouchEvent[] events) {
+					history.recordTouchEvents(events);
+				}
+			};
+			touchEventListener.addListener(historyTouchListener);
+		}
+	}
+	
+	synchronized NanoleafEventHub getEventHub() {
+		if (eventHub == null) {
+			eventHub = new NanoleafEventHub(client, getURL("events"), this::getDeviceState);
+		}
+		return eventHub;
+	}
+	
 	/**
 	 * Enables touch event streaming on a specific port. This allows for very
 	 * low latency and detailed touch events. This method should only be
@@ -2902,10 +3744,16 @@ public abstract class NanoleafDevice {
 	 */
 	public void enableTouchEventStreaming(int port) throws SocketException {
 		if (touchEventListener == null) {
-			touchEventListener = new UDPTouchEventListener(port);
+			touchEventListener = new UDPTouchEventListener(port, touchPacketCount, touchLatency);
 			touchEventThread = new Thread(touchEventListener);
 			touchEventThread.start();
 			touchEventStreamingPort = port;
+			synchronized (historyLock) {
+				if (eventHistory != null) {
+					// Reopens the history stream with the touch events port
+					subscribeHistory();
+				}
+			}
 		}
 	}
 	
@@ -2918,37 +3766,18 @@ public abstract class NanoleafDevice {
 	 * @param listener
 	 */
 	public void registerTouchEventStreamingListener(NanoleafTouchEventListener listener) {
-		String url = getURL("events?id=4");
-		Request req = new Request.Builder()
-				.url(url)
-				.addHeader("TouchEventsPort", touchEventStreamingPort + "")
-				.get()
-				.build();
-		OkSse okSse = new OkSse(client);
-		ServerSentEvent s = okSse.newServerSentEvent(req, new NanoleafEventListener() {
+		// The touch events are sent over UDP, but only while an event stream with
+		// the touch events port header is open
+		ServerSentEvent s = getEventHub().subscribe(new NanoleafEventListener() {
 			// Dummy listener
 			public void onOpen(){}
 			public void onClosed(){}
 			public void onEvent(Event[] events){}
-		});
+		}, NanoleafEventHub.TOUCH, touchEventStreamingPort, EventDispatch.INLINE);
 		sse.add(s);
 		touchEventListener.addListener(listener);
 	}
 	
-	private String getEventsQueryString(boolean stateEvents, boolean layoutEvents, boolean effectsEvents, boolean touchEvents) {
-		StringBuilder query = new StringBuilder("?id=");
-		boolean[] eventsEnabled = {stateEvents, layoutEvents, effectsEvents, touchEvents};
-		
-		for (int i = 0; i < 4; i++) {
-			if (eventsEnabled[i]) {
-				if (i > 0 && query.length() > 4) {
-					query.append(",");
-				}
-				query.append(i+1);
-			}
-		}
-		return query.toString();
-	}
 	
 //	/**
 //	 * Gets an array of schedules stored on the device.
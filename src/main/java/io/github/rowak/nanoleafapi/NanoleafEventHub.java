@@ -0,0 +1,862 @@
+package io.github.rowak.nanoleafapi;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.here.oksse.OkSse;
+import com.here.oksse.ServerSentEvent;
+
+import io.github.rowak.nanoleafapi.event.DispatchStats;
+import io.github.rowak.nanoleafapi.event.Event;
+import io.github.rowak.nanoleafapi.event.EventDecoder;
+import io.github.rowak.nanoleafapi.event.EventDispatch;
+import io.github.rowak.nanoleafapi.event.EventMetrics;
+import io.github.rowak.nanoleafapi.event.EventRecord;
+import io.github.rowak.nanoleafapi.event.EventSubscription;
+import io.github.rowak.nanoleafapi.event.EventType;
+import io.github.rowak.nanoleafapi.event.LatencyHistogram;
+import io.github.rowak.nanoleafapi.event.NanoleafEventListener;
+import io.github.rowak.nanoleafapi.event.NanoleafEventRecordListener;
+import io.github.rowak.nanoleafapi.event.ReconnectPolicy;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/*
+ * Internal event multiplexer. A device holds one hub, and the hub holds a single
+ * event stream that subscribes to the union of the event types requested by its
+ * listeners. Messages are fanned out to the listeners that requested their type.
+ * When the union changes, the stream is reopened with the new query, and when the
+ * last listener leaves, the stream is closed. The callbacks of each listener
+ * are run by its EventDispatcher, which may queue them on another thread.
+ * 
+ * If reconnection is enabled, a lost stream is reopened after a backoff delay.
+ * If reconnection is enabled or a StateObserver is set (see DeviceStateMirror),
+ * the hub keeps a DeviceState up to date with the state, layout and effects
+ * events, and after every (re)open it fetches a fresh state and sends catch-up
+ * messages for the differences, so that listeners do not miss any changes.
+ * 
+ * Messages are handled while holding the lock of their StreamListener, and the
+ * listeners may call the hub from there, so the lock of a StreamListener is always
+ * taken before the lock of the hub. Code that holds the lock of the hub never
+ * takes the lock of a StreamListener.
+ */
+class NanoleafEventHub {
+
+	private final static Logger logger = LoggerFactory.getLogger(NanoleafEventHub.class);
+
+	/* Event type ids are 1 (state) to 4 (touch), so bit i is set for type id i */
+	static final int STATE = 1 << 1;
+	static final int LAYOUT = 1 << 2;
+	static final int EFFECTS = 1 << 3;
+	static final int TOUCH = 1 << 4;
+
+	/* The event types that the device state is kept up to date with */
+	private static final int TRACKED = STATE | LAYOUT | EFFECTS;
+	private static final EventType[] TRACKED_TYPES = {
+			EventType.STATE, EventType.LAYOUT, EventType.EFFECTS};
+
+	/* The scheduler only runs short timer tasks. The blocking state fetches of
+	   the resyncs run on the fetch executor, so they can't delay the timers */
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+	private static ScheduledExecutorService scheduler;
+	private static ExecutorService fetchExecutor;
+
+	private final OkHttpClient client;
+	private final String eventsUrl;
+
+	/* Copy-on-write, so messages can be dispatched without locking */
+	private volatile Subscription[] subscriptions;
+
+	/* The current stream, its query and the generation of its listener.
+	   Callbacks from older streams are ignored */
+	private ServerSentEvent stream;
+	private int streamMask;
+	private int streamTouchPort;
+	private volatile int generation;
+	private volatile Response openResponse;
+	private StreamListener streamListener;
+
+	/* Reconnection and the kept state. The state is null until it has been fetched */
+	private volatile ReconnectPolicy reconnectPolicy;
+	private volatile StateObserver stateObserver;
+	private final Callable<DeviceState> stateFetcher;
+	private final AtomicReference<DeviceState> state;
+	private int reconnectAttempt;
+	private ScheduledFuture<?> pendingReconnect;
+
+	/* Metrics of every stream of the hub, updated without the lock */
+	private final AtomicLongArray receivedCounts;
+	private final LatencyHistogram parseTime;
+	private final AtomicLong reconnectCount;
+
+	NanoleafEventHub(OkHttpClient client, String eventsUrl, Callable<DeviceState> stateFetcher) {
+		this.client = client;
+		this.eventsUrl = eventsUrl;
+		this.stateFetcher = stateFetcher;
+		subscriptions = new Subscription[0];
+		streamTouchPort = -1;
+		state = new AtomicReference<DeviceState>();
+		receivedCounts = new AtomicLongArray(5);
+		parseTime = new LatencyHistogram();
+		reconnectCount = new AtomicLong();
+	}
+
+	private static synchronized ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			scheduler = Executors.newScheduledThreadPool(2, r -> {
+				Thread t = new Thread(r, "nanoleaf-timer-" + THREAD_COUNT.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return scheduler;
+	}
+
+	private static synchronized ExecutorService getFetchExecutor() {
+		if (fetchExecutor == null) {
+			fetchExecutor = Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "nanoleaf-fetch-" + THREAD_COUNT.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return fetchExecutor;
+	}
+
+	static int getMask(boolean stateEvents, boolean layoutEvents,
+			boolean effectsEvents, boolean touchEvents) {
+		return (stateEvents ? STATE : 0) | (layoutEvents ? LAYOUT : 0) |
+				(effectsEvents ? EFFECTS : 0) | (touchEvents ? TOUCH : 0);
+	}
+
+	/*
+	 * Adds a listener for the event types in a mask. If the touch events port is
+	 * not -1, the stream is opened with the TouchEventsPort header so that the
+	 * device also streams touch events over UDP. Closing the returned object
+	 * removes the listener.
+	 */
+	EventSubscription subscribe(NanoleafEventListener listener, int mask,
+			int touchEventsPort, EventDispatch dispatch) {
+		return subscribe(listener, mask, touchEventsPort, dispatch, null, 0);
+	}
+
+	/*
+	 * Adds a listener like subscribe(listener, mask, touchEventsPort, dispatch), and
+	 * first replays the messages of a history from a sequence number to it. The
+	 * history must be recorded by a listener of this hub.
+	 */
+	EventSubscription subscribe(NanoleafEventListener listener, int mask,
+			int touchEventsPort, EventDispatch dispatch, EventHistory history,
+			long fromSequence) {
+		Subscription s = new Subscription(listener, mask, touchEventsPort, dispatch);
+		boolean covered;
+		Response response;
+		while (true) {
+			StreamListener current = null;
+			if (history != null) {
+				synchronized (this) {
+					current = streamListener != null ? streamListener : new StreamListener(-1);
+				}
+			}
+			// Messages are only fanned out (and recorded) while holding the lock of the
+			// stream listener, so the replayed messages are followed by the live messages
+			// without a gap or an overlap. Like for every message, the lock of the stream
+			// listener is taken before the lock of the hub
+			synchronized (current != null ? current : this) {
+				synchronized (this) {
+					if (current != null && streamListener != null && streamListener != current) {
+						// The stream was replaced in the meantime
+						continue;
+					}
+					if (current != null) {
+						Subscription[] target = {s};
+						StreamListener replayer = current;
+						history.replayMessages(fromSequence, mask, (message, typeId) ->
+								replayer.fanOut(target, typeId, Integer.toString(typeId),
+										NanoleafEventListener.REPLAY_EVENT, message));
+					}
+					Subscription[] subs = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+					subs[subs.length - 1] = s;
+					subscriptions = subs;
+					covered = stream != null && (streamMask & mask) == mask &&
+							(touchEventsPort < 0 || touchEventsPort == streamTouchPort);
+					response = openResponse;
+					if (!covered) {
+						updateStream(false);
+					}
+				}
+			}
+			break;
+		}
+		if (covered && response != null) {
+			// The stream is already open, so the listener will not see it open
+			s.dispatcher.dispatchControl(() -> s.listener.onOpen(s, response));
+		}
+		return s;
+	}
+
+	private void unsubscribe(Subscription s) {
+		synchronized (this) {
+			int i = Arrays.asList(subscriptions).indexOf(s);
+			if (i < 0) {
+				return;
+			}
+			Subscription[] subs = new Subscription[subscriptions.length - 1];
+			System.arraycopy(subscriptions, 0, subs, 0, i);
+			System.arraycopy(subscriptions, i + 1, subs, i, subs.length - i);
+			subscriptions = subs;
+			updateStream(false);
+		}
+		if (s.coalescer != null) {
+			// The latest values of the bursts are not lost
+			s.coalescer.close();
+		}
+		s.dispatcher.close(() -> s.listener.onClosed(s));
+	}
+
+	/* Reopens or closes the stream if the union of the subscriptions has changed,
+	   or reopens it anyway if forced. Must be called while holding the lock */
+	private void updateStream(boolean force) {
+		int mask = 0;
+		int touchPort = -1;
+		for (Subscription s : subscriptions) {
+			mask |= s.mask;
+			if (s.touchEventsPort >= 0) {
+				touchPort = s.touchEventsPort;
+			}
+		}
+		if (mask != 0 && keepsState()) {
+			mask |= TRACKED;
+		}
+		if (!force && stream != null && mask == streamMask && touchPort == streamTouchPort) {
+			return;
+		}
+		ServerSentEvent old = stream;
+		int gen = ++generation;
+		openResponse = null;
+		stream = null;
+		streamListener = null;
+		streamMask = mask;
+		streamTouchPort = touchPort;
+		if (pendingReconnect != null) {
+			pendingReconnect.cancel(false);
+			pendingReconnect = null;
+		}
+		if (mask != 0) {
+			streamListener = new StreamListener(gen);
+			stream = new OkSse(client).newServerSentEvent(createRequest(mask, touchPort),
+					streamListener);
+		}
+		if (old != null) {
+			old.close();
+		}
+	}
+
+	/* Enables reconnection with a policy, or disables it if the policy is null */
+	synchronized void setReconnection(ReconnectPolicy policy) {
+		reconnectPolicy = policy;
+		reconnectAttempt = 0;
+		keepStateChanged();
+	}
+
+	/*
+	 * Sets the observer of the kept state, or removes it if the observer is null.
+	 * The state is kept while an observer is set, even if reconnection is disabled.
+	 */
+	synchronized void setStateObserver(StateObserver observer) {
+		stateObserver = observer;
+		keepStateChanged();
+	}
+
+	/* Must be called while holding the lock */
+	private void keepStateChanged() {
+		if (!keepsState()) {
+			state.set(null);
+		}
+		int gen = generation;
+		updateStream(false);
+		if (keepsState() && gen == generation && openResponse != null &&
+				state.get() == null) {
+			// The stream was not reopened, so the state is fetched now
+			startResync(streamListener);
+		}
+	}
+
+	private boolean keepsState() {
+		return reconnectPolicy != null || stateObserver != null;
+	}
+
+	/* Gets the kept device state, or null if it is not kept or not fetched yet */
+	DeviceState getState() {
+		return state.get();
+	}
+
+	/*
+	 * Starts a resync with a state that the caller fetches, for example to
+	 * refresh the state without waiting for the stream to reopen. The fetch
+	 * must start after this is called, and the returned consumer merges the
+	 * fetched state. Must not be called while holding the lock.
+	 */
+	Consumer<DeviceState> beginResync() {
+		StreamListener listener;
+		synchronized (this) {
+			listener = keepsState() ? streamListener : null;
+		}
+		if (listener == null) {
+			return fresh -> {};
+		}
+		long[] counts = listener.getMessageCounts();
+		return fresh -> listener.catchUp(fresh, counts);
+	}
+
+	/*
+	 * Copies the metrics of the event streams and the stats of the listeners.
+	 * The touch streaming metrics are kept by the device, so they are passed in.
+	 */
+	EventMetrics getMetrics(long touchPacketCount, LatencyHistogram touchLatency) {
+		long[] received = new long[5];
+		for (int i = 0; i < received.length; i++) {
+			received[i] = receivedCounts.get(i);
+		}
+		Map<EventSubscription, DispatchStats> listenerStats =
+				new LinkedHashMap<EventSubscription, DispatchStats>();
+		for (Subscription s : subscriptions) {
+			listenerStats.put(s, s.getStats());
+		}
+		return new EventMetrics(received, parseTime.snapshot(), reconnectCount.get(),
+				listenerStats, touchPacketCount, touchLatency);
+	}
+
+	/* Schedules a reconnect of a lost stream, unless one is already pending */
+	private synchronized void scheduleReconnect(int gen) {
+		if (gen != generation || reconnectPolicy == null || pendingReconnect != null ||
+				subscriptions.length == 0) {
+			return;
+		}
+		long delay = reconnectPolicy.getDelayMillis(reconnectAttempt++);
+		pendingReconnect = getScheduler().schedule(() -> reconnect(gen),
+				delay, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized void reconnect(int gen) {
+		pendingReconnect = null;
+		if (gen == generation && reconnectPolicy != null) {
+			reconnectCount.incrementAndGet();
+			updateStream(true);
+		}
+	}
+
+	/* Fetches a fresh state on another thread and sends catch-up messages */
+	private void startResync(StreamListener listener) {
+		long[] counts = listener.getMessageCounts();
+		getFetchExecutor().execute(() -> resync(listener, counts, 0));
+	}
+
+	private void resync(StreamListener listener, long[] counts, int attempt) {
+		if (!keepsState() || !listener.isCurrent()) {
+			return;
+		}
+		DeviceState fresh;
+		try {
+			fresh = stateFetcher.call();
+		}
+		catch (Exception e) {
+			StateObserver observer = stateObserver;
+			if (observer != null) {
+				observer.fetchFailed(e);
+			}
+			// The device may still be starting up, so the fetch is retried
+			ReconnectPolicy policy = reconnectPolicy;
+			long delay = (policy != null ? policy : ReconnectPolicy.DEFAULT).getDelayMillis(attempt);
+			getScheduler().schedule(() -> getFetchExecutor().execute(
+					() -> resync(listener, counts, attempt + 1)),
+					delay, TimeUnit.MILLISECONDS);
+			return;
+		}
+		listener.catchUp(fresh, counts);
+	}
+
+	private Request createRequest(int mask, int touchPort) {
+		StringBuilder query = new StringBuilder("?id=");
+		for (int id = 1; id <= 4; id++) {
+			if ((mask & (1 << id)) != 0) {
+				if (query.length() > 4) {
+					query.append(",");
+				}
+				query.append(id);
+			}
+		}
+		Request.Builder req = new Request.Builder()
+				.url(eventsUrl + query)
+				.get();
+		if (touchPort >= 0) {
+			req.addHeader("TouchEventsPort", touchPort + "");
+		}
+		return req.build();
+	}
+
+	/* Observes the kept state. The methods are called on the threads of the
+	   stream and of the resync */
+	interface StateObserver {
+
+		/* Called when the kept state changes, where old is null for the first state.
+		   Called while holding the lock of the stream listener, so changes are in order */
+		void stateChanged(DeviceState old, DeviceState updated);
+
+		/* Called when fetching the state fails. The fetch is retried */
+		void fetchFailed(Exception e);
+	}
+
+	/* Gets the union of the event types of the current stream, or 0 if closed */
+	synchronized int getStreamMask() {
+		return stream != null ? streamMask : 0;
+	}
+
+	/* Gets the number of subscribed listeners */
+	int getSubscriberCount() {
+		return subscriptions.length;
+	}
+
+	/* How a listener receives messages */
+	private static final int RAW_MESSAGES = 0;
+	private static final int EVENTS = 1;
+	private static final int RECORDS = 2;
+
+	/* Gets how a listener receives messages. Listeners that rely on the default
+	   decoding share a single decoding of each message */
+	private static int getDelivery(NanoleafEventListener listener) {
+		Class<?> declaring;
+		try {
+			declaring = listener.getClass().getMethod("onMessage", ServerSentEvent.class,
+					String.class, String.class, String.class).getDeclaringClass();
+		}
+		catch (NoSuchMethodException | SecurityException e) {
+			return RAW_MESSAGES;
+		}
+		if (declaring == NanoleafEventRecordListener.class) {
+			return RECORDS;
+		}
+		return declaring == NanoleafEventListener.class ? EVENTS : RAW_MESSAGES;
+	}
+
+	/* Delivers a single event to a listener that receives records or events */
+	private static void deliverRecord(Subscription s, EventRecord record) {
+		if (s.typed != null) {
+			s.typed.route(record, s.dispatcher);
+		}
+		else if (s.delivery == RECORDS) {
+			NanoleafEventRecordListener listener = (NanoleafEventRecordListener)s.listener;
+			if (s.dispatcher.isInline()) {
+				long start = System.nanoTime();
+				try {
+					listener.onEvent(record);
+				}
+				catch (RuntimeException e) {
+					logger.warn("An event listener threw an exception", e);
+				}
+				s.dispatcher.delivered(System.nanoTime() - start);
+			}
+			else {
+				// The record is reused, so a queued event needs its own copy
+				EventRecord copy = record.copy();
+				s.dispatcher.dispatchEvent(() -> listener.onEvent(copy));
+			}
+		}
+		else {
+			try {
+				Event[] events = {record.toEvent()};
+				s.dispatcher.dispatchEvent(() -> s.listener.onEvent(events));
+			}
+			catch (RuntimeException e) {
+				logger.warn("Failed to decode an event", e);
+			}
+		}
+	}
+
+	/* A listener's view of the shared stream */
+	private class Subscription implements EventSubscription {
+
+		private final NanoleafEventListener listener;
+		private final int mask;
+		private final int touchEventsPort;
+		private final int delivery;
+		private final EventDispatcher dispatcher;
+		/* Null if the events are not coalesced */
+		private final EventCoalescer coalescer;
+		/* Null if the listener is not typed. Typed listeners filter the events
+		   before they are copied or queued */
+		private final TypedEventListener typed;
+
+		private Subscription(NanoleafEventListener listener, int mask, int touchEventsPort,
+				EventDispatch dispatch) {
+			this.listener = listener;
+			this.mask = mask;
+			this.touchEventsPort = touchEventsPort;
+			this.delivery = getDelivery(listener);
+			this.typed = listener instanceof TypedEventListener ?
+					(TypedEventListener)listener : null;
+			this.dispatcher = new EventDispatcher(dispatch);
+			if (dispatch.getCoalesceWindowMillis() > 0 && delivery != RAW_MESSAGES) {
+				coalescer = new EventCoalescer(dispatch.getCoalesceWindowMillis(), getScheduler(),
+						record -> deliverRecord(this, record), dispatcher::coalesced);
+			}
+			else {
+				coalescer = null;
+			}
+		}
+
+		@Override
+		public NanoleafEventListener getListener() {
+			return listener;
+		}
+
+		@Override
+		public EventDispatch getDispatch() {
+			return dispatcher.getDispatch();
+		}
+
+		@Override
+		public DispatchStats getStats() {
+			return dispatcher.getStats();
+		}
+
+		@Override
+		public Request request() {
+			synchronized (NanoleafEventHub.this) {
+				return stream != null ? stream.request() : null;
+			}
+		}
+
+		@Override
+		public void setTimeout(long timeout, TimeUnit unit) {
+			synchronized (NanoleafEventHub.this) {
+				if (stream != null) {
+					stream.setTimeout(timeout, unit);
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			unsubscribe(this);
+		}
+	}
+
+	/* Receives the callbacks of one stream and fans them out. Messages of a
+	   stream arrive on one thread, so the decoder and its record are reused */
+	private class StreamListener implements ServerSentEvent.Listener,
+			Consumer<EventRecord> {
+
+		private final int gen;
+		private final EventDecoder decoder = new EventDecoder();
+		private Subscription[] recordSubscriptions;
+		private int recordBit;
+		/* The time spent decoding the current message, and the time spent in
+		   the inline listeners while decoding records, which is not decoding */
+		private long parseNanos;
+		private boolean parsed;
+		private long recordDeliveryNanos;
+
+		/* The number of messages received for each event type, which shows the
+		   types that changed while the state was being fetched. Atomic, so the
+		   counts can be read while holding the lock of the hub */
+		private final AtomicLongArray messageCounts = new AtomicLongArray(5);
+		private final Consumer<EventRecord> stateUpdater = record -> {
+			DeviceState old = state.get();
+			if (old != null) {
+				DeviceState updated = old.withEvent(record);
+				if (state.compareAndSet(old, updated)) {
+					stateChanged(old, updated);
+				}
+			}
+		};
+
+		private StreamListener(int gen) {
+			this.gen = gen;
+		}
+
+		/* A message that is counted while the counts are copied is either before
+		   the fetch or treated as live, which both keep the state correct */
+		private long[] getMessageCounts() {
+			long[] counts = new long[5];
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = messageCounts.get(i);
+			}
+			return counts;
+		}
+
+		private boolean isCurrent() {
+			return gen == generation;
+		}
+
+		@Override
+		public void onOpen(ServerSentEvent sse, Response response) {
+			if (!isCurrent()) {
+				return;
+			}
+			openResponse = response;
+			for (Subscription s : subscriptions) {
+				s.dispatcher.dispatchControl(() -> s.listener.onOpen(s, response));
+			}
+			boolean supervised;
+			synchronized (NanoleafEventHub.this) {
+				supervised = keepsState() && isCurrent();
+				if (reconnectPolicy != null) {
+					reconnectAttempt = 0;
+				}
+			}
+			if (supervised) {
+				// Events may have been missed while the stream was down
+				startResync(this);
+			}
+		}
+
+		@Override
+		public synchronized void onMessage(ServerSentEvent sse, String id,
+				String event, String message) {
+			if (!isCurrent()) {
+				return;
+			}
+			int typeId;
+			try {
+				typeId = Integer.parseInt(id);
+			}
+			catch (NumberFormatException e) {
+				return;
+			}
+			if (typeId < 1 || typeId > 4) {
+				return;
+			}
+			messageCounts.incrementAndGet(typeId);
+			receivedCounts.incrementAndGet(typeId);
+			parseNanos = 0;
+			parsed = false;
+			if ((TRACKED & (1 << typeId)) != 0 && state.get() != null) {
+				long start = System.nanoTime();
+				try {
+					decoder.decode(typeId, message, stateUpdater);
+				}
+				catch (RuntimeException e) {
+					logger.warn("Failed to decode a state event", e);
+				}
+				parseNanos += System.nanoTime() - start;
+				parsed = true;
+			}
+			fanOut(subscriptions, typeId, id, event, message);
+			if (parsed) {
+				parseTime.record(parseNanos);
+			}
+		}
+
+		/* Sends a message to the listeners that are subscribed to its type */
+		private void fanOut(Subscription[] subs, int typeId, String id, String event,
+				String message) {
+			int bit = 1 << typeId;
+			Event[] events = null;
+			boolean records = false;
+			for (Subscription s : subs) {
+				if ((s.mask & bit) == 0) {
+					continue;
+				}
+				try {
+					if (s.coalescer != null) {
+						// Coalesced events are delivered one at a time
+						records = true;
+					}
+					else if (s.delivery == EVENTS) {
+						if (events == null) {
+							long start = System.nanoTime();
+							events = decoder.decodeEvents(typeId, message);
+							parseNanos += System.nanoTime() - start;
+							parsed = true;
+						}
+						Event[] copy = events.clone();
+						s.dispatcher.dispatchEvent(() -> s.listener.onEvent(copy));
+					}
+					else if (s.delivery == RECORDS) {
+						records = true;
+					}
+					else {
+						s.dispatcher.dispatchEvent(() -> s.listener.onMessage(s, id, event, message));
+					}
+				}
+				catch (RuntimeException e) {
+					logger.warn("Failed to deliver an event", e);
+				}
+			}
+			if (records) {
+				// Each event is decoded once into the reused record for all of the listeners
+				recordSubscriptions = subs;
+				recordBit = bit;
+				recordDeliveryNanos = 0;
+				long start = System.nanoTime();
+				try {
+					decoder.decode(typeId, message, this);
+				}
+				catch (RuntimeException e) {
+					logger.warn("Failed to decode an event", e);
+				}
+				finally {
+					recordSubscriptions = null;
+				}
+				parseNanos += System.nanoTime() - start - recordDeliveryNanos;
+				parsed = true;
+			}
+		}
+
+		/*
+		 * Merges a freshly fetched state into the kept state and sends catch-up
+		 * messages for the differences. The types that received messages since
+		 * the fetch started are already up to date, so they keep the kept state.
+		 */
+		private synchronized void catchUp(DeviceState fresh, long[] counts) {
+			if (!isCurrent()) {
+				return;
+			}
+			int live = 0;
+			for (EventType type : TRACKED_TYPES) {
+				if (messageCounts.get(type.getId()) != counts[type.getId()]) {
+					live |= 1 << type.getId();
+				}
+			}
+			DeviceState old = state.get();
+			DeviceState merged = old != null ? old.merge(fresh, live) : fresh;
+			if (!state.compareAndSet(old, merged)) {
+				return;
+			}
+			stateChanged(old, merged);
+			if (old == null) {
+				// The first state is only a baseline, so there is nothing to catch up
+				return;
+			}
+			for (EventType type : TRACKED_TYPES) {
+				if ((live & (1 << type.getId())) != 0) {
+					continue;
+				}
+				String message = old.getCatchUpMessage(fresh, type);
+				if (message != null) {
+					fanOut(subscriptions, type.getId(), Integer.toString(type.getId()),
+							NanoleafEventListener.CATCH_UP_EVENT, message);
+				}
+			}
+		}
+
+		private void stateChanged(DeviceState old, DeviceState updated) {
+			StateObserver observer = stateObserver;
+			if (observer != null && old != updated) {
+				try {
+					observer.stateChanged(old, updated);
+				}
+				catch (RuntimeException e) {
+					logger.warn("A state observer threw an exception", e);
+				}
+			}
+		}
+
+		@Override
+		public void accept(EventRecord record) {
+			long start = System.nanoTime();
+			for (Subscription s : recordSubscriptions) {
+				if ((s.mask & recordBit) == 0) {
+					continue;
+				}
+				if (s.coalescer != null) {
+					if (s.typed == null || s.typed.accepts(record)) {
+						s.coalescer.offer(record);
+					}
+				}
+				else if (s.delivery == RECORDS) {
+					deliverRecord(s, record);
+				}
+			}
+			recordDeliveryNanos += System.nanoTime() - start;
+		}
+
+		@Override
+		public void onComment(ServerSentEvent sse, String comment) {
+			if (!isCurrent()) {
+				return;
+			}
+			for (Subscription s : subscriptions) {
+				s.dispatcher.dispatchControl(() -> s.listener.onComment(s, comment));
+			}
+		}
+
+		/* The retry callbacks decide what the stream does next, so they are
+		   always run inline */
+		@Override
+		public boolean onRetryTime(ServerSentEvent sse, long milliseconds) {
+			if (!isCurrent()) {
+				return false;
+			}
+			boolean retry = false;
+			for (Subscription s : subscriptions) {
+				retry |= s.listener.onRetryTime(s, milliseconds);
+			}
+			return retry;
+		}
+
+		@Override
+		public boolean onRetryError(ServerSentEvent sse, Throwable throwable, Response response) {
+			if (!isCurrent()) {
+				return false;
+			}
+			openResponse = null;
+			boolean retry = false;
+			for (Subscription s : subscriptions) {
+				retry |= s.listener.onRetryError(s, throwable, response);
+			}
+			if (reconnectPolicy != null) {
+				// The hub reconnects with its own backoff instead
+				scheduleReconnect(gen);
+				return false;
+			}
+			return retry;
+		}
+
+		@Override
+		public void onClosed(ServerSentEvent sse) {
+			if (!isCurrent()) {
+				return;
+			}
+			openResponse = null;
+			for (Subscription s : subscriptions) {
+				s.dispatcher.dispatchControl(() -> s.listener.onClosed(s));
+			}
+			if (reconnectPolicy != null) {
+				scheduleReconnect(gen);
+			}
+		}
+
+		@Override
+		public Request onPreRetry(ServerSentEvent sse, Request originalRequest) {
+			if (!isCurrent()) {
+				return null;
+			}
+			// Listeners can only decide whether to retry, since the request is shared
+			Request retry = null;
+			for (Subscription s : subscriptions) {
+				if (s.listener.onPreRetry(s, originalRequest) != null) {
+					retry = originalRequest;
+				}
+			}
+			return retry;
+		}
+	}
+}
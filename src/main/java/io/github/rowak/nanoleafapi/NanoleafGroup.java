@@ -3,13 +3,25 @@ package io.github.rowak.nanoleafapi;
 import java.util.List;
 import java.util.Map;
 
+import io.github.rowak.nanoleafapi.event.EventDispatch;
+import io.github.rowak.nanoleafapi.event.EventMetrics;
+import io.github.rowak.nanoleafapi.event.EventSubscription;
+import io.github.rowak.nanoleafapi.event.GroupEventFilter;
+import io.github.rowak.nanoleafapi.event.GroupEventListener;
 import io.github.rowak.nanoleafapi.event.NanoleafEventListener;
 import io.github.rowak.nanoleafapi.event.NanoleafTouchEventListener;
+import io.github.rowak.nanoleafapi.layout.VirtualCanvas;
+import io.github.rowak.nanoleafapi.util.TaskRunner;
 
 import java.io.IOException;
 import java.net.SocketException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class simplifies the interface for controlling multiple
@@ -140,6 +152,21 @@ public class NanoleafGroup {
 	public void closeTouchEventListeners() {
 		devices.forEach((n, d) -> d.closeTouchEventListeners());
 	}
+
+	/**
+	 * Enables the layout cache for all devices in the group.
+	 * See {@link NanoleafDevice#enableLayoutCache()}.
+	 */
+	public void enableLayoutCache() {
+		devices.forEach((n, d) -> d.enableLayoutCache());
+	}
+
+	/**
+	 * Disables the layout cache for all devices in the group.
+	 */
+	public void disableLayoutCache() {
+		devices.forEach((n, d) -> d.disableLayoutCache());
+	}
 	
 	/**
 	 * Causes the panels to flash in unison. This is typically used to help
@@ -875,6 +902,136 @@ public class NanoleafGroup {
 		devices.forEach((n, d) -> d.renameEffectAsync(effectName, newName, callback));
 	}
 	
+	/**
+	 * <p>Synchronizes the effects on every device in the group with a list of
+	 * effects. Up to <code>parallelism</code> devices are synced at once. See
+	 * {@link NanoleafDevice#syncEffects(List, boolean, int)} for details.</p>
+	 * 
+	 * <p>Failed writes are recorded in the report for each device. If the effects
+	 * of a device cannot be read at all, the other devices are still synced and the
+	 * first such exception is thrown once every device has finished.</p>
+	 * 
+	 * @param effects              the desired effects
+	 * @param parallelism          the maximum number of devices to sync at once
+	 * @param deleteUnlisted       whether to delete the effects that are not in the list
+	 * @param maxConcurrency       the maximum number of writes to issue at once to
+	 *                             each device
+	 * @return                     the sync reports mapped to the device names
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public Map<String, EffectSyncReport> syncEffects(List<Effect> effects,
+			int parallelism, boolean deleteUnlisted, int maxConcurrency)
+					throws NanoleafException, IOException {
+		List<String> names = new ArrayList<String>(devices.keySet());
+		List<Callable<EffectSyncReport>> tasks = new ArrayList<Callable<EffectSyncReport>>();
+		for (String name : names) {
+			NanoleafDevice d = devices.get(name);
+			tasks.add(() -> d.syncEffects(effects, deleteUnlisted, maxConcurrency));
+		}
+		List<Future<EffectSyncReport>> results = TaskRunner.runAll(tasks, parallelism);
+		Map<String, EffectSyncReport> reports = new HashMap<String, EffectSyncReport>();
+		for (int i = 0; i < names.size(); i++) {
+			reports.put(names.get(i), TaskRunner.getResult(results.get(i)));
+		}
+		return reports;
+	}
+	
+	/**
+	 * Exports the effects of every device in the group into an archive, reading
+	 * from all of the devices in parallel. Equivalent to
+	 * <code>exportEffects(getGroupSize())</code>.
+	 * 
+	 * @return                     a new effect archive
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public EffectArchive exportEffects()
+			throws NanoleafException, IOException {
+		return exportEffects(Math.max(devices.size(), 1));
+	}
+	
+	/**
+	 * Exports the effects of every device in the group into an archive. Effects
+	 * that are identical across devices are only stored once in the archive.
+	 * If any device fails, the first exception is thrown once every device
+	 * has finished.
+	 * 
+	 * @param parallelism          the maximum number of devices to read from at once
+	 * @return                     a new effect archive
+	 * @throws NanoleafException   If the access token is invalid
+	 * @throws IOException         If an HTTP exception occurs
+	 */
+	public EffectArchive exportEffects(int parallelism)
+			throws NanoleafException, IOException {
+		EffectArchive archive = new EffectArchive();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (Map.Entry<String, NanoleafDevice> d : devices.entrySet()) {
+			tasks.add(() -> {
+				archive.putDevice(d.getKey(), d.getValue().getAllEffects());
+				return null;
+			});
+		}
+		for (Future<Void> result : TaskRunner.runAll(tasks, parallelism)) {
+			TaskRunner.getResult(result);
+		}
+		return archive;
+	}
+	
+	/**
+	 * <p>Restores an effect archive to the devices in the group. Each device is
+	 * restored from the library with the same device name in the archive; devices
+	 * that are not in the archive are skipped. Only the effects that are missing
+	 * or have changed are uploaded (see
+	 * {@link NanoleafDevice#syncEffects(List, boolean, int)}).</p>
+	 * 
+	 * <p>A device that fails does not stop the import. Its exception is passed to
+	 * the listener and the device is left out of the returned reports.</p>
+	 * 
+	 * @param archive          the effect archive
+	 * @param parallelism      the maximum number of devices to restore at once
+	 * @param deleteUnlisted   whether to delete the effects that are not in the archive
+	 * @param listener         called when each device has finished, or null
+	 * @return                 the sync reports mapped to the device names
+	 * @throws IOException     If the calling thread is interrupted
+	 */
+	public Map<String, EffectSyncReport> importEffects(EffectArchive archive,
+			int parallelism, boolean deleteUnlisted, EffectImportListener listener)
+					throws IOException {
+		Map<String, NanoleafDevice> targets = new HashMap<String, NanoleafDevice>();
+		for (String name : archive.getDeviceNames()) {
+			if (devices.containsKey(name)) {
+				targets.put(name, devices.get(name));
+			}
+		}
+		int total = targets.size();
+		AtomicInteger completed = new AtomicInteger();
+		Map<String, EffectSyncReport> reports = new ConcurrentHashMap<String, EffectSyncReport>();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (Map.Entry<String, NanoleafDevice> d : targets.entrySet()) {
+			String name = d.getKey();
+			tasks.add(() -> {
+				EffectSyncReport report = null;
+				Exception error = null;
+				try {
+					report = d.getValue().syncEffects(archive.getEffects(name), deleteUnlisted,
+							NanoleafDevice.DEFAULT_SYNC_CONCURRENCY);
+					reports.put(name, report);
+				}
+				catch (NanoleafException | IOException | RuntimeException e) {
+					error = e;
+				}
+				if (listener != null) {
+					listener.onDeviceCompleted(name, report, error,
+							completed.incrementAndGet(), total);
+				}
+				return null;
+			});
+		}
+		TaskRunner.runAll(tasks, parallelism);
+		return new HashMap<String, EffectSyncReport>(reports);
+	}
+	
 	/**
 	 * Displays an effect on the devices without installing it.
 	 * 
@@ -1267,11 +1424,7 @@ public class NanoleafGroup {
 	 */
 	public List<Panel> getAllPanels()
 			throws NanoleafException, IOException {
-		List<Panel> panels = new ArrayList<Panel>();
-		for (NanoleafDevice d : devices.values()) {
-			panels.addAll(d.getPanels());
-		}
-		return panels;
+		return getAllPanels(false);
 	}
 	
 //	public void getAllPanelsAsync(NanoleafCallback<Panel[]> callback) {
@@ -1293,9 +1446,37 @@ public class NanoleafGroup {
 	 */
 	public List<Panel> getAllPanelsRotated()
 			throws NanoleafException, IOException {
-		List<Panel> panels = new ArrayList<Panel>();
+		return getAllPanels(true);
+	}
+	
+	/**
+	 * <p>Creates a builder for a virtual canvas containing every device in the
+	 * group, using the device names. The devices are not moved or rotated, so
+	 * their positions should be set with
+	 * {@link VirtualCanvas.Builder#setPlacement(String, int, int, int)} before
+	 * the canvas is built.</p>
+	 * 
+	 * <p>Unlike {@link NanoleafGroup#getAllPanels()}, the panels of a virtual canvas
+	 * have unique handles and do not overlap.</p>
+	 * 
+	 * @return   a new virtual canvas builder
+	 */
+	public VirtualCanvas.Builder createVirtualCanvas() {
+		VirtualCanvas.Builder builder = new VirtualCanvas.Builder();
+		devices.forEach((n, d) -> builder.addDevice(n, d));
+		return builder;
+	}
+	
+	/* Fetches the layouts of all devices in parallel */
+	private List<Panel> getAllPanels(boolean rotated)
+			throws NanoleafException, IOException {
+		List<Callable<List<Panel>>> tasks = new ArrayList<Callable<List<Panel>>>();
 		for (NanoleafDevice d : devices.values()) {
-			panels.addAll(d.getPanelsRotated());
+			tasks.add(() -> rotated ? d.getPanelsRotated() : d.getPanels());
+		}
+		List<Panel> panels = new ArrayList<Panel>();
+		for (Future<List<Panel>> result : TaskRunner.runAll(tasks, Math.max(tasks.size(), 1))) {
+			panels.addAll(TaskRunner.getResult(result));
 		}
 		return panels;
 	}
@@ -1661,6 +1842,74 @@ public class NanoleafGroup {
 		}
 	}
 	
+	/**
+	 * Registers an event listener on every device in the group, with a dispatch
+	 * that decides which threads the callbacks of the listener are run on (see
+	 * {@link NanoleafDevice#registerEventListener(NanoleafEventListener, boolean,
+	 * boolean, boolean, boolean, EventDispatch)}). Each device queues its events
+	 * separately, so a queued listener may be called by several devices at once.
+	 * 
+	 * @param listener        a listener to listen for events
+	 * @param stateEvents     listens for changes to the state of the devices
+	 * @param layoutEvents    listens for changes to the layouts of the device panels
+	 * @param effectsEvents   listens for changes to the device effects or selected effects
+	 * @param touchEvents     listens for touch events such as "tap", "double-tap", and "swipe"
+	 * @param dispatch        how the callbacks of the listener are run
+	 * @return                the subscriptions of the listener, by device name
+	 */
+	public Map<String, EventSubscription> registerEventListener(NanoleafEventListener listener,
+			boolean stateEvents, boolean layoutEvents, boolean effectsEvents, boolean touchEvents,
+			EventDispatch dispatch) {
+		Map<String, EventSubscription> subscriptions = new LinkedHashMap<String, EventSubscription>();
+		devices.forEach((n, d) -> subscriptions.put(n, d.registerEventListener(listener,
+				stateEvents, layoutEvents, effectsEvents, touchEvents, dispatch)));
+		return subscriptions;
+	}
+	
+	/**
+	 * Opens a merged event stream for the devices in the group. The events of
+	 * every device are tagged with their device, and delivered one at a time in
+	 * the order that they were received, on a separate thread (see
+	 * {@link EventDispatch#serial()}).
+	 * 
+	 * @param filter     selects the devices, event types and attributes to receive
+	 * @param listener   a listener to listen for the merged events
+	 * @return           the event stream, which must be closed when it is no longer needed
+	 */
+	public GroupEventStream openEventStream(GroupEventFilter filter, GroupEventListener listener) {
+		return openEventStream(filter, listener, EventDispatch.serial());
+	}
+	
+	/**
+	 * Opens a merged event stream for the devices in the group, with a dispatch
+	 * that decides how the events are queued and which thread the listener is
+	 * called on. The events of every device are tagged with their device, and
+	 * delivered one at a time in the order that they were received.
+	 * 
+	 * @param filter     selects the devices, event types and attributes to receive
+	 * @param listener   a listener to listen for the merged events
+	 * @param dispatch   how the events are queued and delivered
+	 * @return           the event stream, which must be closed when it is no longer needed
+	 */
+	public GroupEventStream openEventStream(GroupEventFilter filter, GroupEventListener listener,
+			EventDispatch dispatch) {
+		GroupEventStream stream = new GroupEventStream(filter, listener, dispatch);
+		stream.start(devices);
+		return stream;
+	}
+	
+	/**
+	 * Gets a snapshot of the event metrics of every device in the group
+	 * (see {@link NanoleafDevice#getEventMetrics()}).
+	 * 
+	 * @return   the event metrics, by device name
+	 */
+	public Map<String, EventMetrics> getEventMetrics() {
+		Map<String, EventMetrics> metrics = new LinkedHashMap<String, EventMetrics>();
+		devices.forEach((n, d) -> metrics.put(n, d.getEventMetrics()));
+		return metrics;
+	}
+	
 	public void registerTouchEventStreamingListener(NanoleafTouchEventListener listener) {
 		for (NanoleafDevice d : devices.values()) {
 			d.registerTouchEventStreamingListener(listener);
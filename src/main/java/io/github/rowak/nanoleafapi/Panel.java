@@ -132,7 +132,7 @@ public class Panel {
 							 json.getInt("x"),
 							 json.getInt("y"),
 							 json.getInt("o"),
-							 new ShapeType(json.getInt("shapeType")));
+							 ShapeType.valueOf(json.getInt("shapeType")));
 		}
 		catch (Exception e) {
 			throw new JSONParserException("Invalid arguments");
@@ -154,4 +154,13 @@ public class Panel {
 		return this.id == other.id && this.x == other.x && this.y == other.y &&
 				this.orientation == other.orientation && this.shape.equals(other.shape);
 	}
+	
+	@Override
+	public int hashCode() {
+		int hash = id;
+		hash = 31*hash + x;
+		hash = 31*hash + y;
+		hash = 31*hash + orientation;
+		return 31*hash + (shape != null ? shape.hashCode() : 0);
+	}
 }
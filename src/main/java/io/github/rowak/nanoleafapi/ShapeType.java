@@ -1,5 +1,7 @@
 package io.github.rowak.nanoleafapi;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * A simple storage class for storing the shape type of a panel. Also can be
  * used to get the side length of panel shape types.
@@ -33,46 +35,75 @@ public class ShapeType {
 	/** Shapes controller panel */
 	public static final int SHAPES_CONTROLLER = 12;
 	
-	private final int TRIANGLE_AURORA_SIDELEN = 150;
-	private final int RHYTHM_SIDELEN = 0;
-	private final int SQUARE_SIDELEN = 100;
-	private final int SQUARE_MASTER_SIDELEN = 100;
-	private final int SQUARE_PASSIVE_SIDELEN = 100;
-	private final int HEXAGON_SIDELEN = 67;
-	private final int TRIANGLE_SHAPES_SIDELEN = 134;
-	private final int MINI_TRIANGLE_SIDELEN = 67;
-	private final int SHAPES_CONTROLLER_SIDELEN = 0;
+	private static final int TRIANGLE_AURORA_SIDELEN = 150;
+	private static final int RHYTHM_SIDELEN = 0;
+	private static final int SQUARE_SIDELEN = 100;
+	private static final int SQUARE_MASTER_SIDELEN = 100;
+	private static final int SQUARE_PASSIVE_SIDELEN = 100;
+	private static final int HEXAGON_SIDELEN = 67;
+	private static final int TRIANGLE_SHAPES_SIDELEN = 134;
+	private static final int MINI_TRIANGLE_SIDELEN = 67;
+	private static final int SHAPES_CONTROLLER_SIDELEN = 0;
+	
+	/** Shared instances for the shape type values that are likely to be used */
+	private static final ShapeType[] CACHE = new ShapeType[32];
+	
+	/** Shared instances for any other values */
+	private static final ConcurrentHashMap<Integer, ShapeType> OTHERS =
+			new ConcurrentHashMap<Integer, ShapeType>();
+	
+	static {
+		for (int i = 0; i < CACHE.length; i++) {
+			CACHE[i] = new ShapeType(i);
+		}
+	}
 	
-	private int shape;
+	private final int shape;
 	
 	/** Convenience method for creating an Aurora panel shape type */
-	public static ShapeType triangleAurora() { return new ShapeType(TRIANGLE_AURORA); }
+	public static ShapeType triangleAurora() { return valueOf(TRIANGLE_AURORA); }
 	
 	/** Convenience method for creating an Aurora rhythm panel shape type */
-	public static ShapeType rhythm() { return new ShapeType(RHYTHM); }
+	public static ShapeType rhythm() { return valueOf(RHYTHM); }
 	
 	/** Convenience method for creating a Canvas regular panel shape type */
-	public static ShapeType square() { return new ShapeType(SQUARE); }
+	public static ShapeType square() { return valueOf(SQUARE); }
 	
 	/** Convenience method for creating an Canvas control panel shape type */
-	public static ShapeType squareMaster() { return new ShapeType(SQUARE_MASTER); }
+	public static ShapeType squareMaster() { return valueOf(SQUARE_MASTER); }
 	
 	/** Convenience method for creating an Hexagon (Shapes) panel shape type */
-	public static ShapeType hexagon() { return new ShapeType(HEXAGON); }
+	public static ShapeType hexagon() { return valueOf(HEXAGON); }
 	
 	/** Convenience method for creating an Triangle (Shapes) panel shape type */
-	public static ShapeType triangleShapes() { return new ShapeType(TRIANGLE_SHAPES); }
+	public static ShapeType triangleShapes() { return valueOf(TRIANGLE_SHAPES); }
 	
 	/** Convenience method for creating an Mini Triangle (Shapes) panel shape type */
-	public static ShapeType miniTriangle() { return new ShapeType(MINI_TRIANGLE); }
+	public static ShapeType miniTriangle() { return valueOf(MINI_TRIANGLE); }
 	
 	/** Convenience method for creating an Shapes controller panel shape type */
-	public static ShapeType shapesController() { return new ShapeType(SHAPES_CONTROLLER); }
+	public static ShapeType shapesController() { return valueOf(SHAPES_CONTROLLER); }
 
+	/**
+	 * Gets the shared instance of a shape type. Shape types are immutable, so
+	 * the same instance is returned for every call with the same value. This
+	 * should be used instead of the constructor.
+	 * @param shape   the shape type
+	 * @return        the shape type instance
+	 */
+	public static ShapeType valueOf(int shape) {
+		if (shape >= 0 && shape < CACHE.length) {
+			return CACHE[shape];
+		}
+		return OTHERS.computeIfAbsent(shape, ShapeType::new);
+	}
+	
 	/**
 	 * Creates an instance of a shape type. The shape parameter takes
 	 * any of the shape types defined in the ShapeType class. For example,
 	 * ShapeType.TRIANGLE_AURORA represents an Aurora panel.
+	 * {@link ShapeType#valueOf(int)} should usually be used instead, since it
+	 * does not create a new instance.
 	 * @param shape   the shape type
 	 */
 	public ShapeType(int shape) {
@@ -107,6 +138,99 @@ public class ShapeType {
 		}
 	}
 	
+	/**
+	 * Gets the area of this shape type, computed from its side length.
+	 * @return   the shape area, or 0 for shapes without a side length
+	 */
+	public double getArea() {
+		double side = getSideLength();
+		switch (shape) {
+			case TRIANGLE_AURORA:
+			case TRIANGLE_SHAPES:
+			case MINI_TRIANGLE:
+				return Math.sqrt(3) / 4 * side * side;
+			case SQUARE:
+			case SQUARE_MASTER:
+			case SQUARE_PASSIVE:
+				return side * side;
+			case HEXAGON:
+				return 3 * Math.sqrt(3) / 2 * side * side;
+			default: return 0;
+		}
+	}
+	
+	/**
+	 * Gets the number of vertices (corners) of this shape type.
+	 * @return   the number of vertices, or 0 for shapes without an area
+	 */
+	public int getVertexCount() {
+		switch (shape) {
+			case TRIANGLE_AURORA:
+			case TRIANGLE_SHAPES:
+			case MINI_TRIANGLE:
+				return 3;
+			case SQUARE:
+			case SQUARE_MASTER:
+			case SQUARE_PASSIVE:
+				return 4;
+			case HEXAGON:
+				return 6;
+			default: return 0;
+		}
+	}
+	
+	/**
+	 * Gets the distance from the centroid of this shape type to its vertices.
+	 * @return   the circumradius, or 0 for shapes without an area
+	 */
+	public double getCircumradius() {
+		double side = getSideLength();
+		switch (getVertexCount()) {
+			case 3: return side / Math.sqrt(3);
+			case 4: return side / Math.sqrt(2);
+			case 6: return side;
+			default: return 0;
+		}
+	}
+	
+	/**
+	 * Computes the vertices of a panel of this shape type, in counterclockwise
+	 * order. At an orientation of 0, triangles and hexagons have a vertex pointing
+	 * up (towards positive y) and squares have horizontal and vertical sides.
+	 * The orientation rotates the shape counterclockwise, in the same direction as
+	 * the global orientation of a layout, so the vertices of a panel in a rotated
+	 * layout are found by adding the global orientation to the panel orientation.
+	 * @param x             the x coordinate of the panel centroid
+	 * @param y             the y coordinate of the panel centroid
+	 * @param orientation   the orientation of the panel in degrees
+	 * @return              a new array containing the vertex coordinates as
+	 *                      (x, y) pairs, or an empty array for shapes without an area
+	 */
+	public double[] getVertices(double x, double y, double orientation) {
+		int count = getVertexCount();
+		double r = getCircumradius();
+		// Squares start at 45 degrees so that their sides are axis aligned
+		double start = count == 4 ? 45 : 90;
+		double[] vertices = new double[count*2];
+		for (int i = 0; i < count; i++) {
+			double angle = Math.toRadians(start + orientation + 360.0 * i / count);
+			vertices[i*2] = x + r * Math.cos(angle);
+			vertices[i*2 + 1] = y + r * Math.sin(angle);
+		}
+		return vertices;
+	}
+	
+	/**
+	 * Computes the vertices of a panel, using its position, orientation and
+	 * shape type. See {@link ShapeType#getVertices(double, double, double)}.
+	 * @param panel   the panel
+	 * @return        a new array containing the vertex coordinates as (x, y) pairs
+	 */
+	public static double[] getVertices(Panel panel) {
+		ShapeType shape = panel.getShape() != null ? panel.getShape() : valueOf(-1);
+		return shape.getVertices(panel.getX(), panel.getY(), panel.getOrientation());
+	}
+	
 	@Override
 	public String toString() {
 		switch (shape) {
@@ -131,4 +255,9 @@ public class ShapeType {
 		ShapeType other = (ShapeType)obj;
 		return this.shape == other.shape;
 	}
+	
+	@Override
+	public int hashCode() {
+		return shape;
+	}
 }
@@ -1,8 +1,6 @@
 package io.github.rowak.nanoleafapi;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import okhttp3.OkHttpClient;
 
@@ -13,6 +11,9 @@ import okhttp3.OkHttpClient;
  * the Aurora and Canvas classes, respectively.
  */
 public class Shapes extends NanoleafDevice {
+	
+	/** The (rough) distance between the centroids of two neighboring panels */
+	public static final int CENTROID_DISTANCE = 121; // normally: 116
 
 	private String deviceName;
 	
@@ -84,24 +85,14 @@ public class Shapes extends NanoleafDevice {
 		deviceName = getName();
 	}
 	
-	public List<Panel> getNeighborPanels(Panel panel, List<Panel> panels) {
-		// The centroid distance is the (roughly) the distance between the
-		// centroids of two neighboring panels
-		final int CENTROID_DISTANCE = 121; // normally: 116
-		List<Panel> neighbors = new ArrayList<Panel>();
-		int p1x = panel.getX();
-		int p1y = panel.getY();
-		for (Panel p2 : panels) {
-			if (!panel.equals(p2)) {
-				int p2x = p2.getX();
-				int p2y = p2.getY();
-				if (Math.floor(Math.sqrt(Math.pow((p1x - p2x), 2) +
-						Math.pow((p1y - p2y), 2))) <= CENTROID_DISTANCE) {
-					neighbors.add(p2);
-				}
-			}
-		}
-		return neighbors;
+	protected Shapes(DeviceSnapshot snapshot, String accessToken, OkHttpClient client) {
+		super(snapshot, accessToken, client);
+		deviceName = getName();
+	}
+	
+	@Override
+	public int getCentroidDistance() {
+		return CENTROID_DISTANCE;
 	}
 	
 	/**
@@ -0,0 +1,140 @@
+package io.github.rowak.nanoleafapi;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import io.github.rowak.nanoleafapi.layout.PanelIndex;
+
+/*
+ * A live map view, by panel id, of values that a builder stores by panel slot
+ * (see CustomEffect.Builder and StaticEffect.Builder). Changes to the map are
+ * written through to the builder, and changes to the builder are visible in the
+ * map. Slots with a null value are not in the map, and removing a panel sets
+ * its value to null.
+ */
+abstract class SlotMap<V> extends AbstractMap<Integer, V> {
+
+	private final List<Panel> panels;
+	private final PanelIndex index;
+
+	SlotMap(List<Panel> panels, PanelIndex index) {
+		this.panels = panels;
+		this.index = index;
+	}
+
+	/* Gets the value of a slot, or null if the slot has no value */
+	abstract V getSlot(int slot);
+
+	/* Sets the value of a slot, where null removes the value */
+	abstract void setSlot(int slot, V value);
+
+	@Override
+	public V get(Object key) {
+		int slot = slotOf(key);
+		return slot >= 0 ? getSlot(slot) : null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public V put(Integer panelId, V value) {
+		int slot = slotOf(panelId);
+		if (slot < 0) {
+			throw new IllegalArgumentException("Panel with id " +
+					panelId + " does not exist.");
+		}
+		V old = getSlot(slot);
+		setSlot(slot, value);
+		return old;
+	}
+
+	@Override
+	public V remove(Object key) {
+		int slot = slotOf(key);
+		if (slot < 0) {
+			return null;
+		}
+		V old = getSlot(slot);
+		setSlot(slot, null);
+		return old;
+	}
+
+	@Override
+	public Set<Map.Entry<Integer, V>> entrySet() {
+		return new AbstractSet<Map.Entry<Integer, V>>() {
+			@Override
+			public Iterator<Map.Entry<Integer, V>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				int size = 0;
+				for (int i = 0; i < panels.size(); i++) {
+					if (getSlot(i) != null) {
+						size++;
+					}
+				}
+				return size;
+			}
+		};
+	}
+
+	private int slotOf(Object key) {
+		return key instanceof Integer ? index.getSlot((Integer)key) : -1;
+	}
+
+	private class EntryIterator implements Iterator<Map.Entry<Integer, V>> {
+
+		private int next = advance(0);
+		private int last = -1;
+
+		private int advance(int slot) {
+			while (slot < panels.size() && getSlot(slot) == null) {
+				slot++;
+			}
+			return slot;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < panels.size();
+		}
+
+		@Override
+		public Map.Entry<Integer, V> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next = advance(next + 1);
+			final int slot = last;
+			return new AbstractMap.SimpleEntry<Integer, V>(panels.get(slot).getId(), getSlot(slot)) {
+				@Override
+				public V setValue(V value) {
+					super.setValue(value);
+					V old = getSlot(slot);
+					setSlot(slot, value);
+					return old;
+				}
+			};
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			setSlot(last, null);
+			last = -1;
+		}
+	}
+}
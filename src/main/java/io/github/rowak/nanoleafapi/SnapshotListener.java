@@ -0,0 +1,24 @@
+package io.github.rowak.nanoleafapi;
+
+/**
+ * An interface for receiving notifications from a {@link SnapshotStore} when a
+ * revalidated device differs from its stored snapshot. The listener is called
+ * from the HTTP client thread that completed the revalidation.
+ */
+public interface SnapshotListener {
+	
+	/**
+	 * Called when the live device info or panel layout of a device differs
+	 * from its stored snapshot. The store already contains the new snapshot
+	 * when this is called, but it has not been saved.
+	 * 
+	 * @param device        the device that was revalidated
+	 * @param oldSnapshot   the previously stored snapshot, or null if the device
+	 *                      had no snapshot
+	 * @param newSnapshot   the new snapshot
+	 * @param layoutChanged true if the panel layout or global orientation changed,
+	 *                      or false if only the device info changed
+	 */
+	public void onSnapshotChanged(NanoleafDevice device, DeviceSnapshot oldSnapshot,
+			DeviceSnapshot newSnapshot, boolean layoutChanged);
+}
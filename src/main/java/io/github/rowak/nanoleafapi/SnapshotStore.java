@@ -0,0 +1,244 @@
+package io.github.rowak.nanoleafapi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * <p>A local file of {@link DeviceSnapshot}s, used to start an application without
+ * waiting for its devices. On startup, the store is loaded and every device is
+ * created from its snapshot without making any requests. The devices are then
+ * revalidated in the background, and listeners are notified of any devices whose
+ * info or layout has changed since the snapshot was taken.</p>
+ * 
+ * <p>For example:</p>
+ * <pre>
+ * SnapshotStore store = SnapshotStore.load(new File("devices.json"));
+ * store.addListener((device, oldSnapshot, newSnapshot, layoutChanged) -&gt; ...);
+ * NanoleafDevice device = store.createDevice(hostname, port, accessToken);
+ * if (device == null) {
+ *     device = NanoleafDevice.createDevice(hostname, port, accessToken);
+ * }
+ * store.revalidateAsync(device, null);
+ * ...
+ * store.save();
+ * </pre>
+ * 
+ * <p>Snapshots are identified by the hostname and port of their device. Access
+ * tokens are not stored.</p>
+ */
+public class SnapshotStore {
+
+	/** The current store format version */
+	public static final int VERSION = 1;
+
+	private final File file;
+	private final Map<String, DeviceSnapshot> snapshots;
+	private final List<SnapshotListener> listeners;
+
+	/**
+	 * Creates a new empty store that is saved to a file. The file is not read;
+	 * use {@link SnapshotStore#load(File)} to read an existing store.
+	 * 
+	 * @param file   the file to save the store to
+	 */
+	public SnapshotStore(File file) {
+		this.file = file;
+		snapshots = new LinkedHashMap<String, DeviceSnapshot>();
+		listeners = new CopyOnWriteArrayList<SnapshotListener>();
+	}
+
+	/**
+	 * Loads a store from a file. If the file does not exist, the store is empty.
+	 * 
+	 * @param file                  the store file
+	 * @return                      the loaded store
+	 * @throws IOException          If the file cannot be read
+	 * @throws JSONParserException  If the store version is not supported
+	 */
+	public static SnapshotStore load(File file) throws IOException {
+		SnapshotStore store = new SnapshotStore(file);
+		if (file.exists()) {
+			String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+			store.putAll(new JSONObject(json));
+		}
+		return store;
+	}
+
+	/* Adds the snapshots from the JSON of a store */
+	private synchronized void putAll(JSONObject json) {
+		int version = json.optInt("version", 0);
+		if (version != VERSION) {
+			throw new JSONParserException("Unsupported snapshot store version " + version + ".");
+		}
+		JSONArray devices = json.getJSONArray("devices");
+		for (int i = 0; i < devices.length(); i++) {
+			DeviceSnapshot snapshot = DeviceSnapshot.fromJSON(devices.getJSONObject(i));
+			snapshots.put(snapshot.getKey(), snapshot);
+		}
+	}
+
+	/**
+	 * Saves the store to its file. The store is written to a temporary file
+	 * first, so the file is never left partially written.
+	 * 
+	 * @throws IOException   If the file cannot be written
+	 */
+	public void save() throws IOException {
+		byte[] data = toJSON().toString(2).getBytes(StandardCharsets.UTF_8);
+		Path target = file.toPath().toAbsolutePath();
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		Files.write(temp, data);
+		try {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Gets the file that the store is saved to.
+	 * 
+	 * @return   the store file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Gets the snapshot of a device.
+	 * 
+	 * @param hostname   the hostname of the device
+	 * @param port       the port of the device
+	 * @return           the snapshot, or null if the device has no snapshot
+	 */
+	public synchronized DeviceSnapshot get(String hostname, int port) {
+		return snapshots.get(DeviceSnapshot.getKey(hostname, port));
+	}
+
+	/**
+	 * Gets every snapshot in the store.
+	 * 
+	 * @return   a new list of the snapshots
+	 */
+	public synchronized List<DeviceSnapshot> getSnapshots() {
+		return new ArrayList<DeviceSnapshot>(snapshots.values());
+	}
+
+	/**
+	 * Adds a snapshot to the store, replacing any snapshot of the same device.
+	 * 
+	 * @param snapshot   the snapshot
+	 * @return           the replaced snapshot, or null if the device had no snapshot
+	 */
+	public synchronized DeviceSnapshot put(DeviceSnapshot snapshot) {
+		return snapshots.put(snapshot.getKey(), snapshot);
+	}
+
+	/**
+	 * Removes the snapshot of a device from the store.
+	 * 
+	 * @param hostname   the hostname of the device
+	 * @param port       the port of the device
+	 * @return           the removed snapshot, or null if the device had no snapshot
+	 */
+	public synchronized DeviceSnapshot remove(String hostname, int port) {
+		return snapshots.remove(DeviceSnapshot.getKey(hostname, port));
+	}
+
+	/**
+	 * Creates a device from its snapshot without making any requests. See
+	 * {@link NanoleafDevice#createDevice(DeviceSnapshot, String)}.
+	 * 
+	 * @param hostname      the hostname of the device
+	 * @param port          the port of the device
+	 * @param accessToken   a unique authentication token
+	 * @return              a new Nanoleaf device, or null if the device has no
+	 *                      snapshot or the device type is not recognized
+	 */
+	public NanoleafDevice createDevice(String hostname, int port, String accessToken) {
+		DeviceSnapshot snapshot = get(hostname, port);
+		return snapshot != null ? NanoleafDevice.createDevice(snapshot, accessToken) : null;
+	}
+
+	/**
+	 * Adds a listener that is notified when a revalidated device differs from
+	 * its stored snapshot.
+	 * 
+	 * @param listener   the listener
+	 */
+	public void addListener(SnapshotListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a snapshot listener.
+	 * 
+	 * @param listener   the listener
+	 */
+	public void removeListener(SnapshotListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * <p>Asynchronously fetches the live device info and panel layout of a device
+	 * (see {@link NanoleafDevice#revalidateAsync(NanoleafCallback)}) and stores the
+	 * new snapshot. If it differs from the stored snapshot, the listeners are
+	 * notified. The store is not saved.</p>
+	 * 
+	 * <p>The callback status will return {@link NanoleafCallback#SUCCESS} on success,
+	 * or {@link NanoleafCallback#UNAUTHORIZED} if the access token is invalid.
+	 * If an internal API error occurs, it will instead return
+	 * {@link NanoleafCallback#FAILURE}.</p>
+	 * 
+	 * @param device     the device to revalidate
+	 * @param callback   returns the new snapshot, or null to not be notified
+	 */
+	public void revalidateAsync(NanoleafDevice device, NanoleafCallback<DeviceSnapshot> callback) {
+		device.revalidateAsync((status, data, d) -> {
+			if (status == NanoleafCallback.SUCCESS) {
+				DeviceSnapshot oldSnapshot = put(data);
+				if (!data.contentEquals(oldSnapshot)) {
+					boolean layoutChanged = oldSnapshot == null ||
+							!data.getLayout().contentEquals(oldSnapshot.getLayout());
+					for (SnapshotListener listener : listeners) {
+						listener.onSnapshotChanged(device, oldSnapshot, data, layoutChanged);
+					}
+				}
+			}
+			if (callback != null) {
+				callback.onCompleted(status, data, d);
+			}
+		});
+	}
+
+	/**
+	 * Converts the store to JSON.
+	 * 
+	 * @return   the store JSON
+	 */
+	public synchronized JSONObject toJSON() {
+		JSONObject json = new JSONObject();
+		json.put("version", VERSION);
+		JSONArray devices = new JSONArray();
+		for (DeviceSnapshot snapshot : snapshots.values()) {
+			devices.put(snapshot.toJSON());
+		}
+		json.put("devices", devices);
+		return json;
+	}
+}
@@ -1,13 +1,14 @@
 package io.github.rowak.nanoleafapi;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.json.JSONObject;
 
+import io.github.rowak.nanoleafapi.layout.PanelIndex;
+import io.github.rowak.nanoleafapi.layout.PanelLayout;
+
 /**
  * <p>Static effects are a subset of custom effects; they are effects with no motion.
  * A static effect is made up of frame definitions for each panel, where each frame has
@@ -76,7 +77,10 @@ public class StaticEffect extends CustomEffect {
 	public static class Builder {
 		
 		private List<Panel> panels;
-		private Map<Integer, Frame> frames;
+		private PanelIndex index;
+		/** The frame of each panel by panel slot, or null if the panel is not set */
+		private Frame[] frames;
+		private Map<Integer, Frame> frameMap;
 		
 		/**
 		 * Creates a new static effect builder.
@@ -86,8 +90,11 @@ public class StaticEffect extends CustomEffect {
 		 */
 		public Builder(NanoleafDevice device)
 				throws NanoleafException, IOException {
-			panels = device.getPanels();
-			frames = new HashMap<Integer, Frame>();
+			PanelLayout layout = device.getLayout();
+			panels = layout.getPanels();
+			index = layout.getIndex();
+			frames = new Frame[panels.size()];
+			frameMap = createFrameMap();
 		}
 		
 		/**
@@ -98,7 +105,9 @@ public class StaticEffect extends CustomEffect {
 		 */
 		public Builder(List<Panel> panels) {
 			this.panels = panels;
-			frames = new HashMap<Integer, Frame>();
+			index = PanelIndex.of(panels);
+			frames = new Frame[panels.size()];
+			frameMap = createFrameMap();
 		}
 		
 		/**
@@ -126,11 +135,27 @@ public class StaticEffect extends CustomEffect {
 		/**
 		 * Gets a map of the frames for this effect. The key represents the
 		 * panel and the value represents the frame for the corresponding panel.
+		 * The map is the one used by the builder, so changes to it affect the
+		 * effect. Only the panels of the builder can be added to the map.
 		 * 
 		 * @return   a map of the frames for this effect
 		 */
 		public Map<Integer, Frame> getFrames() {
-			return frames;
+			return frameMap;
+		}
+		
+		private Map<Integer, Frame> createFrameMap() {
+			return new SlotMap<Frame>(panels, index) {
+				@Override
+				Frame getSlot(int slot) {
+					return frames[slot];
+				}
+				
+				@Override
+				void setSlot(int slot, Frame value) {
+					frames[slot] = value;
+				}
+			};
 		}
 		
 		/**
@@ -142,20 +167,22 @@ public class StaticEffect extends CustomEffect {
 		 */
 		public StaticEffect build(String effectName)
 				throws NanoleafException, IOException {
+			int numPanels = 0;
+			for (Frame frame : frames) {
+				if (frame != null) {
+					numPanels++;
+				}
+			}
 			StringBuilder data = new StringBuilder();
-			data.append(frames.size());
-			List<Integer> ids = new ArrayList<Integer>(frames.keySet());
+			data.append(numPanels);
 			for (int i = 0; i < panels.size(); i++) {
-				if (ids.contains(panels.get(i).getId())) {
-					Panel panel = panels.get(i);
-					Frame frame = frames.get(panel.getId());
-					data.append(" " + panel.getId() + " 1");
-					data.append(" " +
-								frame.getRed() + " " +
-								frame.getGreen() + " " +
-								frame.getBlue() + " " +
-								0 + " " +
-								frame.getTransitionTime());
+				Frame frame = frames[i];
+				if (frame != null) {
+					data.append(' ').append(panels.get(i).getId()).append(" 1");
+					data.append(' ').append(frame.getRed())
+						.append(' ').append(frame.getGreen())
+						.append(' ').append(frame.getBlue())
+						.append(" 0 ").append(frame.getTransitionTime());
 				}
 			}
 			return createStaticEffect(effectName, data.toString());
@@ -180,13 +207,12 @@ public class StaticEffect extends CustomEffect {
 		 * @return          the current builder
 		 */
 		public Builder setPanel(int panelId, Frame frame) {
-			if (panelIdIsValid(panelId)) {
-				this.frames.put(panelId, frame);
-			}
-			else {
+			int slot = index.getSlot(panelId);
+			if (slot < 0) {
 				throw new IllegalArgumentException("Panel with id " +
 						panelId + " does not exist.");
 			}
+			this.frames[slot] = frame;
 			return this;
 		}
 		
@@ -197,19 +223,10 @@ public class StaticEffect extends CustomEffect {
 		 * @return        the current builder
 		 */
 		public Builder setAllPanels(Frame frame) {
-			for (Panel panel : this.panels) {
-				this.frames.put(panel.getId(), frame);
+			for (int i = 0; i < this.frames.length; i++) {
+				this.frames[i] = frame;
 			}
 			return this;
 		}
-		
-		private boolean panelIdIsValid(int panelId) {
-			for (Panel p : panels) {
-				if (p.getId() == panelId) {
-					return true;
-				}
-			}
-			return false;
-		}
 	}
 }
@@ -0,0 +1,440 @@
+package io.github.rowak.nanoleafapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.rowak.nanoleafapi.event.EffectsEvent;
+import io.github.rowak.nanoleafapi.event.EventDispatch;
+import io.github.rowak.nanoleafapi.event.EventRecord;
+import io.github.rowak.nanoleafapi.event.EventSubscription;
+import io.github.rowak.nanoleafapi.event.EventType;
+import io.github.rowak.nanoleafapi.event.LayoutEvent;
+import io.github.rowak.nanoleafapi.event.NanoleafEventRecordListener;
+import io.github.rowak.nanoleafapi.event.StateEvent;
+
+/**
+ * <p>An event listener made of typed handlers, each for one kind of event, such
+ * as brightness changes, taps on a panel or the selection of an effect. The
+ * handlers receive plain values instead of {@link io.github.rowak.nanoleafapi.event.Event}
+ * objects, so they do not need to cast or check the attributes of the events
+ * themselves.</p>
+ * 
+ * <p>The filters of the handlers are checked on the decoded event before it is
+ * copied or queued for the dispatch of the listener, so the events that no
+ * handler needs are dropped without allocating anything. The event stream only
+ * subscribes to the event types that have handlers.</p>
+ * 
+ * <p>For example:</p>
+ * <pre>
+ * EventSubscription s = new TypedEventListener.Builder(device)
+ *         .onState(StateEvent.BRIGHTNESS_ATTRIBUTE, brightness -&gt; ...)
+ *         .onTouch(TouchEvent.DOUBLE_TAP, panelId -&gt; ...)
+ *         .onEffectChange("Northern Lights", () -&gt; ...)
+ *         .setDispatch(EventDispatch.serial())
+ *         .register();
+ * </pre>
+ */
+public class TypedEventListener implements NanoleafEventRecordListener {
+
+	private final static Logger logger = LoggerFactory.getLogger(TypedEventListener.class);
+
+	/** Matches any gesture or panel in the touch filters of a builder */
+	public static final int ANY = -1;
+
+	private static final int INT_HANDLER = 0;
+	private static final int PANEL_HANDLER = 1;
+	private static final int BOOLEAN_HANDLER = 2;
+	private static final int STRING_HANDLER = 3;
+	private static final int SIGNAL_HANDLER = 4;
+
+	/* Indexed by event type id, null for the types without handlers */
+	private final Handler[][] handlers;
+	private final Runnable openHandler;
+	private final Runnable closedHandler;
+
+	private TypedEventListener(List<Handler> handlers, Runnable openHandler,
+			Runnable closedHandler) {
+		this.handlers = new Handler[5][];
+		for (EventType type : EventType.values()) {
+			List<Handler> typeHandlers = new ArrayList<Handler>();
+			for (Handler h : handlers) {
+				if (h.type == type) {
+					typeHandlers.add(h);
+				}
+			}
+			if (!typeHandlers.isEmpty()) {
+				this.handlers[type.getId()] = typeHandlers.toArray(new Handler[0]);
+			}
+		}
+		this.openHandler = openHandler;
+		this.closedHandler = closedHandler;
+	}
+
+	/**
+	 * Checks if the listener has any handlers for an event type.
+	 * 
+	 * @param type   the event type
+	 * @return       true if the type has handlers, or false otherwise
+	 */
+	public boolean handlesType(EventType type) {
+		return handlers[type.getId()] != null;
+	}
+
+	@Override
+	public void onOpen() {
+		if (openHandler != null) {
+			openHandler.run();
+		}
+	}
+
+	@Override
+	public void onClosed() {
+		if (closedHandler != null) {
+			closedHandler.run();
+		}
+	}
+
+	@Override
+	public void onEvent(EventRecord event) {
+		Handler[] typeHandlers = handlers[event.getType().getId()];
+		if (typeHandlers == null) {
+			return;
+		}
+		for (Handler h : typeHandlers) {
+			if (h.matches(event)) {
+				h.invoke(event);
+			}
+		}
+	}
+
+	/* Checks if any handler matches an event */
+	boolean accepts(EventRecord record) {
+		Handler[] typeHandlers = handlers[record.getType().getId()];
+		if (typeHandlers != null) {
+			for (Handler h : typeHandlers) {
+				if (h.matches(record)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/* Runs or queues the matching handlers of an event as one callback. The record
+	   is reused, so it is only copied once a handler matches and the callback is
+	   queued */
+	void route(EventRecord record, EventDispatcher dispatcher) {
+		Handler[] typeHandlers = handlers[record.getType().getId()];
+		if (typeHandlers == null || !accepts(record)) {
+			return;
+		}
+		if (dispatcher.isInline()) {
+			long start = System.nanoTime();
+			invokeMatching(typeHandlers, record);
+			dispatcher.delivered(System.nanoTime() - start);
+		}
+		else {
+			EventRecord copy = record.copy();
+			dispatcher.dispatchEvent(() -> invokeMatching(typeHandlers, copy));
+		}
+	}
+
+	private static void invokeMatching(Handler[] typeHandlers, EventRecord record) {
+		for (Handler h : typeHandlers) {
+			if (h.matches(record)) {
+				try {
+					h.invoke(record);
+				}
+				catch (RuntimeException e) {
+					logger.warn("An event handler threw an exception", e);
+				}
+			}
+		}
+	}
+
+	private static class Handler {
+
+		private final EventType type;
+		private final int attribute;
+		private final int valueKind;
+		private final int panelId;
+		private final String text;
+		private final int kind;
+		private final Object callback;
+
+		private Handler(EventType type, int attribute, int valueKind, int panelId,
+				String text, int kind, Object callback) {
+			if (callback == null) {
+				throw new IllegalArgumentException("The handler must not be null.");
+			}
+			this.type = type;
+			this.attribute = attribute;
+			this.valueKind = valueKind;
+			this.panelId = panelId;
+			this.text = text;
+			this.kind = kind;
+			this.callback = callback;
+		}
+
+		private boolean matches(EventRecord record) {
+			return (attribute == ANY || record.getAttribute() == attribute) &&
+					(valueKind == ANY || record.getValueKind() == valueKind) &&
+					(panelId == ANY || record.getPanelId() == panelId) &&
+					(text == null || text.equals(record.getString()));
+		}
+
+		@SuppressWarnings("unchecked")
+		private void invoke(EventRecord record) {
+			switch (kind) {
+				case INT_HANDLER:
+					((IntConsumer)callback).accept(record.getInt());
+					break;
+				case PANEL_HANDLER:
+					((IntConsumer)callback).accept(record.getPanelId());
+					break;
+				case BOOLEAN_HANDLER:
+					((Consumer<Boolean>)callback).accept(record.getBoolean());
+					break;
+				case STRING_HANDLER:
+					((Consumer<String>)callback).accept(record.getString());
+					break;
+				default:
+					((Runnable)callback).run();
+			}
+		}
+	}
+
+	/**
+	 * Builds typed event listeners for a device. Every handler adds a filter, and
+	 * a handler is only called for the events that pass its filter. Touch events
+	 * are only sent by devices with touch support.
+	 */
+	public static class Builder {
+
+		private final NanoleafDevice device;
+		private final List<Handler> handlers = new ArrayList<Handler>();
+		private Runnable openHandler, closedHandler;
+		private EventDispatch dispatch = EventDispatch.INLINE;
+
+		/**
+		 * Creates a new builder for a device.
+		 * 
+		 * @param device   the device to listen to
+		 */
+		public Builder(NanoleafDevice device) {
+			this.device = device;
+		}
+
+		/**
+		 * Handles the changes to an integer state attribute of the device.
+		 * 
+		 * @param attribute   {@link StateEvent#BRIGHTNESS_ATTRIBUTE},
+		 *                    {@link StateEvent#HUE_ATTRIBUTE},
+		 *                    {@link StateEvent#SATURATION_ATTRIBUTE} or
+		 *                    {@link StateEvent#CCT_ATTRIBUTE}
+		 * @param handler     receives the new value of the attribute
+		 * @return            the current builder
+		 * @throws IllegalArgumentException  If the attribute does not have an
+		 *                                   integer value
+		 */
+		public Builder onState(int attribute, IntConsumer handler) {
+			if (attribute != StateEvent.BRIGHTNESS_ATTRIBUTE &&
+					attribute != StateEvent.HUE_ATTRIBUTE &&
+					attribute != StateEvent.SATURATION_ATTRIBUTE &&
+					attribute != StateEvent.CCT_ATTRIBUTE) {
+				throw new IllegalArgumentException("The attribute " + attribute +
+						" does not have an integer value.");
+			}
+			return add(EventType.STATE, attribute, EventRecord.INT_VALUE, ANY, null,
+					INT_HANDLER, handler);
+		}
+
+		/**
+		 * Handles the device being turned on or off.
+		 * 
+		 * @param handler   receives true if the device was turned on, or false
+		 *                  if it was turned off
+		 * @return          the current builder
+		 */
+		public Builder onPowerChange(Consumer<Boolean> handler) {
+			return add(EventType.STATE, StateEvent.ON_ATTRIBUTE, EventRecord.BOOLEAN_VALUE,
+					ANY, null, BOOLEAN_HANDLER, handler);
+		}
+
+		/**
+		 * Handles the changes to the color mode of the device.
+		 * 
+		 * @param handler   receives the new color mode, such as "hs", "ct" or "effect"
+		 * @return          the current builder
+		 */
+		public Builder onColorModeChange(Consumer<String> handler) {
+			return add(EventType.STATE, StateEvent.COLORMODE_ATTRIBUTE, EventRecord.STRING_VALUE,
+					ANY, null, STRING_HANDLER, handler);
+		}
+
+		/**
+		 * Handles the changes to the layout of the panels. The new layout can be
+		 * read with {@link NanoleafDevice#getLayout()}.
+		 * 
+		 * @param handler   called when the layout changes
+		 * @return          the current builder
+		 */
+		public Builder onLayoutChange(Runnable handler) {
+			return add(EventType.LAYOUT, LayoutEvent.LAYOUT_ATTRIBUTE, ANY, ANY, null,
+					SIGNAL_HANDLER, handler);
+		}
+
+		/**
+		 * Handles the changes to the global orientation of the panels.
+		 * 
+		 * @param handler   receives the new global orientation in degrees
+		 * @return          the current builder
+		 */
+		public Builder onGlobalOrientationChange(IntConsumer handler) {
+			return add(EventType.LAYOUT, LayoutEvent.GLOBAL_ORIENTATION_ATTRIBUTE,
+					EventRecord.INT_VALUE, ANY, null, INT_HANDLER, handler);
+		}
+
+		/**
+		 * Handles the selection of an effect.
+		 * 
+		 * @param handler   receives the name of the selected effect
+		 * @return          the current builder
+		 */
+		public Builder onEffectChange(Consumer<String> handler) {
+			return add(EventType.EFFECTS, EffectsEvent.SELECTED_EFFECT_ATTRIBUTE,
+					EventRecord.STRING_VALUE, ANY, null, STRING_HANDLER, handler);
+		}
+
+		/**
+		 * Handles the selection of a specific effect.
+		 * 
+		 * @param effectName   the name of the effect
+		 * @param handler      called when the effect is selected
+		 * @return             the current builder
+		 */
+		public Builder onEffectChange(String effectName, Runnable handler) {
+			if (effectName == null) {
+				throw new IllegalArgumentException("The effect name must not be null.");
+			}
+			return add(EventType.EFFECTS, EffectsEvent.SELECTED_EFFECT_ATTRIBUTE,
+					EventRecord.STRING_VALUE, ANY, effectName, SIGNAL_HANDLER, handler);
+		}
+
+		/**
+		 * Handles the changes to the list of effects on the device, such as an
+		 * effect being added or deleted. The new list can be read with
+		 * {@link NanoleafDevice#getEffectsList()}.
+		 * 
+		 * @param handler   called when the effects list changes
+		 * @return          the current builder
+		 */
+		public Builder onEffectsListChange(Runnable handler) {
+			return add(EventType.EFFECTS, EffectsEvent.EFFECTS_LIST_ATTRIBUTE, ANY, ANY,
+					null, SIGNAL_HANDLER, handler);
+		}
+
+		/**
+		 * Handles a touch gesture on any panel.
+		 * 
+		 * @param gesture   the gesture, such as {@link io.github.rowak.nanoleafapi.event.TouchEvent#SINGLE_TAP},
+		 *                  or {@link TypedEventListener#ANY} for every gesture
+		 * @param handler   receives the id of the panel that was touched, or -1
+		 *                  for gestures that are not on a single panel (swipes)
+		 * @return          the current builder
+		 */
+		public Builder onTouch(int gesture, IntConsumer handler) {
+			return add(EventType.TOUCH, gesture, ANY, ANY, null, PANEL_HANDLER, handler);
+		}
+
+		/**
+		 * Handles a touch gesture on a specific panel.
+		 * 
+		 * @param gesture   the gesture, such as {@link io.github.rowak.nanoleafapi.event.TouchEvent#SINGLE_TAP},
+		 *                  or {@link TypedEventListener#ANY} for every gesture
+		 * @param panelId   the id of the panel
+		 * @param handler   called when the panel is touched with the gesture
+		 * @return          the current builder
+		 */
+		public Builder onTouch(int gesture, int panelId, Runnable handler) {
+			return add(EventType.TOUCH, gesture, EventRecord.INT_VALUE, panelId, null,
+					SIGNAL_HANDLER, handler);
+		}
+
+		/**
+		 * Runs a handler when the event stream is opened.
+		 * 
+		 * @param handler   called when the event stream is opened
+		 * @return          the current builder
+		 */
+		public Builder onOpen(Runnable handler) {
+			openHandler = handler;
+			return this;
+		}
+
+		/**
+		 * Runs a handler when the event stream is closed.
+		 * 
+		 * @param handler   called when the event stream is closed
+		 * @return          the current builder
+		 */
+		public Builder onClosed(Runnable handler) {
+			closedHandler = handler;
+			return this;
+		}
+
+		/**
+		 * Sets how the handlers are run (inline by default). Handlers that may
+		 * block should use a queued dispatch such as {@link EventDispatch#serial()}.
+		 * 
+		 * @param dispatch   the dispatch of the listener
+		 * @return           the current builder
+		 */
+		public Builder setDispatch(EventDispatch dispatch) {
+			this.dispatch = dispatch;
+			return this;
+		}
+
+		/**
+		 * Builds the listener without registering it. The listener can be registered
+		 * on the device with {@link NanoleafDevice#registerEventListener(
+		 * io.github.rowak.nanoleafapi.event.NanoleafEventListener, boolean, boolean,
+		 * boolean, boolean)}, using {@link TypedEventListener#handlesType(EventType)}
+		 * for the event flags.
+		 * 
+		 * @return   a new listener
+		 */
+		public TypedEventListener build() {
+			return new TypedEventListener(handlers, openHandler, closedHandler);
+		}
+
+		/**
+		 * Builds the listener and registers it on the device, subscribing to the
+		 * event types that have handlers.
+		 * 
+		 * @return   the subscription of the listener
+		 * @throws IllegalArgumentException  If no handlers were added
+		 */
+		public EventSubscription register() {
+			if (handlers.isEmpty()) {
+				throw new IllegalArgumentException("At least one event handler must be added.");
+			}
+			TypedEventListener listener = build();
+			return device.registerEventListener(listener,
+					listener.handlesType(EventType.STATE), listener.handlesType(EventType.LAYOUT),
+					listener.handlesType(EventType.EFFECTS), listener.handlesType(EventType.TOUCH),
+					dispatch);
+		}
+
+		private Builder add(EventType type, int attribute, int valueKind, int panelId,
+				String text, int kind, Object handler) {
+			handlers.add(new Handler(type, attribute, valueKind, panelId, text, kind, handler));
+			return this;
+		}
+	}
+}
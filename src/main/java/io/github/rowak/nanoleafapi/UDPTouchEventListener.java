@@ -4,10 +4,12 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.SocketException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.github.rowak.nanoleafapi.event.DetailedTouchEvent;
+import io.github.rowak.nanoleafapi.event.LatencyHistogram;
 import io.github.rowak.nanoleafapi.event.NanoleafTouchEventListener;
 
 // Internal UDP listener for low-latency touch events
@@ -23,8 +25,16 @@ class UDPTouchEventListener implements Runnable {
 	private List<NanoleafTouchEventListener> listeners;
 	private DatagramSocket socket;
 	
-	public UDPTouchEventListener(int port) throws SocketException {
-		listeners = new ArrayList<NanoleafTouchEventListener>();
+	/* The number of packets, and the time from receiving a packet to each listener
+	   returning. They are kept by the device, so they outlive this listener */
+	private AtomicLong packetCount;
+	private LatencyHistogram latency;
+	
+	public UDPTouchEventListener(int port, AtomicLong packetCount,
+			LatencyHistogram latency) throws SocketException {
+		listeners = new CopyOnWriteArrayList<NanoleafTouchEventListener>();
+		this.packetCount = packetCount;
+		this.latency = latency;
 		data = new byte[MAX_PACKET_LEN];
 		socket = new DatagramSocket(port);
 		listening = true;
@@ -34,6 +44,10 @@ class UDPTouchEventListener implements Runnable {
 		listeners.add(listener);
 	}
 	
+	public void removeListener(NanoleafTouchEventListener listener) {
+		listeners.remove(listener);
+	}
+	
 	public void close() {
 		listening = false;
 		socket.close();
@@ -46,7 +60,9 @@ class UDPTouchEventListener implements Runnable {
 			packet = new DatagramPacket(data, data.length);
 			try {
 				socket.receive(packet);
-				signalListeners(parsePacket(packet));
+				long receivedAt = System.nanoTime();
+				packetCount.incrementAndGet();
+				signalListeners(parsePacket(packet), receivedAt);
 			}
 			catch (IOException e) {}
 		}
@@ -83,10 +99,11 @@ class UDPTouchEventListener implements Runnable {
 		return ((bytes[i] & 0xFF) << 8) | (bytes[i+1] & 0xFF);
 	}
 	
-	private void signalListeners(DetailedTouchEvent[] events) {
-		for (int i = 0; i < listeners.size(); i++) {
-			if (listeners.get(i) != null) {
-				listeners.get(i).onEvent(events);
+	private void signalListeners(DetailedTouchEvent[] events, long receivedAt) {
+		for (NanoleafTouchEventListener listener : listeners) {
+			if (listener != null) {
+				listener.onEvent(events);
+				latency.record(System.nanoTime() - receivedAt);
 			}
 		}
 	}
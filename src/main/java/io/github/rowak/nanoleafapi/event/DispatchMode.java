@@ -0,0 +1,29 @@
+package io.github.rowak.nanoleafapi.event;
+
+/**
+ * The threads that the callbacks of an event listener are run on. See
+ * {@link EventDispatch}.
+ */
+public enum DispatchMode {
+	
+	/**
+	 * The callbacks are run directly on the thread that reads the event stream.
+	 * This has the lowest latency, but a slow listener delays the events of
+	 * every other listener of the device.
+	 */
+	INLINE,
+	
+	/**
+	 * The callbacks are run in order on a thread that belongs to the listener,
+	 * so a slow listener only delays its own events.
+	 */
+	SERIAL,
+	
+	/**
+	 * The callbacks are run in order on a pool of threads that is shared by all
+	 * listeners with this mode. This uses fewer threads than
+	 * {@link DispatchMode#SERIAL}, but a listener that blocks for a long time
+	 * also occupies a thread of the pool.
+	 */
+	SHARED_POOL
+}
@@ -0,0 +1,153 @@
+package io.github.rowak.nanoleafapi.event;
+
+/**
+ * An immutable snapshot of the event queue of a listener, returned by
+ * {@link EventSubscription#getStats()}. The lag of an event is the time from when
+ * it was received to when the listener was called with it, so a growing lag
+ * means that the listener cannot keep up with its events. The time that events
+ * wait in the queue and the time that the listener takes to handle them are
+ * also kept as histograms.
+ */
+public class DispatchStats {
+
+	private final int queueSize;
+	private final int maxQueueSize;
+	private final long deliveredCount;
+	private final long droppedCount;
+	private final long lastLagNanos;
+	private final long maxLagNanos;
+	private final long totalLagNanos;
+	private final long coalescedCount;
+	private final LatencyHistogram queueWait;
+	private final LatencyHistogram executionTime;
+
+	/**
+	 * Creates a new stats snapshot.
+	 * 
+	 * @param queueSize        the number of queued events
+	 * @param maxQueueSize     the largest number of events that have been queued
+	 * @param deliveredCount   the number of events that have been delivered
+	 * @param droppedCount     the number of events that have been dropped
+	 * @param lastLagNanos     the lag of the last delivered event, in nanoseconds
+	 * @param maxLagNanos      the largest lag of any delivered event, in nanoseconds
+	 * @param totalLagNanos    the sum of the lags of the delivered events, in nanoseconds
+	 * @param coalescedCount   the number of events that were replaced by a newer event
+	 * @param queueWait        the time that the delivered events waited in the queue
+	 * @param executionTime    the time that the listener took to handle the events
+	 */
+	public DispatchStats(int queueSize, int maxQueueSize, long deliveredCount,
+			long droppedCount, long lastLagNanos, long maxLagNanos, long totalLagNanos,
+			long coalescedCount, LatencyHistogram queueWait, LatencyHistogram executionTime) {
+		this.queueSize = queueSize;
+		this.maxQueueSize = maxQueueSize;
+		this.deliveredCount = deliveredCount;
+		this.droppedCount = droppedCount;
+		this.lastLagNanos = lastLagNanos;
+		this.maxLagNanos = maxLagNanos;
+		this.totalLagNanos = totalLagNanos;
+		this.coalescedCount = coalescedCount;
+		this.queueWait = queueWait;
+		this.executionTime = executionTime;
+	}
+
+	/**
+	 * Gets the number of events that are waiting to be delivered.
+	 * 
+	 * @return   the queue size
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * Gets the largest number of events that have been waiting at once.
+	 * 
+	 * @return   the largest queue size
+	 */
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	/**
+	 * Gets the number of events that have been delivered to the listener.
+	 * 
+	 * @return   the number of delivered events
+	 */
+	public long getDeliveredCount() {
+		return deliveredCount;
+	}
+
+	/**
+	 * Gets the number of events that have been dropped because the queue was full.
+	 * 
+	 * @return   the number of dropped events
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Gets the number of events that were not delivered because a newer event
+	 * with the same type and attribute replaced them while they were being
+	 * coalesced (see {@link EventDispatch#withCoalescing(long)}).
+	 * 
+	 * @return   the number of coalesced events
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount;
+	}
+
+	/**
+	 * Gets the lag of the last delivered event.
+	 * 
+	 * @return   the lag in nanoseconds
+	 */
+	public long getLastLagNanos() {
+		return lastLagNanos;
+	}
+
+	/**
+	 * Gets the largest lag of any delivered event.
+	 * 
+	 * @return   the lag in nanoseconds
+	 */
+	public long getMaxLagNanos() {
+		return maxLagNanos;
+	}
+
+	/**
+	 * Gets the average lag of the delivered events.
+	 * 
+	 * @return   the lag in nanoseconds, or 0 if no events have been delivered
+	 */
+	public long getAverageLagNanos() {
+		return deliveredCount > 0 ? totalLagNanos / deliveredCount : 0;
+	}
+
+	/**
+	 * Gets the time that the delivered events waited in the queue. Events that
+	 * are delivered inline are not queued, so they are not included.
+	 * 
+	 * @return   the queue wait histogram
+	 */
+	public LatencyHistogram getQueueWait() {
+		return queueWait;
+	}
+
+	/**
+	 * Gets the time that the listener took to handle each event.
+	 * 
+	 * @return   the execution time histogram
+	 */
+	public LatencyHistogram getExecutionTime() {
+		return executionTime;
+	}
+
+	@Override
+	public String toString() {
+		return "DispatchStats[queued=" + queueSize + ", delivered=" + deliveredCount +
+				", dropped=" + droppedCount + ", coalesced=" + coalescedCount + ", lastLag=" + lastLagNanos/1000 +
+				"us, maxLag=" + maxLagNanos/1000 + "us, p99Execution=" +
+				executionTime.getPercentileNanos(99)/1000 + "us]";
+	}
+}
@@ -0,0 +1,435 @@
+package io.github.rowak.nanoleafapi.event;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import io.github.rowak.nanoleafapi.JSONParserException;
+
+/**
+ * <p>A streaming decoder for the messages of a Nanoleaf event stream. Event
+ * messages have a small, fixed schema (<code>{"events":[{"attr":2,"value":50}]}</code>,
+ * or <code>gesture</code> and <code>panelId</code> for touch events), so they are
+ * scanned directly instead of being parsed into JSON objects first.</p>
+ * 
+ * <p>In the reusable mode ({@link EventDecoder#decode(int, String, Consumer)}),
+ * every event of a message is decoded into the same {@link EventRecord}, so state
+ * and touch events are decoded without allocating anything. Only string values
+ * and complex values (such as a new layout) allocate their text.</p>
+ * 
+ * <p>A decoder is not thread-safe, but it can be reused for any number of messages.</p>
+ */
+public final class EventDecoder {
+
+	private final EventRecord record;
+	private String message;
+	private int pos;
+	/* The last string that was read, either as a range of the message or, if it
+	   contained escapes, in the buffer */
+	private int stringStart, stringEnd;
+	private boolean escaped;
+	private StringBuilder buffer;
+
+	/**
+	 * Creates a new decoder.
+	 */
+	public EventDecoder() {
+		record = new EventRecord();
+	}
+
+	/**
+	 * Decodes the events of a message into a single reused record. The record
+	 * is only valid until the consumer returns, so it must be copied with
+	 * {@link EventRecord#copy()} to be kept.
+	 * 
+	 * @param typeId     the id of the event type (the id of the message),
+	 *                   see {@link EventType#getId()}
+	 * @param message    the message data
+	 * @param consumer   called with each event
+	 * @return           the number of events in the message
+	 * @throws JSONParserException       If the message is not valid
+	 * @throws IllegalArgumentException  If the event type id is not recognized
+	 */
+	public int decode(int typeId, String message, Consumer<EventRecord> consumer) {
+		EventType type = EventType.fromId(typeId);
+		if (type == null) {
+			throw new IllegalArgumentException("Unknown event type id " + typeId + ".");
+		}
+		this.message = message;
+		pos = 0;
+		try {
+			return decodeMessage(type, consumer);
+		}
+		finally {
+			this.message = null;
+		}
+	}
+
+	/**
+	 * Decodes the events of a message into new records.
+	 * 
+	 * @param typeId    the id of the event type (the id of the message)
+	 * @param message   the message data
+	 * @return          a new array of the events
+	 * @throws JSONParserException       If the message is not valid
+	 * @throws IllegalArgumentException  If the event type id is not recognized
+	 */
+	public EventRecord[] decode(int typeId, String message) {
+		EventRecord[][] result = {new EventRecord[1]};
+		int[] count = {0};
+		decode(typeId, message, r -> {
+			if (count[0] == result[0].length) {
+				result[0] = Arrays.copyOf(result[0], count[0]*2);
+			}
+			result[0][count[0]++] = r.copy();
+		});
+		return count[0] == result[0].length ? result[0] : Arrays.copyOf(result[0], count[0]);
+	}
+
+	/**
+	 * Decodes the events of a message into {@link Event}s, with the same values as
+	 * events created by {@link Event#fromJSON(EventType, org.json.JSONObject)}.
+	 * Only layouts and effect lists are parsed as JSON.
+	 * 
+	 * @param typeId    the id of the event type (the id of the message)
+	 * @param message   the message data
+	 * @return          a new array of the events
+	 * @throws JSONParserException       If the message is not valid
+	 * @throws IllegalArgumentException  If the event type id is not recognized
+	 */
+	public Event[] decodeEvents(int typeId, String message) {
+		Event[][] result = {new Event[1]};
+		int[] count = {0};
+		decode(typeId, message, r -> {
+			if (count[0] == result[0].length) {
+				result[0] = Arrays.copyOf(result[0], count[0]*2);
+			}
+			result[0][count[0]++] = r.toEvent();
+		});
+		return count[0] == result[0].length ? result[0] : Arrays.copyOf(result[0], count[0]);
+	}
+
+	private int decodeMessage(EventType type, Consumer<EventRecord> consumer) {
+		int count = 0;
+		expect('{');
+		if (peek() == '}') {
+			pos++;
+			return 0;
+		}
+		while (true) {
+			readString();
+			expect(':');
+			if (stringEquals("events") && peek() != 'n') {
+				count += decodeEvents(type, consumer);
+			}
+			else {
+				skipValue();
+			}
+			if (next() == '}') {
+				return count;
+			}
+			expectLast(',');
+		}
+	}
+
+	private int decodeEvents(EventType type, Consumer<EventRecord> consumer) {
+		expect('[');
+		if (peek() == ']') {
+			pos++;
+			return 0;
+		}
+		String attributeKey = type == EventType.TOUCH ? "gesture" : "attr";
+		String valueKey = type == EventType.TOUCH ? "panelId" : "value";
+		int count = 0;
+		while (true) {
+			record.clear(type);
+			expect('{');
+			if (peek() == '}') {
+				pos++;
+			}
+			else {
+				while (true) {
+					readString();
+					expect(':');
+					if (stringEquals(attributeKey)) {
+						record.setAttribute(readAttribute());
+					}
+					else if (stringEquals(valueKey)) {
+						readValue();
+					}
+					else {
+						skipValue();
+					}
+					if (next() == '}') {
+						break;
+					}
+					expectLast(',');
+				}
+			}
+			consumer.accept(record);
+			count++;
+			if (next() == ']') {
+				return count;
+			}
+			expectLast(',');
+		}
+	}
+
+	private int readAttribute() {
+		int start = skipWhitespace();
+		if (peek() == '"') {
+			// Quoted numbers are accepted, like JSONObject.getInt
+			readString();
+			try {
+				return Integer.parseInt(getString().trim());
+			}
+			catch (NumberFormatException e) {
+				throw error(start);
+			}
+		}
+		long value = readLong();
+		if (value != (int)value) {
+			throw error(start);
+		}
+		return (int)value;
+	}
+
+	/* Reads an integer, or throws an exception if the value is not an integer */
+	private long readLong() {
+		int start = skipWhitespace();
+		int end = skipNumber();
+		long value = parseLong(start, end);
+		if (value == Long.MIN_VALUE) {
+			throw error(start);
+		}
+		return value;
+	}
+
+	private void readValue() {
+		int start = skipWhitespace();
+		char c = peek();
+		if (c == '"') {
+			readString();
+			record.setText(EventRecord.STRING_VALUE, getString());
+		}
+		else if (c == 't' || c == 'f' || c == 'n') {
+			int end = skipLiteral();
+			if (matches(start, end, "true")) {
+				record.setBoolean(true);
+			}
+			else if (matches(start, end, "false")) {
+				record.setBoolean(false);
+			}
+			else if (matches(start, end, "null")) {
+				record.setNull();
+			}
+			else {
+				throw error(start);
+			}
+		}
+		else if (c == '-' || (c >= '0' && c <= '9')) {
+			int end = skipNumber();
+			long value = parseLong(start, end);
+			if (value != Long.MIN_VALUE) {
+				record.setLong(value);
+			}
+			else {
+				// Decimals and very large numbers are left to the JSON parser
+				record.setText(EventRecord.RAW_VALUE, message.substring(start, end));
+			}
+		}
+		else {
+			skipValue();
+			record.setText(EventRecord.RAW_VALUE, message.substring(start, pos));
+		}
+	}
+
+	/* Parses a plain integer, or returns Long.MIN_VALUE if the number has a
+	   fraction or an exponent or does not fit in a long */
+	private long parseLong(int start, int end) {
+		boolean negative = start < end && message.charAt(start) == '-';
+		int i = negative ? start + 1 : start;
+		if (i == end || end - i > 18) {
+			return Long.MIN_VALUE;
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			char c = message.charAt(i);
+			if (c < '0' || c > '9') {
+				return Long.MIN_VALUE;
+			}
+			value = value*10 + (c - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	/* Skips any JSON value */
+	private void skipValue() {
+		int start = skipWhitespace();
+		char c = peek();
+		if (c == '"') {
+			readString();
+		}
+		else if (c == '{' || c == '[') {
+			int depth = 0;
+			do {
+				c = peek();
+				if (c == '"') {
+					readString();
+					continue;
+				}
+				if (c == '{' || c == '[') {
+					depth++;
+				}
+				else if (c == '}' || c == ']') {
+					depth--;
+				}
+				pos++;
+			} while (depth > 0);
+		}
+		else if (c == '-' || (c >= '0' && c <= '9')) {
+			skipNumber();
+		}
+		else if (skipLiteral() == start) {
+			throw error(start);
+		}
+	}
+
+	private int skipNumber() {
+		int start = pos;
+		while (pos < message.length()) {
+			char c = message.charAt(pos);
+			if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' &&
+					c != 'e' && c != 'E') {
+				break;
+			}
+			pos++;
+		}
+		if (pos == start) {
+			throw error(start);
+		}
+		return pos;
+	}
+
+	private int skipLiteral() {
+		while (pos < message.length() && message.charAt(pos) >= 'a' &&
+				message.charAt(pos) <= 'z') {
+			pos++;
+		}
+		return pos;
+	}
+
+	/* Reads a string into stringStart and stringEnd, or into the buffer if it
+	   contains escapes */
+	private void readString() {
+		expect('"');
+		stringStart = pos;
+		escaped = false;
+		while (true) {
+			char c = charAt(pos++);
+			if (c == '"') {
+				stringEnd = pos - 1;
+				return;
+			}
+			if (c == '\\') {
+				break;
+			}
+		}
+		// Slow path for strings with escapes
+		if (buffer == null) {
+			buffer = new StringBuilder();
+		}
+		buffer.setLength(0);
+		buffer.append(message, stringStart, pos - 1);
+		escaped = true;
+		pos--;
+		while (true) {
+			char c = charAt(pos++);
+			if (c == '"') {
+				return;
+			}
+			if (c != '\\') {
+				buffer.append(c);
+				continue;
+			}
+			c = charAt(pos++);
+			switch (c) {
+				case 'b': buffer.append('\b'); break;
+				case 'f': buffer.append('\f'); break;
+				case 'n': buffer.append('\n'); break;
+				case 'r': buffer.append('\r'); break;
+				case 't': buffer.append('\t'); break;
+				case 'u':
+					if (pos + 4 > message.length()) {
+						throw error(pos);
+					}
+					try {
+						buffer.append((char)Integer.parseInt(message.substring(pos, pos + 4), 16));
+					}
+					catch (NumberFormatException e) {
+						throw error(pos);
+					}
+					pos += 4;
+					break;
+				default: buffer.append(c);
+			}
+		}
+	}
+
+	private boolean stringEquals(String s) {
+		if (escaped) {
+			return s.contentEquals(buffer);
+		}
+		return matches(stringStart, stringEnd, s);
+	}
+
+	private String getString() {
+		return escaped ? buffer.toString() : message.substring(stringStart, stringEnd);
+	}
+
+	private boolean matches(int start, int end, String s) {
+		return end - start == s.length() && message.regionMatches(start, s, 0, s.length());
+	}
+
+	private int skipWhitespace() {
+		while (pos < message.length() && message.charAt(pos) <= ' ') {
+			pos++;
+		}
+		return pos;
+	}
+
+	/* Gets the next non-whitespace character without consuming it */
+	private char peek() {
+		return charAt(skipWhitespace());
+	}
+
+	/* Consumes the next non-whitespace character */
+	private char next() {
+		char c = peek();
+		pos++;
+		return c;
+	}
+
+	private void expect(char c) {
+		if (next() != c) {
+			throw error(pos - 1);
+		}
+	}
+
+	/* Checks the character that was just consumed by next() */
+	private void expectLast(char c) {
+		if (message.charAt(pos - 1) != c) {
+			throw error(pos - 1);
+		}
+	}
+
+	private char charAt(int i) {
+		if (i >= message.length()) {
+			throw error(i);
+		}
+		return message.charAt(i);
+	}
+
+	private JSONParserException error(int at) {
+		return new JSONParserException("Invalid event message at character " + at + ".");
+	}
+}
@@ -0,0 +1,193 @@
+package io.github.rowak.nanoleafapi.event;
+
+import io.github.rowak.nanoleafapi.NanoleafDevice;
+
+/**
+ * <p>Configures how the callbacks of an event listener are run. By default,
+ * listeners are run inline on the thread that reads the event stream, so a
+ * listener that blocks (for example by sending a request to the device in
+ * response to a touch) delays the events of every other listener of the device.
+ * Such listeners should instead use a {@link DispatchMode#SERIAL} or
+ * {@link DispatchMode#SHARED_POOL} dispatch, which queues their events.</p>
+ * 
+ * <p>Queued events are always delivered in order. The queue of each listener holds
+ * at most a fixed number of events, and the {@link OverflowPolicy} decides what
+ * happens when it is full. The open and close callbacks are never dropped.</p>
+ * 
+ * <p>A dispatch can also coalesce bursts of events (see
+ * {@link EventDispatch#withCoalescing(long)}), such as the brightness events that
+ * are sent while a slider is dragged in the Nanoleaf app.</p>
+ * 
+ * <p>A dispatch is passed to
+ * {@link NanoleafDevice#registerEventListener(NanoleafEventListener, boolean,
+ * boolean, boolean, boolean, EventDispatch)}, and the queue of the listener can be
+ * monitored with {@link EventSubscription#getStats()}.</p>
+ */
+public final class EventDispatch {
+
+	/** The default queue capacity */
+	public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+	/** Runs the callbacks on the thread that reads the event stream */
+	public static final EventDispatch INLINE =
+			new EventDispatch(DispatchMode.INLINE, 0, OverflowPolicy.DROP_NEWEST, 0);
+
+	private final DispatchMode mode;
+	private final int queueCapacity;
+	private final OverflowPolicy overflowPolicy;
+	private final long coalesceWindowMillis;
+
+	private EventDispatch(DispatchMode mode, int queueCapacity, OverflowPolicy overflowPolicy,
+			long coalesceWindowMillis) {
+		this.mode = mode;
+		this.queueCapacity = queueCapacity;
+		this.overflowPolicy = overflowPolicy;
+		this.coalesceWindowMillis = coalesceWindowMillis;
+	}
+
+	/**
+	 * Creates a dispatch that runs the callbacks on a thread that belongs to
+	 * the listener.
+	 * 
+	 * @param queueCapacity    the largest number of queued events
+	 * @param overflowPolicy   decides what happens when the queue is full
+	 * @return                 a new dispatch
+	 * @throws IllegalArgumentException  If the capacity is less than 1
+	 */
+	public static EventDispatch serial(int queueCapacity, OverflowPolicy overflowPolicy) {
+		return create(DispatchMode.SERIAL, queueCapacity, overflowPolicy);
+	}
+
+	/**
+	 * Creates a dispatch that runs the callbacks on a thread that belongs to the
+	 * listener, with the default queue capacity. The oldest events are dropped
+	 * when the queue is full.
+	 * 
+	 * @return   a new dispatch
+	 */
+	public static EventDispatch serial() {
+		return serial(DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST);
+	}
+
+	/**
+	 * Creates a dispatch that runs the callbacks on a pool of threads that is
+	 * shared between listeners. The callbacks of a listener are still run one
+	 * at a time and in order.
+	 * 
+	 * @param queueCapacity    the largest number of queued events
+	 * @param overflowPolicy   decides what happens when the queue is full
+	 * @return                 a new dispatch
+	 * @throws IllegalArgumentException  If the capacity is less than 1
+	 */
+	public static EventDispatch sharedPool(int queueCapacity, OverflowPolicy overflowPolicy) {
+		return create(DispatchMode.SHARED_POOL, queueCapacity, overflowPolicy);
+	}
+
+	/**
+	 * Creates a dispatch that runs the callbacks on a pool of threads that is
+	 * shared between listeners, with the default queue capacity. The oldest
+	 * events are dropped when the queue is full.
+	 * 
+	 * @return   a new dispatch
+	 */
+	public static EventDispatch sharedPool() {
+		return sharedPool(DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST);
+	}
+
+	private static EventDispatch create(DispatchMode mode, int queueCapacity,
+			OverflowPolicy overflowPolicy) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("The queue capacity must be at least 1.");
+		}
+		if (overflowPolicy == null) {
+			throw new IllegalArgumentException("The overflow policy must not be null.");
+		}
+		return new EventDispatch(mode, queueCapacity, overflowPolicy, 0);
+	}
+
+	/**
+	 * <p>Creates a copy of this dispatch that coalesces bursts of state and layout
+	 * events. The first event with a type and attribute (such as
+	 * {@link StateEvent#BRIGHTNESS_ATTRIBUTE}) is delivered at once. The events with
+	 * the same type and attribute that arrive within the window after it are
+	 * collapsed into the latest one, which is delivered when the window ends, so
+	 * a burst is delivered at most once per window and always ends with its
+	 * latest value. Touch and effects events are never coalesced, and are
+	 * delivered at once.</p>
+	 * 
+	 * <p>Coalesced events are delivered one at a time, so a listener that receives
+	 * {@link Event} arrays receives one event per array. Listeners that override
+	 * {@link NanoleafEventListener#onMessage(com.here.oksse.ServerSentEvent, String,
+	 * String, String)} receive every message without coalescing.</p>
+	 * 
+	 * <p>The events that end a window are handed to the listener's queue by a
+	 * timer thread that is shared by every device, so coalescing needs a queued
+	 * dispatch that never blocks. It can't be used with an inline dispatch or with
+	 * the {@link OverflowPolicy#BLOCK} policy.</p>
+	 * 
+	 * @param windowMillis   the coalescing window in milliseconds, or 0 to not
+	 *                       coalesce events
+	 * @return               a new dispatch
+	 * @throws IllegalArgumentException  If the window is negative, or if it is
+	 *                                   positive and this dispatch is inline or
+	 *                                   uses the BLOCK policy
+	 */
+	public EventDispatch withCoalescing(long windowMillis) {
+		if (windowMillis < 0) {
+			throw new IllegalArgumentException("The coalescing window must not be negative.");
+		}
+		if (windowMillis > 0 && (mode == DispatchMode.INLINE ||
+				overflowPolicy == OverflowPolicy.BLOCK)) {
+			throw new IllegalArgumentException("Coalescing requires a queued dispatch " +
+					"that does not use the BLOCK policy.");
+		}
+		return new EventDispatch(mode, queueCapacity, overflowPolicy, windowMillis);
+	}
+
+	/**
+	 * Gets the threads that the callbacks are run on.
+	 * 
+	 * @return   the dispatch mode
+	 */
+	public DispatchMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Gets the largest number of events that can be queued for the listener.
+	 * 
+	 * @return   the queue capacity, or 0 for an inline dispatch
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * Gets the policy for events that arrive while the queue is full.
+	 * 
+	 * @return   the overflow policy
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Gets the window that bursts of events are coalesced in.
+	 * 
+	 * @return   the coalescing window in milliseconds, or 0 if events are not coalesced
+	 */
+	public long getCoalesceWindowMillis() {
+		return coalesceWindowMillis;
+	}
+
+	@Override
+	public String toString() {
+		String coalescing = coalesceWindowMillis > 0 ?
+				", coalescing " + coalesceWindowMillis + "ms" : "";
+		if (mode == DispatchMode.INLINE) {
+			return "EventDispatch[INLINE" + coalescing + "]";
+		}
+		return "EventDispatch[" + mode + ", " + queueCapacity + ", " + overflowPolicy +
+				coalescing + "]";
+	}
+}
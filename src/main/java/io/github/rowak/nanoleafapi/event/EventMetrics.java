@@ -0,0 +1,149 @@
+package io.github.rowak.nanoleafapi.event;
+
+import java.util.Collections;
+import java.util.Map;
+
+import io.github.rowak.nanoleafapi.NanoleafDevice;
+
+/**
+ * <p>An immutable snapshot of the metrics of the event path of a device, returned
+ * by {@link NanoleafDevice#getEventMetrics()}. The metrics follow an event from
+ * the device to the listeners, so they show where slow reactions come from:</p>
+ * <ul>
+ * <li>The number of messages received for each event type, and the number of
+ * times the event stream was reconnected, show what the device sends.</li>
+ * <li>The parse time shows the time spent decoding each message.</li>
+ * <li>The stats of each listener show the time that its events waited in its
+ * queue and the time that it took to handle them (see {@link DispatchStats}).</li>
+ * <li>For touch event streaming, the touch latency is the time from receiving a
+ * UDP packet to each touch listener returning.</li>
+ * </ul>
+ * 
+ * <p>The counts and histograms are kept since the device was created.</p>
+ */
+public class EventMetrics {
+
+	private final long[] receivedCounts;
+	private final LatencyHistogram parseTime;
+	private final long reconnectCount;
+	private final Map<EventSubscription, DispatchStats> listenerStats;
+	private final long touchPacketCount;
+	private final LatencyHistogram touchLatency;
+
+	/**
+	 * Creates a new metrics snapshot.
+	 * 
+	 * @param receivedCounts     the number of messages received for each event
+	 *                           type, indexed by {@link EventType#getId()}
+	 * @param parseTime          the time spent decoding each message
+	 * @param reconnectCount     the number of times the event stream was reconnected
+	 * @param listenerStats      the dispatch stats of each listener
+	 * @param touchPacketCount   the number of touch event streaming packets received
+	 * @param touchLatency       the time from receiving a touch event streaming
+	 *                           packet to each touch listener returning
+	 */
+	public EventMetrics(long[] receivedCounts, LatencyHistogram parseTime,
+			long reconnectCount, Map<EventSubscription, DispatchStats> listenerStats,
+			long touchPacketCount, LatencyHistogram touchLatency) {
+		this.receivedCounts = receivedCounts.clone();
+		this.parseTime = parseTime;
+		this.reconnectCount = reconnectCount;
+		this.listenerStats = Collections.unmodifiableMap(listenerStats);
+		this.touchPacketCount = touchPacketCount;
+		this.touchLatency = touchLatency;
+	}
+
+	/**
+	 * Gets the number of messages received for an event type. A message may
+	 * contain more than one event.
+	 * 
+	 * @param type   the event type
+	 * @return       the number of messages
+	 */
+	public long getReceivedCount(EventType type) {
+		return receivedCounts[type.getId()];
+	}
+
+	/**
+	 * Gets the number of messages received for all of the event types.
+	 * 
+	 * @return   the number of messages
+	 */
+	public long getReceivedCount() {
+		long total = 0;
+		for (long count : receivedCounts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the time spent decoding each message, not including the time spent
+	 * in the listeners. This includes decoding messages to keep the device state
+	 * up to date (see {@link NanoleafDevice#getEventState()}). Messages that were
+	 * not decoded at all are not included.
+	 * 
+	 * @return   the parse time histogram
+	 */
+	public LatencyHistogram getParseTime() {
+		return parseTime;
+	}
+
+	/**
+	 * Gets the number of times the event stream was reconnected after it was
+	 * lost (see {@link NanoleafDevice#enableEventReconnection()}).
+	 * 
+	 * @return   the number of reconnects
+	 */
+	public long getReconnectCount() {
+		return reconnectCount;
+	}
+
+	/**
+	 * Gets the dispatch stats of the listeners that are currently registered,
+	 * including the queue wait and execution time of each listener.
+	 * 
+	 * @return   the stats of each listener, by subscription
+	 */
+	public Map<EventSubscription, DispatchStats> getListenerStats() {
+		return listenerStats;
+	}
+
+	/**
+	 * Gets the number of packets received by touch event streaming (see
+	 * {@link NanoleafDevice#enableTouchEventStreaming(int)}).
+	 * 
+	 * @return   the number of packets, or 0 if touch event streaming has never
+	 *           been enabled
+	 */
+	public long getTouchPacketCount() {
+		return touchPacketCount;
+	}
+
+	/**
+	 * Gets the time from receiving a touch event streaming packet to each touch
+	 * listener returning.
+	 * 
+	 * @return   the touch latency histogram, which is empty if touch event
+	 *           streaming has never been enabled
+	 */
+	public LatencyHistogram getTouchLatency() {
+		return touchLatency;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("EventMetrics[");
+		for (EventType type : EventType.values()) {
+			sb.append(type).append("=").append(getReceivedCount(type)).append(", ");
+		}
+		sb.append("parseTime=").append(parseTime);
+		sb.append(", reconnects=").append(reconnectCount);
+		sb.append(", listeners=").append(listenerStats.size());
+		if (touchPacketCount > 0) {
+			sb.append(", touchPackets=").append(touchPacketCount);
+			sb.append(", touchLatency=").append(touchLatency);
+		}
+		return sb.append("]").toString();
+	}
+}
@@ -0,0 +1,262 @@
+package io.github.rowak.nanoleafapi.event;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * <p>A primitive-typed event decoded by an {@link EventDecoder}. Unlike an
+ * {@link Event}, the value of a record is not boxed: integer and boolean values
+ * are stored as primitives, so state and touch events can be decoded without
+ * allocating anything.</p>
+ * 
+ * <p>Records given to a {@link NanoleafEventRecordListener} are reused for the
+ * next event, so they must be copied with {@link EventRecord#copy()} to be kept.</p>
+ */
+public final class EventRecord {
+
+	/** The event has no value, or its value is null. */
+	public static final int NO_VALUE = 0;
+
+	/** The event value is an integer, available from {@link EventRecord#getInt()}
+	 *  and {@link EventRecord#getLong()}. */
+	public static final int INT_VALUE = 1;
+
+	/** The event value is a boolean, available from {@link EventRecord#getBoolean()}. */
+	public static final int BOOLEAN_VALUE = 2;
+
+	/** The event value is a string, available from {@link EventRecord#getString()}. */
+	public static final int STRING_VALUE = 3;
+
+	/** The event value is any other JSON value (such as an object, an array or a
+	 *  decimal number), available as JSON text from {@link EventRecord#getRawValue()}. */
+	public static final int RAW_VALUE = 4;
+
+	private EventType type;
+	private int attribute;
+	private int valueKind;
+	private long longValue;
+	private String text;
+
+	/**
+	 * Creates a new empty record. Records are usually created by an
+	 * {@link EventDecoder}.
+	 */
+	public EventRecord() {
+		clear(null);
+	}
+
+	/* Resets the record before decoding an event into it */
+	void clear(EventType type) {
+		this.type = type;
+		attribute = Event.UNKNOWN_ATTRIBUTE;
+		valueKind = NO_VALUE;
+		longValue = 0;
+		text = null;
+	}
+
+	void setAttribute(int attribute) {
+		this.attribute = attribute;
+	}
+
+	void setLong(long value) {
+		valueKind = INT_VALUE;
+		longValue = value;
+		text = null;
+	}
+
+	void setBoolean(boolean value) {
+		valueKind = BOOLEAN_VALUE;
+		longValue = value ? 1 : 0;
+		text = null;
+	}
+
+	void setText(int kind, String value) {
+		valueKind = kind;
+		longValue = 0;
+		text = value;
+	}
+
+	void setNull() {
+		valueKind = NO_VALUE;
+		longValue = 0;
+		text = null;
+	}
+
+	/**
+	 * Gets the event type.
+	 * 
+	 * @return   the event type
+	 */
+	public EventType getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the event attribute. For touch events, this is the gesture.
+	 * 
+	 * @return   the event attribute, or {@link Event#UNKNOWN_ATTRIBUTE}
+	 *           if the event has no attribute
+	 */
+	public int getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * Gets the kind of the event value.
+	 * 
+	 * @return   {@link EventRecord#NO_VALUE}, {@link EventRecord#INT_VALUE},
+	 *           {@link EventRecord#BOOLEAN_VALUE}, {@link EventRecord#STRING_VALUE}
+	 *           or {@link EventRecord#RAW_VALUE}
+	 */
+	public int getValueKind() {
+		return valueKind;
+	}
+
+	/**
+	 * Checks if the event has a value.
+	 * 
+	 * @return   true if the event has a non-null value, or false otherwise
+	 */
+	public boolean hasValue() {
+		return valueKind != NO_VALUE;
+	}
+
+	/**
+	 * Gets an integer or boolean event value as an int. Booleans are 1 for true
+	 * and 0 for false.
+	 * 
+	 * @return   the event value, or 0 if the value is not an integer or a boolean
+	 */
+	public int getInt() {
+		return (int)longValue;
+	}
+
+	/**
+	 * Gets an integer or boolean event value as a long. Booleans are 1 for true
+	 * and 0 for false.
+	 * 
+	 * @return   the event value, or 0 if the value is not an integer or a boolean
+	 */
+	public long getLong() {
+		return longValue;
+	}
+
+	/**
+	 * Gets a boolean event value, such as the value of a
+	 * {@link StateEvent#ON_ATTRIBUTE} event. Integers are true if they are not 0.
+	 * 
+	 * @return   the event value, or false if the value is not a boolean
+	 *           or an integer
+	 */
+	public boolean getBoolean() {
+		return longValue != 0;
+	}
+
+	/**
+	 * Gets a string event value, such as the name of a selected effect.
+	 * 
+	 * @return   the event value, or null if the value is not a string
+	 */
+	public String getString() {
+		return valueKind == STRING_VALUE ? text : null;
+	}
+
+	/**
+	 * Gets the JSON text of an event value that is not an integer, boolean or
+	 * string, such as the new layout of a {@link LayoutEvent#LAYOUT_ATTRIBUTE} event.
+	 * 
+	 * @return   the JSON text of the event value, or null if the value is of
+	 *           another kind
+	 */
+	public String getRawValue() {
+		return valueKind == RAW_VALUE ? text : null;
+	}
+
+	/**
+	 * Gets the gesture of a touch event.
+	 * 
+	 * @return   the gesture, such as {@link TouchEvent#SINGLE_TAP}
+	 */
+	public int getGesture() {
+		return attribute;
+	}
+
+	/**
+	 * Gets the ID of the panel of a touch event.
+	 * 
+	 * @return   the panel ID, or -1 if no panel was recorded
+	 */
+	public int getPanelId() {
+		return valueKind == INT_VALUE ? (int)longValue : -1;
+	}
+
+	/**
+	 * Creates a copy of the record that can be kept after the listener returns.
+	 * 
+	 * @return   a new record
+	 */
+	public EventRecord copy() {
+		EventRecord copy = new EventRecord();
+		copy.type = type;
+		copy.attribute = attribute;
+		copy.valueKind = valueKind;
+		copy.longValue = longValue;
+		copy.text = text;
+		return copy;
+	}
+
+	/**
+	 * Converts the record to an event, with the same value types as an event
+	 * created by {@link Event#fromJSON(EventType, JSONObject)}.
+	 * 
+	 * @return   a new event
+	 */
+	public Event toEvent() {
+		if (valueKind == RAW_VALUE) {
+			// Only layouts, effect lists and unusual values need the JSON parser
+			JSONObject json = new JSONObject();
+			json.put(type == EventType.TOUCH ? "gesture" : "attr", attribute);
+			json.put(type == EventType.TOUCH ? "panelId" : "value",
+					new JSONTokener(text).nextValue());
+			return Event.fromJSON(type, json);
+		}
+		Object value = getBoxedValue();
+		switch (type) {
+			case STATE: return new StateEvent(attribute, value);
+			case LAYOUT:
+				return new LayoutEvent(attribute,
+						attribute == LayoutEvent.GLOBAL_ORIENTATION_ATTRIBUTE ? value : null);
+			case EFFECTS:
+				return new EffectsEvent(attribute,
+						attribute == EffectsEvent.SELECTED_EFFECT_ATTRIBUTE ? value : null);
+			case TOUCH: return new TouchEvent(attribute, value);
+			default: return null;
+		}
+	}
+
+	/* The value boxed the same way as by the JSON parser */
+	private Object getBoxedValue() {
+		switch (valueKind) {
+			case INT_VALUE:
+				if (longValue == (int)longValue) {
+					return Integer.valueOf((int)longValue);
+				}
+				return Long.valueOf(longValue);
+			case BOOLEAN_VALUE: return Boolean.valueOf(longValue != 0);
+			case STRING_VALUE: return text;
+			default: return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		String value;
+		switch (valueKind) {
+			case INT_VALUE: value = Long.toString(longValue); break;
+			case BOOLEAN_VALUE: value = Boolean.toString(longValue != 0); break;
+			case STRING_VALUE: case RAW_VALUE: value = text; break;
+			default: value = "null";
+		}
+		return "EventRecord[" + type + ", " + attribute + ", " + value + "]";
+	}
+}
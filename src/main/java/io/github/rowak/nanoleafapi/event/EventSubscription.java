@@ -0,0 +1,32 @@
+package io.github.rowak.nanoleafapi.event;
+
+import com.here.oksse.ServerSentEvent;
+
+/**
+ * A listener's registration on the event stream of a device. Closing the
+ * subscription removes the listener; the listener's queued events are still
+ * delivered before {@link NanoleafEventListener#onClosed()} is called.
+ */
+public interface EventSubscription extends ServerSentEvent {
+
+	/**
+	 * Gets the registered listener.
+	 * 
+	 * @return   the event listener
+	 */
+	public NanoleafEventListener getListener();
+
+	/**
+	 * Gets how the callbacks of the listener are run.
+	 * 
+	 * @return   the event dispatch
+	 */
+	public EventDispatch getDispatch();
+
+	/**
+	 * Gets a snapshot of the event queue and lag of the listener.
+	 * 
+	 * @return   the dispatch stats
+	 */
+	public DispatchStats getStats();
+}
@@ -19,5 +19,28 @@ public enum EventType {
 	
 	/** Listens for physical interactions with the Nanoleaf panels, such as
 	 *  single/double taps and swipes. */
-	TOUCH
+	TOUCH;
+	
+	/* values() copies the array on every call, so it is only called once */
+	private static final EventType[] TYPES = values();
+	
+	/**
+	 * Gets the id of the event type, which is used to subscribe to the type
+	 * and to identify the messages of the type in an event stream.
+	 * 
+	 * @return   the event type id, from 1 to 4
+	 */
+	public int getId() {
+		return ordinal() + 1;
+	}
+	
+	/**
+	 * Gets an event type from its id.
+	 * 
+	 * @param id   the event type id
+	 * @return     the event type, or null if the id is not recognized
+	 */
+	public static EventType fromId(int id) {
+		return id >= 1 && id <= TYPES.length ? TYPES[id - 1] : null;
+	}
 }
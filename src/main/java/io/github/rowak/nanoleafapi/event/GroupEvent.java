@@ -0,0 +1,89 @@
+package io.github.rowak.nanoleafapi.event;
+
+import io.github.rowak.nanoleafapi.NanoleafDevice;
+
+/**
+ * An event from one of the devices of a group event stream, tagged with its
+ * device and the time that it was received. The events of a stream are numbered
+ * by a sequence that increases by one for every event, in the order that they
+ * were received from all of the devices.
+ */
+public class GroupEvent {
+
+	private final long sequence;
+	private final long timestamp;
+	private final String deviceName;
+	private final NanoleafDevice device;
+	private final Event event;
+
+	/**
+	 * Creates a new group event.
+	 * 
+	 * @param sequence     the sequence number of the event in its stream
+	 * @param timestamp    the time that the event was received, in milliseconds
+	 *                     since the epoch
+	 * @param deviceName   the name of the device in the group
+	 * @param device       the device that sent the event
+	 * @param event        the event
+	 */
+	public GroupEvent(long sequence, long timestamp, String deviceName,
+			NanoleafDevice device, Event event) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.deviceName = deviceName;
+		this.device = device;
+		this.event = event;
+	}
+
+	/**
+	 * Gets the sequence number of the event in its stream.
+	 * 
+	 * @return   the sequence number
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Gets the time that the event was received.
+	 * 
+	 * @return   the timestamp in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Gets the name of the device that sent the event, as it is named in
+	 * the group.
+	 * 
+	 * @return   the device name
+	 */
+	public String getDeviceName() {
+		return deviceName;
+	}
+
+	/**
+	 * Gets the device that sent the event.
+	 * 
+	 * @return   the device
+	 */
+	public NanoleafDevice getDevice() {
+		return device;
+	}
+
+	/**
+	 * Gets the event.
+	 * 
+	 * @return   the event
+	 */
+	public Event getEvent() {
+		return event;
+	}
+
+	@Override
+	public String toString() {
+		return "GroupEvent[" + sequence + " at " + timestamp + " from " + deviceName +
+				": " + event + "]";
+	}
+}
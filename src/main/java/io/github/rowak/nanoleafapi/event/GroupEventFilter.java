@@ -0,0 +1,175 @@
+package io.github.rowak.nanoleafapi.event;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * <p>Selects the events of a group event stream by device, event type and
+ * attribute. The devices and event types of a filter decide which event streams
+ * are opened, so events that are not needed are never sent by the devices. The
+ * attributes are checked before the events are decoded.</p>
+ * 
+ * <p>For example, to only receive the brightness changes and touch events of
+ * two devices:</p>
+ * <pre>
+ * GroupEventFilter filter = new GroupEventFilter.Builder()
+ *         .addDevice("desk")
+ *         .addDevice("wall")
+ *         .addAttribute(EventType.STATE, StateEvent.BRIGHTNESS_ATTRIBUTE)
+ *         .addType(EventType.TOUCH)
+ *         .build();
+ * </pre>
+ */
+public class GroupEventFilter {
+
+	/** Accepts every event from every device */
+	public static final GroupEventFilter ALL = new Builder().build();
+
+	private final Set<String> devices;
+	private final int types;
+	private final long[] attributes;
+
+	private GroupEventFilter(Set<String> devices, int types, long[] attributes) {
+		this.devices = devices;
+		this.types = types;
+		this.attributes = attributes;
+	}
+
+	/**
+	 * Gets the names of the devices that are accepted.
+	 * 
+	 * @return   the device names, or an empty set if every device is accepted
+	 */
+	public Set<String> getDevices() {
+		return devices;
+	}
+
+	/**
+	 * Checks if the events of a device are accepted.
+	 * 
+	 * @param deviceName   the name of the device in the group
+	 * @return             true if the device is accepted, or false otherwise
+	 */
+	public boolean acceptsDevice(String deviceName) {
+		return devices.isEmpty() || devices.contains(deviceName);
+	}
+
+	/**
+	 * Checks if any events of a type are accepted.
+	 * 
+	 * @param type   the event type
+	 * @return       true if the type is accepted, or false otherwise
+	 */
+	public boolean acceptsType(EventType type) {
+		return (types & (1 << type.getId())) != 0;
+	}
+
+	/**
+	 * Checks if an event is accepted. For touch events, the attribute is
+	 * the gesture.
+	 * 
+	 * @param type        the type of the event
+	 * @param attribute   the attribute of the event
+	 * @return            true if the event is accepted, or false otherwise
+	 */
+	public boolean accepts(EventType type, int attribute) {
+		if (!acceptsType(type)) {
+			return false;
+		}
+		long mask = attributes[type.getId()];
+		return mask == 0 || (attribute >= 0 && attribute < 64 && (mask & (1L << attribute)) != 0);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("GroupEventFilter[devices=");
+		sb.append(devices.isEmpty() ? "all" : devices.toString());
+		for (EventType type : EventType.values()) {
+			if (acceptsType(type)) {
+				sb.append(", ").append(type);
+				long mask = attributes[type.getId()];
+				if (mask != 0) {
+					sb.append(" attributes=").append(Long.toBinaryString(mask));
+				}
+			}
+		}
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * Builds group event filters. A filter without any devices accepts every
+	 * device, and a filter without any event types or attributes accepts every
+	 * event type.
+	 */
+	public static class Builder {
+
+		private Set<String> devices = new LinkedHashSet<String>();
+		private int types;
+		private long[] attributes = new long[5];
+
+		/**
+		 * Accepts the events of a device.
+		 * 
+		 * @param name   the name of the device in the group
+		 * @return       the current builder
+		 */
+		public Builder addDevice(String name) {
+			devices.add(name);
+			return this;
+		}
+
+		/**
+		 * Accepts every event of a type.
+		 * 
+		 * @param type   the event type
+		 * @return       the current builder
+		 */
+		public Builder addType(EventType type) {
+			types |= 1 << type.getId();
+			attributes[type.getId()] = 0;
+			return this;
+		}
+
+		/**
+		 * Accepts the events of a type with an attribute, such as
+		 * {@link StateEvent#BRIGHTNESS_ATTRIBUTE}. For touch events, the attribute
+		 * is the gesture, such as {@link TouchEvent#SINGLE_TAP}. If every event of
+		 * the type is already accepted, this has no effect.
+		 * 
+		 * @param type        the event type
+		 * @param attribute   the event attribute (from 0 to 63)
+		 * @return            the current builder
+		 * @throws IllegalArgumentException  If the attribute is out of range
+		 */
+		public Builder addAttribute(EventType type, int attribute) {
+			if (attribute < 0 || attribute >= 64) {
+				throw new IllegalArgumentException("The attribute must be from 0 to 63.");
+			}
+			int bit = 1 << type.getId();
+			if ((types & bit) != 0 && attributes[type.getId()] == 0) {
+				return this;
+			}
+			types |= bit;
+			attributes[type.getId()] |= 1L << attribute;
+			return this;
+		}
+
+		/**
+		 * Builds the filter.
+		 * 
+		 * @return   a new filter
+		 */
+		public GroupEventFilter build() {
+			int t = types;
+			if (t == 0) {
+				for (EventType type : EventType.values()) {
+					t |= 1 << type.getId();
+				}
+			}
+			return new GroupEventFilter(
+					Collections.unmodifiableSet(new LinkedHashSet<String>(devices)),
+					t, attributes.clone());
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package io.github.rowak.nanoleafapi.event;
+
+import io.github.rowak.nanoleafapi.NanoleafGroup;
+
+/**
+ * A listener for the merged events of the devices of a group. A listener can
+ * be registered on a group using the
+ * {@link NanoleafGroup#openEventStream(GroupEventFilter, GroupEventListener)}
+ * method.
+ */
+public interface GroupEventListener {
+
+	/**
+	 * Called when an event has been received from one of the devices. The
+	 * events of a stream are delivered one at a time, in the order that they
+	 * were received.
+	 * 
+	 * @param event   the received event
+	 */
+	public void onEvent(GroupEvent event);
+}
@@ -0,0 +1,128 @@
+package io.github.rowak.nanoleafapi.event;
+
+import io.github.rowak.nanoleafapi.JSONParserException;
+
+/**
+ * An event message or a group of detailed touch events that was recorded by
+ * the event history of a device. Entries are numbered by a sequence that
+ * increases by one for every entry of the history, in the order they were
+ * received.
+ */
+public class HistoryEntry {
+
+	private final long sequence;
+	private final long timestamp;
+	private final EventType type;
+	private final String message;
+	private final DetailedTouchEvent[] touchEvents;
+
+	/**
+	 * Creates a new history entry for an event message.
+	 * 
+	 * @param sequence    the sequence number of the entry
+	 * @param timestamp   the time that the message was received, in milliseconds
+	 *                    since the epoch
+	 * @param type        the type of the events in the message
+	 * @param message     the JSON event message
+	 */
+	public HistoryEntry(long sequence, long timestamp, EventType type, String message) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.type = type;
+		this.message = message;
+		this.touchEvents = null;
+	}
+
+	/**
+	 * Creates a new history entry for detailed touch events.
+	 * 
+	 * @param sequence      the sequence number of the entry
+	 * @param timestamp     the time that the events were received, in milliseconds
+	 *                      since the epoch
+	 * @param touchEvents   the detailed touch events
+	 */
+	public HistoryEntry(long sequence, long timestamp, DetailedTouchEvent[] touchEvents) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.type = null;
+		this.message = null;
+		this.touchEvents = touchEvents;
+	}
+
+	/**
+	 * Gets the sequence number of the entry.
+	 * 
+	 * @return   the sequence number
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Gets the time that the entry was received.
+	 * 
+	 * @return   the timestamp in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Gets the type of the events of the entry.
+	 * 
+	 * @return   the event type, or null if the entry holds detailed touch events
+	 */
+	public EventType getType() {
+		return type;
+	}
+
+	/**
+	 * Checks if the entry holds detailed touch events from low-latency touch
+	 * event streaming.
+	 * 
+	 * @return   true if the entry holds detailed touch events, or false if it
+	 *           holds an event message
+	 */
+	public boolean isDetailedTouch() {
+		return touchEvents != null;
+	}
+
+	/**
+	 * Gets the JSON event message, as it was received from the device.
+	 * 
+	 * @return   the event message, or null if the entry holds detailed touch events
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Decodes the events of the event message.
+	 * 
+	 * @return                      the events, or null if the entry holds detailed
+	 *                              touch events
+	 * @throws JSONParserException  If the message is invalid
+	 */
+	public Event[] getEvents() {
+		if (message == null) {
+			return null;
+		}
+		return new EventDecoder().decodeEvents(type.getId(), message);
+	}
+
+	/**
+	 * Gets the detailed touch events.
+	 * 
+	 * @return   the detailed touch events, or null if the entry holds an event message
+	 */
+	public DetailedTouchEvent[] getTouchEvents() {
+		return touchEvents != null ? touchEvents.clone() : null;
+	}
+
+	@Override
+	public String toString() {
+		return "HistoryEntry[" + sequence + " at " + timestamp + ", " +
+				(touchEvents != null ? touchEvents.length + " detailed touch events" :
+				type + ": " + message) + "]";
+	}
+}
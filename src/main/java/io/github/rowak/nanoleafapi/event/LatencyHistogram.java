@@ -0,0 +1,160 @@
+package io.github.rowak.nanoleafapi.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A histogram of durations with power-of-two buckets. Bucket 0 counts the
+ * durations of 0 nanoseconds, and bucket i counts the durations from
+ * 2<sup>i-1</sup> up to 2<sup>i</sup> nanoseconds, so percentiles are accurate
+ * to within a factor of two.</p>
+ * 
+ * <p>Recording a duration does not lock or allocate anything, so histograms can
+ * be updated on the event threads. Reading a histogram while it is being updated
+ * gives approximate values; use {@link LatencyHistogram#snapshot()} to get a copy
+ * that does not change.</p>
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets;
+	private final LongAdder count;
+	private final LongAdder totalNanos;
+	private final AtomicLong maxNanos;
+
+	/**
+	 * Creates a new empty histogram.
+	 */
+	public LatencyHistogram() {
+		buckets = new AtomicLongArray(BUCKETS);
+		count = new LongAdder();
+		totalNanos = new LongAdder();
+		maxNanos = new AtomicLong();
+	}
+
+	/**
+	 * Records a duration. Negative durations are recorded as 0.
+	 * 
+	 * @param nanos   the duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+		count.increment();
+		totalNanos.add(nanos);
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+
+	/**
+	 * Gets the number of recorded durations.
+	 * 
+	 * @return   the number of durations
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Gets the sum of the recorded durations.
+	 * 
+	 * @return   the sum in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/**
+	 * Gets the longest recorded duration.
+	 * 
+	 * @return   the duration in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * Gets the average of the recorded durations.
+	 * 
+	 * @return   the duration in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getMeanNanos() {
+		long n = count.sum();
+		return n > 0 ? totalNanos.sum() / n : 0;
+	}
+
+	/**
+	 * Gets an upper bound of a percentile of the recorded durations, which is at
+	 * most twice the real value.
+	 * 
+	 * @param percentile   the percentile, from 0 to 100
+	 * @return             the duration in nanoseconds, or 0 if nothing has been
+	 *                     recorded
+	 * @throws IllegalArgumentException  If the percentile is out of range
+	 */
+	public long getPercentileNanos(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("The percentile must be from 0 to 100.");
+		}
+		long[] counts = getBucketCounts();
+		long n = 0;
+		for (long c : counts) {
+			n += c;
+		}
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				long bound = i == 0 ? 0 : (i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+				return Math.min(bound, getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	/**
+	 * Gets the number of durations in each bucket.
+	 * 
+	 * @return   the counts of the 64 buckets
+	 */
+	public long[] getBucketCounts() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+		}
+		return counts;
+	}
+
+	/**
+	 * Creates a copy of the histogram that is not changed by later durations.
+	 * 
+	 * @return   a new histogram
+	 */
+	public LatencyHistogram snapshot() {
+		LatencyHistogram copy = new LatencyHistogram();
+		for (int i = 0; i < BUCKETS; i++) {
+			copy.buckets.set(i, buckets.get(i));
+		}
+		copy.count.add(count.sum());
+		copy.totalNanos.add(totalNanos.sum());
+		copy.maxNanos.set(maxNanos.get());
+		return copy;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram[count=" + getCount() + ", mean=" + getMeanNanos()/1000 +
+				"us, p50=" + getPercentileNanos(50)/1000 + "us, p99=" +
+				getPercentileNanos(99)/1000 + "us, max=" + getMaxNanos()/1000 + "us]";
+	}
+}
@@ -1,8 +1,5 @@
 package io.github.rowak.nanoleafapi.event;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 import com.here.oksse.ServerSentEvent;
 
 import okhttp3.Request;
@@ -18,6 +15,14 @@ import io.github.rowak.nanoleafapi.NanoleafDevice;
  */
 public interface NanoleafEventListener extends ServerSentEvent.Listener {
 	
+	/** The SSE event name of the catch-up events that are sent after the event
+	 *  stream reconnects, see {@link NanoleafDevice#enableEventReconnection()}. */
+	public static final String CATCH_UP_EVENT = "catch-up";
+	
+	/** The SSE event name of the events that are replayed from the event history
+	 *  when a listener is registered, see {@link NanoleafDevice#enableEventHistory(int)}. */
+	public static final String REPLAY_EVENT = "replay";
+	
 	/**
 	 * Called when the connection has been successfully opened.
 	 */
@@ -45,15 +50,7 @@ public interface NanoleafEventListener extends ServerSentEvent.Listener {
 
 	@Override
 	public default void onMessage(ServerSentEvent sse, String id, String event, String message) {
-		int idNum = Integer.parseInt(id);
-		EventType eventType = EventType.values()[idNum-1];
-		JSONObject messageJson = new JSONObject(message);
-		JSONArray eventsJson = messageJson.getJSONArray("events");
-		Event[] events = new Event[eventsJson.length()];
-		for (int i = 0; i < eventsJson.length(); i++) {
-			JSONObject eventJson = eventsJson.getJSONObject(i);
-			events[i] = Event.fromJSON(eventType, eventJson);
-		}
+		Event[] events = new EventDecoder().decodeEvents(Integer.parseInt(id), message);
 		onEvent(events);
 	}
 
@@ -0,0 +1,42 @@
+package io.github.rowak.nanoleafapi.event;
+
+import com.here.oksse.ServerSentEvent;
+
+import io.github.rowak.nanoleafapi.NanoleafDevice;
+
+/**
+ * <p>An event listener that receives each event as a primitive-typed
+ * {@link EventRecord} instead of an array of {@link Event}s. A single record is
+ * reused for every event, so state and touch events are delivered without
+ * allocating anything. This is useful for listeners that handle many events,
+ * such as touch or brightness updates, and do not keep them.</p>
+ * 
+ * <p>The record is only valid until {@link NanoleafEventRecordListener#onEvent(EventRecord)}
+ * returns. Use {@link EventRecord#copy()} or {@link EventRecord#toEvent()} to keep it.
+ * A listener can be registered on a Nanoleaf device using the
+ * {@link NanoleafDevice#registerEventListener(NanoleafEventListener, boolean,
+ * boolean, boolean, boolean)} method.</p>
+ */
+public interface NanoleafEventRecordListener extends NanoleafEventListener {
+
+	/**
+	 * Called when an event has been received.
+	 * 
+	 * @param event   the received event, which is reused for the next event
+	 */
+	public void onEvent(EventRecord event);
+
+	/**
+	 * Events are delivered to {@link NanoleafEventRecordListener#onEvent(EventRecord)}
+	 * instead, so this is never called.
+	 * 
+	 * @param events   an array of one or more events
+	 */
+	@Override
+	public default void onEvent(Event[] events) {}
+
+	@Override
+	public default void onMessage(ServerSentEvent sse, String id, String event, String message) {
+		new EventDecoder().decode(Integer.parseInt(id), message, this::onEvent);
+	}
+}
@@ -0,0 +1,22 @@
+package io.github.rowak.nanoleafapi.event;
+
+/**
+ * Decides what happens to an event when the queue of a listener is full.
+ * See {@link EventDispatch}.
+ */
+public enum OverflowPolicy {
+	
+	/** The oldest queued event is dropped to make room for the new event. */
+	DROP_OLDEST,
+	
+	/** The new event is dropped. */
+	DROP_NEWEST,
+	
+	/**
+	 * The thread that reads the event stream waits until the listener has room
+	 * for the event. Nothing is dropped, but the events of every other listener
+	 * of the device are delayed while waiting, and the device may close the
+	 * stream if it waits for too long.
+	 */
+	BLOCK
+}
@@ -0,0 +1,109 @@
+package io.github.rowak.nanoleafapi.event;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.github.rowak.nanoleafapi.NanoleafDevice;
+
+/**
+ * <p>Decides how long to wait before reconnecting an event stream that has
+ * been lost, for example because the device rebooted. The delay doubles (by
+ * default) after every failed attempt, up to a maximum, and is randomly shortened
+ * by up to the jitter fraction so that many clients do not reconnect to a device
+ * at the same moment.</p>
+ * 
+ * <p>A policy is passed to {@link NanoleafDevice#enableEventReconnection(ReconnectPolicy)}.</p>
+ */
+public final class ReconnectPolicy {
+
+	/** Starts at one second and waits at most one minute, with 50% jitter */
+	public static final ReconnectPolicy DEFAULT = new ReconnectPolicy(1000, 60000, 2, 0.5);
+
+	private final long initialDelayMillis;
+	private final long maxDelayMillis;
+	private final double multiplier;
+	private final double jitter;
+
+	/**
+	 * Creates a new reconnect policy.
+	 * 
+	 * @param initialDelayMillis   the delay before the first attempt, in milliseconds
+	 * @param maxDelayMillis       the longest delay between attempts, in milliseconds
+	 * @param multiplier           the factor that the delay grows by after each failed
+	 *                             attempt (at least 1)
+	 * @param jitter               the largest fraction of a delay that is randomly
+	 *                             removed from it (from 0 to 1)
+	 * @throws IllegalArgumentException  If any of the arguments are out of range
+	 */
+	public ReconnectPolicy(long initialDelayMillis, long maxDelayMillis,
+			double multiplier, double jitter) {
+		if (initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis) {
+			throw new IllegalArgumentException("The delays must satisfy " +
+					"0 <= initialDelayMillis <= maxDelayMillis.");
+		}
+		if (!(multiplier >= 1)) {
+			throw new IllegalArgumentException("The multiplier must be at least 1.");
+		}
+		if (!(jitter >= 0 && jitter <= 1)) {
+			throw new IllegalArgumentException("The jitter must be from 0 to 1.");
+		}
+		this.initialDelayMillis = initialDelayMillis;
+		this.maxDelayMillis = maxDelayMillis;
+		this.multiplier = multiplier;
+		this.jitter = jitter;
+	}
+
+	/**
+	 * Gets the delay before the first reconnect attempt, without jitter.
+	 * 
+	 * @return   the initial delay in milliseconds
+	 */
+	public long getInitialDelayMillis() {
+		return initialDelayMillis;
+	}
+
+	/**
+	 * Gets the longest delay between reconnect attempts, without jitter.
+	 * 
+	 * @return   the maximum delay in milliseconds
+	 */
+	public long getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+
+	/**
+	 * Gets the factor that the delay grows by after each failed attempt.
+	 * 
+	 * @return   the delay multiplier
+	 */
+	public double getMultiplier() {
+		return multiplier;
+	}
+
+	/**
+	 * Gets the largest fraction of a delay that is randomly removed from it.
+	 * 
+	 * @return   the jitter, from 0 to 1
+	 */
+	public double getJitter() {
+		return jitter;
+	}
+
+	/**
+	 * Gets a randomized delay before a reconnect attempt.
+	 * 
+	 * @param attempt   the number of attempts that have failed since the stream
+	 *                  was last connected
+	 * @return          the delay in milliseconds
+	 */
+	public long getDelayMillis(int attempt) {
+		double delay = initialDelayMillis * Math.pow(multiplier, Math.max(attempt, 0));
+		long base = (long)Math.min(delay, maxDelayMillis);
+		return base - (long)(base * jitter * ThreadLocalRandom.current().nextDouble());
+	}
+
+	@Override
+	public String toString() {
+		return "ReconnectPolicy[" + initialDelayMillis + "ms to " + maxDelayMillis +
+				"ms, x" + multiplier + ", jitter=" + jitter + "]";
+	}
+}
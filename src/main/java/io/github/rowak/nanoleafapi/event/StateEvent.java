@@ -32,7 +32,7 @@ public class StateEvent extends Event {
 	 *  The event value will be an integer. */
 	public static final int COLORMODE_ATTRIBUTE = 6;
 	
-	private StateEvent(int attribute, Object value) {
+	protected StateEvent(int attribute, Object value) {
 		super(attribute, value);
 	}
 	
@@ -0,0 +1,344 @@
+package io.github.rowak.nanoleafapi.layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.rowak.nanoleafapi.Panel;
+
+/**
+ * <p>An immutable graph of the panels in a layout, where two panels are connected if
+ * they are directly next to each other. The graph is stored in compressed sparse row
+ * form: the neighbors of the panel in slot <code>s</code> are
+ * <code>getNeighbor(i)</code> for <code>getNeighborStart(s) &lt;= i &lt;
+ * getNeighborEnd(s)</code>, so neighbor queries do not allocate or search.</p>
+ * 
+ * <p>Panels are referred to by their <i>slot</i>, which is their index in the list
+ * of panels that the graph was built from.</p>
+ */
+public class AdjacencyGraph {
+
+	private final int[] panelIds;
+	private final int[] offsets;
+	private final int[] neighbors;
+	private final PanelIndex index;
+	private final int centroidDistance;
+	private volatile HopDistances distances;
+
+	private AdjacencyGraph(int[] panelIds, int[] offsets, int[] neighbors,
+			int centroidDistance) {
+		this.panelIds = panelIds;
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.index = PanelIndex.of(panelIds);
+		this.centroidDistance = centroidDistance;
+	}
+
+	/**
+	 * Builds the adjacency graph for a list of panels. Two panels are neighbors
+	 * if the distance between their centroids, rounded down, is at most the
+	 * centroid distance. This matches {@link io.github.rowak.nanoleafapi.NanoleafDevice#getNeighborPanels}.
+	 * 
+	 * @param panels             the panels in the layout
+	 * @param centroidDistance   the maximum centroid distance between two neighbors
+	 * @return                   a new adjacency graph
+	 */
+	public static AdjacencyGraph build(List<Panel> panels, int centroidDistance) {
+		int n = panels.size();
+		int[] ids = new int[n];
+		int[] xs = new int[n];
+		int[] ys = new int[n];
+		for (int i = 0; i < n; i++) {
+			Panel p = panels.get(i);
+			ids[i] = p.getId();
+			xs[i] = p.getX();
+			ys[i] = p.getY();
+		}
+		return build(ids, xs, ys, centroidDistance);
+	}
+
+	/**
+	 * Builds the adjacency graph for panels given as coordinate arrays.
+	 * 
+	 * @param panelIds           the panel ids
+	 * @param xs                 the x coordinates of the panel centroids
+	 * @param ys                 the y coordinates of the panel centroids
+	 * @param centroidDistance   the maximum centroid distance between two neighbors
+	 * @return                   a new adjacency graph
+	 */
+	public static AdjacencyGraph build(int[] panelIds, int[] xs, int[] ys, int centroidDistance) {
+		int n = panelIds.length;
+		// floor(sqrt(d2)) <= D is equivalent to d2 < (D+1)^2 for integer d2
+		int radius = centroidDistance + 1;
+		PanelGrid grid = new PanelGrid(xs, ys, radius);
+		int[] offsets = new int[n+1];
+		int[] found = new int[n];
+		int[] neighbors = new int[Math.max(n*6, 16)];
+		int size = 0;
+		for (int i = 0; i < n; i++) {
+			int count = grid.findWithin(xs[i], ys[i], radius, found);
+			// Cells are scanned in row order, so sort for a stable neighbor order
+			Arrays.sort(found, 0, count);
+			for (int k = 0; k < count; k++) {
+				if (found[k] == i) {
+					continue;
+				}
+				if (size == neighbors.length) {
+					neighbors = Arrays.copyOf(neighbors, size*2);
+				}
+				neighbors[size++] = found[k];
+			}
+			offsets[i+1] = size;
+		}
+		return new AdjacencyGraph(Arrays.copyOf(panelIds, n), offsets,
+				Arrays.copyOf(neighbors, size), centroidDistance);
+	}
+
+	/**
+	 * Gets the number of panels in the graph.
+	 * 
+	 * @return   the number of panels
+	 */
+	public int size() {
+		return panelIds.length;
+	}
+
+	/**
+	 * Gets the centroid distance that the graph was built with.
+	 * 
+	 * @return   the maximum centroid distance between two neighbors
+	 */
+	public int getCentroidDistance() {
+		return centroidDistance;
+	}
+
+	/**
+	 * Gets the id of the panel in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the panel id
+	 */
+	public int getPanelId(int slot) {
+		return panelIds[slot];
+	}
+
+	/**
+	 * Gets the slot of a panel.
+	 * 
+	 * @param panelId   the panel id
+	 * @return          the panel slot, or -1 if the panel is not in the graph
+	 */
+	public int getSlot(int panelId) {
+		return index.getSlot(panelId);
+	}
+
+	/**
+	 * Gets the index that maps the panel ids of the graph to their slots.
+	 * 
+	 * @return   the panel index
+	 */
+	public PanelIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Gets the number of neighbors of a panel.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the number of neighbors
+	 */
+	public int getDegree(int slot) {
+		return offsets[slot+1] - offsets[slot];
+	}
+
+	/**
+	 * Gets the index of the first neighbor of a panel.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the first neighbor index (inclusive)
+	 */
+	public int getNeighborStart(int slot) {
+		return offsets[slot];
+	}
+
+	/**
+	 * Gets the index after the last neighbor of a panel.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the last neighbor index (exclusive)
+	 */
+	public int getNeighborEnd(int slot) {
+		return offsets[slot+1];
+	}
+
+	/**
+	 * Gets the slot of a neighbor by its index.
+	 * 
+	 * @param index   the neighbor index
+	 * @return        the slot of the neighbor
+	 */
+	public int getNeighbor(int index) {
+		return neighbors[index];
+	}
+
+	/**
+	 * Gets the slots of the neighbors of a panel.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       a new array containing the neighbor slots
+	 */
+	public int[] getNeighborSlots(int slot) {
+		return Arrays.copyOfRange(neighbors, offsets[slot], offsets[slot+1]);
+	}
+
+	/**
+	 * Gets the ids of the neighbors of a panel.
+	 * 
+	 * @param panelId   the panel id
+	 * @return          a new array containing the neighbor ids, or an empty array
+	 *                  if the panel is not in the graph
+	 */
+	public int[] getNeighborIds(int panelId) {
+		int slot = getSlot(panelId);
+		if (slot < 0) {
+			return new int[0];
+		}
+		int[] ids = new int[getDegree(slot)];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = panelIds[neighbors[offsets[slot] + i]];
+		}
+		return ids;
+	}
+
+	/**
+	 * Gets the neighbors of a panel from the list of panels that the graph
+	 * was built from.
+	 * 
+	 * @param slot     the panel slot
+	 * @param panels   the panels that the graph was built from
+	 * @return         a list of the direct neighbors
+	 */
+	public List<Panel> getNeighbors(int slot, List<Panel> panels) {
+		List<Panel> result = new ArrayList<Panel>(getDegree(slot));
+		for (int i = offsets[slot]; i < offsets[slot+1]; i++) {
+			result.add(panels.get(neighbors[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the hop distance from a panel to every panel in the graph with
+	 * a breadth-first search.
+	 * 
+	 * @param source   the slot of the source panel
+	 * @return         a new array with the distance to each slot, or
+	 *                 {@link HopDistances#UNREACHABLE} for panels that are not
+	 *                 connected to the source
+	 */
+	public int[] getDistanceField(int source) {
+		int[] field = new int[size()];
+		getDistanceField(new int[] {source}, field);
+		return field;
+	}
+
+	/**
+	 * Computes the hop distance from the closest of several panels to every
+	 * panel in the graph, for example to spread ripples from several touches
+	 * at once.
+	 * 
+	 * @param sources   the slots of the source panels
+	 * @param field     the array to write the distance to each slot to
+	 * @return          the largest distance in the field
+	 * @throws IllegalArgumentException  If the field array is too small
+	 */
+	public int getDistanceField(int[] sources, int[] field) {
+		int n = size();
+		if (field.length < n) {
+			throw new IllegalArgumentException("The field array must have a length of " +
+					"at least " + n + ".");
+		}
+		Arrays.fill(field, 0, n, HopDistances.UNREACHABLE);
+		int[] queue = new int[n];
+		int tail = 0;
+		for (int source : sources) {
+			if (field[source] != 0) {
+				field[source] = 0;
+				queue[tail++] = source;
+			}
+		}
+		int max = 0;
+		for (int head = 0; head < tail; head++) {
+			int slot = queue[head];
+			int next = field[slot] + 1;
+			for (int i = offsets[slot]; i < offsets[slot+1]; i++) {
+				int neighbor = neighbors[i];
+				if (field[neighbor] == HopDistances.UNREACHABLE) {
+					field[neighbor] = next;
+					queue[tail++] = neighbor;
+					max = next;
+				}
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Gets the hop distances between every pair of panels in the graph. The
+	 * table is computed the first time this method is called, so later lookups
+	 * take constant time.
+	 * 
+	 * @return   the distance table
+	 * @throws IllegalArgumentException  If the graph has more than
+	 *                                   {@link HopDistances#MAX_PANELS} panels
+	 */
+	public HopDistances getDistances() {
+		HopDistances d = distances;
+		if (d == null) {
+			// Computing the table twice is harmless, so this is not synchronized
+			d = HopDistances.of(this);
+			distances = d;
+		}
+		return d;
+	}
+
+	/**
+	 * Orders the panels of the graph by their hop distance from a panel. Panels
+	 * with the same distance are in slot order. This runs a breadth-first search,
+	 * so it does not need the distance table.
+	 * 
+	 * @param source   the slot of the source panel
+	 * @return         the geodesic ordering
+	 */
+	public GeodesicOrder getGeodesicOrder(int source) {
+		int n = size();
+		int[] field = new int[n];
+		int[] slots = new int[n];
+		Arrays.fill(field, HopDistances.UNREACHABLE);
+		field[source] = 0;
+		slots[0] = source;
+		int tail = 1;
+		// The search visits the panels ring by ring, so it records the ring offsets
+		int[] ringOffsets = new int[n+1];
+		int rings = 1;
+		for (int head = 0; head < tail; head++) {
+			int slot = slots[head];
+			if (field[slot] == rings) {
+				ringOffsets[rings++] = head;
+			}
+			for (int i = offsets[slot]; i < offsets[slot+1]; i++) {
+				int neighbor = neighbors[i];
+				if (field[neighbor] == HopDistances.UNREACHABLE) {
+					field[neighbor] = field[slot] + 1;
+					slots[tail++] = neighbor;
+				}
+			}
+		}
+		ringOffsets[rings] = tail;
+		for (int r = 1; r < rings; r++) {
+			// Same order as HopDistances.getOrder: slot order within each ring
+			Arrays.sort(slots, ringOffsets[r], ringOffsets[r+1]);
+		}
+		return new GeodesicOrder(source, Arrays.copyOf(slots, tail),
+				Arrays.copyOf(ringOffsets, rings + 1));
+	}
+}
@@ -0,0 +1,102 @@
+package io.github.rowak.nanoleafapi.layout;
+
+import java.util.Arrays;
+
+/**
+ * <p>The panels of a layout ordered by their hop distance from a source panel.
+ * The panels at the same distance form a <i>ring</i> around the source: ring 0
+ * only contains the source, ring 1 contains its neighbors, and so on. A ripple
+ * effect can light up one ring per step.</p>
+ * 
+ * <p>Panels that are not connected to the source are not part of the ordering.</p>
+ */
+public class GeodesicOrder {
+
+	private final int source;
+	private final int[] slots;
+	/** The slots in ring r are slots[ringOffsets[r]..ringOffsets[r+1]) */
+	private final int[] ringOffsets;
+
+	GeodesicOrder(int source, int[] slots, int[] ringOffsets) {
+		this.source = source;
+		this.slots = slots;
+		this.ringOffsets = ringOffsets;
+	}
+
+	/**
+	 * Gets the slot of the source panel.
+	 * 
+	 * @return   the source slot
+	 */
+	public int getSource() {
+		return source;
+	}
+
+	/**
+	 * Gets the number of panels in the ordering, which is the number of panels
+	 * that are connected to the source (including the source).
+	 * 
+	 * @return   the number of panels
+	 */
+	public int size() {
+		return slots.length;
+	}
+
+	/**
+	 * Gets the slot of a panel in the ordering.
+	 * 
+	 * @param index   the position in the ordering
+	 * @return        the panel slot
+	 */
+	public int getSlot(int index) {
+		return slots[index];
+	}
+
+	/**
+	 * Gets the slots of the panels in order.
+	 * 
+	 * @return   a new array containing the slots
+	 */
+	public int[] getSlots() {
+		return Arrays.copyOf(slots, slots.length);
+	}
+
+	/**
+	 * Gets the number of rings, which is one more than the largest distance.
+	 * 
+	 * @return   the number of rings
+	 */
+	public int getRingCount() {
+		return ringOffsets.length - 1;
+	}
+
+	/**
+	 * Gets the position of the first panel in a ring.
+	 * 
+	 * @param ring   the ring (the hop distance from the source)
+	 * @return       the first position of the ring (inclusive)
+	 */
+	public int getRingStart(int ring) {
+		return ringOffsets[ring];
+	}
+
+	/**
+	 * Gets the position after the last panel in a ring.
+	 * 
+	 * @param ring   the ring (the hop distance from the source)
+	 * @return       the last position of the ring (exclusive)
+	 */
+	public int getRingEnd(int ring) {
+		return ringOffsets[ring+1];
+	}
+
+	/**
+	 * Gets the slots of the panels in a ring.
+	 * 
+	 * @param ring   the ring (the hop distance from the source)
+	 * @return       a new array containing the slots
+	 */
+	public int[] getRing(int ring) {
+		return Arrays.copyOfRange(slots, ringOffsets[ring], ringOffsets[ring+1]);
+	}
+}
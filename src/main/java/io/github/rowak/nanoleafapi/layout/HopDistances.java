@@ -0,0 +1,219 @@
+package io.github.rowak.nanoleafapi.layout;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * <p>An immutable table of the hop distances between every pair of panels in an
+ * {@link AdjacencyGraph}. The hop distance between two panels is the smallest
+ * number of neighbor-to-neighbor steps needed to get from one to the other, so
+ * it can be used to spread an effect outwards from a panel one ring at a time.</p>
+ * 
+ * <p>The table is stored as a single byte array with one row per panel, so a
+ * lookup is a single array read. A layout with 4096 panels takes 16 MB. Distances
+ * that are longer than {@link HopDistances#MAX_DISTANCE} hops are stored as
+ * {@link HopDistances#MAX_DISTANCE}, which only happens for very long chains
+ * of panels.</p>
+ * 
+ * <p>Tables are usually created through {@link AdjacencyGraph#getDistances()},
+ * which only computes the table once for each graph.</p>
+ */
+public class HopDistances {
+
+	/** The largest number of panels that a table can be created for */
+	public static final int MAX_PANELS = 4096;
+
+	/** The largest distance that is stored; longer distances are clamped to this */
+	public static final int MAX_DISTANCE = 254;
+
+	/** The distance returned for panels that are not connected */
+	public static final int UNREACHABLE = -1;
+
+	private static final byte UNREACHABLE_BYTE = (byte)0xFF;
+
+	/** The number of panels above which the rows are computed in parallel */
+	private static final int PARALLEL_THRESHOLD = 256;
+
+	private final AdjacencyGraph graph;
+	private final int size;
+	/** Row-major distances: the distance from a to b is table[a*size + b] */
+	private final byte[] table;
+	private final int diameter;
+
+	private HopDistances(AdjacencyGraph graph, byte[] table) {
+		this.graph = graph;
+		this.size = graph.size();
+		this.table = table;
+		int max = 0;
+		for (byte b : table) {
+			if (b != UNREACHABLE_BYTE) {
+				max = Math.max(max, b & 0xFF);
+			}
+		}
+		this.diameter = max;
+	}
+
+	/**
+	 * Computes the hop distances between every pair of panels in a graph,
+	 * using a breadth-first search from each panel.
+	 * 
+	 * @param graph   the adjacency graph
+	 * @return        a new distance table
+	 * @throws IllegalArgumentException  If the graph has more than
+	 *                                   {@link HopDistances#MAX_PANELS} panels
+	 */
+	public static HopDistances of(AdjacencyGraph graph) {
+		int n = graph.size();
+		if (n > MAX_PANELS) {
+			throw new IllegalArgumentException("Distance tables are limited to " +
+					MAX_PANELS + " panels, but the graph has " + n + ".");
+		}
+		byte[] table = new byte[n*n];
+		if (n < PARALLEL_THRESHOLD) {
+			fillRows(graph, table, 0, n);
+		}
+		else {
+			int numChunks = Math.min(Runtime.getRuntime().availableProcessors() * 4, n);
+			IntStream.range(0, numChunks).parallel().forEach(c ->
+					fillRows(graph, table, n * c / numChunks, n * (c+1) / numChunks));
+		}
+		return new HopDistances(graph, table);
+	}
+
+	/* Runs a breadth-first search from each source in [from, to) into its table row */
+	private static void fillRows(AdjacencyGraph graph, byte[] table, int from, int to) {
+		int n = graph.size();
+		int[] queue = new int[n];
+		for (int source = from; source < to; source++) {
+			int row = source * n;
+			Arrays.fill(table, row, row + n, UNREACHABLE_BYTE);
+			table[row + source] = 0;
+			queue[0] = source;
+			int head = 0, tail = 1;
+			while (head < tail) {
+				int slot = queue[head++];
+				int next = Math.min((table[row + slot] & 0xFF) + 1, MAX_DISTANCE);
+				for (int i = graph.getNeighborStart(slot); i < graph.getNeighborEnd(slot); i++) {
+					int neighbor = graph.getNeighbor(i);
+					if (table[row + neighbor] == UNREACHABLE_BYTE) {
+						table[row + neighbor] = (byte)next;
+						queue[tail++] = neighbor;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the graph that the distances were computed for.
+	 * 
+	 * @return   the adjacency graph
+	 */
+	public AdjacencyGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Gets the number of panels in the table.
+	 * 
+	 * @return   the number of panels
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the hop distance between two panels.
+	 * 
+	 * @param from   the slot of the first panel
+	 * @param to     the slot of the second panel
+	 * @return       the hop distance, or {@link HopDistances#UNREACHABLE}
+	 *               if the panels are not connected
+	 */
+	public int getDistance(int from, int to) {
+		byte d = table[from*size + to];
+		return d == UNREACHABLE_BYTE ? UNREACHABLE : d & 0xFF;
+	}
+
+	/**
+	 * Copies the hop distances from a panel to every other panel into an
+	 * existing array.
+	 * 
+	 * @param from     the slot of the panel
+	 * @param result   the array to write the distance to each slot to
+	 * @throws IllegalArgumentException  If the result array is too small
+	 */
+	public void getDistances(int from, int[] result) {
+		if (result.length < size) {
+			throw new IllegalArgumentException("The result array must have a length of " +
+					"at least " + size + ".");
+		}
+		int row = from * size;
+		for (int to = 0; to < size; to++) {
+			byte d = table[row + to];
+			result[to] = d == UNREACHABLE_BYTE ? UNREACHABLE : d & 0xFF;
+		}
+	}
+
+	/**
+	 * Gets the largest hop distance from a panel to any panel that it is
+	 * connected to.
+	 * 
+	 * @param from   the slot of the panel
+	 * @return       the eccentricity of the panel
+	 */
+	public int getEccentricity(int from) {
+		int row = from * size;
+		int max = 0;
+		for (int to = 0; to < size; to++) {
+			byte d = table[row + to];
+			if (d != UNREACHABLE_BYTE) {
+				max = Math.max(max, d & 0xFF);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Gets the largest hop distance between any two connected panels. This is
+	 * the number of steps an effect needs to cross the whole layout.
+	 * 
+	 * @return   the diameter of the graph
+	 */
+	public int getDiameter() {
+		return diameter;
+	}
+
+	/**
+	 * Orders the panels by their hop distance from a panel (a geodesic ordering).
+	 * Panels with the same distance are in slot order, and panels that are not
+	 * connected are left out.
+	 * 
+	 * @param from   the slot of the panel to start from
+	 * @return       the geodesic ordering
+	 */
+	public GeodesicOrder getOrder(int from) {
+		int row = from * size;
+		int rings = getEccentricity(from) + 1;
+		// Counting sort of the slots by distance
+		int[] offsets = new int[rings + 1];
+		for (int to = 0; to < size; to++) {
+			byte d = table[row + to];
+			if (d != UNREACHABLE_BYTE) {
+				offsets[(d & 0xFF) + 1]++;
+			}
+		}
+		for (int r = 0; r < rings; r++) {
+			offsets[r+1] += offsets[r];
+		}
+		int[] slots = new int[offsets[rings]];
+		int[] next = Arrays.copyOf(offsets, rings);
+		for (int to = 0; to < size; to++) {
+			byte d = table[row + to];
+			if (d != UNREACHABLE_BYTE) {
+				slots[next[d & 0xFF]++] = to;
+			}
+		}
+		return new GeodesicOrder(from, slots, offsets);
+	}
+}
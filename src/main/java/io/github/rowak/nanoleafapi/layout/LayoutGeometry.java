@@ -0,0 +1,261 @@
+package io.github.rowak.nanoleafapi.layout;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.rowak.nanoleafapi.Panel;
+import io.github.rowak.nanoleafapi.ShapeType;
+
+/**
+ * <p>The geometry of a panel layout after it has been rotated to match the global
+ * orientation. The centroid, the rotation and the rotated panel coordinates are
+ * computed once when the geometry is created, so reading them is cheap.</p>
+ * 
+ * <p>Geometries are immutable. Use {@link PanelLayout#getGeometry()} to get the
+ * (cached) geometry of a layout.</p>
+ */
+public class LayoutGeometry {
+
+	private final PanelLayout layout;
+	private final int centroidX, centroidY;
+	private final int rotation;
+	private final double cos, sin;
+	private final int[] rotatedXs;
+	private final int[] rotatedYs;
+	private volatile PanelHitIndex hitIndex;
+	private final Rectangle bounds;
+	private final Rectangle rotatedBounds;
+
+	private LayoutGeometry(PanelLayout layout) {
+		this.layout = layout;
+		int n = layout.size();
+		int[] xs = new int[n];
+		int[] ys = new int[n];
+		for (int i = 0; i < n; i++) {
+			xs[i] = layout.getX(i);
+			ys[i] = layout.getY(i);
+		}
+		centroidX = distinctMean(xs);
+		centroidY = distinctMean(ys);
+		rotation = layout.getGlobalOrientation() == 360 ? 0 : layout.getGlobalOrientation();
+		double radAngle = Math.toRadians(rotation);
+		cos = Math.cos(radAngle);
+		sin = Math.sin(radAngle);
+		rotatedXs = new int[n];
+		rotatedYs = new int[n];
+		for (int i = 0; i < n; i++) {
+			int x = layout.getX(i) - centroidX;
+			int y = layout.getY(i) - centroidY;
+			rotatedXs[i] = (int)(x * cos - y * sin + centroidX);
+			rotatedYs[i] = (int)(x * sin + y * cos + centroidY);
+		}
+		bounds = boundsOf(layout, null, null);
+		rotatedBounds = boundsOf(layout, rotatedXs, rotatedYs);
+	}
+
+	/**
+	 * Computes the geometry of a layout. {@link PanelLayout#getGeometry()} should
+	 * usually be used instead, since it only computes the geometry once.
+	 * 
+	 * @param layout   the panel layout
+	 * @return         the layout geometry
+	 */
+	public static LayoutGeometry of(PanelLayout layout) {
+		return new LayoutGeometry(layout);
+	}
+
+	/* The mean of the distinct values. Panels in a row or column share a
+	   coordinate, which is only counted once */
+	private static int distinctMean(int[] values) {
+		if (values.length == 0) {
+			return 0;
+		}
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int sum = sorted[0];
+		int count = 1;
+		for (int i = 1; i < sorted.length; i++) {
+			if (sorted[i] != sorted[i-1]) {
+				sum += sorted[i];
+				count++;
+			}
+		}
+		return sum / count;
+	}
+
+	/* The bounds of the panels, where each panel is treated as the circle around
+	   its centroid that contains the whole panel */
+	private static Rectangle boundsOf(PanelLayout layout, int[] xs, int[] ys) {
+		int n = layout.size();
+		if (n == 0) {
+			return new Rectangle();
+		}
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (int i = 0; i < n; i++) {
+			int x = xs != null ? xs[i] : layout.getX(i);
+			int y = ys != null ? ys[i] : layout.getY(i);
+			int r = getCircumradius(layout.getShapeType(i));
+			minX = Math.min(minX, x - r);
+			minY = Math.min(minY, y - r);
+			maxX = Math.max(maxX, x + r);
+			maxY = Math.max(maxY, y + r);
+		}
+		return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	/**
+	 * Gets the radius of the smallest circle around the centroid of a panel
+	 * that contains the whole panel, rounded up.
+	 * 
+	 * @param shapeType   the shape type value of the panel
+	 * @return            the circumradius, or 0 if the panel has no area
+	 */
+	public static int getCircumradius(int shapeType) {
+		return (int)Math.ceil(ShapeType.valueOf(shapeType).getCircumradius());
+	}
+
+	/**
+	 * Gets the layout that the geometry was computed for.
+	 * 
+	 * @return   the panel layout
+	 */
+	public PanelLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Gets the number of panels in the layout.
+	 * 
+	 * @return   the number of panels
+	 */
+	public int size() {
+		return rotatedXs.length;
+	}
+
+	/**
+	 * Gets the centroid of the layout. The layout is rotated around this point.
+	 * 
+	 * @return   a new point containing the centroid
+	 */
+	public Point getCentroid() {
+		return new Point(centroidX, centroidY);
+	}
+
+	/**
+	 * Gets the x coordinate of the centroid of the layout.
+	 * 
+	 * @return   the centroid x coordinate
+	 */
+	public int getCentroidX() {
+		return centroidX;
+	}
+
+	/**
+	 * Gets the y coordinate of the centroid of the layout.
+	 * 
+	 * @return   the centroid y coordinate
+	 */
+	public int getCentroidY() {
+		return centroidY;
+	}
+
+	/**
+	 * Gets the rotation of the layout in degrees, between 0 and 359.
+	 * 
+	 * @return   the rotation
+	 */
+	public int getRotation() {
+		return rotation;
+	}
+
+	/**
+	 * Gets the rotated x coordinate of the panel in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the rotated x coordinate
+	 */
+	public int getRotatedX(int slot) {
+		return rotatedXs[slot];
+	}
+
+	/**
+	 * Gets the rotated y coordinate of the panel in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the rotated y coordinate
+	 */
+	public int getRotatedY(int slot) {
+		return rotatedYs[slot];
+	}
+
+	/**
+	 * Rotates a point in layout coordinates to match the global orientation.
+	 * 
+	 * @param x   the x coordinate
+	 * @param y   the y coordinate
+	 * @return    a new point containing the rotated coordinates
+	 */
+	public Point rotate(int x, int y) {
+		int dx = x - centroidX;
+		int dy = y - centroidY;
+		return new Point((int)(dx * cos - dy * sin + centroidX),
+				(int)(dx * sin + dy * cos + centroidY));
+	}
+
+	/**
+	 * Gets the bounding box of the panels in the original (unrotated) layout.
+	 * Each panel is treated as the circle around its centroid that contains
+	 * the whole panel, so the box does not depend on the panel orientations.
+	 * 
+	 * @return   a new rectangle containing the bounds
+	 */
+	public Rectangle getBounds() {
+		return new Rectangle(bounds);
+	}
+
+	/**
+	 * Gets the bounding box of the panels in the rotated layout. Each panel is
+	 * treated as the circle around its rotated centroid that contains the
+	 * whole panel.
+	 * 
+	 * @return   a new rectangle containing the bounds
+	 */
+	public Rectangle getRotatedBounds() {
+		return new Rectangle(rotatedBounds);
+	}
+
+	/**
+	 * Gets the index used to find the panel that contains a point in the rotated
+	 * layout. The index is created the first time this method is called.
+	 * 
+	 * @return   the hit index
+	 */
+	public PanelHitIndex getHitIndex() {
+		PanelHitIndex h = hitIndex;
+		if (h == null) {
+			// Creating the index twice is harmless, so this is not synchronized
+			h = PanelHitIndex.of(this);
+			hitIndex = h;
+		}
+		return h;
+	}
+
+	/**
+	 * Creates new panel objects with the rotated coordinates of every panel
+	 * in the layout.
+	 * 
+	 * @return   a new list of rotated panels, in slot order
+	 */
+	public List<Panel> getRotatedPanels() {
+		List<Panel> panels = new ArrayList<Panel>(rotatedXs.length);
+		for (int i = 0; i < rotatedXs.length; i++) {
+			panels.add(new Panel(layout.getPanelId(i), rotatedXs[i], rotatedYs[i],
+					layout.getOrientation(i), ShapeType.valueOf(layout.getShapeType(i))));
+		}
+		return panels;
+	}
+}
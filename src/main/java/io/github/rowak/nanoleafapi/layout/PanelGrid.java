@@ -0,0 +1,204 @@
+package io.github.rowak.nanoleafapi.layout;
+
+/**
+ * <p>A uniform grid spatial index over panel centroids. The panels are bucketed into
+ * square cells, so that finding the panels near a point only requires checking the
+ * cells around that point rather than every panel in the layout.</p>
+ * 
+ * <p>Panels are referred to by their <i>slot</i> (their index in the coordinate
+ * arrays that the grid was created from). The grid is immutable.</p>
+ */
+public class PanelGrid {
+
+	private final int[] xs;
+	private final int[] ys;
+	private final int cellSize;
+	private final int minX, minY;
+	private final int width, height;
+	/** CSR cell buckets: the slots in cell c are cellSlots[cellOffsets[c]..cellOffsets[c+1]) */
+	private final int[] cellOffsets;
+	private final int[] cellSlots;
+
+	/**
+	 * Creates a new grid index. Queries are fastest when the cell size is
+	 * roughly the search radius that will be used.
+	 * 
+	 * @param xs         the x coordinates of the panels
+	 * @param ys         the y coordinates of the panels
+	 * @param cellSize   the side length of a grid cell
+	 * @throws IllegalArgumentException  If the cell size is not positive, or if the
+	 *                                   coordinate arrays have different lengths
+	 */
+	public PanelGrid(int[] xs, int[] ys, int cellSize) {
+		if (cellSize <= 0) {
+			throw new IllegalArgumentException("The cell size must be positive.");
+		}
+		if (xs.length != ys.length) {
+			throw new IllegalArgumentException("The coordinate arrays must have the same length.");
+		}
+		this.xs = xs;
+		this.ys = ys;
+		this.cellSize = cellSize;
+		int n = xs.length;
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (int i = 0; i < n; i++) {
+			minX = Math.min(minX, xs[i]);
+			minY = Math.min(minY, ys[i]);
+			maxX = Math.max(maxX, xs[i]);
+			maxY = Math.max(maxY, ys[i]);
+		}
+		if (n == 0) {
+			minX = minY = maxX = maxY = 0;
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.width = (int)(((long)maxX - minX) / cellSize) + 1;
+		this.height = (int)(((long)maxY - minY) / cellSize) + 1;
+
+		// Counting sort of the slots by cell
+		int[] cells = new int[n];
+		cellOffsets = new int[width*height + 1];
+		for (int i = 0; i < n; i++) {
+			cells[i] = cellIndex(xs[i], ys[i]);
+			cellOffsets[cells[i] + 1]++;
+		}
+		for (int c = 0; c < width*height; c++) {
+			cellOffsets[c+1] += cellOffsets[c];
+		}
+		cellSlots = new int[n];
+		int[] next = new int[width*height];
+		System.arraycopy(cellOffsets, 0, next, 0, next.length);
+		for (int i = 0; i < n; i++) {
+			cellSlots[next[cells[i]]++] = i;
+		}
+	}
+
+	private int cellIndex(int x, int y) {
+		int cx = (int)(((long)x - minX) / cellSize);
+		int cy = (int)(((long)y - minY) / cellSize);
+		return cy*width + cx;
+	}
+
+	/**
+	 * Gets the number of panels in the grid.
+	 * 
+	 * @return   the number of panels
+	 */
+	public int size() {
+		return xs.length;
+	}
+
+	/**
+	 * Gets the side length of a grid cell.
+	 * 
+	 * @return   the cell size
+	 */
+	public int getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Finds every panel whose centroid is strictly closer than a radius to a point.
+	 * 
+	 * @param x        the x coordinate of the point
+	 * @param y        the y coordinate of the point
+	 * @param radius   the search radius (exclusive)
+	 * @param out      the array to write the slots of the found panels to. It must be
+	 *                 large enough to hold every panel that can be found.
+	 * @return         the number of panels found
+	 */
+	public int findWithin(int x, int y, int radius, int[] out) {
+		long r2 = (long)radius * radius;
+		int reach = (radius + cellSize - 1) / cellSize;
+		long cx = Math.floorDiv((long)x - minX, cellSize);
+		long cy = Math.floorDiv((long)y - minY, cellSize);
+		int x0 = (int)Math.max(cx - reach, 0);
+		int x1 = (int)Math.min(cx + reach, width - 1);
+		int y0 = (int)Math.max(cy - reach, 0);
+		int y1 = (int)Math.min(cy + reach, height - 1);
+		int count = 0;
+		for (int gy = y0; gy <= y1; gy++) {
+			for (int gx = x0; gx <= x1; gx++) {
+				int c = gy*width + gx;
+				for (int k = cellOffsets[c]; k < cellOffsets[c+1]; k++) {
+					int slot = cellSlots[k];
+					long dx = (long)xs[slot] - x;
+					long dy = (long)ys[slot] - y;
+					if (dx*dx + dy*dy < r2) {
+						out[count++] = slot;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the panel with the centroid closest to a point. The point may be
+	 * outside of the bounds of the panels.
+	 * 
+	 * @param x   the x coordinate of the point
+	 * @param y   the y coordinate of the point
+	 * @return    the slot of the closest panel, or -1 if the grid is empty
+	 */
+	public int findNearest(int x, int y) {
+		if (xs.length == 0) {
+			return -1;
+		}
+		// Starting from the cell of the grid bounds that is closest to the point
+		// keeps the number of rings below the grid size. The distance bound of
+		// the rings still holds for a point outside of the bounds, since it is
+		// at least as far from every cell as its closest point on the bounds
+		int cx = (int)Math.min(Math.max(Math.floorDiv((long)x - minX, cellSize), 0), width - 1);
+		int cy = (int)Math.min(Math.max(Math.floorDiv((long)y - minY, cellSize), 0), height - 1);
+		int best = -1;
+		int maxRing = Math.max(Math.max(cx, width - 1 - cx), Math.max(cy, height - 1 - cy));
+		// Search rings of cells outwards until no closer panel can exist. Only
+		// the cells on the edge of each ring are visited
+		for (int ring = 0; ring <= maxRing; ring++) {
+			int x0 = cx - ring, x1 = cx + ring;
+			int y0 = cy - ring, y1 = cy + ring;
+			for (int gy = Math.max(y0, 0); gy <= Math.min(y1, height - 1); gy++) {
+				if (gy == y0 || gy == y1) {
+					for (int gx = Math.max(x0, 0); gx <= Math.min(x1, width - 1); gx++) {
+						best = closest(gy*width + gx, x, y, best);
+					}
+				}
+				else {
+					if (x0 >= 0) {
+						best = closest(gy*width + x0, x, y, best);
+					}
+					if (x1 < width) {
+						best = closest(gy*width + x1, x, y, best);
+					}
+				}
+			}
+			long covered = (long)ring * cellSize;
+			if (best >= 0 && covered*covered >= distance2(best, x, y)) {
+				break;
+			}
+		}
+		return best;
+	}
+
+	/* Gets the closest of a slot (or -1) and the panels of a cell */
+	private int closest(int c, int x, int y, int best) {
+		long bestDist = best >= 0 ? distance2(best, x, y) : Long.MAX_VALUE;
+		for (int k = cellOffsets[c]; k < cellOffsets[c+1]; k++) {
+			int slot = cellSlots[k];
+			long d = distance2(slot, x, y);
+			if (d < bestDist) {
+				bestDist = d;
+				best = slot;
+			}
+		}
+		return best;
+	}
+
+	private long distance2(int slot, int x, int y) {
+		long dx = (long)xs[slot] - x;
+		long dy = (long)ys[slot] - y;
+		return dx*dx + dy*dy;
+	}
+}
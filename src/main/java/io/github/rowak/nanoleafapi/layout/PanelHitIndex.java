@@ -0,0 +1,270 @@
+package io.github.rowak.nanoleafapi.layout;
+
+import java.awt.Polygon;
+import java.util.Arrays;
+
+import io.github.rowak.nanoleafapi.ShapeType;
+
+/**
+ * <p>Finds the panel that contains a point, for example to map a pointer, camera
+ * or projector position onto a layout. Each panel is stored as its exact polygon
+ * in the rotated layout (see {@link LayoutGeometry}), so points near the edges of
+ * a panel are assigned correctly, unlike when looking for the nearest centroid.</p>
+ * 
+ * <p>The polygons are bucketed into a uniform grid by their bounding boxes. A query
+ * only tests the polygons in the cell that contains the point, which is usually
+ * one or two panels, so it takes roughly constant time for any layout size.</p>
+ * 
+ * <p>Panels without an area (such as the rhythm module and the Shapes controller)
+ * are never hit. Hit indexes are immutable. Use {@link LayoutGeometry#getHitIndex()}
+ * to get the cached index of a layout.</p>
+ */
+public class PanelHitIndex {
+
+	private final LayoutGeometry geometry;
+	/** The vertices of slot s are (vertices[2i], vertices[2i+1]) for
+	 *  vertexOffsets[s] &lt;= i &lt; vertexOffsets[s+1] */
+	private final int[] vertexOffsets;
+	private final double[] vertices;
+	private final double minX, minY;
+	private final double cellSize;
+	private final int width, height;
+	/** CSR cell buckets: the slots in cell c are cellSlots[cellOffsets[c]..cellOffsets[c+1]) */
+	private final int[] cellOffsets;
+	private final int[] cellSlots;
+
+	private PanelHitIndex(LayoutGeometry geometry) {
+		this.geometry = geometry;
+		PanelLayout layout = geometry.getLayout();
+		int n = layout.size();
+		vertexOffsets = new int[n+1];
+		double[][] polygons = new double[n][];
+		double maxRadius = 0;
+		for (int slot = 0; slot < n; slot++) {
+			ShapeType shape = ShapeType.valueOf(layout.getShapeType(slot));
+			// The panels turn with the layout, so the global rotation is added
+			polygons[slot] = shape.getVertices(geometry.getRotatedX(slot),
+					geometry.getRotatedY(slot), layout.getOrientation(slot) + geometry.getRotation());
+			vertexOffsets[slot+1] = vertexOffsets[slot] + polygons[slot].length/2;
+			maxRadius = Math.max(maxRadius, shape.getCircumradius());
+		}
+		vertices = new double[vertexOffsets[n]*2];
+		for (int slot = 0; slot < n; slot++) {
+			System.arraycopy(polygons[slot], 0, vertices, vertexOffsets[slot]*2,
+					polygons[slot].length);
+		}
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < vertices.length; i += 2) {
+			minX = Math.min(minX, vertices[i]);
+			minY = Math.min(minY, vertices[i+1]);
+			maxX = Math.max(maxX, vertices[i]);
+			maxY = Math.max(maxY, vertices[i+1]);
+		}
+		if (vertices.length == 0) {
+			minX = minY = maxX = maxY = 0;
+		}
+		this.minX = minX;
+		this.minY = minY;
+		// Cells the size of a panel keep the number of candidates per cell small
+		cellSize = Math.max(maxRadius * 2, 1);
+		width = (int)((maxX - minX) / cellSize) + 1;
+		height = (int)((maxY - minY) / cellSize) + 1;
+
+		// Count the cells that the bounding box of each polygon overlaps, then fill them
+		int[][] ranges = new int[n][];
+		cellOffsets = new int[width*height + 1];
+		for (int slot = 0; slot < n; slot++) {
+			ranges[slot] = cellRange(slot);
+			int[] r = ranges[slot];
+			for (int gy = r[1]; gy <= r[3]; gy++) {
+				for (int gx = r[0]; gx <= r[2]; gx++) {
+					cellOffsets[gy*width + gx + 1]++;
+				}
+			}
+		}
+		for (int c = 0; c < width*height; c++) {
+			cellOffsets[c+1] += cellOffsets[c];
+		}
+		cellSlots = new int[cellOffsets[width*height]];
+		int[] next = Arrays.copyOf(cellOffsets, width*height);
+		for (int slot = 0; slot < n; slot++) {
+			int[] r = ranges[slot];
+			for (int gy = r[1]; gy <= r[3]; gy++) {
+				for (int gx = r[0]; gx <= r[2]; gx++) {
+					cellSlots[next[gy*width + gx]++] = slot;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a hit index for the rotated layout of a geometry.
+	 * {@link LayoutGeometry#getHitIndex()} should usually be used instead, since
+	 * it only creates the index once.
+	 * 
+	 * @param geometry   the layout geometry
+	 * @return           a new hit index
+	 */
+	public static PanelHitIndex of(LayoutGeometry geometry) {
+		return new PanelHitIndex(geometry);
+	}
+
+	/* The cells {x0, y0, x1, y1} overlapped by the bounding box of a polygon,
+	   or an empty range if the panel has no vertices */
+	private int[] cellRange(int slot) {
+		int from = vertexOffsets[slot], to = vertexOffsets[slot+1];
+		if (from == to) {
+			return new int[] {0, 0, -1, -1};
+		}
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for (int i = from; i < to; i++) {
+			x0 = Math.min(x0, vertices[i*2]);
+			y0 = Math.min(y0, vertices[i*2 + 1]);
+			x1 = Math.max(x1, vertices[i*2]);
+			y1 = Math.max(y1, vertices[i*2 + 1]);
+		}
+		return new int[] {cellX(x0), cellY(y0), cellX(x1), cellY(y1)};
+	}
+
+	private int cellX(double x) {
+		return Math.min(Math.max((int)Math.floor((x - minX) / cellSize), 0), width - 1);
+	}
+
+	private int cellY(double y) {
+		return Math.min(Math.max((int)Math.floor((y - minY) / cellSize), 0), height - 1);
+	}
+
+	/**
+	 * Gets the layout geometry that the index was created for.
+	 * 
+	 * @return   the layout geometry
+	 */
+	public LayoutGeometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * Gets the number of panels in the index.
+	 * 
+	 * @return   the number of panels
+	 */
+	public int size() {
+		return vertexOffsets.length - 1;
+	}
+
+	/**
+	 * Finds the panel that contains a point in the rotated layout. Points on the
+	 * shared edge of two panels are assigned to the panel with the lower slot.
+	 * 
+	 * @param x   the x coordinate of the point
+	 * @param y   the y coordinate of the point
+	 * @return    the slot of the panel, or -1 if no panel contains the point
+	 */
+	public int findPanel(double x, double y) {
+		double gx = Math.floor((x - minX) / cellSize);
+		double gy = Math.floor((y - minY) / cellSize);
+		if (gx < 0 || gy < 0 || gx >= width || gy >= height) {
+			return -1;
+		}
+		int c = (int)gy*width + (int)gx;
+		// The slots of each cell are in increasing order, so the first hit is the lowest
+		for (int k = cellOffsets[c]; k < cellOffsets[c+1]; k++) {
+			if (contains(cellSlots[k], x, y)) {
+				return cellSlots[k];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the id of the panel that contains a point in the rotated layout.
+	 * 
+	 * @param x   the x coordinate of the point
+	 * @param y   the y coordinate of the point
+	 * @return    the panel id, or -1 if no panel contains the point
+	 */
+	public int findPanelId(double x, double y) {
+		int slot = findPanel(x, y);
+		return slot >= 0 ? geometry.getLayout().getPanelId(slot) : -1;
+	}
+
+	/**
+	 * Checks if a panel contains a point in the rotated layout. Points on the
+	 * edges of the panel are contained.
+	 * 
+	 * @param slot   the panel slot
+	 * @param x      the x coordinate of the point
+	 * @param y      the y coordinate of the point
+	 * @return       true if the panel contains the point, or false otherwise
+	 */
+	public boolean contains(int slot, double x, double y) {
+		int from = vertexOffsets[slot], to = vertexOffsets[slot+1];
+		if (from == to) {
+			return false;
+		}
+		// The polygons are convex and counterclockwise, so the point must be on
+		// the left of (or on) every edge
+		for (int i = from; i < to; i++) {
+			int j = i + 1 < to ? i + 1 : from;
+			double ax = vertices[i*2], ay = vertices[i*2 + 1];
+			double bx = vertices[j*2], by = vertices[j*2 + 1];
+			if ((bx - ax) * (y - ay) - (by - ay) * (x - ax) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the number of vertices of a panel.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the number of vertices, or 0 if the panel has no area
+	 */
+	public int getVertexCount(int slot) {
+		return vertexOffsets[slot+1] - vertexOffsets[slot];
+	}
+
+	/**
+	 * Gets the x coordinate of a vertex of a panel in the rotated layout.
+	 * 
+	 * @param slot     the panel slot
+	 * @param vertex   the vertex, in counterclockwise order
+	 * @return         the x coordinate
+	 */
+	public double getVertexX(int slot, int vertex) {
+		return vertices[(vertexOffsets[slot] + vertex)*2];
+	}
+
+	/**
+	 * Gets the y coordinate of a vertex of a panel in the rotated layout.
+	 * 
+	 * @param slot     the panel slot
+	 * @param vertex   the vertex, in counterclockwise order
+	 * @return         the y coordinate
+	 */
+	public double getVertexY(int slot, int vertex) {
+		return vertices[(vertexOffsets[slot] + vertex)*2 + 1];
+	}
+
+	/**
+	 * Creates a polygon with the rounded vertices of a panel in the rotated
+	 * layout, for example to draw the layout.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       a new polygon
+	 */
+	public Polygon getPolygon(int slot) {
+		int count = getVertexCount(slot);
+		int[] xs = new int[count];
+		int[] ys = new int[count];
+		for (int i = 0; i < count; i++) {
+			xs[i] = (int)Math.round(getVertexX(slot, i));
+			ys[i] = (int)Math.round(getVertexY(slot, i));
+		}
+		return new Polygon(xs, ys, count);
+	}
+}
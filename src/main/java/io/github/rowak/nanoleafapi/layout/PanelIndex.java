@@ -0,0 +1,135 @@
+package io.github.rowak.nanoleafapi.layout;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.rowak.nanoleafapi.Panel;
+
+/**
+ * <p>An immutable mapping from panel ids to dense <i>slots</i> (0 to
+ * <code>size() - 1</code>). Panel ids are sparse, so per-panel data can instead
+ * be stored in arrays indexed by slot, and the index is used to find the slot
+ * of a panel id.</p>
+ * 
+ * <p>The ids are stored in an open-addressing hash table of primitive ints, so
+ * lookups do not allocate or box. If the same id is given more than once, it
+ * maps to its first slot.</p>
+ */
+public class PanelIndex {
+
+	private final int[] panelIds;
+	/** Hash table of panel ids, parallel to tableSlots */
+	private final int[] tableIds;
+	/** The slot of each table entry plus one, or 0 if the entry is empty */
+	private final int[] tableSlots;
+	private final int shift;
+
+	private PanelIndex(int[] panelIds) {
+		this.panelIds = panelIds;
+		int capacity = 4;
+		while (capacity < panelIds.length * 2) {
+			capacity <<= 1;
+		}
+		tableIds = new int[capacity];
+		tableSlots = new int[capacity];
+		shift = 32 - Integer.numberOfTrailingZeros(capacity);
+		int mask = capacity - 1;
+		for (int slot = 0; slot < panelIds.length; slot++) {
+			int id = panelIds[slot];
+			int i = hash(id);
+			while (tableSlots[i] != 0 && tableIds[i] != id) {
+				i = (i + 1) & mask;
+			}
+			if (tableSlots[i] == 0) {
+				tableIds[i] = id;
+				tableSlots[i] = slot + 1;
+			}
+		}
+	}
+
+	/**
+	 * Creates an index for panel ids. The slot of each id is its index in the array.
+	 * 
+	 * @param panelIds   the panel ids
+	 * @return           a new panel index
+	 */
+	public static PanelIndex of(int[] panelIds) {
+		return new PanelIndex(Arrays.copyOf(panelIds, panelIds.length));
+	}
+
+	/**
+	 * Creates an index for a list of panels. The slot of each panel is its
+	 * index in the list.
+	 * 
+	 * @param panels   the panels
+	 * @return         a new panel index
+	 */
+	public static PanelIndex of(List<Panel> panels) {
+		int[] ids = new int[panels.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = panels.get(i).getId();
+		}
+		return new PanelIndex(ids);
+	}
+
+	private int hash(int id) {
+		// Fibonacci hashing spreads the (often sequential) ids across the table
+		return (id * 0x9E3779B9) >>> shift;
+	}
+
+	/**
+	 * Gets the number of slots in the index.
+	 * 
+	 * @return   the number of slots
+	 */
+	public int size() {
+		return panelIds.length;
+	}
+
+	/**
+	 * Gets the slot of a panel.
+	 * 
+	 * @param panelId   the panel id
+	 * @return          the panel slot, or -1 if the panel is not in the index
+	 */
+	public int getSlot(int panelId) {
+		int mask = tableIds.length - 1;
+		int i = hash(panelId);
+		while (tableSlots[i] != 0) {
+			if (tableIds[i] == panelId) {
+				return tableSlots[i] - 1;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if a panel is in the index.
+	 * 
+	 * @param panelId   the panel id
+	 * @return          true if the panel is in the index, or false otherwise
+	 */
+	public boolean contains(int panelId) {
+		return getSlot(panelId) >= 0;
+	}
+
+	/**
+	 * Gets the id of the panel in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the panel id
+	 */
+	public int getPanelId(int slot) {
+		return panelIds[slot];
+	}
+
+	/**
+	 * Gets the panel ids in slot order.
+	 * 
+	 * @return   a new array containing the panel ids
+	 */
+	public int[] getPanelIds() {
+		return Arrays.copyOf(panelIds, panelIds.length);
+	}
+}
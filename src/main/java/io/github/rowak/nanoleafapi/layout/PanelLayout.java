@@ -0,0 +1,404 @@
+package io.github.rowak.nanoleafapi.layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.github.rowak.nanoleafapi.ImmutablePanel;
+import io.github.rowak.nanoleafapi.JSONParserException;
+import io.github.rowak.nanoleafapi.Panel;
+import io.github.rowak.nanoleafapi.ShapeType;
+
+/**
+ * <p>An immutable snapshot of the panel layout and global orientation of a Nanoleaf
+ * device. The panel data is stored in parallel arrays indexed by <i>slot</i> (the
+ * position of a panel in the layout), so reading it does not allocate. Loops over
+ * every panel should use these per-slot accessors, while
+ * {@link PanelLayout#getImmutablePanels()} provides shared panel objects.</p>
+ * 
+ * <p>Every layout fetched by a device has a version number. The version only changes
+ * when the layout itself changes, so caches that depend on the layout can compare
+ * versions to decide if they are still valid.</p>
+ */
+public class PanelLayout {
+
+	private final int[] panelIds;
+	private final int[] xs;
+	private final int[] ys;
+	private final int[] orientations;
+	private final int[] shapeTypes;
+	private final int sideLength;
+	private final int globalOrientation;
+	private final long version;
+	private volatile LayoutGeometry geometry;
+	private volatile PanelIndex index;
+	private volatile AdjacencyGraph graph;
+	private volatile List<ImmutablePanel> immutablePanels;
+
+	private PanelLayout(int[] panelIds, int[] xs, int[] ys, int[] orientations,
+			int[] shapeTypes, int sideLength, int globalOrientation, long version) {
+		this.panelIds = panelIds;
+		this.xs = xs;
+		this.ys = ys;
+		this.orientations = orientations;
+		this.shapeTypes = shapeTypes;
+		this.sideLength = sideLength;
+		this.globalOrientation = globalOrientation;
+		this.version = version;
+	}
+
+	/**
+	 * Creates a layout from a list of panels.
+	 * 
+	 * @param panels              the panels in the layout
+	 * @param sideLength          the side length of the panels
+	 * @param globalOrientation   the global orientation of the layout
+	 * @param version             the layout version
+	 * @return                    a new layout
+	 */
+	public static PanelLayout fromPanels(List<Panel> panels, int sideLength,
+			int globalOrientation, long version) {
+		int n = panels.size();
+		int[] ids = new int[n];
+		int[] xs = new int[n];
+		int[] ys = new int[n];
+		int[] os = new int[n];
+		int[] shapes = new int[n];
+		for (int i = 0; i < n; i++) {
+			Panel p = panels.get(i);
+			ids[i] = p.getId();
+			xs[i] = p.getX();
+			ys[i] = p.getY();
+			os[i] = p.getOrientation();
+			shapes[i] = p.getShape() != null ? p.getShape().getValue() : -1;
+		}
+		return new PanelLayout(ids, xs, ys, os, shapes, sideLength, globalOrientation, version);
+	}
+
+	/**
+	 * Creates a layout from the JSON returned by the <code>panelLayout</code>
+	 * endpoint of a device.
+	 * 
+	 * @param json                   the panel layout JSON
+	 * @param version                the layout version
+	 * @return                       a new layout
+	 * @throws JSONParserException   If the JSON is not a valid panel layout
+	 */
+	public static PanelLayout fromJSON(JSONObject json, long version) {
+		if (!json.has("layout")) {
+			throw new JSONParserException("The panel layout is missing the layout data.");
+		}
+		JSONObject layout = json.getJSONObject("layout");
+		JSONArray arr = layout.getJSONArray("positionData");
+		int n = arr.length();
+		int[] ids = new int[n];
+		int[] xs = new int[n];
+		int[] ys = new int[n];
+		int[] os = new int[n];
+		int[] shapes = new int[n];
+		for (int i = 0; i < n; i++) {
+			JSONObject data = arr.getJSONObject(i);
+			ids[i] = data.getInt("panelId");
+			xs[i] = data.getInt("x");
+			ys[i] = data.getInt("y");
+			os[i] = data.getInt("o");
+			shapes[i] = data.getInt("shapeType");
+		}
+		int sideLength = layout.has("sideLength") ? layout.getInt("sideLength") : 0;
+		int globalOrientation = 0;
+		if (json.has("globalOrientation")) {
+			globalOrientation = json.getJSONObject("globalOrientation").getInt("value");
+		}
+		return new PanelLayout(ids, xs, ys, os, shapes, sideLength, globalOrientation, version);
+	}
+
+	/**
+	 * Converts the layout to JSON, in the same format as the <code>panelLayout</code>
+	 * endpoint of a device, so that it can be read again using
+	 * {@link PanelLayout#fromJSON(JSONObject, long)}. The version is not included.
+	 * 
+	 * @return   the panel layout JSON
+	 */
+	public JSONObject toJSON() {
+		JSONArray positionData = new JSONArray();
+		for (int i = 0; i < panelIds.length; i++) {
+			JSONObject data = new JSONObject();
+			data.put("panelId", panelIds[i]);
+			data.put("x", xs[i]);
+			data.put("y", ys[i]);
+			data.put("o", orientations[i]);
+			data.put("shapeType", shapeTypes[i]);
+			positionData.put(data);
+		}
+		JSONObject layout = new JSONObject();
+		layout.put("numPanels", panelIds.length);
+		layout.put("sideLength", sideLength);
+		layout.put("positionData", positionData);
+		JSONObject orientation = new JSONObject();
+		orientation.put("value", globalOrientation);
+		orientation.put("max", 360);
+		orientation.put("min", 0);
+		JSONObject json = new JSONObject();
+		json.put("layout", layout);
+		json.put("globalOrientation", orientation);
+		return json;
+	}
+
+	/**
+	 * Creates a copy of this layout with a different version.
+	 * 
+	 * @param version   the new layout version
+	 * @return          a new layout with the same panels and global orientation
+	 */
+	public PanelLayout withVersion(long version) {
+		return new PanelLayout(panelIds, xs, ys, orientations, shapeTypes,
+				sideLength, globalOrientation, version);
+	}
+
+	/**
+	 * Creates a copy of this layout with a different global orientation.
+	 * 
+	 * @param globalOrientation   the new global orientation
+	 * @param version             the version of the new layout
+	 * @return                    a new layout with the same panels
+	 */
+	public PanelLayout withGlobalOrientation(int globalOrientation, long version) {
+		return new PanelLayout(panelIds, xs, ys, orientations, shapeTypes,
+				sideLength, globalOrientation, version);
+	}
+
+	/**
+	 * Gets the version of the layout. Two layouts from the same device with the
+	 * same version are always equal.
+	 * 
+	 * @return   the layout version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets the number of panels in the layout.
+	 * 
+	 * @return   the number of panels
+	 */
+	public int size() {
+		return panelIds.length;
+	}
+
+	/**
+	 * Gets the side length of the panels, as reported by the device.
+	 * 
+	 * @return   the side length
+	 */
+	public int getSideLength() {
+		return sideLength;
+	}
+
+	/**
+	 * Gets the global orientation of the layout.
+	 * 
+	 * @return   the global orientation
+	 */
+	public int getGlobalOrientation() {
+		return globalOrientation;
+	}
+
+	/**
+	 * Gets the id of the panel in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the panel id
+	 */
+	public int getPanelId(int slot) {
+		return panelIds[slot];
+	}
+
+	/**
+	 * Gets the x coordinate of the panel in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the x coordinate
+	 */
+	public int getX(int slot) {
+		return xs[slot];
+	}
+
+	/**
+	 * Gets the y coordinate of the panel in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the y coordinate
+	 */
+	public int getY(int slot) {
+		return ys[slot];
+	}
+
+	/**
+	 * Gets the orientation of the panel in a slot, in degrees.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the panel orientation
+	 */
+	public int getOrientation(int slot) {
+		return orientations[slot];
+	}
+
+	/**
+	 * Gets the shape type value of the panel in a slot. This is one of the
+	 * constants defined in {@link ShapeType}.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the shape type value
+	 */
+	public int getShapeType(int slot) {
+		return shapeTypes[slot];
+	}
+
+	/**
+	 * Gets the geometry of the layout (the centroid and the panel coordinates
+	 * rotated to match the global orientation). The geometry is computed the
+	 * first time this method is called.
+	 * 
+	 * @return   the layout geometry
+	 */
+	public LayoutGeometry getGeometry() {
+		LayoutGeometry g = geometry;
+		if (g == null) {
+			// Computing the geometry twice is harmless, so this is not synchronized
+			g = LayoutGeometry.of(this);
+			geometry = g;
+		}
+		return g;
+	}
+
+	/**
+	 * Gets the slot of a panel.
+	 * 
+	 * @param panelId   the panel id
+	 * @return          the panel slot, or -1 if the panel is not in the layout
+	 */
+	public int getSlot(int panelId) {
+		return getIndex().getSlot(panelId);
+	}
+
+	/**
+	 * Gets the index that maps the panel ids of the layout to their slots.
+	 * The index is created the first time this method is called.
+	 * 
+	 * @return   the panel index
+	 */
+	public PanelIndex getIndex() {
+		PanelIndex i = index;
+		if (i == null) {
+			i = PanelIndex.of(panelIds);
+			index = i;
+		}
+		return i;
+	}
+
+	/**
+	 * Gets the adjacency graph of the layout. The graph is built the first time
+	 * this method is called, and is rebuilt only if it is called with a different
+	 * centroid distance. Data derived from the graph, such as its
+	 * {@link AdjacencyGraph#getDistances() distance table}, is cached along with it.
+	 * 
+	 * @param centroidDistance   the maximum centroid distance between two neighbors
+	 *                           (see {@link io.github.rowak.nanoleafapi.NanoleafDevice#getCentroidDistance()})
+	 * @return                   the adjacency graph
+	 */
+	public AdjacencyGraph getGraph(int centroidDistance) {
+		AdjacencyGraph g = graph;
+		if (g == null || g.getCentroidDistance() != centroidDistance) {
+			g = AdjacencyGraph.build(panelIds, xs, ys, centroidDistance);
+			graph = g;
+		}
+		return g;
+	}
+
+	/**
+	 * Creates a new panel object for the panel in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       a new panel
+	 */
+	public Panel getPanel(int slot) {
+		return new Panel(panelIds[slot], xs[slot], ys[slot], orientations[slot],
+				ShapeType.valueOf(shapeTypes[slot]));
+	}
+
+	/**
+	 * Creates new panel objects for every panel in the layout. The panels are
+	 * copies, so they can be modified without affecting the layout.
+	 * 
+	 * @return   a new list of panels, in slot order
+	 */
+	public List<Panel> getPanels() {
+		List<Panel> panels = new ArrayList<Panel>(panelIds.length);
+		for (int i = 0; i < panelIds.length; i++) {
+			panels.add(getPanel(i));
+		}
+		return panels;
+	}
+
+	/**
+	 * Gets the immutable panel in a slot. The per-slot accessors such as
+	 * {@link PanelLayout#getX(int)} should be preferred in loops over the
+	 * whole layout, since they read the panel data directly.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the immutable panel
+	 */
+	public ImmutablePanel getImmutablePanel(int slot) {
+		return getImmutablePanels().get(slot);
+	}
+
+	/**
+	 * Gets every panel in the layout as an immutable panel. The list is created
+	 * the first time this method is called and then shared, so it is not copied
+	 * when it is read by several threads or kept in a cache.
+	 * 
+	 * @return   an unmodifiable list of immutable panels, in slot order
+	 */
+	public List<ImmutablePanel> getImmutablePanels() {
+		List<ImmutablePanel> list = immutablePanels;
+		if (list == null) {
+			ImmutablePanel[] panels = new ImmutablePanel[panelIds.length];
+			for (int i = 0; i < panels.length; i++) {
+				panels[i] = new ImmutablePanel(panelIds[i], xs[i], ys[i],
+						orientations[i], shapeTypes[i]);
+			}
+			list = Collections.unmodifiableList(Arrays.asList(panels));
+			immutablePanels = list;
+		}
+		return list;
+	}
+
+	/**
+	 * Checks if another layout has the same panels, side length and global
+	 * orientation as this layout. The versions are not compared.
+	 * 
+	 * @param other   the other layout
+	 * @return        true if the layouts are the same, or false otherwise
+	 */
+	public boolean contentEquals(PanelLayout other) {
+		if (other == this) {
+			return true;
+		}
+		return other != null && sideLength == other.sideLength &&
+				globalOrientation == other.globalOrientation &&
+				Arrays.equals(panelIds, other.panelIds) && Arrays.equals(xs, other.xs) &&
+				Arrays.equals(ys, other.ys) && Arrays.equals(orientations, other.orientations) &&
+				Arrays.equals(shapeTypes, other.shapeTypes);
+	}
+
+	@Override
+	public String toString() {
+		return "PanelLayout[version=" + version + ", panels=" + panelIds.length +
+				", globalOrientation=" + globalOrientation + "]";
+	}
+}
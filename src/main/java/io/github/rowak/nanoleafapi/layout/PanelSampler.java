@@ -0,0 +1,316 @@
+package io.github.rowak.nanoleafapi.layout;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import io.github.rowak.nanoleafapi.ShapeType;
+
+/**
+ * <p>Samples the colors of the panels in a layout from an image, for example to
+ * mirror the contents of a screen onto the panels. The rotated layout is fitted
+ * into the image, and each panel takes the average color of the pixels that it
+ * covers.</p>
+ * 
+ * <p>All of the work that depends only on the layout and the image size is done
+ * when the sampler is created: every panel gets a list of pixel indices and
+ * weights. Sampling a frame is then a single pass over those lists, so a sampler
+ * should be created once and reused for every frame of the same size.</p>
+ * 
+ * <p>Each panel is treated as a disc (an ellipse if the layout is stretched)
+ * around its rotated centroid, with the same area as the panel shape. Pixels are
+ * weighted by how much of the pixel lies inside the disc. The y axis of the layout
+ * points up, so it is flipped to match the image, where the y axis points down.</p>
+ */
+public class PanelSampler {
+
+	/**
+	 * The ways that a layout can be fitted into an image.
+	 */
+	public enum FitMode {
+		/** The layout is scaled separately on each axis to fill the image */
+		STRETCH,
+		/** The layout is scaled to fit inside the image and centered,
+		 *  keeping its aspect ratio */
+		CONTAIN,
+		/** The layout is scaled to fill the whole image and centered, keeping its
+		 *  aspect ratio. Panels outside of the image are sampled from the edge. */
+		COVER
+	}
+
+	/** The number of samples per pixel along each axis, used to weight edge pixels */
+	private static final int SUBSAMPLES = 2;
+
+	private final LayoutGeometry geometry;
+	private final int width, height;
+	private final FitMode fitMode;
+	/** CSR pixel lists: the pixels of slot s are pixels[offsets[s]..offsets[s+1]) */
+	private final int[] offsets;
+	private final int[] pixels;
+	private final int[] weights;
+	private final long[] totalWeights;
+	/** Slot ranges of roughly equal work, for parallel sampling */
+	private final int[] chunkStarts;
+
+	/**
+	 * Creates a new sampler for a layout and an image size.
+	 * 
+	 * @param geometry   the layout geometry (see {@link PanelLayout#getGeometry()})
+	 * @param width      the width of the images that will be sampled
+	 * @param height     the height of the images that will be sampled
+	 * @param fitMode    how the layout is fitted into the image
+	 * @throws IllegalArgumentException  If the width or height is not positive
+	 */
+	public PanelSampler(LayoutGeometry geometry, int width, int height, FitMode fitMode) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("The image size must be positive.");
+		}
+		this.geometry = geometry;
+		this.width = width;
+		this.height = height;
+		this.fitMode = fitMode;
+
+		Rectangle bounds = geometry.getRotatedBounds();
+		double bw = Math.max(bounds.width, 1);
+		double bh = Math.max(bounds.height, 1);
+		double sx = width / bw;
+		double sy = height / bh;
+		if (fitMode == FitMode.CONTAIN) {
+			sx = sy = Math.min(sx, sy);
+		}
+		else if (fitMode == FitMode.COVER) {
+			sx = sy = Math.max(sx, sy);
+		}
+		double ox = (width - bw * sx) / 2;
+		double oy = (height - bh * sy) / 2;
+
+		PanelLayout layout = geometry.getLayout();
+		int n = layout.size();
+		offsets = new int[n+1];
+		totalWeights = new long[n];
+		int[] pixels = new int[Math.max(n*16, 64)];
+		int[] weights = new int[pixels.length];
+		int size = 0;
+		for (int slot = 0; slot < n; slot++) {
+			double cx = ox + (geometry.getRotatedX(slot) - bounds.x) * sx;
+			double cy = oy + (bounds.y + bh - geometry.getRotatedY(slot)) * sy;
+			double r = Math.sqrt(ShapeType.valueOf(layout.getShapeType(slot)).getArea() / Math.PI);
+			double rx = r * sx;
+			double ry = r * sy;
+			int x0 = Math.max((int)Math.floor(cx - rx), 0);
+			int x1 = Math.min((int)Math.ceil(cx + rx), width - 1);
+			int y0 = Math.max((int)Math.floor(cy - ry), 0);
+			int y1 = Math.min((int)Math.ceil(cy + ry), height - 1);
+			for (int py = y0; py <= y1 && rx > 0 && ry > 0; py++) {
+				for (int px = x0; px <= x1; px++) {
+					int w = coverage(px, py, cx, cy, rx, ry);
+					if (w > 0) {
+						if (size == pixels.length) {
+							pixels = Arrays.copyOf(pixels, size*2);
+							weights = Arrays.copyOf(weights, size*2);
+						}
+						pixels[size] = py*width + px;
+						weights[size] = w;
+						totalWeights[slot] += w;
+						size++;
+					}
+				}
+			}
+			if (totalWeights[slot] == 0) {
+				// The panel is too small (or outside of the image), so use the closest pixel
+				if (size == pixels.length) {
+					pixels = Arrays.copyOf(pixels, size*2);
+					weights = Arrays.copyOf(weights, size*2);
+				}
+				int px = Math.min(Math.max((int)cx, 0), width - 1);
+				int py = Math.min(Math.max((int)cy, 0), height - 1);
+				pixels[size] = py*width + px;
+				weights[size] = 1;
+				totalWeights[slot] = 1;
+				size++;
+			}
+			offsets[slot+1] = size;
+		}
+		this.pixels = Arrays.copyOf(pixels, size);
+		this.weights = Arrays.copyOf(weights, size);
+		chunkStarts = createChunks(offsets, Runtime.getRuntime().availableProcessors());
+	}
+
+	/* The number of subsamples of a pixel that are inside of an ellipse */
+	private static int coverage(int px, int py, double cx, double cy, double rx, double ry) {
+		int count = 0;
+		for (int j = 0; j < SUBSAMPLES; j++) {
+			double dy = (py + (j + 0.5) / SUBSAMPLES - cy) / ry;
+			for (int i = 0; i < SUBSAMPLES; i++) {
+				double dx = (px + (i + 0.5) / SUBSAMPLES - cx) / rx;
+				if (dx*dx + dy*dy <= 1) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/* Splits the slots into ranges with roughly the same number of pixels */
+	private static int[] createChunks(int[] offsets, int numChunks) {
+		int n = offsets.length - 1;
+		numChunks = Math.max(Math.min(numChunks, n), 1);
+		int[] starts = new int[numChunks + 1];
+		int total = offsets[n];
+		int slot = 0;
+		for (int c = 1; c < numChunks; c++) {
+			long target = (long)total * c / numChunks;
+			while (slot < n && offsets[slot] < target) {
+				slot++;
+			}
+			starts[c] = slot;
+		}
+		starts[numChunks] = n;
+		return starts;
+	}
+
+	/**
+	 * Gets the layout geometry that the sampler was created for.
+	 * 
+	 * @return   the layout geometry
+	 */
+	public LayoutGeometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * Gets the width of the images that the sampler samples.
+	 * 
+	 * @return   the image width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the images that the sampler samples.
+	 * 
+	 * @return   the image height
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the fit mode of the sampler.
+	 * 
+	 * @return   the fit mode
+	 */
+	public FitMode getFitMode() {
+		return fitMode;
+	}
+
+	/**
+	 * Gets the number of panels that are sampled. This is the length of the
+	 * arrays returned by the sample methods.
+	 * 
+	 * @return   the number of panels
+	 */
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Gets the id of the panel in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the panel id
+	 */
+	public int getPanelId(int slot) {
+		return geometry.getLayout().getPanelId(slot);
+	}
+
+	/**
+	 * Gets the number of pixels that are sampled for a panel.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the number of pixels
+	 */
+	public int getPixelCount(int slot) {
+		return offsets[slot+1] - offsets[slot];
+	}
+
+	/**
+	 * Samples the panel colors from an image.
+	 * 
+	 * @param argb   the image pixels in ARGB format, row by row (as returned by
+	 *               {@link java.awt.image.BufferedImage#getRGB(int, int, int, int, int[], int, int)}).
+	 *               The alpha channel is ignored.
+	 * @return       a new array with the RGB color of each panel, in slot order
+	 * @throws IllegalArgumentException  If the image is smaller than the sampler size
+	 */
+	public int[] sample(int[] argb) {
+		int[] colors = new int[size()];
+		sample(argb, colors);
+		return colors;
+	}
+
+	/**
+	 * Samples the panel colors from an image into an existing array.
+	 * 
+	 * @param argb     the image pixels in ARGB format, row by row
+	 * @param colors   the array to write the RGB color of each panel to, in slot order
+	 * @throws IllegalArgumentException  If the image is smaller than the sampler size,
+	 *                                   or the colors array is too small
+	 */
+	public void sample(int[] argb, int[] colors) {
+		checkArrays(argb, colors);
+		sampleRange(argb, colors, 0, size());
+	}
+
+	/**
+	 * Samples the panel colors from an image into an existing array, splitting the
+	 * work across the available processors. This is only faster than
+	 * {@link PanelSampler#sample(int[], int[])} when a lot of pixels are sampled
+	 * (large layouts or large images).
+	 * 
+	 * @param argb     the image pixels in ARGB format, row by row
+	 * @param colors   the array to write the RGB color of each panel to, in slot order
+	 * @throws IllegalArgumentException  If the image is smaller than the sampler size,
+	 *                                   or the colors array is too small
+	 */
+	public void sampleParallel(int[] argb, int[] colors) {
+		checkArrays(argb, colors);
+		int numChunks = chunkStarts.length - 1;
+		if (numChunks <= 1) {
+			sampleRange(argb, colors, 0, size());
+			return;
+		}
+		IntStream.range(0, numChunks).parallel().forEach(c ->
+				sampleRange(argb, colors, chunkStarts[c], chunkStarts[c+1]));
+	}
+
+	private void checkArrays(int[] argb, int[] colors) {
+		if (argb.length < width*height) {
+			throw new IllegalArgumentException("The image must contain at least " +
+					width*height + " pixels.");
+		}
+		if (colors.length < size()) {
+			throw new IllegalArgumentException("The colors array must have a length of " +
+					"at least " + size() + ".");
+		}
+	}
+
+	private void sampleRange(int[] argb, int[] colors, int from, int to) {
+		for (int slot = from; slot < to; slot++) {
+			long r = 0, g = 0, b = 0;
+			for (int k = offsets[slot]; k < offsets[slot+1]; k++) {
+				int p = argb[pixels[k]];
+				int w = weights[k];
+				r += ((p >> 16) & 0xFF) * w;
+				g += ((p >> 8) & 0xFF) * w;
+				b += (p & 0xFF) * w;
+			}
+			long total = totalWeights[slot];
+			long half = total / 2;
+			colors[slot] = (int)((r + half) / total) << 16 |
+					(int)((g + half) / total) << 8 |
+					(int)((b + half) / total);
+		}
+	}
+}
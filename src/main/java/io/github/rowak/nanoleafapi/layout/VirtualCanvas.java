@@ -0,0 +1,474 @@
+package io.github.rowak.nanoleafapi.layout;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import io.github.rowak.nanoleafapi.NanoleafDevice;
+import io.github.rowak.nanoleafapi.NanoleafException;
+import io.github.rowak.nanoleafapi.util.TaskRunner;
+
+/**
+ * <p>Combines the panels of several devices into a single coordinate space, so
+ * that one animation can be rendered across all of them. Each device is placed
+ * on the canvas with an offset and a rotation.</p>
+ * 
+ * <p>Panels are identified on the canvas by a <i>handle</i>, which packs the index
+ * of the device on the canvas and the panel id into a long (see
+ * {@link VirtualCanvas#handle(int, int)}), since panel ids are only unique within
+ * one device. Panels are also stored in <i>slots</i>: the panels of device
+ * <code>d</code> are in the slots from <code>getDeviceStart(d)</code> (inclusive)
+ * to <code>getDeviceEnd(d)</code> (exclusive), in the same order as in the
+ * layout of the device. A color buffer indexed by slot can therefore be split
+ * into one range per device.</p>
+ * 
+ * <p>A canvas is immutable. If the layout of a device changes, a new canvas must
+ * be built (see {@link VirtualCanvas#isUpToDate()}).</p>
+ */
+public class VirtualCanvas {
+
+	private final String[] deviceNames;
+	private final NanoleafDevice[] devices;
+	private final PanelLayout[] layouts;
+	/** The first slot of each device, plus the total number of slots */
+	private final int[] deviceStarts;
+	private final long[] handles;
+	private final int[] xs;
+	private final int[] ys;
+	private final PanelGrid grid;
+	private final Rectangle bounds;
+
+	private VirtualCanvas(List<Placement> placements) {
+		int numDevices = placements.size();
+		deviceNames = new String[numDevices];
+		devices = new NanoleafDevice[numDevices];
+		layouts = new PanelLayout[numDevices];
+		deviceStarts = new int[numDevices + 1];
+		for (int d = 0; d < numDevices; d++) {
+			Placement p = placements.get(d);
+			deviceNames[d] = p.name;
+			devices[d] = p.device;
+			layouts[d] = p.layout;
+			deviceStarts[d+1] = deviceStarts[d] + p.layout.size();
+		}
+		int n = deviceStarts[numDevices];
+		handles = new long[n];
+		xs = new int[n];
+		ys = new int[n];
+		int cellSize = 1;
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (int d = 0; d < numDevices; d++) {
+			Placement p = placements.get(d);
+			LayoutGeometry geometry = p.layout.getGeometry();
+			double rad = Math.toRadians(p.rotation);
+			double cos = Math.cos(rad);
+			double sin = Math.sin(rad);
+			int cx = geometry.getCentroidX();
+			int cy = geometry.getCentroidY();
+			for (int i = 0; i < p.layout.size(); i++) {
+				int slot = deviceStarts[d] + i;
+				int x = geometry.getRotatedX(i) - cx;
+				int y = geometry.getRotatedY(i) - cy;
+				handles[slot] = handle(d, p.layout.getPanelId(i));
+				xs[slot] = (int)Math.round(x * cos - y * sin) + cx + p.offsetX;
+				ys[slot] = (int)Math.round(x * sin + y * cos) + cy + p.offsetY;
+				int r = LayoutGeometry.getCircumradius(p.layout.getShapeType(i));
+				cellSize = Math.max(cellSize, r*2);
+				minX = Math.min(minX, xs[slot] - r);
+				minY = Math.min(minY, ys[slot] - r);
+				maxX = Math.max(maxX, xs[slot] + r);
+				maxY = Math.max(maxY, ys[slot] + r);
+			}
+		}
+		grid = new PanelGrid(xs, ys, cellSize);
+		bounds = n > 0 ? new Rectangle(minX, minY, maxX - minX, maxY - minY) : new Rectangle();
+	}
+
+	/**
+	 * Packs a device index and a panel id into a panel handle.
+	 * 
+	 * @param deviceIndex   the index of the device on the canvas
+	 * @param panelId       the panel id
+	 * @return              the panel handle
+	 */
+	public static long handle(int deviceIndex, int panelId) {
+		return ((long)deviceIndex << 32) | (panelId & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Gets the device index of a panel handle.
+	 * 
+	 * @param handle   the panel handle
+	 * @return         the index of the device on the canvas
+	 */
+	public static int getDeviceIndex(long handle) {
+		return (int)(handle >>> 32);
+	}
+
+	/**
+	 * Gets the panel id of a panel handle.
+	 * 
+	 * @param handle   the panel handle
+	 * @return         the panel id
+	 */
+	public static int getPanelId(long handle) {
+		return (int)handle;
+	}
+
+	/**
+	 * Gets the number of panels on the canvas.
+	 * 
+	 * @return   the number of panels
+	 */
+	public int size() {
+		return handles.length;
+	}
+
+	/**
+	 * Gets the number of devices on the canvas.
+	 * 
+	 * @return   the number of devices
+	 */
+	public int getDeviceCount() {
+		return deviceNames.length;
+	}
+
+	/**
+	 * Gets the name of a device on the canvas.
+	 * 
+	 * @param deviceIndex   the index of the device
+	 * @return              the device name
+	 */
+	public String getDeviceName(int deviceIndex) {
+		return deviceNames[deviceIndex];
+	}
+
+	/**
+	 * Gets the index of a device on the canvas by its name.
+	 * 
+	 * @param name   the device name
+	 * @return       the index of the device, or -1 if the device is not on the canvas
+	 */
+	public int getDeviceIndex(String name) {
+		for (int d = 0; d < deviceNames.length; d++) {
+			if (deviceNames[d].equals(name)) {
+				return d;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets a device on the canvas.
+	 * 
+	 * @param deviceIndex   the index of the device
+	 * @return              the device, or null if the canvas was built from a
+	 *                      layout without a device
+	 */
+	public NanoleafDevice getDevice(int deviceIndex) {
+		return devices[deviceIndex];
+	}
+
+	/**
+	 * Gets the layout of a device that the canvas was built from.
+	 * 
+	 * @param deviceIndex   the index of the device
+	 * @return              the device layout
+	 */
+	public PanelLayout getLayout(int deviceIndex) {
+		return layouts[deviceIndex];
+	}
+
+	/**
+	 * Gets the first slot of the panels of a device.
+	 * 
+	 * @param deviceIndex   the index of the device
+	 * @return              the first slot (inclusive)
+	 */
+	public int getDeviceStart(int deviceIndex) {
+		return deviceStarts[deviceIndex];
+	}
+
+	/**
+	 * Gets the slot after the last panel of a device.
+	 * 
+	 * @param deviceIndex   the index of the device
+	 * @return              the last slot (exclusive)
+	 */
+	public int getDeviceEnd(int deviceIndex) {
+		return deviceStarts[deviceIndex + 1];
+	}
+
+	/**
+	 * Gets the handle of the panel in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the panel handle
+	 */
+	public long getHandle(int slot) {
+		return handles[slot];
+	}
+
+	/**
+	 * Gets the handles of every panel on the canvas.
+	 * 
+	 * @return   a new array of handles, in slot order
+	 */
+	public long[] getHandles() {
+		return Arrays.copyOf(handles, handles.length);
+	}
+
+	/**
+	 * Gets the slot of a panel.
+	 * 
+	 * @param handle   the panel handle
+	 * @return         the panel slot, or -1 if the panel is not on the canvas
+	 */
+	public int getSlot(long handle) {
+		return getSlot(getDeviceIndex(handle), getPanelId(handle));
+	}
+
+	/**
+	 * Gets the slot of a panel.
+	 * 
+	 * @param deviceIndex   the index of the device
+	 * @param panelId       the panel id
+	 * @return              the panel slot, or -1 if the panel is not on the canvas
+	 */
+	public int getSlot(int deviceIndex, int panelId) {
+		if (deviceIndex < 0 || deviceIndex >= layouts.length) {
+			return -1;
+		}
+		int slot = layouts[deviceIndex].getSlot(panelId);
+		return slot >= 0 ? deviceStarts[deviceIndex] + slot : -1;
+	}
+
+	/**
+	 * Gets the x coordinate of the panel in a slot on the canvas.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the x coordinate
+	 */
+	public int getX(int slot) {
+		return xs[slot];
+	}
+
+	/**
+	 * Gets the y coordinate of the panel in a slot on the canvas.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the y coordinate
+	 */
+	public int getY(int slot) {
+		return ys[slot];
+	}
+
+	/**
+	 * Gets the bounding box of every panel on the canvas. Each panel is treated
+	 * as the circle around its centroid that contains the whole panel.
+	 * 
+	 * @return   a new rectangle containing the bounds
+	 */
+	public Rectangle getBounds() {
+		return new Rectangle(bounds);
+	}
+
+	/**
+	 * Gets the spatial index of the panel centroids on the canvas. The slots of
+	 * the grid are the slots of the canvas.
+	 * 
+	 * @return   the spatial index
+	 */
+	public PanelGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * Finds the panel with the centroid closest to a point on the canvas.
+	 * 
+	 * @param x   the x coordinate
+	 * @param y   the y coordinate
+	 * @return    the slot of the closest panel, or -1 if the canvas is empty
+	 */
+	public int findNearest(int x, int y) {
+		return grid.findNearest(x, y);
+	}
+
+	/**
+	 * Finds every panel with a centroid strictly closer than a radius to a
+	 * point on the canvas.
+	 * 
+	 * @param x        the x coordinate
+	 * @param y        the y coordinate
+	 * @param radius   the search radius (exclusive)
+	 * @param out      the array to write the found slots to (at most {@link VirtualCanvas#size()})
+	 * @return         the number of panels found
+	 */
+	public int findWithin(int x, int y, int radius, int[] out) {
+		return grid.findWithin(x, y, radius, out);
+	}
+
+	/**
+	 * Checks if the layouts that the canvas was built from are still the current
+	 * layouts of the devices, by comparing their layout versions. Devices that
+	 * were added with only a layout are always considered up to date.
+	 * 
+	 * @return   true if no device layout has changed, or false otherwise
+	 */
+	public boolean isUpToDate() {
+		for (int d = 0; d < devices.length; d++) {
+			if (devices[d] != null && devices[d].getLayoutVersion() != layouts[d].getVersion()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* The position of a device on the canvas */
+	private static class Placement {
+		String name;
+		NanoleafDevice device;
+		PanelLayout layout;
+		int offsetX, offsetY;
+		int rotation;
+	}
+
+	/**
+	 * Builds virtual canvases. Devices are placed on the canvas in the order that
+	 * they are added, which is also the order of their device indices.
+	 */
+	public static class Builder {
+
+		private List<Placement> placements = new ArrayList<Placement>();
+
+		/**
+		 * Adds a device to the canvas without moving or rotating it. The layout of
+		 * the device is fetched when the canvas is built.
+		 * 
+		 * @param name     the name of the device
+		 * @param device   the device
+		 * @return         the current builder
+		 */
+		public Builder addDevice(String name, NanoleafDevice device) {
+			return addDevice(name, device, 0, 0, 0);
+		}
+
+		/**
+		 * Adds a device to the canvas. The layout of the device is fetched when
+		 * the canvas is built.
+		 * 
+		 * @param name       the name of the device
+		 * @param device     the device
+		 * @param offsetX    the x offset of the device on the canvas
+		 * @param offsetY    the y offset of the device on the canvas
+		 * @param rotation   the rotation of the device around its centroid, in degrees
+		 * @return           the current builder
+		 */
+		public Builder addDevice(String name, NanoleafDevice device,
+				int offsetX, int offsetY, int rotation) {
+			return add(name, device, null, offsetX, offsetY, rotation);
+		}
+
+		/**
+		 * Adds a device layout to the canvas without a device. This does not
+		 * require any requests when the canvas is built.
+		 * 
+		 * @param name       the name of the device
+		 * @param layout     the device layout
+		 * @param offsetX    the x offset of the device on the canvas
+		 * @param offsetY    the y offset of the device on the canvas
+		 * @param rotation   the rotation of the device around its centroid, in degrees
+		 * @return           the current builder
+		 */
+		public Builder addLayout(String name, PanelLayout layout,
+				int offsetX, int offsetY, int rotation) {
+			return add(name, null, layout, offsetX, offsetY, rotation);
+		}
+
+		/**
+		 * Changes the position of a device that was already added.
+		 * 
+		 * @param name       the name of the device
+		 * @param offsetX    the x offset of the device on the canvas
+		 * @param offsetY    the y offset of the device on the canvas
+		 * @param rotation   the rotation of the device around its centroid, in degrees
+		 * @return           the current builder
+		 * @throws IllegalArgumentException  If no device with the name was added
+		 */
+		public Builder setPlacement(String name, int offsetX, int offsetY, int rotation) {
+			Placement p = getPlacement(name);
+			if (p == null) {
+				throw new IllegalArgumentException("Device " + name + " has not been added.");
+			}
+			p.offsetX = offsetX;
+			p.offsetY = offsetY;
+			p.rotation = rotation;
+			return this;
+		}
+
+		private Builder add(String name, NanoleafDevice device, PanelLayout layout,
+				int offsetX, int offsetY, int rotation) {
+			if (getPlacement(name) != null) {
+				throw new IllegalArgumentException("Device " + name + " has already been added.");
+			}
+			Placement p = new Placement();
+			p.name = name;
+			p.device = device;
+			p.layout = layout;
+			p.offsetX = offsetX;
+			p.offsetY = offsetY;
+			p.rotation = rotation;
+			placements.add(p);
+			return this;
+		}
+
+		private Placement getPlacement(String name) {
+			for (Placement p : placements) {
+				if (p.name.equals(name)) {
+					return p;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Builds the canvas. The layouts of the devices are fetched in parallel
+		 * (or taken from their layout caches).
+		 * 
+		 * @return                     a new virtual canvas
+		 * @throws NanoleafException   If the access token of a device is invalid
+		 * @throws IOException         If an HTTP exception occurs
+		 */
+		public VirtualCanvas build()
+				throws NanoleafException, IOException {
+			List<Placement> copies = new ArrayList<Placement>();
+			List<Callable<PanelLayout>> tasks = new ArrayList<Callable<PanelLayout>>();
+			for (Placement p : placements) {
+				Placement copy = new Placement();
+				copy.name = p.name;
+				copy.device = p.device;
+				copy.layout = p.layout;
+				copy.offsetX = p.offsetX;
+				copy.offsetY = p.offsetY;
+				copy.rotation = p.rotation;
+				copies.add(copy);
+				if (p.layout == null) {
+					tasks.add(() -> copy.device.getLayout());
+				}
+			}
+			List<Future<PanelLayout>> results = TaskRunner.runAll(tasks, Math.max(tasks.size(), 1));
+			int next = 0;
+			for (Placement copy : copies) {
+				if (copy.layout == null) {
+					copy.layout = TaskRunner.getResult(results.get(next++));
+				}
+			}
+			return new VirtualCanvas(copies);
+		}
+	}
+}
@@ -96,13 +96,17 @@ public class AnimationParser {
 			data[i-1] = Integer.parseInt(dataTemp[i]);
 		}
 		
-		int maxFrames = 0;
+		// Frames are grouped by frame number in a list first, so the map
+		// is only updated once per frame number and once per panel
+		List<List<Frame>> byNum = new ArrayList<List<Frame>>();
 		int x = 0;
 		while (x < data.length) {
 			int panelId = data[x];
 			int numFrames = data[x+1];
-			if (numFrames > maxFrames) {
-				maxFrames = numFrames;
+			List<Frame> panelFrames = framesByPanel.get(panelId);
+			if (panelFrames == null) {
+				panelFrames = new ArrayList<Frame>(numFrames);
+				framesByPanel.put(panelId, panelFrames);
 			}
 			for (int i = 0; i < numFrames; i++) {
 				int r = data[x + 2 + i*5];
@@ -112,16 +116,16 @@ public class AnimationParser {
 				int t = data[x + 6 + i*5];
 				
 				Frame frame = new Frame(r, g, b, t);
-				if (!framesByNum.containsKey(i)) {
-					framesByNum.put(i, new ArrayList<Frame>());
+				if (i == byNum.size()) {
+					byNum.add(new ArrayList<Frame>());
 				}
-				if (!framesByPanel.containsKey(panelId)) {
-					framesByPanel.put(panelId, new ArrayList<Frame>());
-				}
-				framesByNum.get(i).add(frame);
-				framesByPanel.get(panelId).add(frame);
+				byNum.get(i).add(frame);
+				panelFrames.add(frame);
 			}
 			x += 2 + 5*numFrames;
 		}
+		for (int i = 0; i < byNum.size(); i++) {
+			framesByNum.put(i, byNum.get(i));
+		}
 	}
 }
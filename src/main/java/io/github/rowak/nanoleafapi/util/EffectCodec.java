@@ -0,0 +1,683 @@
+package io.github.rowak.nanoleafapi.util;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.github.rowak.nanoleafapi.Color;
+import io.github.rowak.nanoleafapi.CustomEffect;
+import io.github.rowak.nanoleafapi.Effect;
+import io.github.rowak.nanoleafapi.Palette;
+import io.github.rowak.nanoleafapi.Plugin;
+import io.github.rowak.nanoleafapi.PluginEffect;
+import io.github.rowak.nanoleafapi.StaticEffect;
+
+/**
+ * <p>A compact, versioned binary format for effects, palettes and colors. It is much
+ * smaller and faster than the JSON representation: numbers are stored as variable
+ * length integers, custom effect animation data is stored as a list of integers
+ * rather than as a string, and plugin option values keep their types.</p>
+ * 
+ * <p>Every encoded buffer starts with a header (a magic number, the format version,
+ * and the kind of object that follows). Encoding returns a buffer that is ready to
+ * be read or written to a channel. Decoding reads directly from the given buffer,
+ * starting at its position, so effects can be read from a memory-mapped file without
+ * first copying it into an array. The buffer position is advanced past the decoded
+ * data.</p>
+ */
+public class EffectCodec {
+
+	/** The magic number at the start of every encoded buffer ("NLFX") */
+	public static final int MAGIC = 0x4E4C4658;
+
+	/** The current format version */
+	public static final int VERSION = 1;
+
+	private static final byte KIND_EFFECTS = 1;
+	private static final byte KIND_PALETTE = 2;
+	private static final byte KIND_COLOR = 3;
+
+	private static final byte TYPE_EFFECT = 0;
+	private static final byte TYPE_CUSTOM = 1;
+	private static final byte TYPE_STATIC = 2;
+	private static final byte TYPE_PLUGIN = 3;
+
+	private static final byte ANIM_DATA_NULL = 0;
+	private static final byte ANIM_DATA_INTS = 1;
+	private static final byte ANIM_DATA_STRING = 2;
+
+	private static final byte VALUE_NULL = 0;
+	private static final byte VALUE_FALSE = 1;
+	private static final byte VALUE_TRUE = 2;
+	private static final byte VALUE_INT = 3;
+	private static final byte VALUE_FLOAT = 4;
+	private static final byte VALUE_DOUBLE = 5;
+	private static final byte VALUE_STRING = 6;
+	private static final byte VALUE_DECIMAL = 7;
+	private static final byte VALUE_JSON_OBJECT = 8;
+	private static final byte VALUE_JSON_ARRAY = 9;
+
+	private EffectCodec() {}
+
+	/**
+	 * Encodes an effect. The concrete effect type (custom, static, plugin or
+	 * basic) is preserved.
+	 * 
+	 * @param effect   the effect to encode
+	 * @return         a buffer containing the encoded effect
+	 */
+	public static ByteBuffer encode(Effect effect) {
+		return encode(Collections.singletonList(effect));
+	}
+
+	/**
+	 * Encodes a list of effects into a single buffer.
+	 * 
+	 * @param effects   the effects to encode
+	 * @return          a buffer containing the encoded effects
+	 */
+	public static ByteBuffer encode(List<? extends Effect> effects) {
+		Writer w = new Writer(64 + effects.size()*256);
+		w.header(KIND_EFFECTS);
+		w.varint(effects.size());
+		for (Effect ef : effects) {
+			writeEffect(w, ef);
+		}
+		return w.toBuffer();
+	}
+
+	/**
+	 * Encodes a palette.
+	 * 
+	 * @param palette   the palette to encode
+	 * @return          a buffer containing the encoded palette
+	 */
+	public static ByteBuffer encode(Palette palette) {
+		Writer w = new Writer(16 + palette.getColors().size()*8);
+		w.header(KIND_PALETTE);
+		writePalette(w, palette);
+		return w.toBuffer();
+	}
+
+	/**
+	 * Encodes a color.
+	 * 
+	 * @param color   the color to encode
+	 * @return        a buffer containing the encoded color
+	 */
+	public static ByteBuffer encode(Color color) {
+		Writer w = new Writer(16);
+		w.header(KIND_COLOR);
+		writeColor(w, color);
+		return w.toBuffer();
+	}
+
+	/**
+	 * Decodes a single effect. If the buffer contains multiple effects,
+	 * only the first effect is returned.
+	 * 
+	 * @param buffer   the buffer to read from
+	 * @return         the decoded effect
+	 * @throws IllegalArgumentException  If the buffer does not contain encoded
+	 *                                   effects or is malformed
+	 */
+	public static Effect decode(ByteBuffer buffer) {
+		List<Effect> effects = decodeAll(buffer);
+		if (effects.isEmpty()) {
+			throw new IllegalArgumentException("The buffer does not contain any effects.");
+		}
+		return effects.get(0);
+	}
+
+	/**
+	 * Decodes a list of effects.
+	 * 
+	 * @param buffer   the buffer to read from
+	 * @return         the decoded effects
+	 * @throws IllegalArgumentException  If the buffer does not contain encoded
+	 *                                   effects or is malformed
+	 */
+	public static List<Effect> decodeAll(ByteBuffer buffer) {
+		ByteOrder order = buffer.order();
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		try {
+			readHeader(buffer, KIND_EFFECTS);
+			int count = readCount(buffer);
+			List<Effect> effects = new ArrayList<Effect>(Math.min(count, 1024));
+			for (int i = 0; i < count; i++) {
+				effects.add(readEffect(buffer));
+			}
+			return effects;
+		}
+		catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Unexpected end of effect data.");
+		}
+		finally {
+			buffer.order(order);
+		}
+	}
+
+	/**
+	 * Decodes a palette.
+	 * 
+	 * @param buffer   the buffer to read from
+	 * @return         the decoded palette
+	 * @throws IllegalArgumentException  If the buffer does not contain an encoded
+	 *                                   palette or is malformed
+	 */
+	public static Palette decodePalette(ByteBuffer buffer) {
+		ByteOrder order = buffer.order();
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		try {
+			readHeader(buffer, KIND_PALETTE);
+			return readPalette(buffer);
+		}
+		catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Unexpected end of palette data.");
+		}
+		finally {
+			buffer.order(order);
+		}
+	}
+
+	/**
+	 * Decodes a color.
+	 * 
+	 * @param buffer   the buffer to read from
+	 * @return         the decoded color
+	 * @throws IllegalArgumentException  If the buffer does not contain an encoded
+	 *                                   color or is malformed
+	 */
+	public static Color decodeColor(ByteBuffer buffer) {
+		ByteOrder order = buffer.order();
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		try {
+			readHeader(buffer, KIND_COLOR);
+			return readColor(buffer);
+		}
+		catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Unexpected end of color data.");
+		}
+		finally {
+			buffer.order(order);
+		}
+	}
+
+	private static void writeEffect(Writer w, Effect ef) {
+		byte type;
+		if (ef instanceof StaticEffect) {
+			type = TYPE_STATIC;
+		}
+		else if (ef instanceof CustomEffect) {
+			type = TYPE_CUSTOM;
+		}
+		else if (ef instanceof PluginEffect) {
+			type = TYPE_PLUGIN;
+		}
+		else {
+			type = TYPE_EFFECT;
+		}
+		w.put(type);
+		w.string(ef.getName());
+		w.string(ef.getEffectType());
+		w.string(ef.getVersion());
+		w.string(ef.getColorType());
+		if (ef.getPalette() != null) {
+			w.put((byte)1);
+			writePalette(w, ef.getPalette());
+		}
+		else {
+			w.put((byte)0);
+		}
+		if (type == TYPE_CUSTOM || type == TYPE_STATIC) {
+			CustomEffect custom = (CustomEffect)ef;
+			if (type == TYPE_CUSTOM) {
+				w.put((byte)(custom.isLoopEnabled() ? 1 : 0));
+			}
+			writeAnimData(w, custom.getAnimationData());
+		}
+		else if (type == TYPE_PLUGIN) {
+			writePlugin(w, ((PluginEffect)ef).getPlugin());
+		}
+	}
+
+	private static Effect readEffect(ByteBuffer buf) {
+		byte type = buf.get();
+		Effect ef;
+		switch (type) {
+			case TYPE_EFFECT:
+				ef = new Effect();
+				break;
+			case TYPE_CUSTOM:
+				ef = new CustomEffect();
+				break;
+			case TYPE_STATIC:
+				ef = new StaticEffect();
+				break;
+			case TYPE_PLUGIN:
+				ef = new PluginEffect();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown effect type " + type + ".");
+		}
+		ef.setName(readString(buf));
+		ef.setEffectType(readString(buf));
+		ef.setVersion(readString(buf));
+		ef.setColorType(readString(buf));
+		ef.setPalette(buf.get() != 0 ? readPalette(buf) : null);
+		if (type == TYPE_CUSTOM) {
+			CustomEffect custom = (CustomEffect)ef;
+			custom.setLoopEnabled(buf.get() != 0);
+			custom.setAnimationData(readAnimData(buf));
+		}
+		else if (type == TYPE_STATIC) {
+			((StaticEffect)ef).setAnimationData(readAnimData(buf));
+		}
+		else if (type == TYPE_PLUGIN) {
+			((PluginEffect)ef).setPlugin(readPlugin(buf));
+		}
+		return ef;
+	}
+
+	private static void writePalette(Writer w, Palette palette) {
+		List<Color> colors = palette.getColors();
+		w.varint(colors.size());
+		for (Color c : colors) {
+			writeColor(w, c);
+		}
+	}
+
+	private static Palette readPalette(ByteBuffer buf) {
+		int count = readCount(buf);
+		List<Color> colors = new ArrayList<Color>(Math.min(count, 1024));
+		for (int i = 0; i < count; i++) {
+			colors.add(readColor(buf));
+		}
+		return new Palette(colors);
+	}
+
+	/*
+	 * Colors are stored as three varints. The probability is only stored
+	 * if it is set, which is indicated by the low bit of the hue.
+	 */
+	private static void writeColor(Writer w, Color c) {
+		boolean hasProbability = c.getProbability() != 0;
+		w.varint((zigzag(c.getHue()) << 1) | (hasProbability ? 1 : 0));
+		w.varint(zigzag(c.getSaturation()));
+		w.varint(zigzag(c.getBrightness()));
+		if (hasProbability) {
+			w.putFloat(c.getProbability());
+		}
+	}
+
+	private static Color readColor(ByteBuffer buf) {
+		int hueAndFlag = readVarint(buf);
+		int hue = unzigzag(hueAndFlag >>> 1);
+		int saturation = unzigzag(readVarint(buf));
+		int brightness = unzigzag(readVarint(buf));
+		Color c = Color.fromHSB(hue, saturation, brightness);
+		if ((hueAndFlag & 1) != 0) {
+			c.setProbability(buf.getFloat());
+		}
+		return c;
+	}
+
+	/*
+	 * Animation data is stored as a list of integers when possible, which is
+	 * roughly a third of the size of the string. The string is stored as-is if
+	 * it contains anything other than whitespace-separated integers.
+	 */
+	private static void writeAnimData(Writer w, String animData) {
+		if (animData == null) {
+			w.put(ANIM_DATA_NULL);
+			return;
+		}
+		int[] values = parseInts(animData);
+		if (values == null) {
+			w.put(ANIM_DATA_STRING);
+			w.string(animData);
+			return;
+		}
+		w.put(ANIM_DATA_INTS);
+		w.varint(values.length);
+		for (int v : values) {
+			w.varint(zigzag(v));
+		}
+	}
+
+	private static String readAnimData(ByteBuffer buf) {
+		byte mode = buf.get();
+		switch (mode) {
+			case ANIM_DATA_NULL:
+				return null;
+			case ANIM_DATA_STRING:
+				return readString(buf);
+			case ANIM_DATA_INTS:
+				int count = readCount(buf);
+				StringBuilder sb = new StringBuilder(count*4);
+				for (int i = 0; i < count; i++) {
+					if (i > 0) {
+						sb.append(' ');
+					}
+					sb.append(unzigzag(readVarint(buf)));
+				}
+				return sb.toString();
+			default:
+				throw new IllegalArgumentException("Unknown animation data encoding " + mode + ".");
+		}
+	}
+
+	// Returns null if the string is not a whitespace-separated list of integers
+	private static int[] parseInts(String str) {
+		int[] values = new int[16];
+		int n = 0;
+		int i = 0;
+		int len = str.length();
+		while (i < len) {
+			char c = str.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+				continue;
+			}
+			boolean negative = c == '-';
+			if (negative) {
+				i++;
+			}
+			int start = i;
+			long value = 0;
+			while (i < len && (c = str.charAt(i)) >= '0' && c <= '9') {
+				value = value*10 + (c - '0');
+				if (value > Integer.MAX_VALUE) {
+					return null;
+				}
+				i++;
+			}
+			if (i == start || (i < len && !Character.isWhitespace(str.charAt(i)))) {
+				return null;
+			}
+			if (n == values.length) {
+				values = Arrays.copyOf(values, n*2);
+			}
+			values[n++] = (int)(negative ? -value : value);
+		}
+		return Arrays.copyOf(values, n);
+	}
+
+	private static void writePlugin(Writer w, Plugin plugin) {
+		if (plugin == null) {
+			w.put((byte)0);
+			return;
+		}
+		w.put((byte)1);
+		w.string(plugin.getType());
+		w.string(plugin.getUUID());
+		JSONArray options = plugin.getOptionsJSON();
+		int count = options != null ? options.length() : 0;
+		w.varint(count);
+		for (int i = 0; i < count; i++) {
+			JSONObject option = options.getJSONObject(i);
+			w.string(option.getString("name"));
+			writeValue(w, option.opt("value"));
+		}
+	}
+
+	private static Plugin readPlugin(ByteBuffer buf) {
+		if (buf.get() == 0) {
+			return null;
+		}
+		Plugin plugin = new Plugin();
+		plugin.setType(readString(buf));
+		plugin.setUUID(readString(buf));
+		int count = readCount(buf);
+		Map<String, Object> options = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < count; i++) {
+			String name = readString(buf);
+			options.put(name, readValue(buf));
+		}
+		plugin.setOptions(options);
+		return plugin;
+	}
+
+	private static void writeValue(Writer w, Object value) {
+		if (value == null || value == JSONObject.NULL) {
+			w.put(VALUE_NULL);
+		}
+		else if (value instanceof Boolean) {
+			w.put((Boolean)value ? VALUE_TRUE : VALUE_FALSE);
+		}
+		else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			w.put(VALUE_INT);
+			w.varint(zigzag(((Number)value).intValue()));
+		}
+		else if (value instanceof Float) {
+			w.put(VALUE_FLOAT);
+			w.putFloat((Float)value);
+		}
+		else if (value instanceof Double) {
+			w.put(VALUE_DOUBLE);
+			w.putDouble((Double)value);
+		}
+		else if (value instanceof Number) {
+			// Longs and arbitrary precision numbers
+			w.put(VALUE_DECIMAL);
+			w.string(value.toString());
+		}
+		else if (value instanceof JSONObject) {
+			w.put(VALUE_JSON_OBJECT);
+			w.string(value.toString());
+		}
+		else if (value instanceof JSONArray) {
+			w.put(VALUE_JSON_ARRAY);
+			w.string(value.toString());
+		}
+		else {
+			w.put(VALUE_STRING);
+			w.string(value.toString());
+		}
+	}
+
+	private static Object readValue(ByteBuffer buf) {
+		byte type = buf.get();
+		switch (type) {
+			case VALUE_NULL:
+				return JSONObject.NULL;
+			case VALUE_FALSE:
+				return false;
+			case VALUE_TRUE:
+				return true;
+			case VALUE_INT:
+				return unzigzag(readVarint(buf));
+			case VALUE_FLOAT:
+				return buf.getFloat();
+			case VALUE_DOUBLE:
+				return buf.getDouble();
+			case VALUE_STRING:
+				return readString(buf);
+			case VALUE_DECIMAL:
+				BigDecimal num = new BigDecimal(readString(buf));
+				try {
+					return num.longValueExact();
+				}
+				catch (ArithmeticException e) {
+					return num;
+				}
+			case VALUE_JSON_OBJECT:
+				return new JSONObject(readString(buf));
+			case VALUE_JSON_ARRAY:
+				return new JSONArray(readString(buf));
+			default:
+				throw new IllegalArgumentException("Unknown value type " + type + ".");
+		}
+	}
+
+	private static void readHeader(ByteBuffer buf, byte kind) {
+		if (buf.remaining() < 6 || buf.getInt() != MAGIC) {
+			throw new IllegalArgumentException("The buffer does not contain encoded effect data.");
+		}
+		int version = buf.get() & 0xFF;
+		if (version > VERSION) {
+			throw new IllegalArgumentException("Unsupported effect data version " + version + ".");
+		}
+		byte actualKind = buf.get();
+		if (actualKind != kind) {
+			throw new IllegalArgumentException("Unexpected data kind " + actualKind + ".");
+		}
+	}
+
+	/*
+	 * Strings are stored as a varint of the UTF-8 length plus one (zero
+	 * for null), followed by the UTF-8 bytes.
+	 */
+	private static String readString(ByteBuffer buf) {
+		int len = readVarint(buf) - 1;
+		if (len == -1) {
+			return null;
+		}
+		if (len < 0 || len > buf.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		String str;
+		if (buf.hasArray()) {
+			str = new String(buf.array(), buf.arrayOffset() + buf.position(),
+					len, StandardCharsets.UTF_8);
+		}
+		else {
+			// Decode directly from the (possibly mapped) buffer
+			ByteBuffer slice = buf.duplicate();
+			slice.limit(buf.position() + len);
+			str = StandardCharsets.UTF_8.decode(slice).toString();
+		}
+		buf.position(buf.position() + len);
+		return str;
+	}
+
+	/*
+	 * Reads an unsigned 32-bit varint. The fifth byte only has four bits left,
+	 * so a fifth byte with any higher bits set (or a sixth byte) is malformed.
+	 */
+	private static int readVarint(ByteBuffer buf) {
+		int value = 0;
+		for (int shift = 0; shift < 28; shift += 7) {
+			byte b = buf.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		byte b = buf.get();
+		if ((b & 0xF0) != 0) {
+			throw new IllegalArgumentException("Malformed variable length integer.");
+		}
+		return value | (b << 28);
+	}
+
+	/*
+	 * Reads the number of elements that follow. Every element takes at least
+	 * one byte, so a count larger than the rest of the buffer is truncated
+	 * (and is not used to size any arrays).
+	 */
+	private static int readCount(ByteBuffer buf) {
+		int count = readVarint(buf);
+		if (count < 0) {
+			throw new IllegalArgumentException("Malformed element count " +
+					(count & 0xFFFFFFFFL) + ".");
+		}
+		if (count > buf.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		return count;
+	}
+
+	private static int zigzag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	private static int unzigzag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	/*
+	 * A growable big-endian byte writer. Heap buffers are used for writing,
+	 * and the result is wrapped without copying.
+	 */
+	private static class Writer {
+
+		private byte[] data;
+		private int size;
+
+		Writer(int capacity) {
+			data = new byte[Math.max(capacity, 16)];
+		}
+
+		void header(byte kind) {
+			putInt(MAGIC);
+			put((byte)VERSION);
+			put(kind);
+		}
+
+		void put(byte b) {
+			ensure(1);
+			data[size++] = b;
+		}
+
+		void putInt(int v) {
+			ensure(4);
+			data[size++] = (byte)(v >>> 24);
+			data[size++] = (byte)(v >>> 16);
+			data[size++] = (byte)(v >>> 8);
+			data[size++] = (byte)v;
+		}
+
+		void putFloat(float f) {
+			putInt(Float.floatToIntBits(f));
+		}
+
+		void putDouble(double d) {
+			long v = Double.doubleToLongBits(d);
+			putInt((int)(v >>> 32));
+			putInt((int)v);
+		}
+
+		void varint(int v) {
+			ensure(5);
+			while ((v & ~0x7F) != 0) {
+				data[size++] = (byte)((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			data[size++] = (byte)v;
+		}
+
+		void string(String str) {
+			if (str == null) {
+				varint(0);
+				return;
+			}
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+			varint(bytes.length + 1);
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, data, size, bytes.length);
+			size += bytes.length;
+		}
+
+		private void ensure(int n) {
+			if (size + n > data.length) {
+				data = Arrays.copyOf(data, Math.max(data.length*2, size + n));
+			}
+		}
+
+		ByteBuffer toBuffer() {
+			return ByteBuffer.wrap(data, 0, size).slice();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package io.github.rowak.nanoleafapi.util;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.github.rowak.nanoleafapi.Effect;
+
+/**
+ * <p>Computes content hashes of effects. Two effects have the same digest if and
+ * only if their JSON is identical, ignoring the effect name and the order of
+ * the keys in every JSON object. This makes it possible to detect effects that
+ * have changed (same name, different digest) or that have been renamed (different
+ * name, same digest) without comparing the effects field by field.</p>
+ */
+public class EffectDigest {
+
+	/** The JSON key of the effect name, which is excluded from the digest */
+	private static final String NAME_KEY = "animName";
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private EffectDigest() {}
+
+	/**
+	 * Computes the SHA-256 digest of an effect as a lowercase hex string.
+	 * 
+	 * @param effect   the effect
+	 * @return         the effect digest
+	 */
+	public static String digest(Effect effect) {
+		return digest(effect.toJSON());
+	}
+
+	/**
+	 * Computes the SHA-256 digest of raw effect JSON as a lowercase hex string.
+	 * 
+	 * @param json   the effect JSON
+	 * @return       the effect digest
+	 */
+	public static String digest(JSONObject json) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+		byte[] hash = md.digest(canonicalJSON(json).getBytes(StandardCharsets.UTF_8));
+		char[] hex = new char[hash.length*2];
+		for (int i = 0; i < hash.length; i++) {
+			hex[i*2] = HEX[(hash[i] >> 4) & 0xF];
+			hex[i*2 + 1] = HEX[hash[i] & 0xF];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * Converts effect JSON to a canonical string, with the keys of every object
+	 * sorted and the effect name removed.
+	 * 
+	 * @param json   the effect JSON
+	 * @return       the canonical JSON string
+	 */
+	public static String canonicalJSON(JSONObject json) {
+		StringBuilder sb = new StringBuilder();
+		List<String> keys = new ArrayList<String>(json.keySet());
+		keys.remove(NAME_KEY);
+		appendObject(sb, json, keys);
+		return sb.toString();
+	}
+
+	private static void appendValue(StringBuilder sb, Object value) {
+		if (value instanceof JSONObject) {
+			JSONObject obj = (JSONObject)value;
+			appendObject(sb, obj, new ArrayList<String>(obj.keySet()));
+		}
+		else if (value instanceof JSONArray) {
+			JSONArray arr = (JSONArray)value;
+			sb.append('[');
+			for (int i = 0; i < arr.length(); i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				appendValue(sb, arr.get(i));
+			}
+			sb.append(']');
+		}
+		else if (value instanceof Number) {
+			// Numbers are normalized so that 1, 1.0 and 1.00 hash equally
+			BigDecimal num = new BigDecimal(value.toString());
+			sb.append(num.signum() == 0 ? "0" : num.stripTrailingZeros().toPlainString());
+		}
+		else if (value instanceof Boolean) {
+			sb.append(value.toString());
+		}
+		else if (value == null || value == JSONObject.NULL) {
+			sb.append("null");
+		}
+		else {
+			sb.append(JSONObject.quote(value.toString()));
+		}
+	}
+
+	private static void appendObject(StringBuilder sb, JSONObject obj, List<String> keys) {
+		Collections.sort(keys);
+		sb.append('{');
+		for (int i = 0; i < keys.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(JSONObject.quote(keys.get(i))).append(':');
+			appendValue(sb, obj.get(keys.get(i)));
+		}
+		sb.append('}');
+	}
+}
@@ -0,0 +1,218 @@
+package io.github.rowak.nanoleafapi.util;
+
+import io.github.rowak.nanoleafapi.CustomEffect;
+
+/**
+ * <p>Evaluates the color of every panel in a custom effect at an arbitrary point in
+ * time, without a device. This can be used to preview effects, drive on-screen
+ * simulators, or generate frames for external streaming.</p>
+ * 
+ * <p>The timeline is interpreted the same way as on a device: each frame is reached
+ * after its transition time has elapsed, colors are linearly interpolated between
+ * frames, and a looping effect transitions from its last frame back to its first
+ * frame using the first frame's transition time. A non-looping effect holds its
+ * last frame.</p>
+ * 
+ * <p>Rendering does not allocate. The renderer keeps a cursor for each panel so
+ * that sequential calls with increasing times are constant-time; it is therefore
+ * <b>not</b> thread-safe. Use one renderer per thread.</p>
+ */
+public class EffectRenderer {
+
+	private final FrameTimeline timeline;
+	private final int[] offsets;
+	private final int[] colors;
+	// Time (ms) at which each frame is reached during the first pass
+	private final long[] keyTimes;
+	// Loop period (ms) of each panel, zero if the panel holds its last frame
+	private final long[] periods;
+	private final int[] cursors;
+	private int initialColor;
+
+	/**
+	 * Creates a new renderer for a custom effect.
+	 * 
+	 * @param effect   the custom effect to render
+	 */
+	public EffectRenderer(CustomEffect effect) {
+		this(FrameTimeline.fromEffect(effect));
+	}
+
+	/**
+	 * Creates a new renderer for a frame timeline.
+	 * 
+	 * @param timeline   the timeline to render
+	 */
+	public EffectRenderer(FrameTimeline timeline) {
+		this.timeline = timeline;
+		this.offsets = timeline.frameOffsets();
+		this.colors = timeline.colors();
+		int[] times = timeline.transitionTimes();
+		int numPanels = timeline.getPanelCount();
+		keyTimes = new long[colors.length];
+		periods = new long[numPanels];
+		cursors = new int[numPanels];
+		for (int s = 0; s < numPanels; s++) {
+			long t = 0;
+			for (int i = offsets[s]; i < offsets[s+1]; i++) {
+				t += times[i] * 100L;
+				keyTimes[i] = t;
+			}
+			// The period of a loop is the sum of all transition times, since the
+			// first frame's transition is reused to wrap from the last frame
+			periods[s] = timeline.isLoopEnabled() ? t : 0;
+		}
+	}
+
+	/**
+	 * Gets the timeline being rendered.
+	 * 
+	 * @return   the timeline
+	 */
+	public FrameTimeline getTimeline() {
+		return timeline;
+	}
+
+	/**
+	 * Gets the number of panels that are rendered. The output arrays passed
+	 * to {@link EffectRenderer#render(long, int[])} must be at least this long.
+	 * 
+	 * @return   the number of panels
+	 */
+	public int getPanelCount() {
+		return cursors.length;
+	}
+
+	/**
+	 * Gets the length of a single pass through the effect, in milliseconds.
+	 * This is the time at which the last frame of the longest panel is reached.
+	 * 
+	 * @return   the effect duration
+	 */
+	public long getDuration() {
+		long duration = 0;
+		for (int s = 0; s < cursors.length; s++) {
+			if (offsets[s+1] > offsets[s]) {
+				duration = Math.max(duration, keyTimes[offsets[s+1]-1]);
+			}
+		}
+		return duration;
+	}
+
+	/**
+	 * Sets the color that panels transition <i>from</i> before they reach their
+	 * first frame. This is black by default.
+	 * 
+	 * @param color   the packed <code>0xRRGGBB</code> color
+	 */
+	public void setInitialColor(int color) {
+		this.initialColor = color & 0xFFFFFF;
+	}
+
+	/**
+	 * Renders the color of every panel at a point in time. The color of the
+	 * panel in slot <code>i</code> (see {@link FrameTimeline#getPanelIds()}) is
+	 * written to <code>out[i]</code> as a packed <code>0xRRGGBB</code> integer.
+	 * 
+	 * @param timeMillis   the time since the start of the effect, in milliseconds
+	 * @param out          the output array
+	 * @throws IllegalArgumentException  if the output array is too small
+	 */
+	public void render(long timeMillis, int[] out) {
+		if (out.length < cursors.length) {
+			throw new IllegalArgumentException("The output array must have a length of " +
+					"at least " + cursors.length + ".");
+		}
+		for (int s = 0; s < cursors.length; s++) {
+			out[s] = renderPanel(s, timeMillis);
+		}
+	}
+
+	/**
+	 * Renders the color of a single panel at a point in time.
+	 * 
+	 * @param slot         the panel slot
+	 * @param timeMillis   the time since the start of the effect, in milliseconds
+	 * @return             the packed <code>0xRRGGBB</code> color
+	 */
+	public int renderPanel(int slot, long timeMillis) {
+		int start = offsets[slot];
+		int end = offsets[slot+1];
+		if (start == end) {
+			return initialColor;
+		}
+		long t = Math.max(timeMillis, 0);
+		long first = keyTimes[start];
+		if (t < first) {
+			return lerp(initialColor, colors[start], t, first);
+		}
+		long last = keyTimes[end-1];
+		long period = periods[slot];
+		if (t >= last) {
+			if (period == 0) {
+				return colors[end-1];
+			}
+			t = first + (t - first) % period;
+		}
+		// Position of the current frame, relative to the start of the panel's frames
+		int i = findFrame(slot, start, end, t);
+		if (i == end - 1) {
+			// Wrapping from the last frame to the first frame
+			long segment = first + period - keyTimes[i];
+			return lerp(colors[i], colors[start], t - keyTimes[i], segment);
+		}
+		return lerp(colors[i], colors[i+1], t - keyTimes[i],
+				keyTimes[i+1] - keyTimes[i]);
+	}
+
+	/**
+	 * Resets the internal cursors. This is only an optimization hint and
+	 * does not change the rendered colors.
+	 */
+	public void reset() {
+		for (int s = 0; s < cursors.length; s++) {
+			cursors[s] = 0;
+		}
+	}
+
+	// Finds the last frame i with keyTimes[i] <= t, checking the cached cursor first
+	private int findFrame(int slot, int start, int end, long t) {
+		int i = start + cursors[slot];
+		if (i < end && keyTimes[i] <= t) {
+			if (i + 1 >= end || keyTimes[i+1] > t) {
+				return i;
+			}
+			if (i + 2 >= end || keyTimes[i+2] > t) {
+				cursors[slot]++;
+				return i + 1;
+			}
+		}
+		int lo = start;
+		int hi = end - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (keyTimes[mid] <= t) {
+				lo = mid;
+			}
+			else {
+				hi = mid - 1;
+			}
+		}
+		cursors[slot] = lo - start;
+		return lo;
+	}
+
+	static int lerp(int from, int to, long elapsed, long duration) {
+		if (duration <= 0 || elapsed >= duration) {
+			return to;
+		}
+		int r = lerpChannel((from >> 16) & 0xFF, (to >> 16) & 0xFF, elapsed, duration);
+		int g = lerpChannel((from >> 8) & 0xFF, (to >> 8) & 0xFF, elapsed, duration);
+		int b = lerpChannel(from & 0xFF, to & 0xFF, elapsed, duration);
+		return (r << 16) | (g << 8) | b;
+	}
+
+	private static int lerpChannel(int from, int to, long elapsed, long duration) {
+		return (int)(from + (to - from) * elapsed / duration);
+	}
+}
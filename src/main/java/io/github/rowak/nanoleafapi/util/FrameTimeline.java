@@ -0,0 +1,415 @@
+package io.github.rowak.nanoleafapi.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import io.github.rowak.nanoleafapi.CustomEffect;
+import io.github.rowak.nanoleafapi.Frame;
+import io.github.rowak.nanoleafapi.StaticEffect;
+import io.github.rowak.nanoleafapi.layout.PanelIndex;
+
+/**
+ * <p>An immutable, compiled form of custom effect animation data. The frames for
+ * every panel are stored in flat primitive arrays so that they can be evaluated
+ * quickly by an {@link EffectRenderer}.</p>
+ * 
+ * <p>Panels are stored in <i>slots</i>. The slot of a panel is its position in
+ * the array returned by {@link FrameTimeline#getPanelIds()}. Colors are packed
+ * as <code>0xRRGGBB</code> integers and transition times are in tenths of a
+ * second, exactly as they appear in the animation data.</p>
+ */
+public class FrameTimeline {
+
+	private final int[] panelIds;
+	private final int[] frameOffsets;
+	private final int[] colors;
+	private final int[] transitionTimes;
+	private final boolean loop;
+	private volatile PanelIndex index;
+
+	private FrameTimeline(int[] panelIds, int[] frameOffsets,
+			int[] colors, int[] transitionTimes, boolean loop) {
+		this.panelIds = panelIds;
+		this.frameOffsets = frameOffsets;
+		this.colors = colors;
+		this.transitionTimes = transitionTimes;
+		this.loop = loop;
+	}
+
+	/**
+	 * Compiles the animation data of a custom effect.
+	 * 
+	 * @param effect   the custom effect
+	 * @return         a new frame timeline
+	 * @throws IllegalArgumentException  If the animation data is invalid
+	 */
+	public static FrameTimeline fromEffect(CustomEffect effect) {
+		return fromAnimationData(effect.getAnimationData(), effect.isLoopEnabled());
+	}
+
+	/**
+	 * Compiles the animation data of a static effect. Static effects
+	 * never loop.
+	 * 
+	 * @param effect   the static effect
+	 * @return         a new frame timeline
+	 * @throws IllegalArgumentException  If the animation data is invalid
+	 */
+	public static FrameTimeline fromEffect(StaticEffect effect) {
+		return fromAnimationData(effect.getAnimationData(), false);
+	}
+
+	/**
+	 * Compiles raw animation data. Refer to the <a href = "https://forum.nanoleaf.me/docs#_sh5xwlxaz1pa">
+	 * OpenAPI documentation (section 3.2.6.1)</a> for more information about the format.
+	 * 
+	 * @param animData   the animation data
+	 * @param loop       whether the animation loops
+	 * @return           a new frame timeline
+	 * @throws IllegalArgumentException  If the animation data is truncated or
+	 *                                   has a negative panel or frame count
+	 */
+	public static FrameTimeline fromAnimationData(String animData, boolean loop) {
+		int[] data = parseInts(animData);
+		int numPanels = data.length > 0 ? data[0] : 0;
+		if (numPanels < 0) {
+			throw new IllegalArgumentException("Invalid animation data: negative panel count " +
+					numPanels + ".");
+		}
+		// Each panel needs at least a panel id and a frame count
+		if (numPanels > (data.length - 1) / 2) {
+			throw new IllegalArgumentException("Invalid animation data: " + numPanels +
+					" panels, but only " + (data.length - 1) + " values follow the panel count.");
+		}
+		Builder builder = new Builder(numPanels, loop);
+		int x = 1;
+		for (int i = 0; i < numPanels; i++) {
+			if (x + 1 >= data.length) {
+				throw new IllegalArgumentException("Invalid animation data: missing panel " +
+						(i + 1) + " of " + numPanels + ".");
+			}
+			int panelId = data[x];
+			int numFrames = data[x+1];
+			if (numFrames < 0 || numFrames > (data.length - x - 2) / 5) {
+				throw new IllegalArgumentException("Invalid animation data: panel " + panelId +
+						" has " + numFrames + " frames, but only " + (data.length - x - 2) +
+						" values remain.");
+			}
+			int slot = builder.addPanel(panelId);
+			for (int f = 0; f < numFrames; f++) {
+				int r = data[x + 2 + f*5];
+				int g = data[x + 3 + f*5];
+				int b = data[x + 4 + f*5];
+				int t = data[x + 6 + f*5];
+				builder.addFrame(slot, rgb(r, g, b), t);
+			}
+			x += 2 + 5*numFrames;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Compiles a map of frames, such as the one returned by
+	 * {@link CustomEffect.Builder#getFrames()}.
+	 * 
+	 * @param frames   the frames for each panel id
+	 * @param loop     whether the animation loops
+	 * @return         a new frame timeline
+	 */
+	public static FrameTimeline fromFrames(Map<Integer, List<Frame>> frames, boolean loop) {
+		Builder builder = new Builder(frames.size(), loop);
+		for (Map.Entry<Integer, List<Frame>> entry : frames.entrySet()) {
+			int slot = builder.addPanel(entry.getKey());
+			for (Frame frame : entry.getValue()) {
+				builder.addFrame(slot, rgb(frame.getRed(), frame.getGreen(),
+						frame.getBlue()), frame.getTransitionTime());
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Gets the panel ids in slot order.
+	 * 
+	 * @return   a copy of the panel ids
+	 */
+	public int[] getPanelIds() {
+		return Arrays.copyOf(panelIds, panelIds.length);
+	}
+
+	/**
+	 * Gets the number of panels (slots) in the timeline.
+	 * 
+	 * @return   the number of panels
+	 */
+	public int getPanelCount() {
+		return panelIds.length;
+	}
+
+	/**
+	 * Gets the panel id stored in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the panel id
+	 */
+	public int getPanelId(int slot) {
+		return panelIds[slot];
+	}
+
+	/**
+	 * Gets the slot of a panel.
+	 * 
+	 * @param panelId   the panel id
+	 * @return          the panel slot, or -1 if the panel is not in the timeline
+	 */
+	public int getSlot(int panelId) {
+		return getIndex().getSlot(panelId);
+	}
+
+	/**
+	 * Gets the index that maps the panel ids of the timeline to their slots.
+	 * The index is created the first time this method is called.
+	 * 
+	 * @return   the panel index
+	 */
+	public PanelIndex getIndex() {
+		PanelIndex i = index;
+		if (i == null) {
+			i = PanelIndex.of(panelIds);
+			index = i;
+		}
+		return i;
+	}
+
+	/**
+	 * Gets the number of frames for the panel in a slot.
+	 * 
+	 * @param slot   the panel slot
+	 * @return       the number of frames
+	 */
+	public int getFrameCount(int slot) {
+		return frameOffsets[slot+1] - frameOffsets[slot];
+	}
+
+	/**
+	 * Gets the packed <code>0xRRGGBB</code> color of a frame.
+	 * 
+	 * @param slot    the panel slot
+	 * @param frame   the frame number for the panel
+	 * @return        the frame color
+	 */
+	public int getColor(int slot, int frame) {
+		return colors[frameOffsets[slot] + frame];
+	}
+
+	/**
+	 * Gets the transition time of a frame, in tenths of a second.
+	 * 
+	 * @param slot    the panel slot
+	 * @param frame   the frame number for the panel
+	 * @return        the frame transition time
+	 */
+	public int getTransitionTime(int slot, int frame) {
+		return transitionTimes[frameOffsets[slot] + frame];
+	}
+
+	/**
+	 * Checks whether the animation loops.
+	 * 
+	 * @return   true, if the animation loops
+	 */
+	public boolean isLoopEnabled() {
+		return loop;
+	}
+
+	/**
+	 * Converts the timeline back into raw animation data.
+	 * 
+	 * @return   the animation data
+	 */
+	public String toAnimationData() {
+		StringBuilder data = new StringBuilder();
+		int numPanels = 0;
+		for (int s = 0; s < panelIds.length; s++) {
+			if (getFrameCount(s) > 0) {
+				numPanels++;
+			}
+		}
+		data.append(numPanels);
+		for (int s = 0; s < panelIds.length; s++) {
+			int numFrames = getFrameCount(s);
+			if (numFrames == 0) {
+				continue;
+			}
+			data.append(' ').append(panelIds[s]).append(' ').append(numFrames);
+			for (int i = frameOffsets[s]; i < frameOffsets[s+1]; i++) {
+				int c = colors[i];
+				data.append(' ').append((c >> 16) & 0xFF)
+					.append(' ').append((c >> 8) & 0xFF)
+					.append(' ').append(c & 0xFF)
+					.append(" 0 ").append(transitionTimes[i]);
+			}
+		}
+		return data.toString();
+	}
+
+	/**
+	 * Bakes the timeline into a new custom effect.
+	 * 
+	 * @param name   the name of the effect
+	 * @return       a new custom effect
+	 */
+	public CustomEffect toCustomEffect(String name) {
+		return CustomEffect.createCustomEffect(name, toAnimationData(), loop);
+	}
+
+	int[] frameOffsets() {
+		return frameOffsets;
+	}
+
+	int[] colors() {
+		return colors;
+	}
+
+	int[] transitionTimes() {
+		return transitionTimes;
+	}
+
+	/**
+	 * Packs an RGB color into a <code>0xRRGGBB</code> integer.
+	 * 
+	 * @param red     the red RGB value
+	 * @param green   the green RGB value
+	 * @param blue    the blue RGB value
+	 * @return        the packed color
+	 */
+	public static int rgb(int red, int green, int blue) {
+		return ((red & 0xFF) << 16) | ((green & 0xFF) << 8) | (blue & 0xFF);
+	}
+
+	// Parses a space-separated list of integers without splitting the string
+	private static int[] parseInts(String str) {
+		int[] values = new int[16];
+		int n = 0;
+		int len = str == null ? 0 : str.length();
+		int i = 0;
+		while (i < len) {
+			char c = str.charAt(i);
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				boolean negative = c == '-';
+				if (negative) {
+					i++;
+				}
+				int value = 0;
+				while (i < len && (c = str.charAt(i)) >= '0' && c <= '9') {
+					value = value*10 + (c - '0');
+					i++;
+				}
+				if (n == values.length) {
+					values = Arrays.copyOf(values, n*2);
+				}
+				values[n++] = negative ? -value : value;
+			}
+			else {
+				i++;
+			}
+		}
+		return Arrays.copyOf(values, n);
+	}
+
+	/**
+	 * Builds frame timelines one frame at a time without any intermediate
+	 * {@link Frame} objects. Frames must be added in order for each panel,
+	 * but panels may be interleaved.
+	 */
+	public static class Builder {
+
+		private final boolean loop;
+		private int[] panelIds;
+		private int numPanels;
+		private int[] frameSlots;
+		private int[] colors;
+		private int[] transitionTimes;
+		private int numFrames;
+
+		/**
+		 * Creates a new timeline builder.
+		 * 
+		 * @param expectedPanels   the expected number of panels (used for sizing)
+		 * @param loop             whether the animation loops
+		 */
+		public Builder(int expectedPanels, boolean loop) {
+			this.loop = loop;
+			panelIds = new int[Math.max(expectedPanels, 4)];
+			frameSlots = new int[Math.max(expectedPanels, 4)*2];
+			colors = new int[frameSlots.length];
+			transitionTimes = new int[frameSlots.length];
+		}
+
+		/**
+		 * Adds a panel to the timeline.
+		 * 
+		 * @param panelId   the panel id
+		 * @return          the slot of the new panel
+		 */
+		public int addPanel(int panelId) {
+			if (numPanels == panelIds.length) {
+				panelIds = Arrays.copyOf(panelIds, numPanels*2);
+			}
+			panelIds[numPanels] = panelId;
+			return numPanels++;
+		}
+
+		/**
+		 * Appends a frame to the panel in a slot.
+		 * 
+		 * @param slot             the panel slot returned by {@link Builder#addPanel(int)}
+		 * @param color            the packed <code>0xRRGGBB</code> color
+		 * @param transitionTime   the transition time in tenths of a second
+		 * @return                 the current builder
+		 */
+		public Builder addFrame(int slot, int color, int transitionTime) {
+			if (slot < 0 || slot >= numPanels) {
+				throw new IllegalArgumentException("Slot " + slot + " does not exist.");
+			}
+			if (numFrames == frameSlots.length) {
+				int size = numFrames*2;
+				frameSlots = Arrays.copyOf(frameSlots, size);
+				colors = Arrays.copyOf(colors, size);
+				transitionTimes = Arrays.copyOf(transitionTimes, size);
+			}
+			frameSlots[numFrames] = slot;
+			colors[numFrames] = color & 0xFFFFFF;
+			transitionTimes[numFrames] = Math.max(transitionTime, 0);
+			numFrames++;
+			return this;
+		}
+
+		/**
+		 * Builds the timeline.
+		 * 
+		 * @return   a new frame timeline
+		 */
+		public FrameTimeline build() {
+			// Counting sort of the frames by slot (stable, so frame order is kept)
+			int[] offsets = new int[numPanels+1];
+			for (int i = 0; i < numFrames; i++) {
+				offsets[frameSlots[i]+1]++;
+			}
+			for (int s = 0; s < numPanels; s++) {
+				offsets[s+1] += offsets[s];
+			}
+			int[] next = Arrays.copyOf(offsets, numPanels);
+			int[] sortedColors = new int[numFrames];
+			int[] sortedTimes = new int[numFrames];
+			for (int i = 0; i < numFrames; i++) {
+				int j = next[frameSlots[i]]++;
+				sortedColors[j] = colors[i];
+				sortedTimes[j] = transitionTimes[i];
+			}
+			return new FrameTimeline(Arrays.copyOf(panelIds, numPanels),
+					offsets, sortedColors, sortedTimes, loop);
+		}
+	}
+}
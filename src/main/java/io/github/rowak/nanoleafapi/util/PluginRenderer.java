@@ -0,0 +1,498 @@
+package io.github.rowak.nanoleafapi.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import io.github.rowak.nanoleafapi.Color;
+import io.github.rowak.nanoleafapi.Direction;
+import io.github.rowak.nanoleafapi.Palette;
+import io.github.rowak.nanoleafapi.Panel;
+import io.github.rowak.nanoleafapi.Plugin;
+import io.github.rowak.nanoleafapi.PluginEffect;
+
+/**
+ * <p>Simulates the legacy plugins from {@link PluginTemplates} locally, producing a
+ * {@link FrameTimeline}. The timeline can be rendered with an {@link EffectRenderer}
+ * (for example, to stream the effect), or baked into a custom effect using
+ * {@link FrameTimeline#toCustomEffect(String)}.</p>
+ * 
+ * <p>The simulations are approximations of the controller behavior. They use the
+ * <code>transTime</code>, <code>delayTime</code>, <code>linDirection</code>,
+ * <code>nColorsPerFrame</code>, <code>mainColorProb</code> and <code>loop</code>
+ * plugin options, with the same defaults as the plugin templates.</p>
+ * 
+ * <p>A renderer is created once per layout. The panel orderings for every
+ * direction are computed in the constructor and reused for every render.
+ * Panels without a side length (controllers and connectors) are not rendered.</p>
+ */
+public class PluginRenderer {
+
+	/**
+	 * The legacy plugin algorithms that can be simulated.
+	 */
+	public enum Algorithm {
+		WHEEL(PluginTemplates.WHEEL_UUID),
+		FLOW(PluginTemplates.FLOW_UUID),
+		EXPLODE(PluginTemplates.EXPLODE_UUID),
+		FADE(PluginTemplates.FADE_UUID),
+		RANDOM(PluginTemplates.RANDOM_UUID),
+		HIGHLIGHT(PluginTemplates.HIGHLIGHT_UUID);
+
+		private final String uuid;
+
+		private Algorithm(String uuid) {
+			this.uuid = uuid;
+		}
+
+		/**
+		 * Gets the UUID of the plugin that implements the algorithm.
+		 * 
+		 * @return   the plugin UUID
+		 */
+		public String getUUID() {
+			return uuid;
+		}
+
+		/**
+		 * Gets the algorithm for a plugin UUID.
+		 * 
+		 * @param uuid   the plugin UUID
+		 * @return       the algorithm, or null if the plugin is not supported
+		 */
+		public static Algorithm fromUUID(String uuid) {
+			for (Algorithm a : values()) {
+				if (a.uuid.equals(uuid)) {
+					return a;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final int DEFAULT_TRANS_TIME = 25;
+	private static final int DEFAULT_DELAY_TIME = 3;
+	private static final int DEFAULT_COLORS_PER_FRAME = 3;
+	private static final float DEFAULT_MAIN_COLOR_PROB = 0.5f;
+
+	/** The minimum number of steps in a generated random or highlight cycle */
+	private static final int MIN_RANDOM_STEPS = 8;
+
+	private final int[] panelIds;
+	/** The rank of each panel along each direction, indexed by {@link Direction#ordinal()} */
+	private final int[][] ranks;
+	/** The number of distinct ranks along each direction */
+	private final int[] numRanks;
+
+	/**
+	 * Creates a new renderer for a panel layout, such as the layout returned by
+	 * {@link io.github.rowak.nanoleafapi.NanoleafDevice#getPanels()}.
+	 * 
+	 * @param panels   the panels in the layout
+	 */
+	public PluginRenderer(List<Panel> panels) {
+		int n = 0;
+		int[] ids = new int[panels.size()];
+		int[] xs = new int[panels.size()];
+		int[] ys = new int[panels.size()];
+		int ringWidth = 0;
+		for (Panel p : panels) {
+			int side = p.getShape() != null ? p.getShape().getSideLength() : 1;
+			if (side <= 0) {
+				continue;
+			}
+			if (ringWidth == 0 || side < ringWidth*2) {
+				ringWidth = Math.max(side/2, 1);
+			}
+			ids[n] = p.getId();
+			xs[n] = p.getX();
+			ys[n] = p.getY();
+			n++;
+		}
+		panelIds = Arrays.copyOf(ids, n);
+
+		Direction[] directions = Direction.values();
+		ranks = new int[directions.length][];
+		numRanks = new int[directions.length];
+		int[] keys = new int[n];
+		for (Direction d : directions) {
+			if (d == Direction.OUTWARDS) {
+				double cx = 0, cy = 0;
+				for (int i = 0; i < n; i++) {
+					cx += xs[i];
+					cy += ys[i];
+				}
+				cx /= Math.max(n, 1);
+				cy /= Math.max(n, 1);
+				for (int i = 0; i < n; i++) {
+					keys[i] = (int)(Math.hypot(xs[i] - cx, ys[i] - cy) / Math.max(ringWidth, 1));
+				}
+			}
+			else {
+				for (int i = 0; i < n; i++) {
+					keys[i] = directionKey(d, xs[i], ys[i]);
+				}
+			}
+			ranks[d.ordinal()] = new int[n];
+			numRanks[d.ordinal()] = denseRank(keys, n, ranks[d.ordinal()]);
+		}
+	}
+
+	/*
+	 * Colors move in the given direction, so the panels at the opposite
+	 * edge receive each color last (and have the highest rank)
+	 */
+	private static int directionKey(Direction d, int x, int y) {
+		switch (d) {
+			case LEFT:
+				return x;
+			case RIGHT:
+				return -x;
+			case UP:
+				return -y;
+			case DOWN:
+				return y;
+			default:
+				return 0;
+		}
+	}
+
+	// Writes the dense rank of each key into ranks, returning the number of distinct keys
+	private static int denseRank(int[] keys, int n, int[] ranks) {
+		int[] sorted = Arrays.copyOf(keys, n);
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == 0 || sorted[i] != sorted[i-1]) {
+				sorted[distinct++] = sorted[i];
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			ranks[i] = Arrays.binarySearch(sorted, 0, distinct, keys[i]);
+		}
+		return distinct;
+	}
+
+	/**
+	 * Gets the ids of the panels that are rendered, in slot order.
+	 * 
+	 * @return   the panel ids
+	 */
+	public int[] getPanelIds() {
+		return Arrays.copyOf(panelIds, panelIds.length);
+	}
+
+	/**
+	 * Simulates a plugin effect.
+	 * 
+	 * @param effect   the plugin effect
+	 * @return         a new frame timeline
+	 * @throws IllegalArgumentException  If the plugin is not supported, or if the
+	 *                                   palette is empty
+	 */
+	public FrameTimeline render(PluginEffect effect) {
+		return render(effect.getPlugin(), effect.getPalette());
+	}
+
+	/**
+	 * Simulates a plugin with a palette. The algorithm is determined using the
+	 * plugin UUID.
+	 * 
+	 * @param plugin    the plugin
+	 * @param palette   the palette
+	 * @return          a new frame timeline
+	 * @throws IllegalArgumentException  If the plugin is not supported, or if the
+	 *                                   palette is empty
+	 */
+	public FrameTimeline render(Plugin plugin, Palette palette) {
+		Algorithm algorithm = Algorithm.fromUUID(plugin.getUUID());
+		if (algorithm == null) {
+			throw new IllegalArgumentException("Unsupported plugin " + plugin.getUUID() + ".");
+		}
+		return render(algorithm, plugin, palette, 0);
+	}
+
+	/**
+	 * Simulates a plugin algorithm using the options of a plugin and a palette.
+	 * 
+	 * @param algorithm   the plugin algorithm
+	 * @param plugin      the plugin containing the plugin options
+	 * @param palette     the palette
+	 * @param seed        the random seed (only used by the random and highlight
+	 *                    algorithms)
+	 * @return            a new frame timeline
+	 * @throws IllegalArgumentException  If the palette is empty
+	 */
+	public FrameTimeline render(Algorithm algorithm, Plugin plugin,
+			Palette palette, long seed) {
+		List<Color> paletteColors = palette != null ? palette.getColors() : null;
+		if (paletteColors == null || paletteColors.isEmpty()) {
+			throw new IllegalArgumentException("The palette must contain at least one color.");
+		}
+		int[] colors = new int[paletteColors.size()];
+		float[] weights = new float[colors.length];
+		for (int i = 0; i < colors.length; i++) {
+			Color c = paletteColors.get(i);
+			colors[i] = FrameTimeline.rgb(c.getRed(), c.getGreen(), c.getBlue());
+			weights[i] = c.getProbability() > 0 ? c.getProbability() : 1;
+		}
+		Map<String, Object> options = plugin.getOptions();
+		Options opts = new Options();
+		opts.transTime = Math.max(intOption(options, "transTime", DEFAULT_TRANS_TIME), 1);
+		opts.delayTime = Math.max(intOption(options, "delayTime", DEFAULT_DELAY_TIME), 0);
+		opts.colorsPerFrame = Math.max(intOption(options, "nColorsPerFrame", DEFAULT_COLORS_PER_FRAME), 1);
+		opts.loop = booleanOption(options, "loop", true);
+		opts.direction = directionOption(options, "linDirection", Direction.LEFT);
+		float mainProb = floatOption(options, "mainColorProb", DEFAULT_MAIN_COLOR_PROB);
+		opts.mainColorProb = mainProb > 1 ? mainProb/100 : mainProb;
+
+		FrameTimeline.Builder builder = new FrameTimeline.Builder(panelIds.length, opts.loop);
+		Keyframes keys = new Keyframes(colors.length*2 + MIN_RANDOM_STEPS*4);
+		Random random = new Random(seed);
+		for (int slot = 0; slot < panelIds.length; slot++) {
+			builder.addPanel(panelIds[slot]);
+			keys.clear();
+			int period;
+			switch (algorithm) {
+				case WHEEL:
+					period = wheel(slot, colors, opts, keys);
+					break;
+				case FLOW:
+					period = wave(slot, opts.direction, colors, opts, keys);
+					break;
+				case EXPLODE:
+					period = wave(slot, Direction.OUTWARDS, colors, opts, keys);
+					break;
+				case FADE:
+					period = fade(colors, opts, keys);
+					break;
+				case RANDOM:
+					period = random(colors, weights, -1, opts, random, keys);
+					break;
+				case HIGHLIGHT:
+					period = random(colors, weights, 0, opts, random, keys);
+					break;
+				default:
+					throw new IllegalArgumentException("Unsupported algorithm " + algorithm + ".");
+			}
+			keys.emit(builder, slot, period, opts.loop);
+		}
+		return builder.build();
+	}
+
+	/*
+	 * Every panel cycles through the whole palette continuously. The starting color
+	 * of a panel depends on its position, so that nColorsPerFrame colors are visible
+	 * across the layout at once and the colors appear to move in the direction.
+	 */
+	private int wheel(int slot, int[] colors, Options opts, Keyframes keys) {
+		int d = opts.direction.ordinal();
+		int offset = ranks[d][slot] * opts.colorsPerFrame / Math.max(numRanks[d], 1);
+		int n = colors.length;
+		for (int i = 0; i < n; i++) {
+			keys.add(i * opts.transTime, colors[(i + offset) % n]);
+		}
+		return n * opts.transTime;
+	}
+
+	/*
+	 * Each palette color sweeps across the layout in a wave, one rank
+	 * every delayTime, and then holds until the next color arrives.
+	 */
+	private int wave(int slot, Direction direction, int[] colors,
+			Options opts, Keyframes keys) {
+		int d = direction.ordinal();
+		int delay = ranks[d][slot] * opts.delayTime;
+		int step = opts.transTime + numRanks[d] * opts.delayTime;
+		int n = colors.length;
+		for (int i = 0; i < n; i++) {
+			int start = i * step + delay;
+			keys.add(start, colors[(i + n - 1) % n]);
+			keys.add(start + opts.transTime, colors[i]);
+		}
+		return n * step;
+	}
+
+	/*
+	 * All panels transition through the palette together, holding each
+	 * color for delayTime.
+	 */
+	private int fade(int[] colors, Options opts, Keyframes keys) {
+		int step = opts.transTime + opts.delayTime;
+		int n = colors.length;
+		for (int i = 0; i < n; i++) {
+			keys.add(i * step, colors[(i + n - 1) % n]);
+			keys.add(i * step + opts.transTime, colors[i]);
+		}
+		return n * step;
+	}
+
+	/*
+	 * Each panel independently transitions to a random palette color at a random
+	 * brightness, at random times. If mainColor is not negative, that color is picked
+	 * with probability mainColorProb and the other colors share the remainder.
+	 */
+	private int random(int[] colors, float[] weights, int mainColor,
+			Options opts, Random random, Keyframes keys) {
+		int step = opts.transTime + opts.delayTime;
+		int steps = Math.max(MIN_RANDOM_STEPS, colors.length*2);
+		int prev = pick(colors, weights, mainColor, opts.mainColorProb, random);
+		int first = prev;
+		for (int i = 0; i < steps; i++) {
+			int start = i * step + (opts.delayTime > 0 ? random.nextInt(opts.delayTime + 1) : 0);
+			int next = i == steps - 1 ? first :
+				pick(colors, weights, mainColor, opts.mainColorProb, random);
+			keys.add(start, prev);
+			keys.add(start + opts.transTime, next);
+			prev = next;
+		}
+		return steps * step;
+	}
+
+	private static int pick(int[] colors, float[] weights, int mainColor,
+			float mainColorProb, Random random) {
+		int index;
+		if (mainColor >= 0 && (colors.length == 1 || random.nextFloat() < mainColorProb)) {
+			index = mainColor;
+		}
+		else {
+			float total = 0;
+			for (int i = 0; i < weights.length; i++) {
+				total += i != mainColor ? weights[i] : 0;
+			}
+			float r = random.nextFloat() * total;
+			index = mainColor == 0 && colors.length > 1 ? 1 : 0;
+			for (int i = 0; i < weights.length; i++) {
+				if (i == mainColor) {
+					continue;
+				}
+				index = i;
+				r -= weights[i];
+				if (r < 0) {
+					break;
+				}
+			}
+		}
+		// Brightness levels between 25% and 100%
+		return scale(colors[index], 64 + random.nextInt(193));
+	}
+
+	private static int scale(int color, int amount) {
+		int r = ((color >> 16) & 0xFF) * amount / 256;
+		int g = ((color >> 8) & 0xFF) * amount / 256;
+		int b = (color & 0xFF) * amount / 256;
+		return (r << 16) | (g << 8) | b;
+	}
+
+	private static int intOption(Map<String, Object> options, String key, int def) {
+		Object value = options.get(key);
+		return value instanceof Number ? ((Number)value).intValue() : def;
+	}
+
+	private static float floatOption(Map<String, Object> options, String key, float def) {
+		Object value = options.get(key);
+		return value instanceof Number ? ((Number)value).floatValue() : def;
+	}
+
+	private static boolean booleanOption(Map<String, Object> options, String key, boolean def) {
+		Object value = options.get(key);
+		return value instanceof Boolean ? (Boolean)value : def;
+	}
+
+	private static Direction directionOption(Map<String, Object> options, String key, Direction def) {
+		Object value = options.get(key);
+		if (value instanceof String) {
+			try {
+				return Direction.valueOf(((String)value).toUpperCase());
+			}
+			catch (IllegalArgumentException e) {
+				return def;
+			}
+		}
+		return def;
+	}
+
+	private static class Options {
+		int transTime;
+		int delayTime;
+		int colorsPerFrame;
+		float mainColorProb;
+		boolean loop;
+		Direction direction;
+	}
+
+	/*
+	 * A piecewise-linear color signal for a single panel, as (time, color) points.
+	 * Colors are linearly interpolated between consecutive points.
+	 */
+	private static class Keyframes {
+
+		private int[] times;
+		private int[] colors;
+		private long[] order;
+		private int size;
+
+		Keyframes(int capacity) {
+			times = new int[capacity];
+			colors = new int[capacity];
+			order = new long[capacity];
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		void add(int time, int color) {
+			if (size == times.length) {
+				times = Arrays.copyOf(times, size*2);
+				colors = Arrays.copyOf(colors, size*2);
+				order = new long[size*2];
+			}
+			times[size] = time;
+			colors[size] = color;
+			size++;
+		}
+
+		/*
+		 * Converts the points into frames. For a looping signal the point times are
+		 * wrapped into (0, period], and a point is added at the end of the period so
+		 * that every panel's timeline has the same period and phase when looped.
+		 */
+		void emit(FrameTimeline.Builder builder, int slot, int period, boolean loop) {
+			if (size == 0) {
+				return;
+			}
+			for (int i = 0; i < size; i++) {
+				long t = times[i];
+				if (loop) {
+					t %= period;
+					if (t == 0) {
+						t = period;
+					}
+				}
+				// Sort by time, keeping the insertion order for equal times
+				order[i] = (t << 24) | i;
+			}
+			Arrays.sort(order, 0, size);
+			int prevTime = 0;
+			int lastTime = 0;
+			int lastColor = 0;
+			for (int k = 0; k < size; k++) {
+				int i = (int)(order[k] & 0xFFFFFF);
+				int t = (int)(order[k] >>> 24);
+				builder.addFrame(slot, colors[i], t - prevTime);
+				prevTime = t;
+				lastTime = t;
+				lastColor = colors[i];
+			}
+			if (loop && lastTime != period) {
+				int firstTime = (int)(order[0] >>> 24);
+				int firstColor = colors[(int)(order[0] & 0xFFFFFF)];
+				int color = EffectRenderer.lerp(lastColor, firstColor,
+						period - lastTime, firstTime + period - lastTime);
+				builder.addFrame(slot, color, period - lastTime);
+			}
+		}
+	}
+}
@@ -55,7 +55,7 @@ public class PluginTemplates {
 		options.put("delayTime", 3);
 		options.put("loop", true);
 		options.put("transTime", 25);
-		return createPlugin(WHEEL_UUID, "color", options);
+		return createPlugin(FLOW_UUID, "color", options);
 	}
 	
 	/**
@@ -83,7 +83,7 @@ public class PluginTemplates {
 		options.put("delayTime", 3);
 		options.put("loop", true);
 		options.put("transTime", 25);
-		return createPlugin(EXPLODE_UUID, "color", options);
+		return createPlugin(FADE_UUID, "color", options);
 	}
 	
 	/**
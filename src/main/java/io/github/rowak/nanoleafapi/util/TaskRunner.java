@@ -0,0 +1,107 @@
+package io.github.rowak.nanoleafapi.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.rowak.nanoleafapi.NanoleafException;
+
+/**
+ * Runs batches of blocking tasks (typically synchronous device requests) with a
+ * bounded number of tasks running at once.
+ */
+public class TaskRunner {
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private TaskRunner() {}
+
+	/**
+	 * <p>Runs a list of tasks and waits for all of them to finish. At most
+	 * <code>maxConcurrency</code> tasks run at the same time. If the concurrency
+	 * is one (or there is only one task), the tasks are run sequentially on the
+	 * calling thread.</p>
+	 * 
+	 * <p>A task that throws an exception does not stop the other tasks. The
+	 * exception is instead reported by the corresponding future.</p>
+	 * 
+	 * @param tasks                    the tasks to run
+	 * @param maxConcurrency           the maximum number of tasks to run at once
+	 * @return                         the completed futures, in the same order as the tasks
+	 * @throws InterruptedIOException  If the calling thread is interrupted while waiting
+	 */
+	public static <T> List<Future<T>> runAll(List<? extends Callable<T>> tasks,
+			int maxConcurrency) throws InterruptedIOException {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("The concurrency must be at least 1.");
+		}
+		int numThreads = Math.min(maxConcurrency, tasks.size());
+		if (numThreads <= 1) {
+			List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+			for (Callable<T> task : tasks) {
+				FutureTask<T> future = new FutureTask<T>(task);
+				future.run();
+				futures.add(future);
+			}
+			return futures;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+			Thread t = new Thread(r, "nanoleaf-task-" + THREAD_COUNT.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			return executor.invokeAll(new ArrayList<Callable<T>>(tasks));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for tasks.");
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Gets the result of a completed task, rethrowing the exception thrown by
+	 * the task if it failed. Checked exceptions other than {@link NanoleafException}
+	 * and {@link IOException} are wrapped in an IOException.
+	 * 
+	 * @param future               the future of the task
+	 * @return                     the result of the task
+	 * @throws NanoleafException   If the task threw a NanoleafException
+	 * @throws IOException         If the task threw an IOException, or if the
+	 *                             calling thread is interrupted
+	 */
+	public static <T> T getResult(Future<T> future)
+			throws NanoleafException, IOException {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for tasks.");
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof NanoleafException) {
+				throw (NanoleafException)cause;
+			}
+			else if (cause instanceof IOException) {
+				throw (IOException)cause;
+			}
+			else if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+}
@@ -1,5 +1,69 @@
 package com.github.rowak.nanoleafapi;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.CustomEffect;
+import io.github.rowak.nanoleafapi.Frame;
+import io.github.rowak.nanoleafapi.Panel;
+import io.github.rowak.nanoleafapi.ShapeType;
+import io.github.rowak.nanoleafapi.StaticEffect;
+
 public class CustomEffectTest {
 
+	private static final List<Panel> PANELS = Arrays.asList(
+			new Panel(10, 0, 0, 0, ShapeType.triangleAurora()),
+			new Panel(20, 150, 0, 60, ShapeType.triangleAurora()));
+
+	@Test
+	public void customFramesMapIsLive() {
+		CustomEffect.Builder builder = new CustomEffect.Builder(PANELS);
+		Map<Integer, List<Frame>> frames = builder.getFrames();
+		assertEquals(2, frames.size());
+
+		Frame red = new Frame(255, 0, 0, 5);
+		builder.addFrame(10, red);
+		assertEquals(Arrays.asList(red), frames.get(10));
+
+		List<Frame> replaced = new ArrayList<Frame>();
+		frames.put(20, replaced);
+		builder.addFrame(20, red);
+		assertEquals(1, replaced.size());
+
+		frames.remove(10);
+		assertTrue(frames.get(10).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void customFramesMapRejectsUnknownPanel() {
+		new CustomEffect.Builder(PANELS).getFrames().put(30, new ArrayList<Frame>());
+	}
+
+	@Test
+	public void staticFramesMapIsLive() {
+		StaticEffect.Builder builder = new StaticEffect.Builder(PANELS);
+		Map<Integer, Frame> frames = builder.getFrames();
+		assertTrue(frames.isEmpty());
+
+		Frame blue = new Frame(0, 0, 255, 1);
+		builder.setPanel(20, blue);
+		assertEquals(1, frames.size());
+		assertEquals(blue, frames.get(20));
+		assertFalse(frames.containsKey(10));
+
+		frames.put(10, blue);
+		frames.remove(20);
+		assertEquals(blue, frames.get(10));
+		assertNull(frames.get(20));
+		assertEquals(10, (int)frames.keySet().iterator().next());
+	}
 }
@@ -0,0 +1,143 @@
+package com.github.rowak.nanoleafapi;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.Color;
+import io.github.rowak.nanoleafapi.CustomEffect;
+import io.github.rowak.nanoleafapi.Effect;
+import io.github.rowak.nanoleafapi.Palette;
+import io.github.rowak.nanoleafapi.Plugin;
+import io.github.rowak.nanoleafapi.PluginEffect;
+import io.github.rowak.nanoleafapi.StaticEffect;
+import io.github.rowak.nanoleafapi.util.EffectCodec;
+import io.github.rowak.nanoleafapi.util.PluginTemplates;
+
+/**
+ * Compares the size and speed of the binary effect codec against the JSON
+ * representation of a mix of custom, static and plugin effects. This is not a
+ * unit test, so it is ignored by the normal test run. Run it manually with
+ * <code>mvn test -Dtest=EffectCodecBenchmark</code> after removing the
+ * <code>@Ignore</code>, or with
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.github.rowak.nanoleafapi.EffectCodecBenchmark</code>.
+ */
+@Ignore("Benchmark; run manually")
+public class EffectCodecBenchmark {
+
+	private static final int NUM_EFFECTS = 200;
+	private static final int NUM_PANELS = 30;
+	private static final int NUM_FRAMES = 20;
+	private static final int WARMUP_ROUNDS = 20;
+	private static final int ROUNDS = 50;
+
+	@Test
+	public void compareWithJSON() {
+		main(new String[0]);
+	}
+
+	public static void main(String[] args) {
+		List<Effect> effects = createEffects(new Random(1));
+
+		int jsonSize = 0;
+		for (Effect ef : effects) {
+			jsonSize += ef.toJSON().toString().getBytes(StandardCharsets.UTF_8).length;
+		}
+		int binarySize = EffectCodec.encode(effects).remaining();
+		System.out.printf("%d effects: json %d bytes, binary %d bytes (%.1f%%)%n",
+				effects.size(), jsonSize, binarySize, 100.0 * binarySize / jsonSize);
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			jsonRoundTrip(effects);
+			binaryRoundTrip(effects);
+		}
+		long jsonTime = 0, binaryTime = 0;
+		for (int i = 0; i < ROUNDS; i++) {
+			long start = System.nanoTime();
+			jsonRoundTrip(effects);
+			jsonTime += System.nanoTime() - start;
+			start = System.nanoTime();
+			binaryRoundTrip(effects);
+			binaryTime += System.nanoTime() - start;
+		}
+		long ops = (long)ROUNDS * effects.size();
+		System.out.printf("json:   %d ns/effect (encode + decode)%n", jsonTime / ops);
+		System.out.printf("binary: %d ns/effect (encode + decode)%n", binaryTime / ops);
+	}
+
+	private static int jsonRoundTrip(List<Effect> effects) {
+		int n = 0;
+		for (Effect ef : effects) {
+			String json = ef.toJSON().toString();
+			n += Effect.createFromJSON(json) != null ? 1 : 0;
+		}
+		return n;
+	}
+
+	private static int binaryRoundTrip(List<Effect> effects) {
+		int n = 0;
+		for (Effect ef : effects) {
+			ByteBuffer buffer = EffectCodec.encode(ef);
+			n += EffectCodec.decode(buffer) != null ? 1 : 0;
+		}
+		return n;
+	}
+
+	private static List<Effect> createEffects(Random random) {
+		List<Effect> effects = new ArrayList<Effect>();
+		for (int i = 0; i < NUM_EFFECTS; i++) {
+			Palette.Builder palette = new Palette.Builder();
+			for (int c = 0; c < 6; c++) {
+				Color color = Color.fromHSB(random.nextInt(360), random.nextInt(101), random.nextInt(101));
+				color.setProbability(random.nextFloat());
+				palette.addColor(color);
+			}
+			if (i % 3 == 0) {
+				CustomEffect ef = CustomEffect.createCustomEffect("Custom " + i,
+						createAnimData(random, NUM_FRAMES), true);
+				ef.setPalette(palette.build());
+				effects.add(ef);
+			}
+			else if (i % 3 == 1) {
+				StaticEffect ef = StaticEffect.createStaticEffect("Static " + i,
+						createAnimData(random, 1));
+				ef.setVersion(Effect.DEFAULT_VERSION);
+				ef.setColorType(Effect.DEFAULT_COLOR_TYPE);
+				effects.add(ef);
+			}
+			else {
+				PluginEffect ef = new PluginEffect();
+				Plugin plugin = PluginTemplates.getHighlightTemplate();
+				plugin.putOption("transTime", random.nextInt(50));
+				ef.setPlugin(plugin);
+				ef.setName("Plugin " + i);
+				ef.setVersion(Effect.DEFAULT_VERSION);
+				ef.setEffectType("plugin");
+				ef.setColorType(Effect.DEFAULT_COLOR_TYPE);
+				ef.setPalette(palette.build());
+				effects.add(ef);
+			}
+		}
+		return effects;
+	}
+
+	private static String createAnimData(Random random, int numFrames) {
+		StringBuilder animData = new StringBuilder().append(NUM_PANELS);
+		for (int p = 0; p < NUM_PANELS; p++) {
+			animData.append(' ').append(p + 1).append(' ').append(numFrames);
+			for (int f = 0; f < numFrames; f++) {
+				animData.append(' ').append(random.nextInt(256))
+					.append(' ').append(random.nextInt(256))
+					.append(' ').append(random.nextInt(256))
+					.append(" 0 ").append(random.nextInt(50));
+			}
+		}
+		return animData.toString();
+	}
+}
@@ -0,0 +1,205 @@
+package com.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.Color;
+import io.github.rowak.nanoleafapi.CustomEffect;
+import io.github.rowak.nanoleafapi.Effect;
+import io.github.rowak.nanoleafapi.Palette;
+import io.github.rowak.nanoleafapi.Plugin;
+import io.github.rowak.nanoleafapi.PluginEffect;
+import io.github.rowak.nanoleafapi.StaticEffect;
+import io.github.rowak.nanoleafapi.util.EffectCodec;
+
+public class EffectCodecTest {
+
+	@Test
+	public void colorRoundTrip() {
+		Color color = Color.fromHSB(300, 80, 55);
+		assertEquals(color, EffectCodec.decodeColor(EffectCodec.encode(color)));
+
+		color.setProbability(0.25f);
+		assertEquals(color, EffectCodec.decodeColor(EffectCodec.encode(color)));
+	}
+
+	@Test
+	public void paletteRoundTrip() {
+		Palette palette = createPalette();
+		Palette decoded = EffectCodec.decodePalette(EffectCodec.encode(palette));
+		assertEquals(palette.getColors(), decoded.getColors());
+	}
+
+	@Test
+	public void customEffectRoundTrip() {
+		CustomEffect effect = createEffect("Custom", "2 10 1 255 0 0 0 5 20 1 -3 0 255 0 12");
+		ByteBuffer buffer = EffectCodec.encode(effect);
+		Effect decoded = EffectCodec.decode(buffer);
+		assertCustomEffectEquals(effect, decoded);
+		assertEquals(0, buffer.remaining());
+	}
+
+	@Test
+	public void staticEffectRoundTrip() {
+		StaticEffect effect = StaticEffect.createStaticEffect("Static",
+				"2 10 1 255 0 0 0 5 20 1 0 0 255 0 12");
+		effect.setVersion("2.0");
+		effect.setColorType("HSB");
+		ByteBuffer buffer = EffectCodec.encode(effect);
+		assertCustomEffectEquals(effect, EffectCodec.decode(buffer));
+		assertEquals(0, buffer.remaining());
+	}
+
+	@Test
+	public void pluginEffectRoundTrip() {
+		Map<String, Object> options = new LinkedHashMap<String, Object>();
+		options.put("transTime", 24);
+		options.put("linDirection", "right");
+		options.put("loop", true);
+		options.put("delayTime", 2.5);
+		Plugin plugin = new Plugin();
+		plugin.setType("color");
+		plugin.setUUID("027842e4-e1d6-4a4c-a731-be74a1ebd4cf");
+		plugin.setOptions(options);
+		PluginEffect effect = new PluginEffect();
+		effect.setName("Plugin");
+		effect.setEffectType("plugin");
+		effect.setVersion("2.0");
+		effect.setColorType("HSB");
+		effect.setPalette(createPalette());
+		effect.setPlugin(plugin);
+
+		ByteBuffer buffer = EffectCodec.encode(effect);
+		Effect decoded = EffectCodec.decode(buffer);
+		assertEquals(0, buffer.remaining());
+		assertEquals(PluginEffect.class, decoded.getClass());
+		assertEquals(effect.getName(), decoded.getName());
+		assertEquals(effect.getEffectType(), decoded.getEffectType());
+		assertEquals(effect.getVersion(), decoded.getVersion());
+		assertEquals(effect.getColorType(), decoded.getColorType());
+		assertEquals(effect.getPalette().getColors(), decoded.getPalette().getColors());
+		Plugin decodedPlugin = ((PluginEffect)decoded).getPlugin();
+		assertEquals(plugin.getType(), decodedPlugin.getType());
+		assertEquals(plugin.getUUID(), decodedPlugin.getUUID());
+		assertEquals(options, decodedPlugin.getOptions());
+	}
+
+	@Test
+	public void effectListRoundTrip() {
+		List<CustomEffect> effects = Arrays.asList(
+				createEffect("First", "1 1 1 0 0 0 0 1"),
+				createEffect("Second", null),
+				createEffect("Third", "not integers"));
+		List<Effect> decoded = EffectCodec.decodeAll(EffectCodec.encode(effects));
+		assertEquals(effects.size(), decoded.size());
+		for (int i = 0; i < effects.size(); i++) {
+			assertCustomEffectEquals(effects.get(i), decoded.get(i));
+		}
+	}
+
+	@Test
+	public void truncatedInputIsRejected() {
+		ByteBuffer encoded = EffectCodec.encode(createEffect("Custom",
+				"2 10 1 255 0 0 0 5 20 1 0 0 255 0 12"));
+		for (int length = 0; length < encoded.remaining(); length++) {
+			ByteBuffer truncated = encoded.duplicate();
+			truncated.limit(truncated.position() + length);
+			try {
+				EffectCodec.decode(truncated);
+				fail("Decoded an effect from " + length + " of " + encoded.remaining() + " bytes");
+			}
+			catch (IllegalArgumentException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void oversizedVarintIsRejected() {
+		// A count with six varint bytes
+		decodeAfterHeader(0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void varintOverflowIsRejected() {
+		// The fifth byte has bits above bit 31
+		decodeAfterHeader(0xFF, 0xFF, 0xFF, 0xFF, 0x1F);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void countLargerThanInputIsRejected() {
+		decodeAfterHeader(0xFF, 0xFF, 0xFF, 0xFF, 0x07);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void wrongMagicIsRejected() {
+		EffectCodec.decode(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 1, 1, 0}));
+	}
+
+	@Test
+	public void emptyListRoundTrip() {
+		assertTrue(EffectCodec.decodeAll(EffectCodec.encode(
+				Collections.<Effect>emptyList())).isEmpty());
+	}
+
+	/* Decodes an effect list with the given bytes in place of the count */
+	private static void decodeAfterHeader(int... bytes) {
+		ByteBuffer header = EffectCodec.encode(Collections.<Effect>emptyList());
+		// The header is everything but the trailing zero count
+		ByteBuffer buffer = ByteBuffer.allocate(header.remaining() - 1 + bytes.length);
+		header.limit(header.limit() - 1);
+		buffer.put(header);
+		for (int b : bytes) {
+			buffer.put((byte)b);
+		}
+		buffer.flip();
+		EffectCodec.decodeAll(buffer);
+	}
+
+	private static void assertCustomEffectEquals(CustomEffect expected, Effect actual) {
+		assertEquals(expected.getClass(), actual.getClass());
+		CustomEffect custom = (CustomEffect)actual;
+		assertEquals(expected.getName(), custom.getName());
+		assertEquals(expected.getEffectType(), custom.getEffectType());
+		assertEquals(expected.getVersion(), custom.getVersion());
+		assertEquals(expected.getColorType(), custom.getColorType());
+		assertEquals(expected.isLoopEnabled(), custom.isLoopEnabled());
+		if (expected.getAnimationData() == null) {
+			assertNull(custom.getAnimationData());
+		}
+		else {
+			assertEquals(expected.getAnimationData(), custom.getAnimationData());
+		}
+		assertEquals(expected.getPalette().getColors(), custom.getPalette().getColors());
+	}
+
+	private static CustomEffect createEffect(String name, String animData) {
+		CustomEffect effect = new CustomEffect();
+		effect.setName(name);
+		effect.setEffectType("custom");
+		effect.setVersion("2.0");
+		effect.setColorType("HSB");
+		effect.setLoopEnabled(true);
+		effect.setAnimationData(animData);
+		effect.setPalette(createPalette());
+		return effect;
+	}
+
+	private static Palette createPalette() {
+		Color first = Color.fromHSB(0, 100, 100);
+		Color second = Color.fromHSB(120, 50, 75);
+		second.setProbability(0.5f);
+		return new Palette.Builder().addColor(first).addColor(second).build();
+	}
+}
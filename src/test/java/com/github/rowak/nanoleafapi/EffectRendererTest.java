@@ -0,0 +1,96 @@
+package com.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.util.EffectRenderer;
+import io.github.rowak.nanoleafapi.util.FrameTimeline;
+
+public class EffectRendererTest {
+
+	/* Panel 10 reaches red at 500 ms and green at 1500 ms, and panel 20
+	   reaches blue at 300 ms */
+	private static final String ANIM_DATA =
+			"2 10 2 255 0 0 0 5 0 255 0 0 10 20 1 0 0 255 0 3";
+
+	@Test
+	public void interpolatesBetweenFrames() {
+		EffectRenderer renderer = createRenderer(true);
+		int slot = renderer.getTimeline().getSlot(10);
+		assertEquals(1500, renderer.getDuration());
+
+		// From black to the first frame
+		assertEquals(0x000000, renderer.renderPanel(slot, 0));
+		assertEquals(0x7F0000, renderer.renderPanel(slot, 250));
+		assertEquals(0xFF0000, renderer.renderPanel(slot, 500));
+		// From the first frame to the second frame
+		assertEquals(0x807F00, renderer.renderPanel(slot, 1000));
+		assertEquals(0x00FF00, renderer.renderPanel(slot, 1500));
+
+		// Times before the start are clamped, and the cursor can move backwards
+		assertEquals(0x000000, renderer.renderPanel(slot, -100));
+		assertEquals(0x7F0000, renderer.renderPanel(slot, 250));
+	}
+
+	@Test
+	public void loopWrapsWithFirstTransitionTime() {
+		EffectRenderer renderer = createRenderer(true);
+		int slot = renderer.getTimeline().getSlot(10);
+
+		// The wrap from green back to red takes the 500 ms of the first frame
+		assertEquals(0x7F8000, renderer.renderPanel(slot, 1750));
+		assertEquals(0xFF0000, renderer.renderPanel(slot, 2000));
+		assertEquals(0x807F00, renderer.renderPanel(slot, 2500));
+		// Every later pass repeats the first one after the initial transition
+		assertEquals(0x7F8000, renderer.renderPanel(slot, 1750 + 1500 * 4));
+		assertEquals(0xFF0000, renderer.renderPanel(slot, 2000 + 1500 * 4));
+
+		// A single frame loops onto itself
+		int single = renderer.getTimeline().getSlot(20);
+		assertEquals(0x00007F, renderer.renderPanel(single, 150));
+		assertEquals(0x0000FF, renderer.renderPanel(single, 300));
+		assertEquals(0x0000FF, renderer.renderPanel(single, 450));
+	}
+
+	@Test
+	public void holdsLastFrameWithoutLoop() {
+		EffectRenderer renderer = createRenderer(false);
+		int slot = renderer.getTimeline().getSlot(10);
+		assertEquals(0x807F00, renderer.renderPanel(slot, 1000));
+		assertEquals(0x00FF00, renderer.renderPanel(slot, 1500));
+		assertEquals(0x00FF00, renderer.renderPanel(slot, 1750));
+		assertEquals(0x00FF00, renderer.renderPanel(slot, 60000));
+	}
+
+	@Test
+	public void startsFromInitialColor() {
+		EffectRenderer renderer = createRenderer(true);
+		// The alpha bits are ignored
+		renderer.setInitialColor(0xFFFFFFFF);
+		int slot = renderer.getTimeline().getSlot(10);
+		assertEquals(0xFFFFFF, renderer.renderPanel(slot, 0));
+		assertEquals(0xFF8080, renderer.renderPanel(slot, 250));
+		assertEquals(0xFF0000, renderer.renderPanel(slot, 500));
+		// Loops wrap to the first frame, not to the initial color
+		assertEquals(0x7F8000, renderer.renderPanel(slot, 1750));
+	}
+
+	@Test
+	public void rendersEveryPanel() {
+		EffectRenderer renderer = createRenderer(true);
+		int[] out = new int[renderer.getPanelCount()];
+		renderer.render(300, out);
+		assertEquals(0x990000, out[renderer.getTimeline().getSlot(10)]);
+		assertEquals(0x0000FF, out[renderer.getTimeline().getSlot(20)]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsShortOutputArray() {
+		createRenderer(true).render(0, new int[1]);
+	}
+
+	private static EffectRenderer createRenderer(boolean loop) {
+		return new EffectRenderer(FrameTimeline.fromAnimationData(ANIM_DATA, loop));
+	}
+}
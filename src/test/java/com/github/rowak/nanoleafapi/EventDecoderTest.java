@@ -0,0 +1,85 @@
+package com.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.JSONParserException;
+import io.github.rowak.nanoleafapi.event.EventDecoder;
+import io.github.rowak.nanoleafapi.event.EventRecord;
+import io.github.rowak.nanoleafapi.event.EventType;
+
+public class EventDecoderTest {
+
+	@Test
+	public void decodesStateEvents() {
+		EventRecord[] events = new EventDecoder().decode(1,
+				"{\"events\":[{\"attr\":1,\"value\":true},{\"attr\":2,\"value\":50}," +
+				"{\"attr\":\"6\",\"value\":\"hs\"}]}");
+		assertEquals(3, events.length);
+		assertEquals(EventType.STATE, events[0].getType());
+		assertEquals(1, events[0].getAttribute());
+		assertEquals(EventRecord.BOOLEAN_VALUE, events[0].getValueKind());
+		assertTrue(events[0].getBoolean());
+		assertEquals(EventRecord.INT_VALUE, events[1].getValueKind());
+		assertEquals(50, events[1].getInt());
+		assertEquals(6, events[2].getAttribute());
+		assertEquals("hs", events[2].getString());
+	}
+
+	@Test
+	public void decodesTouchEvents() {
+		EventRecord[] events = new EventDecoder().decode(4,
+				"{ \"events\" : [ { \"panelId\" : 12, \"gesture\" : 3 } ] }");
+		assertEquals(1, events.length);
+		assertEquals(3, events[0].getGesture());
+		assertEquals(12, events[0].getPanelId());
+	}
+
+	@Test
+	public void decodesEscapedStrings() {
+		EventRecord[] events = new EventDecoder().decode(3,
+				"{\"events\":[{\"attr\":1,\"value\":\"Fl\\\"a\\u006des\\\\\"}]}");
+		assertEquals("Fl\"ames\\", events[0].getString());
+	}
+
+	@Test
+	public void skipsUnknownKeysAndNullValues() {
+		EventRecord[] events = new EventDecoder().decode(1,
+				"{\"other\":{\"a\":[1,2]},\"events\":[{\"extra\":[true],\"attr\":2,\"value\":null}]}");
+		assertEquals(1, events.length);
+		assertEquals(2, events[0].getAttribute());
+		assertFalse(events[0].hasValue());
+	}
+
+	@Test
+	public void reusesRecord() {
+		EventDecoder decoder = new EventDecoder();
+		EventRecord[] seen = new EventRecord[2];
+		int[] count = {0};
+		int decoded = decoder.decode(1, "{\"events\":[{\"attr\":2,\"value\":1},{\"attr\":2,\"value\":2}]}",
+				r -> seen[count[0]++] = r);
+		assertEquals(2, decoded);
+		assertSame(seen[0], seen[1]);
+		assertEquals(0, decoder.decode(1, "{\"events\":[]}").length);
+		assertEquals(0, decoder.decode(1, "{}").length);
+	}
+
+	@Test(expected = JSONParserException.class)
+	public void rejectsTruncatedMessage() {
+		new EventDecoder().decode(1, "{\"events\":[{\"attr\":2,\"value\":5");
+	}
+
+	@Test(expected = JSONParserException.class)
+	public void rejectsAttributeOutOfRange() {
+		new EventDecoder().decode(1, "{\"events\":[{\"attr\":99999999999,\"value\":5}]}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownType() {
+		new EventDecoder().decode(9, "{}");
+	}
+}
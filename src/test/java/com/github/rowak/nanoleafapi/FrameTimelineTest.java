@@ -0,0 +1,68 @@
+package com.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.util.FrameTimeline;
+
+public class FrameTimelineTest {
+
+	private static final String ANIM_DATA =
+			"2 10 2 255 0 0 0 5 0 255 0 0 10 20 1 0 0 255 0 3";
+
+	@Test
+	public void parsesPanelsAndFrames() {
+		FrameTimeline timeline = FrameTimeline.fromAnimationData(ANIM_DATA, true);
+		assertEquals(2, timeline.getPanelCount());
+		assertTrue(timeline.isLoopEnabled());
+
+		int slot = timeline.getSlot(10);
+		assertEquals(2, timeline.getFrameCount(slot));
+		assertEquals(0xFF0000, timeline.getColor(slot, 0));
+		assertEquals(5, timeline.getTransitionTime(slot, 0));
+		assertEquals(0x00FF00, timeline.getColor(slot, 1));
+		assertEquals(10, timeline.getTransitionTime(slot, 1));
+
+		slot = timeline.getSlot(20);
+		assertEquals(1, timeline.getFrameCount(slot));
+		assertEquals(0x0000FF, timeline.getColor(slot, 0));
+		assertEquals(3, timeline.getTransitionTime(slot, 0));
+	}
+
+	@Test
+	public void roundTripsAnimationData() {
+		FrameTimeline timeline = FrameTimeline.fromAnimationData(ANIM_DATA, false);
+		assertEquals(ANIM_DATA, timeline.toAnimationData());
+		assertFalse(timeline.isLoopEnabled());
+	}
+
+	@Test
+	public void emptyDataHasNoPanels() {
+		assertEquals(0, FrameTimeline.fromAnimationData("", false).getPanelCount());
+		assertEquals(0, FrameTimeline.fromAnimationData(null, false).getPanelCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTruncatedFrames() {
+		// The second frame of panel 10 is cut off
+		FrameTimeline.fromAnimationData("1 10 2 255 0 0 0 5 0 255", false);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMissingPanels() {
+		FrameTimeline.fromAnimationData("3 10 1 255 0 0 0 5", false);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNegativeFrameCount() {
+		FrameTimeline.fromAnimationData("1 10 -1", false);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsHugeFrameCount() {
+		FrameTimeline.fromAnimationData("1 10 2000000000 255 0 0 0 5", false);
+	}
+}
@@ -0,0 +1,59 @@
+package com.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.layout.AdjacencyGraph;
+import io.github.rowak.nanoleafapi.layout.GeodesicOrder;
+import io.github.rowak.nanoleafapi.layout.HopDistances;
+
+public class HopDistancesTest {
+
+	/* Two rows of panels, where slot 5 is not connected to the others */
+	private static final AdjacencyGraph GRAPH = AdjacencyGraph.build(
+			new int[] {10, 11, 12, 13, 14, 15},
+			new int[] {0, 100, 200, 0, 100, 500},
+			new int[] {0, 0, 0, 100, 100, 400}, 100);
+
+	@Test
+	public void computesDistancesBetweenPanels() {
+		HopDistances distances = GRAPH.getDistances();
+		assertEquals(6, distances.size());
+		assertEquals(0, distances.getDistance(0, 0));
+		assertEquals(2, distances.getDistance(0, 4));
+		assertEquals(3, distances.getDistance(2, 3));
+		assertEquals(HopDistances.UNREACHABLE, distances.getDistance(0, 5));
+		int[] row = new int[6];
+		distances.getDistances(3, row);
+		assertArrayEquals(new int[] {1, 2, 3, 0, 1, -1}, row);
+		assertEquals(3, distances.getEccentricity(2));
+		assertEquals(3, distances.getDiameter());
+	}
+
+	@Test
+	public void ordersPanelsByRing() {
+		GeodesicOrder order = GRAPH.getDistances().getOrder(0);
+		assertEquals(0, order.getSource());
+		assertEquals(5, order.size());
+		assertEquals(3, order.getRingCount());
+		assertArrayEquals(new int[] {0}, order.getRing(0));
+		assertArrayEquals(new int[] {1, 3}, order.getRing(1));
+		assertArrayEquals(new int[] {2, 4}, order.getRing(2));
+		assertArrayEquals(new int[] {0, 1, 3, 2, 4}, order.getSlots());
+	}
+
+	@Test
+	public void distanceFieldMatchesTable() {
+		int[] field = new int[6];
+		int max = GRAPH.getDistanceField(new int[] {0, 2}, field);
+		assertEquals(2, max);
+		assertArrayEquals(new int[] {0, 1, 0, 1, 2, -1}, field);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsSmallResultArray() {
+		GRAPH.getDistances().getDistances(0, new int[2]);
+	}
+}
@@ -0,0 +1,63 @@
+package com.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.event.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void emptyHistogramIsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMeanNanos());
+		assertEquals(0, histogram.getPercentileNanos(99));
+	}
+
+	@Test
+	public void countsDurationsInPowerOfTwoBuckets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(0);
+		histogram.record(1);
+		histogram.record(5);
+		histogram.record(-3);
+		long[] buckets = histogram.getBucketCounts();
+		assertEquals(2, buckets[0]);
+		assertEquals(1, buckets[1]);
+		assertEquals(1, buckets[3]);
+		assertEquals(4, histogram.getCount());
+		assertEquals(6, histogram.getTotalNanos());
+		assertEquals(5, histogram.getMaxNanos());
+	}
+
+	@Test
+	public void percentilesAreWithinFactorOfTwo() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		long p50 = histogram.getPercentileNanos(50);
+		assertTrue(p50 >= 500_000 && p50 < 1_000_000);
+		assertEquals(1_000_000, histogram.getPercentileNanos(100));
+		assertEquals(500_500, histogram.getMeanNanos());
+	}
+
+	@Test
+	public void snapshotDoesNotChange() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(10);
+		LatencyHistogram snapshot = histogram.snapshot();
+		histogram.record(20);
+		assertEquals(1, snapshot.getCount());
+		assertEquals(10, snapshot.getMaxNanos());
+		assertEquals(2, histogram.getCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsPercentileOutOfRange() {
+		new LatencyHistogram().getPercentileNanos(101);
+	}
+}
@@ -0,0 +1,89 @@
+package com.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.layout.AdjacencyGraph;
+import io.github.rowak.nanoleafapi.layout.PanelGrid;
+
+public class PanelGridTest {
+
+	private static final int[] XS = {0, 100, 200, 0, 100, 500};
+	private static final int[] YS = {0, 0, 0, 100, 100, 400};
+
+	@Test
+	public void findsPanelsWithinRadius() {
+		PanelGrid grid = new PanelGrid(XS, YS, 101);
+		int[] found = new int[XS.length];
+		int count = grid.findWithin(0, 0, 101, found);
+		Arrays.sort(found, 0, count);
+		assertArrayEquals(new int[] {0, 1, 3}, Arrays.copyOf(found, count));
+		assertEquals(0, grid.findWithin(-1000, -1000, 101, found));
+	}
+
+	@Test
+	public void findsNearestPanel() {
+		PanelGrid grid = new PanelGrid(XS, YS, 101);
+		assertEquals(4, grid.findNearest(90, 110));
+		assertEquals(5, grid.findNearest(480, 390));
+	}
+
+	@Test
+	public void findsNearestPanelFarOutsideOfTheGrid() {
+		PanelGrid grid = new PanelGrid(XS, YS, 1);
+		assertEquals(5, grid.findNearest(5_000_000, 3_000_000));
+		assertEquals(0, grid.findNearest(-5_000_000, -3_000_000));
+		assertEquals(2, grid.findNearest(1_000_000_000, -1_000_000_000));
+	}
+
+	@Test
+	public void nearestPanelMatchesFullScan() {
+		Random random = new Random(42);
+		int n = 200;
+		int[] xs = new int[n];
+		int[] ys = new int[n];
+		for (int i = 0; i < n; i++) {
+			xs[i] = random.nextInt(2000) - 1000;
+			ys[i] = random.nextInt(2000) - 1000;
+		}
+		PanelGrid grid = new PanelGrid(xs, ys, 150);
+		for (int i = 0; i < 1000; i++) {
+			int x = random.nextInt(20000) - 10000;
+			int y = random.nextInt(20000) - 10000;
+			long expected = Long.MAX_VALUE;
+			for (int slot = 0; slot < n; slot++) {
+				expected = Math.min(expected, distance2(xs[slot], ys[slot], x, y));
+			}
+			int nearest = grid.findNearest(x, y);
+			assertEquals(expected, distance2(xs[nearest], ys[nearest], x, y));
+		}
+	}
+
+	@Test
+	public void emptyGridHasNoNearestPanel() {
+		assertEquals(-1, new PanelGrid(new int[0], new int[0], 100).findNearest(0, 0));
+	}
+
+	@Test
+	public void buildsAdjacencyGraph() {
+		AdjacencyGraph graph = AdjacencyGraph.build(new int[] {10, 11, 12, 13, 14, 15},
+				XS, YS, 100);
+		assertEquals(6, graph.size());
+		assertArrayEquals(new int[] {1, 3}, graph.getNeighborSlots(0));
+		assertArrayEquals(new int[] {10, 12, 14}, graph.getNeighborIds(11));
+		assertEquals(0, graph.getDegree(5));
+		assertEquals(graph.getNeighborEnd(0), graph.getNeighborStart(1));
+		assertArrayEquals(new int[] {0, 1, 2, 1, 2, -1}, graph.getDistanceField(0));
+	}
+
+	private static long distance2(int x0, int y0, int x1, int y1) {
+		long dx = (long)x0 - x1;
+		long dy = (long)y0 - y1;
+		return dx*dx + dy*dy;
+	}
+}
@@ -0,0 +1,141 @@
+package com.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.Panel;
+import io.github.rowak.nanoleafapi.ShapeType;
+import io.github.rowak.nanoleafapi.layout.LayoutGeometry;
+import io.github.rowak.nanoleafapi.layout.PanelHitIndex;
+import io.github.rowak.nanoleafapi.layout.PanelLayout;
+
+public class PanelHitIndexTest {
+
+	private static final ShapeType TRIANGLE = ShapeType.triangleShapes();
+	private static final double R = TRIANGLE.getCircumradius();
+	private static final double EPSILON = 1e-6;
+
+	@Test
+	public void triangleVerticesAreCounterclockwise() {
+		double[] up = TRIANGLE.getVertices(0, 0, 0);
+		assertEquals(6, up.length);
+		assertVertex(up, 0, 0, R);
+		assertVertex(up, 1, -67, -R/2);
+		assertVertex(up, 2, 67, -R/2);
+
+		// A turned triangle starts at the vertex 60 degrees further around
+		double[] turned = TRIANGLE.getVertices(10, 20, 60);
+		assertVertex(turned, 0, 10 - 67, 20 + R/2);
+		assertVertex(turned, 1, 10, 20 - R);
+		assertVertex(turned, 2, 10 + 67, 20 + R/2);
+	}
+
+	@Test
+	public void squareSidesAreAxisAligned() {
+		double[] square = ShapeType.square().getVertices(0, 0, 0);
+		double half = ShapeType.square().getSideLength() / 2.0;
+		assertVertex(square, 0, half, half);
+		assertVertex(square, 1, -half, half);
+		assertVertex(square, 2, -half, -half);
+		assertVertex(square, 3, half, -half);
+	}
+
+	@Test
+	public void shapesWithoutAreaHaveNoVertices() {
+		assertEquals(0, ShapeType.rhythm().getVertices(0, 0, 0).length);
+	}
+
+	@Test
+	public void centroidsHitTheirPanels() {
+		PanelHitIndex index = createIndex(0);
+		assertEquals(2, index.size());
+		assertEquals(0, index.findPanel(0, 0));
+		assertEquals(1, index.findPanel(0, -77));
+		assertEquals(10, index.findPanelId(0, 0));
+		assertEquals(20, index.findPanelId(0, -77));
+		assertTrue(index.contains(0, 0, 0));
+		assertFalse(index.contains(1, 0, 0));
+		assertEquals(3, index.getVertexCount(0));
+	}
+
+	@Test
+	public void pointsJustPastAnEdgeMiss() {
+		PanelHitIndex index = createIndex(0);
+		// Along the normal of the upper left edge, which is the inradius R/2 away
+		double nx = Math.cos(Math.toRadians(150));
+		double ny = Math.sin(Math.toRadians(150));
+		assertTrue(index.contains(0, nx * (R/2 - 1), ny * (R/2 - 1)));
+		assertFalse(index.contains(0, nx * (R/2 + 1), ny * (R/2 + 1)));
+		assertEquals(-1, index.findPanel(nx * (R/2 + 1), ny * (R/2 + 1)));
+
+		// Past the top and bottom vertices
+		assertEquals(0, index.findPanel(0, R - 1));
+		assertEquals(-1, index.findPanel(0, R + 1));
+		assertEquals(-1, index.findPanel(0, -77 - R - 1));
+		assertEquals(-1, index.findPanel(1000, 1000));
+	}
+
+	@Test
+	public void sharedEdgeGoesToTheLowerSlot() {
+		// The second centroid is rounded to an integer, so the two triangles
+		// overlap in a thin strip along the shared edge
+		double edgeY = -R/2 + 0.1;
+		PanelHitIndex index = createIndex(0);
+		assertTrue(index.contains(0, 0, edgeY));
+		assertTrue(index.contains(1, 0, edgeY));
+		assertEquals(0, index.findPanel(0, edgeY));
+
+		// With the panels in the opposite order, the lower slot is the other panel
+		PanelLayout swapped = PanelLayout.fromPanels(Arrays.asList(
+				new Panel(20, 0, -77, 60, TRIANGLE),
+				new Panel(10, 0, 0, 0, TRIANGLE)), 134, 0, 1);
+		index = PanelHitIndex.of(LayoutGeometry.of(swapped));
+		assertEquals(0, index.findPanel(0, edgeY));
+		assertEquals(20, index.findPanelId(0, edgeY));
+	}
+
+	@Test
+	public void globalOrientationMovesTheHitRegions() {
+		PanelHitIndex unrotated = createIndex(0);
+		PanelHitIndex rotated = createIndex(60);
+		LayoutGeometry geometry = rotated.getGeometry();
+		assertEquals(60, geometry.getRotation());
+
+		// The panels move around the centroid of the layout
+		assertEquals(0, rotated.findPanel(geometry.getRotatedX(0), geometry.getRotatedY(0)));
+		assertEquals(1, rotated.findPanel(geometry.getRotatedX(1), geometry.getRotatedY(1)));
+		assertTrue(geometry.getRotatedX(0) < -30);
+		assertTrue(geometry.getRotatedX(1) > 30);
+
+		// A point near the top vertex of the first panel is left behind
+		assertEquals(0, unrotated.findPanel(0, 60));
+		assertEquals(-1, rotated.findPanel(0, 60));
+
+		// The panels also turn with the layout
+		double[] expected = TRIANGLE.getVertices(geometry.getRotatedX(0),
+				geometry.getRotatedY(0), 60);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(expected[i*2], rotated.getVertexX(0, i), EPSILON);
+			assertEquals(expected[i*2 + 1], rotated.getVertexY(0, i), EPSILON);
+		}
+	}
+
+	/* An upward triangle at the origin and a downward triangle below it that
+	   shares its bottom edge */
+	private static PanelHitIndex createIndex(int globalOrientation) {
+		PanelLayout layout = PanelLayout.fromPanels(Arrays.asList(
+				new Panel(10, 0, 0, 0, TRIANGLE),
+				new Panel(20, 0, -77, 60, TRIANGLE)), 134, globalOrientation, 1);
+		return PanelHitIndex.of(LayoutGeometry.of(layout));
+	}
+
+	private static void assertVertex(double[] vertices, int vertex, double x, double y) {
+		assertEquals(x, vertices[vertex*2], EPSILON);
+		assertEquals(y, vertices[vertex*2 + 1], EPSILON);
+	}
+}
@@ -0,0 +1,59 @@
+package com.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.layout.PanelIndex;
+
+public class PanelIndexTest {
+
+	@Test
+	public void mapsIdsToSlots() {
+		PanelIndex index = PanelIndex.of(new int[] {42, 7, -3, 65535});
+		assertEquals(4, index.size());
+		assertEquals(0, index.getSlot(42));
+		assertEquals(1, index.getSlot(7));
+		assertEquals(2, index.getSlot(-3));
+		assertEquals(3, index.getSlot(65535));
+		assertEquals(-1, index.getSlot(8));
+		assertTrue(index.contains(7));
+		assertFalse(index.contains(0));
+		assertEquals(65535, index.getPanelId(3));
+		assertArrayEquals(new int[] {42, 7, -3, 65535}, index.getPanelIds());
+	}
+
+	@Test
+	public void duplicateIdMapsToFirstSlot() {
+		PanelIndex index = PanelIndex.of(new int[] {5, 9, 5});
+		assertEquals(0, index.getSlot(5));
+		assertEquals(3, index.size());
+	}
+
+	@Test
+	public void emptyIndexHasNoSlots() {
+		PanelIndex index = PanelIndex.of(new int[0]);
+		assertEquals(0, index.size());
+		assertEquals(-1, index.getSlot(0));
+	}
+
+	@Test
+	public void findsEveryIdOfLargeIndex() {
+		Random random = new Random(7);
+		int[] ids = new int[5000];
+		for (int i = 0; i < ids.length; i++) {
+			// Distinct ids that collide often in the low bits
+			ids[i] = i * 1024 + random.nextInt(2);
+		}
+		PanelIndex index = PanelIndex.of(ids);
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(i, index.getSlot(ids[i]));
+			assertEquals(-1, index.getSlot(ids[i] + 512));
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package com.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.Panel;
+import io.github.rowak.nanoleafapi.ShapeType;
+import io.github.rowak.nanoleafapi.layout.LayoutGeometry;
+import io.github.rowak.nanoleafapi.layout.PanelLayout;
+import io.github.rowak.nanoleafapi.layout.PanelSampler;
+import io.github.rowak.nanoleafapi.layout.PanelSampler.FitMode;
+
+public class PanelSamplerTest {
+
+	private static final int RED = 0xFF0000;
+	private static final int BLUE = 0x0000FF;
+
+	@Test
+	public void solidImageGivesSolidPanels() {
+		LayoutGeometry geometry = createGrid(4, 3);
+		// The alpha channel is ignored
+		int[] image = new int[64*48];
+		Arrays.fill(image, 0x80123456);
+		for (FitMode mode : FitMode.values()) {
+			PanelSampler sampler = new PanelSampler(geometry, 64, 48, mode);
+			int[] expected = new int[sampler.size()];
+			Arrays.fill(expected, 0x123456);
+			assertArrayEquals(expected, sampler.sample(image));
+			int[] parallel = new int[sampler.size()];
+			sampler.sampleParallel(image, parallel);
+			assertArrayEquals(expected, parallel);
+		}
+	}
+
+	@Test
+	public void flipsTheYAxis() {
+		// The panel with the larger y coordinate is at the top of the image
+		PanelSampler sampler = new PanelSampler(createColumn(), 100, 100, FitMode.STRETCH);
+		int[] colors = sampler.sample(splitImage(100, 100, 0, 100));
+		assertEquals(1, sampler.getPanelId(0));
+		assertEquals(BLUE, colors[0]);
+		assertEquals(RED, colors[1]);
+	}
+
+	@Test
+	public void containKeepsTheLayoutInsideTheImage() {
+		// The layout is much taller than wide, so it is centered horizontally
+		// and only covers the middle third of a wide image
+		PanelSampler sampler = new PanelSampler(createColumn(), 300, 100, FitMode.CONTAIN);
+		int[] colors = sampler.sample(splitImage(300, 100, 100, 200));
+		assertEquals(BLUE, colors[0]);
+		assertEquals(RED, colors[1]);
+	}
+
+	@Test
+	public void stretchFillsTheImage() {
+		// The panels are stretched into the black thirds, which darken them
+		PanelSampler sampler = new PanelSampler(createColumn(), 300, 100, FitMode.STRETCH);
+		int[] colors = sampler.sample(splitImage(300, 100, 100, 200));
+		assertTrue(colors[0] > 0 && colors[0] < BLUE);
+		assertTrue(colors[1] > 0xFFFF && colors[1] < RED && (colors[1] & 0xFFFF) == 0);
+
+		PanelSampler contain = new PanelSampler(createColumn(), 300, 100, FitMode.CONTAIN);
+		assertTrue(sampler.getPixelCount(0) > contain.getPixelCount(0));
+	}
+
+	@Test
+	public void coverSamplesPanelsOutsideTheImageFromTheEdge() {
+		// The layout is scaled to fill the width, so the panels are above and
+		// below the image and each takes the closest pixel on the edge
+		PanelSampler sampler = new PanelSampler(createColumn(), 300, 100, FitMode.COVER);
+		int[] colors = sampler.sample(splitImage(300, 100, 100, 200));
+		assertEquals(1, sampler.getPixelCount(0));
+		assertEquals(1, sampler.getPixelCount(1));
+		assertEquals(BLUE, colors[0]);
+		assertEquals(RED, colors[1]);
+	}
+
+	@Test
+	public void weightsEdgePixelsByCoverage() {
+		// A single panel fitted into a 4x4 image covers the inner 2x2 pixels fully
+		// and half of each pixel next to them. The corners are not covered.
+		List<Panel> panels = Arrays.asList(new Panel(1, 0, 0, 0, ShapeType.square()));
+		LayoutGeometry geometry = PanelLayout.fromPanels(panels, 100, 0, 1).getGeometry();
+		PanelSampler sampler = new PanelSampler(geometry, 4, 4, FitMode.STRETCH);
+		assertEquals(12, sampler.getPixelCount(0));
+
+		int[] image = new int[16];
+		for (int y = 0; y < 4; y++) {
+			for (int x = 0; x < 4; x++) {
+				boolean inner = x >= 1 && x <= 2 && y >= 1 && y <= 2;
+				boolean corner = (x == 0 || x == 3) && (y == 0 || y == 3);
+				image[y*4 + x] = inner ? 0xFFFFFF : corner ? RED : 0x000000;
+			}
+		}
+		// 4 pixels of weight 4 against 8 pixels of weight 2, so the panel is half white
+		assertEquals(0x808080, sampler.sample(image)[0]);
+	}
+
+	@Test
+	public void parallelSamplingMatchesSequentialSampling() {
+		LayoutGeometry geometry = createGrid(12, 10);
+		int[] image = new int[320*240];
+		Random random = new Random(7);
+		for (int i = 0; i < image.length; i++) {
+			image[i] = random.nextInt();
+		}
+		for (FitMode mode : FitMode.values()) {
+			PanelSampler sampler = new PanelSampler(geometry, 320, 240, mode);
+			int[] parallel = new int[sampler.size()];
+			sampler.sampleParallel(image, parallel);
+			assertArrayEquals(sampler.sample(image), parallel);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsSmallImage() {
+		new PanelSampler(createColumn(), 10, 10, FitMode.STRETCH).sample(new int[99]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsSmallColorsArray() {
+		new PanelSampler(createColumn(), 10, 10, FitMode.STRETCH)
+				.sampleParallel(new int[100], new int[1]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyImageSize() {
+		new PanelSampler(createColumn(), 0, 10, FitMode.STRETCH);
+	}
+
+	/* Two squares, with panel 2 above panel 1 */
+	private static LayoutGeometry createColumn() {
+		List<Panel> panels = Arrays.asList(
+				new Panel(1, 0, 0, 0, ShapeType.square()),
+				new Panel(2, 0, 200, 0, ShapeType.square()));
+		return PanelLayout.fromPanels(panels, 100, 0, 1).getGeometry();
+	}
+
+	private static LayoutGeometry createGrid(int columns, int rows) {
+		List<Panel> panels = new ArrayList<Panel>();
+		for (int y = 0; y < rows; y++) {
+			for (int x = 0; x < columns; x++) {
+				panels.add(new Panel(panels.size() + 1, x*100, y*100, 0, ShapeType.square()));
+			}
+		}
+		return PanelLayout.fromPanels(panels, 100, 0, 1).getGeometry();
+	}
+
+	/* An image that is red in the top half and blue in the bottom half between
+	   two columns, and black elsewhere */
+	private static int[] splitImage(int width, int height, int fromX, int toX) {
+		int[] image = new int[width*height];
+		for (int y = 0; y < height; y++) {
+			for (int x = fromX; x < toX; x++) {
+				image[y*width + x] = y < height/2 ? RED : BLUE;
+			}
+		}
+		return image;
+	}
+}
@@ -0,0 +1,120 @@
+package io.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.event.EventDecoder;
+import io.github.rowak.nanoleafapi.event.EventDispatch;
+import io.github.rowak.nanoleafapi.event.EventRecord;
+import io.github.rowak.nanoleafapi.event.OverflowPolicy;
+
+public class EventCoalescerTest {
+
+	private final EventDecoder decoder = new EventDecoder();
+	private final List<String> delivered = new CopyOnWriteArrayList<String>();
+	private final AtomicInteger coalesced = new AtomicInteger();
+
+	@Test
+	public void collapsesBurstIntoLatestEvent() {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		try {
+			// The window does not end during the test
+			EventCoalescer coalescer = newCoalescer(scheduler, 3600000);
+			offer(coalescer, 1, "{\"events\":[{\"attr\":2,\"value\":1}]}");
+			offer(coalescer, 1, "{\"events\":[{\"attr\":2,\"value\":2},{\"attr\":1,\"value\":true}]}");
+			offer(coalescer, 1, "{\"events\":[{\"attr\":2,\"value\":3}]}");
+			offer(coalescer, 4, "{\"events\":[{\"gesture\":0,\"panelId\":7}]}");
+			assertEquals("[STATE:2=1, STATE:1=true, TOUCH:0=7]", delivered.toString());
+			assertEquals(1, coalesced.get());
+
+			coalescer.close();
+			assertEquals("[STATE:2=1, STATE:1=true, TOUCH:0=7, STATE:2=3]", delivered.toString());
+			offer(coalescer, 1, "{\"events\":[{\"attr\":2,\"value\":4}]}");
+			assertEquals(4, delivered.size());
+		}
+		finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void deliversLatestEventWhenWindowEnds() throws InterruptedException {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		try {
+			EventCoalescer coalescer = newCoalescer(scheduler, 20);
+			offer(coalescer, 1, "{\"events\":[{\"attr\":2,\"value\":1}]}");
+			offer(coalescer, 1, "{\"events\":[{\"attr\":2,\"value\":2}]}");
+			for (int i = 0; i < 200 && delivered.size() < 2; i++) {
+				Thread.sleep(10);
+			}
+			assertEquals("[STATE:2=1, STATE:2=2]", delivered.toString());
+			assertEquals(0, coalesced.get());
+		}
+		finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void sinkIsCalledWithoutLock() throws InterruptedException {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		try {
+			AtomicInteger locked = new AtomicInteger();
+			EventCoalescer[] coalescer = new EventCoalescer[1];
+			coalescer[0] = new EventCoalescer(20, scheduler, record -> {
+				if (Thread.holdsLock(coalescer[0])) {
+					locked.incrementAndGet();
+				}
+				delivered.add(record.getType() + ":" + record.getInt());
+			}, coalesced::incrementAndGet);
+			offer(coalescer[0], 1, "{\"events\":[{\"attr\":2,\"value\":1}]}");
+			offer(coalescer[0], 1, "{\"events\":[{\"attr\":2,\"value\":2}]}");
+			for (int i = 0; i < 200 && delivered.size() < 2; i++) {
+				Thread.sleep(10);
+			}
+			offer(coalescer[0], 1, "{\"events\":[{\"attr\":2,\"value\":3}]}");
+			coalescer[0].close();
+			assertEquals("[STATE:1, STATE:2, STATE:3]", delivered.toString());
+			assertEquals(0, locked.get());
+		}
+		finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void inlineDispatchCannotCoalesce() {
+		EventDispatch.INLINE.withCoalescing(50);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void blockingDispatchCannotCoalesce() {
+		EventDispatch.serial(8, OverflowPolicy.BLOCK).withCoalescing(50);
+	}
+
+	@Test
+	public void zeroWindowIsAllowedForAnyDispatch() {
+		assertEquals(0, EventDispatch.INLINE.withCoalescing(0).getCoalesceWindowMillis());
+		assertEquals(0, EventDispatch.serial(8, OverflowPolicy.BLOCK).withCoalescing(0)
+				.getCoalesceWindowMillis());
+	}
+
+	private EventCoalescer newCoalescer(ScheduledExecutorService scheduler, long windowMillis) {
+		return new EventCoalescer(windowMillis, scheduler, record -> delivered.add(
+				record.getType() + ":" + record.getAttribute() + (record.hasValue() ?
+				"=" + (record.getValueKind() == EventRecord.BOOLEAN_VALUE ?
+						record.getBoolean() : record.getInt()) : "")),
+				coalesced::incrementAndGet);
+	}
+
+	private void offer(EventCoalescer coalescer, int typeId, String message) {
+		decoder.decode(typeId, message, coalescer::offer);
+	}
+}
@@ -0,0 +1,145 @@
+package io.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.event.DispatchStats;
+import io.github.rowak.nanoleafapi.event.EventDispatch;
+import io.github.rowak.nanoleafapi.event.OverflowPolicy;
+
+/*
+ * Each test first dispatches a gate event whose callback blocks until it is
+ * released, so the events that follow stay in the queue until the test has
+ * checked the overflow behavior.
+ */
+public class EventDispatcherTest {
+
+	private final List<String> delivered = new CopyOnWriteArrayList<String>();
+	private final CountDownLatch gateStarted = new CountDownLatch(1);
+	private final CountDownLatch gateReleased = new CountDownLatch(1);
+	private final CountDownLatch closed = new CountDownLatch(1);
+
+	@Test
+	public void dropOldestRemovesOnlyEvents() throws InterruptedException {
+		EventDispatcher dispatcher = newDispatcher(2, OverflowPolicy.DROP_OLDEST);
+		dispatcher.dispatchControl(() -> delivered.add("open"));
+		dispatchEvents(dispatcher, "e1", "e2", "e3");
+		assertEquals(1, dispatcher.getStats().getDroppedCount());
+		assertEquals(2, dispatcher.getStats().getQueueSize());
+
+		releaseAndClose(dispatcher);
+		assertEquals("[gate, open, e2, e3, closed]", delivered.toString());
+	}
+
+	@Test
+	public void dropNewestDropsIncomingEvents() throws InterruptedException {
+		EventDispatcher dispatcher = newDispatcher(2, OverflowPolicy.DROP_NEWEST);
+		dispatchEvents(dispatcher, "e1", "e2", "e3", "e4");
+		assertEquals(2, dispatcher.getStats().getDroppedCount());
+
+		releaseAndClose(dispatcher);
+		assertEquals("[gate, e1, e2, closed]", delivered.toString());
+	}
+
+	@Test
+	public void controlCallbacksAreNeverDropped() throws InterruptedException {
+		EventDispatcher dispatcher = newDispatcher(1, OverflowPolicy.DROP_NEWEST);
+		dispatchEvents(dispatcher, "e1");
+		dispatcher.dispatchControl(() -> delivered.add("c1"));
+		dispatcher.dispatchControl(() -> delivered.add("c2"));
+		dispatchEvents(dispatcher, "e2");
+		DispatchStats stats = dispatcher.getStats();
+		assertEquals(1, stats.getDroppedCount());
+		// Control callbacks do not count towards the capacity
+		assertEquals(1, stats.getQueueSize());
+
+		releaseAndClose(dispatcher);
+		assertEquals("[gate, e1, c1, c2, closed]", delivered.toString());
+	}
+
+	@Test
+	public void blockedProducerWakesUpOnClose() throws InterruptedException {
+		EventDispatcher dispatcher = newDispatcher(1, OverflowPolicy.BLOCK);
+		dispatchEvents(dispatcher, "e1");
+		Thread producer = new Thread(() -> dispatchEvents(dispatcher, "e2"));
+		producer.start();
+		for (int i = 0; i < 500 && producer.getState() != Thread.State.WAITING; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(Thread.State.WAITING, producer.getState());
+
+		dispatcher.close(() -> {
+			delivered.add("closed");
+			closed.countDown();
+		});
+		producer.join(5000);
+		assertFalse(producer.isAlive());
+		assertEquals(1, dispatcher.getStats().getDroppedCount());
+
+		gateReleased.countDown();
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+		assertEquals("[gate, e1, closed]", delivered.toString());
+	}
+
+	@Test
+	public void closeDrainsQueuedCallbacks() throws InterruptedException {
+		EventDispatcher dispatcher = newDispatcher(4, OverflowPolicy.DROP_OLDEST);
+		dispatchEvents(dispatcher, "e1", "e2", "e3");
+		dispatcher.close(() -> {
+			delivered.add("closed");
+			closed.countDown();
+		});
+		// Nothing is accepted after the close
+		dispatchEvents(dispatcher, "e4");
+		dispatcher.dispatchControl(() -> delivered.add("late"));
+
+		gateReleased.countDown();
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+		assertEquals("[gate, e1, e2, e3, closed]", delivered.toString());
+		DispatchStats stats = dispatcher.getStats();
+		assertEquals(4, stats.getDeliveredCount());
+		assertEquals(0, stats.getDroppedCount());
+		assertEquals(0, stats.getQueueSize());
+	}
+
+	/* Creates a serial dispatcher whose thread is blocked in the gate event */
+	private EventDispatcher newDispatcher(int capacity, OverflowPolicy policy)
+			throws InterruptedException {
+		EventDispatcher dispatcher = new EventDispatcher(EventDispatch.serial(capacity, policy));
+		dispatcher.dispatchEvent(() -> {
+			delivered.add("gate");
+			gateStarted.countDown();
+			try {
+				gateReleased.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(gateStarted.await(5, TimeUnit.SECONDS));
+		return dispatcher;
+	}
+
+	private void dispatchEvents(EventDispatcher dispatcher, String... names) {
+		for (String name : names) {
+			dispatcher.dispatchEvent(() -> delivered.add(name));
+		}
+	}
+
+	private void releaseAndClose(EventDispatcher dispatcher) throws InterruptedException {
+		gateReleased.countDown();
+		dispatcher.close(() -> {
+			delivered.add("closed");
+			closed.countDown();
+		});
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,73 @@
+package io.github.rowak.nanoleafapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.github.rowak.nanoleafapi.event.DetailedTouchEvent;
+import io.github.rowak.nanoleafapi.event.EventType;
+import io.github.rowak.nanoleafapi.event.HistoryEntry;
+
+public class EventHistoryTest {
+
+	@Test
+	public void keepsEntriesInOrder() {
+		EventHistory history = new EventHistory(4);
+		history.recordMessage(1, "a");
+		history.recordTouchEvents(new DetailedTouchEvent[] {new DetailedTouchEvent(5, 0, 3, -1)});
+		history.recordMessage(2, "b");
+		assertEquals(3, history.getLatestSequence());
+
+		List<HistoryEntry> entries = history.getEntries(0);
+		assertEquals(3, entries.size());
+		assertEquals(1, entries.get(0).getSequence());
+		assertEquals(EventType.STATE, entries.get(0).getType());
+		assertEquals("a", entries.get(0).getMessage());
+		assertTrue(entries.get(1).isDetailedTouch());
+		assertEquals(EventType.LAYOUT, entries.get(2).getType());
+		assertEquals(2, history.getEntries(2).size());
+	}
+
+	@Test
+	public void replacesOldestEntriesWhenFull() {
+		EventHistory history = new EventHistory(3);
+		for (int i = 1; i <= 5; i++) {
+			history.recordMessage(1, "m" + i);
+		}
+		List<HistoryEntry> entries = history.getEntries(0);
+		assertEquals(3, entries.size());
+		assertEquals(3, entries.get(0).getSequence());
+		assertEquals("m5", entries.get(2).getMessage());
+	}
+
+	@Test
+	public void replaysMessagesOfMaskedTypes() {
+		EventHistory history = new EventHistory(8);
+		history.recordMessage(1, "state");
+		history.recordMessage(3, "effects");
+		history.recordMessage(1, "state2");
+		List<String> replayed = new ArrayList<String>();
+		history.replayMessages(2, NanoleafEventHub.STATE,
+				(message, typeId) -> replayed.add(typeId + ":" + message));
+		assertEquals(1, replayed.size());
+		assertEquals("1:state2", replayed.get(0));
+	}
+
+	@Test
+	public void findsSequenceAtTime() {
+		EventHistory history = new EventHistory(2);
+		assertEquals(1, history.getSequenceAt(0));
+		history.recordMessage(1, "a");
+		assertEquals(1, history.getSequenceAt(0));
+		assertEquals(2, history.getSequenceAt(Long.MAX_VALUE));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsZeroCapacity() {
+		new EventHistory(0);
+	}
+}